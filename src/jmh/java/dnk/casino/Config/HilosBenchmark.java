@@ -0,0 +1,148 @@
+package dnk.casino.Config;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import dnk.casino.Config.PasswordHasher.Operacion;
+import dnk.casino.Users.Usuario;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compara hilos de plataforma y virtuales atendiendo oleadas de peticiones
+ * concurrentes de login y de compra en la tienda contra un MongoDB real.
+ *
+ * El modo plataforma usa un grupo fijo de 200 hilos, como el de Tomcat por
+ * defecto; el modo virtual, un hilo virtual por petición. En ambos BCrypt se
+ * ejecuta en el grupo de {@link PasswordHasher}, con coste 4 para que no
+ * domine la medida. Usa la URI de la variable de entorno MONGODB_URI (por
+ * defecto mongodb://localhost:27017) y la base de datos dnk-casino-bench.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HilosBenchmark {
+
+    @Param({ "plataforma", "virtual" })
+    private String modo;
+
+    @Param({ "200", "2000" })
+    private int concurrencia;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private PasswordHasher passwordHasher;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        String uri = System.getenv().getOrDefault("MONGODB_URI", "mongodb://localhost:27017");
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-bench");
+        mongoTemplate.dropCollection(Usuario.class);
+
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        Usuario usuario = new Usuario("bench", encoder.encode("contraseña"), "bench@dnk.casino");
+        usuario.setCoins(1_000_000_000);
+        mongoTemplate.insert(usuario);
+
+        passwordHasher = new PasswordHasher();
+        set(passwordHasher, "passwordEncoder", encoder);
+        set(passwordHasher, "meterRegistry", new SimpleMeterRegistry());
+        set(passwordHasher, "capacidadCola", concurrencia);
+        set(passwordHasher, "limiteLogin", concurrencia);
+        set(passwordHasher, "espera", 60_000L);
+        passwordHasher.iniciar();
+
+        executor = modo.equals("virtual") ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(200);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        passwordHasher.detener();
+        mongoTemplate.dropCollection(Usuario.class);
+        client.close();
+    }
+
+    @Benchmark
+    public int login() throws Exception {
+        return oleada(() -> {
+            Usuario usuario = buscar();
+            return passwordHasher.matches(Operacion.LOGIN, "contraseña", usuario.getPassword());
+        });
+    }
+
+    @Benchmark
+    public int tienda() throws Exception {
+        return oleada(() -> {
+            Usuario usuario = buscar();
+            usuario.pagar(1);
+            return mongoTemplate.save(usuario) != null;
+        });
+    }
+
+    /**
+     * Lanza una oleada de peticiones concurrentes y espera a que terminen.
+     *
+     * @param peticion la petición
+     * @return número de peticiones con éxito
+     * @throws Exception si alguna petición falla
+     */
+    private int oleada(Callable<Boolean> peticion) throws Exception {
+        List<Future<Boolean>> futures = new ArrayList<>(concurrencia);
+        for (int i = 0; i < concurrencia; i++) {
+            futures.add(executor.submit(peticion));
+        }
+        int exitos = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get()) {
+                exitos++;
+            }
+        }
+        return exitos;
+    }
+
+    private Usuario buscar() {
+        return mongoTemplate.findOne(Query.query(where("usernameLower").is("bench")), Usuario.class);
+    }
+
+    private static void set(Object objeto, String campo, Object valor) throws ReflectiveOperationException {
+        Field field = objeto.getClass().getDeclaredField(campo);
+        field.setAccessible(true);
+        field.set(objeto, valor);
+    }
+}
@@ -0,0 +1,62 @@
+package dnk.casino;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dnk.casino.Skins.Skin;
+import dnk.casino.Users.Usuario;
+
+/**
+ * Mide la serialización JSON de las entidades que devuelven los controladores.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Usuario usuario;
+    private Skin skin;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        usuario = new Usuario("bench", "password", "bench@dnk.casino");
+        usuario.setId(String.format("%024x", 1));
+        usuario.setLastLoginDate(new Date());
+        for (int i = 0; i < 10; i++) {
+            usuario.desbloquearSkin(String.format("%024x", i));
+        }
+        skin = new Skin("Comida Basura", 100, "Skin de comida", new String[] { "🍔", "🍟", "🌭", "🍕" });
+        skin.setId(String.format("%024x", 2));
+    }
+
+    @Benchmark
+    public byte[] usuario() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(usuario);
+    }
+
+    @Benchmark
+    public byte[] skin() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(skin);
+    }
+}
@@ -0,0 +1,137 @@
+package dnk.casino.Leaderboard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dnk.casino.Users.Usuario;
+
+/**
+ * Compara el top 5 por ordenación completa (implementación anterior de
+ * UsuarioService.getTop5Winners) con la clasificación incremental, y lo mismo
+ * para la posición de un usuario con sus vecinos.
+ *
+ * La implementación anterior se simula con un mapa en memoria en lugar de
+ * findById, por lo que su coste real con MongoDB es mucho mayor.
+ *
+ * Los casos con contención miden el cerrojo de escritura de cada
+ * clasificación: varios hilos sumando victorias a la vez, y victorias mezcladas
+ * con consultas del top y de la posición.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+    /**
+     * Número de usuarios.
+     */
+    @Param({ "1000", "10000", "50000" })
+    public int usuarios;
+
+    private Map<String, Usuario> repositorio;
+    private Leaderboard leaderboard;
+    private String[] ids;
+
+    @Setup
+    public void setup() {
+        repositorio = new HashMap<>();
+        leaderboard = new Leaderboard();
+        ids = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            Usuario usuario = new Usuario("user" + i, "password", "user" + i + "@dnk.casino");
+            usuario.setId(String.format("%024x", i));
+            usuario.setWins(ThreadLocalRandom.current().nextInt(10_000));
+            repositorio.put(usuario.getId(), usuario);
+            leaderboard.set(usuario.getId(), usuario.getWins());
+            ids[i] = usuario.getId();
+        }
+    }
+
+    @Benchmark
+    public List<Usuario> top5Ordenacion() {
+        List<Usuario> lista = new ArrayList<>(repositorio.values());
+        lista.sort((u1, u2) -> Long.compare(repositorio.get(u2.getId()).getWins(),
+                repositorio.get(u1.getId()).getWins()));
+        return lista.subList(0, Math.min(5, lista.size()));
+    }
+
+    @Benchmark
+    public List<Leaderboard.Entrada> top5Leaderboard() {
+        return leaderboard.top(5);
+    }
+
+    @Benchmark
+    public int posicionOrdenacion() {
+        String id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        List<Usuario> lista = new ArrayList<>(repositorio.values());
+        lista.sort((u1, u2) -> Long.compare(u2.getWins(), u1.getWins()));
+        for (int i = 0; i < lista.size(); i++) {
+            if (lista.get(i).getId().equals(id)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    @Benchmark
+    public Optional<Leaderboard.Vecindario> posicionLeaderboard() {
+        return leaderboard.alrededor(ids[ThreadLocalRandom.current().nextInt(ids.length)], 2);
+    }
+
+    @Benchmark
+    public void victoriaLeaderboard() {
+        leaderboard.add(ids[ThreadLocalRandom.current().nextInt(ids.length)], 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void victoriaLeaderboardContendida() {
+        leaderboard.add(ids[ThreadLocalRandom.current().nextInt(ids.length)], 1);
+    }
+
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(4)
+    public void mixtaVictoria() {
+        leaderboard.add(ids[ThreadLocalRandom.current().nextInt(ids.length)], 1);
+    }
+
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(2)
+    public List<Leaderboard.Entrada> mixtaTop5() {
+        return leaderboard.top(5);
+    }
+
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(2)
+    public Optional<Leaderboard.Vecindario> mixtaPosicion() {
+        return leaderboard.alrededor(ids[ThreadLocalRandom.current().nextInt(ids.length)], 2);
+    }
+}
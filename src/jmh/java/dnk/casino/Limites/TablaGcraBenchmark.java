@@ -0,0 +1,81 @@
+package dnk.casino.Limites;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara la tabla de cubos GCRA sin bloqueos con un mapa concurrente de cubos
+ * sincronizados, con 8 hilos comprobando límites a la vez.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class TablaGcraBenchmark {
+
+    /**
+     * Número de claves distintas; con pocas claves los hilos compiten por los
+     * mismos cubos.
+     */
+    @Param({ "16", "100000" })
+    public int claves;
+
+    private TablaGcra tabla;
+    private ConcurrentHashMap<Long, Cubo> mapa;
+
+    /**
+     * Cubo de tokens clásico, con recarga por tiempo transcurrido.
+     */
+    private static class Cubo {
+        private double tokens = 10;
+        private long ultimo = System.nanoTime();
+
+        synchronized boolean consumir() {
+            long ahora = System.nanoTime();
+            tokens = Math.min(10, tokens + (ahora - ultimo) / 6e9);
+            ultimo = ahora;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        tabla = new TablaGcra(65536, 64);
+        mapa = new ConcurrentHashMap<>();
+    }
+
+    @Benchmark
+    public long tablaGcra() {
+        long hash = ThreadLocalRandom.current().nextInt(claves) * 0x9e3779b97f4a7c15L;
+        return tabla.adquirir(hash, 6000, 54000);
+    }
+
+    @Benchmark
+    public boolean mapaSincronizado() {
+        long clave = ThreadLocalRandom.current().nextInt(claves);
+        return mapa.computeIfAbsent(clave, c -> new Cubo()).consumir();
+    }
+}
@@ -0,0 +1,92 @@
+package dnk.casino.Metrics;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Mide el coste que añaden las métricas a cada operación: una operación vacía
+ * sin medir frente a la misma operación medida, con y sin histograma de
+ * percentiles, y el recuento de un resultado. Con varios hilos a la vez para
+ * ver también la contención en los medidores.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class CasinoMetricsBenchmark {
+
+    @Param({ "true", "false" })
+    private boolean histogramas;
+
+    private CasinoMetrics casinoMetrics;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        casinoMetrics = crear(new SimpleMeterRegistry(), histogramas);
+    }
+
+    /**
+     * Crea unas métricas del casino fuera de Spring.
+     *
+     * @param meterRegistry el registro de métricas
+     * @param histogramas   true para publicar histogramas de percentiles
+     * @return las métricas iniciadas
+     * @throws ReflectiveOperationException si no se pueden inyectar los campos
+     */
+    public static CasinoMetrics crear(MeterRegistry meterRegistry, boolean histogramas)
+            throws ReflectiveOperationException {
+        CasinoMetrics casinoMetrics = new CasinoMetrics();
+        Field registro = CasinoMetrics.class.getDeclaredField("meterRegistry");
+        registro.setAccessible(true);
+        registro.set(casinoMetrics, meterRegistry);
+        Field histograma = CasinoMetrics.class.getDeclaredField("histogramas");
+        histograma.setAccessible(true);
+        histograma.set(casinoMetrics, histogramas);
+        casinoMetrics.iniciar();
+        return casinoMetrics;
+    }
+
+    @Benchmark
+    public void sinMedir(Blackhole blackhole) {
+        blackhole.consume(operacion());
+    }
+
+    @Benchmark
+    public void medido(Blackhole blackhole) {
+        blackhole.consume(casinoMetrics.medir(Metrica.PAGAR, () -> operacion()));
+    }
+
+    @Benchmark
+    public void resultado() {
+        casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.MONEDAS_INSUFICIENTES);
+    }
+
+    private static int operacion() {
+        Blackhole.consumeCPU(64);
+        return 1;
+    }
+}
@@ -0,0 +1,92 @@
+package dnk.casino.Skins;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dnk.casino.Users.SkinsDesbloqueadas;
+
+/**
+ * Compara las skins desbloqueadas como HashSet de IDs frente al conjunto de
+ * bits: comprobación por ID, comprobación por ordinal y construcción del
+ * conjunto al descodificar un usuario.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkinsDesbloqueadasBenchmark {
+
+    @Param({ "10", "50" })
+    private int desbloqueadas;
+
+    private List<String> ids;
+    private Set<String> hashSet;
+    private SkinsDesbloqueadas bitset;
+    private String buscada;
+    private int ordinalBuscado;
+
+    @Setup
+    public void setup() {
+        List<Skin> skins = new ArrayList<>();
+        ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Skin skin = new Skin("skin" + i, "", new String[0]);
+            skin.setId(new ObjectId().toHexString());
+            skin.setOrdinal(i);
+            skins.add(skin);
+            if (i < desbloqueadas) {
+                ids.add(skin.getId());
+            }
+        }
+        OrdinalesSkins.registrar(skins);
+        hashSet = new HashSet<>(ids);
+        bitset = new SkinsDesbloqueadas(ids);
+        buscada = new String(ids.get(ids.size() / 2));
+        ordinalBuscado = desbloqueadas / 2;
+    }
+
+    @Benchmark
+    public boolean containsHashSet() {
+        return hashSet.contains(buscada);
+    }
+
+    @Benchmark
+    public boolean containsBitset() {
+        return bitset.contains(buscada);
+    }
+
+    @Benchmark
+    public boolean hasOrdinal() {
+        return bitset.has(ordinalBuscado);
+    }
+
+    @Benchmark
+    public Set<String> cargarHashSet() {
+        return new HashSet<>(ids);
+    }
+
+    @Benchmark
+    public Set<String> cargarBitset() {
+        return new SkinsDesbloqueadas(ids);
+    }
+}
@@ -0,0 +1,115 @@
+package dnk.casino.Tienda;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Users.ResultadoCompra;
+import dnk.casino.Users.Usuario;
+import dnk.casino.Users.UsuarioService;
+
+/**
+ * Prueba de estrés de la compra atómica de skins contra un MongoDB real.
+ *
+ * Muchos hilos compran a la vez skins al azar para el mismo usuario, con saldo
+ * para solo una parte de ellas. Al final de cada iteración se comprueba que el
+ * saldo nunca es negativo y que coincide exactamente con el saldo inicial menos
+ * el precio de las skins desbloqueadas; si no, la iteración falla.
+ *
+ * Usa la URI de la variable de entorno MONGODB_URI (por defecto
+ * mongodb://localhost:27017) y la base de datos dnk-casino-bench. Las mismas
+ * comprobaciones se ejecutan en cada build en CompraSkinConcurrenteTest.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class CompraSkinBenchmark {
+
+    private static final int SKINS = 200;
+    private static final int PRECIO = 10;
+    private static final int SALDO_INICIAL = SKINS * PRECIO / 2;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private UsuarioService usuarioService;
+    private Skin[] skins;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        String uri = System.getenv().getOrDefault("MONGODB_URI", "mongodb://localhost:27017");
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-bench");
+
+        usuarioService = new UsuarioService();
+        Field field = UsuarioService.class.getDeclaredField("mongoTemplate");
+        field.setAccessible(true);
+        field.set(usuarioService, mongoTemplate);
+        field = UsuarioService.class.getDeclaredField("leaderboardService");
+        field.setAccessible(true);
+        field.set(usuarioService, new LeaderboardService());
+
+        skins = new Skin[SKINS];
+        for (int i = 0; i < SKINS; i++) {
+            skins[i] = new Skin("skin" + i, PRECIO, "", new String[0], true);
+            skins[i].setId("skin" + i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void crearUsuario() {
+        mongoTemplate.dropCollection(Usuario.class);
+        Usuario usuario = new Usuario("bench", "password", "bench@dnk.casino");
+        usuario.setCoins(SALDO_INICIAL);
+        mongoTemplate.insert(usuario);
+    }
+
+    @TearDown(Level.Iteration)
+    public void comprobar() {
+        Usuario usuario = mongoTemplate.findOne(Query.query(where("usernameLower").is("bench")), Usuario.class);
+        int esperado = SALDO_INICIAL - usuario.getSkins().size() * PRECIO;
+        if (usuario.getCoins() < 0 || usuario.getCoins() != esperado) {
+            throw new IllegalStateException("Saldo inconsistente: " + usuario.getCoins() + " monedas con "
+                    + usuario.getSkins().size() + " skins, se esperaban " + esperado);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(Usuario.class);
+        client.close();
+    }
+
+    @Benchmark
+    public ResultadoCompra comprar() {
+        return usuarioService.comprarSkin("bench", skins[ThreadLocalRandom.current().nextInt(SKINS)]);
+    }
+}
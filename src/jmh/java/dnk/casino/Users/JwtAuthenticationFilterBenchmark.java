@@ -0,0 +1,66 @@
+package dnk.casino.Users;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import jakarta.servlet.ServletException;
+
+/**
+ * Mide el coste del filtro de autenticación JWT por solicitud, con y sin
+ * token.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest conToken;
+    private MockHttpServletRequest sinToken;
+
+    @Setup
+    public void setup() {
+        filter = new JwtAuthenticationFilter();
+        Usuario usuario = new Usuario("bench", "password", "bench@dnk.casino");
+        conToken = new MockHttpServletRequest("GET", "/shop/api");
+        conToken.addHeader("Authorization", "Bearer " + JwtTokenUtil.generateToken(usuario));
+        sinToken = new MockHttpServletRequest("GET", "/shop/api");
+    }
+
+    private void filtrar(MockHttpServletRequest request) throws ServletException, IOException {
+        // El filtro solo se aplica una vez por solicitud, así que se quita la marca
+        request.clearAttributes();
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @Benchmark
+    public void conToken() throws ServletException, IOException {
+        filtrar(conToken);
+    }
+
+    @Benchmark
+    public void sinToken() throws ServletException, IOException {
+        filtrar(sinToken);
+    }
+}
@@ -0,0 +1,79 @@
+package dnk.casino.Users;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+/**
+ * Mide la generación de tokens JWT y compara la verificación anterior (clave
+ * y parser nuevos en cada llamada, dos verificaciones por solicitud) con la
+ * verificación única, con y sin caché.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private Usuario usuario;
+    private String token;
+
+    @Setup
+    public void setup() {
+        usuario = new Usuario("bench", "password", "bench@dnk.casino");
+        token = JwtTokenUtil.generateToken(usuario);
+    }
+
+    @Benchmark
+    public String generar() {
+        return JwtTokenUtil.generateToken(usuario);
+    }
+
+    /**
+     * Reproduce la verificación anterior a la caché de tokens.
+     */
+    private static Claims verificacionAnterior(String token) {
+        byte[] bytes = Base64.getDecoder().decode(System.getenv().get("JWT_SECRET").getBytes(StandardCharsets.UTF_8));
+        SecretKey key = new SecretKeySpec(bytes, "HmacSHA256");
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    }
+
+    @Benchmark
+    public void anterior(Blackhole bh) {
+        bh.consume(verificacionAnterior(token).getSubject());
+        bh.consume(verificacionAnterior(token).get("role", String.class));
+    }
+
+    @Benchmark
+    public JwtPrincipal verificacionUnica() {
+        return JwtTokenUtil.parseToken(token);
+    }
+
+    @Benchmark
+    public Optional<JwtPrincipal> verificacionCacheada() {
+        return JwtTokenUtil.verifyToken(token);
+    }
+}
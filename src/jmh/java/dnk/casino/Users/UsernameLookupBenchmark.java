@@ -0,0 +1,96 @@
+package dnk.casino.Users;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+/**
+ * Compara la búsqueda de usuarios por nombre con $regex sin distinguir
+ * mayúsculas frente a la búsqueda exacta sobre el campo normalizado indexado.
+ *
+ * Usa la URI de la variable de entorno MONGODB_URI (por defecto
+ * mongodb://localhost:27017) y la base de datos dnk-casino-bench.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsernameLookupBenchmark {
+
+    /**
+     * Número de usuarios en la colección.
+     */
+    @Param({ "100000" })
+    public int usuarios;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String uri = System.getenv().getOrDefault("MONGODB_URI", "mongodb://localhost:27017");
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-bench");
+        mongoTemplate.dropCollection(Usuario.class);
+
+        List<Usuario> lote = new ArrayList<>(1000);
+        for (int i = 0; i < usuarios; i++) {
+            lote.add(new Usuario("User" + i, "password", "User" + i + "@dnk.casino"));
+            if (lote.size() == 1000) {
+                mongoTemplate.insert(lote, Usuario.class);
+                lote.clear();
+            }
+        }
+        mongoTemplate.insert(lote, Usuario.class);
+        mongoTemplate.indexOps(Usuario.class).ensureIndex(new Index("usernameLower", Sort.Direction.ASC).unique());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(Usuario.class);
+        client.close();
+    }
+
+    private String nombreAleatorio() {
+        return "USER" + ThreadLocalRandom.current().nextInt(usuarios);
+    }
+
+    @Benchmark
+    public Usuario regex() {
+        return mongoTemplate.findOne(Query.query(where("username").regex(nombreAleatorio(), "i")), Usuario.class);
+    }
+
+    @Benchmark
+    public Usuario normalizado() {
+        return mongoTemplate.findOne(Query.query(where("usernameLower").is(Usuario.normalizar(nombreAleatorio()))),
+                Usuario.class);
+    }
+}
@@ -0,0 +1,89 @@
+package dnk.casino.Users;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide las operaciones de {@link Usuario} que se ejecutan en cada login y en
+ * cada compra de la tienda.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UsuarioBenchmark {
+
+    /**
+     * Número de skins que ya tiene el usuario.
+     */
+    @Param({ "1", "20" })
+    public int skins;
+
+    private Usuario usuario;
+    private int hoy;
+    private String skinNueva;
+    private String skinExistente;
+
+    @Setup
+    public void setup() {
+        usuario = new Usuario("bench", "password", "bench@dnk.casino");
+        usuario.setLastLoginDate(new Date());
+        hoy = (int) LocalDate.now().toEpochDay();
+        usuario.setLastLoginDay(hoy);
+        usuario.setSkins(new HashSet<>());
+        for (int i = 0; i < skins; i++) {
+            usuario.desbloquearSkin(String.format("%024x", i));
+        }
+        skinExistente = String.format("%024x", 0);
+        skinNueva = String.format("%024x", skins);
+    }
+
+    /**
+     * Comprobación anterior, con dos Calendar en la zona horaria del sistema.
+     */
+    @Benchmark
+    public boolean isFirstLoginOfDayCalendar() {
+        Calendar today = Calendar.getInstance();
+        Calendar lastLogin = Calendar.getInstance();
+        today.setTime(new Date());
+        lastLogin.setTime(usuario.getLastLoginDate());
+        return lastLogin.get(Calendar.DAY_OF_YEAR) != today.get(Calendar.DAY_OF_YEAR)
+                || lastLogin.get(Calendar.YEAR) != today.get(Calendar.YEAR);
+    }
+
+    @Benchmark
+    public boolean isFirstLoginOfDay() {
+        return usuario.isFirstLoginOfDay(hoy);
+    }
+
+    @Benchmark
+    public boolean desbloquearSkinExistente() {
+        return usuario.desbloquearSkin(skinExistente);
+    }
+
+    @Benchmark
+    public boolean desbloquearSkinNueva() {
+        boolean desbloqueada = usuario.desbloquearSkin(skinNueva);
+        usuario.getSkins().remove(skinNueva);
+        return desbloqueada;
+    }
+}
@@ -0,0 +1,118 @@
+package dnk.casino.Users;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Leaderboard.LeaderboardService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prueba de carga de las victorias contra un MongoDB real: lectura-guardado del
+ * documento completo (implementación anterior), $inc por victoria y escritura
+ * diferida con volcados por lotes.
+ *
+ * Usa la URI de la variable de entorno MONGODB_URI (por defecto
+ * mongodb://localhost:27017) y la base de datos dnk-casino-bench.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class VictoriasBenchmark {
+
+    /**
+     * Número de usuarios entre los que se reparten las victorias.
+     */
+    private static final int USUARIOS = 1000;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private VictoriasDiferidas victoriasDiferidas;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        String uri = System.getenv().getOrDefault("MONGODB_URI", "mongodb://localhost:27017");
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-bench");
+        mongoTemplate.dropCollection(Usuario.class);
+
+        ids = new String[USUARIOS];
+        for (int i = 0; i < USUARIOS; i++) {
+            ids[i] = mongoTemplate.insert(new Usuario("bench" + i, "password", "bench" + i + "@dnk.casino")).getId();
+        }
+
+        victoriasDiferidas = new VictoriasDiferidas();
+        inyectar("mongoTemplate", mongoTemplate);
+        inyectar("meterRegistry", new SimpleMeterRegistry());
+        inyectar("fabricaHilos", new FabricaHilos());
+        inyectar("leaderboardService", new LeaderboardService());
+        inyectar("activas", true);
+        inyectar("intervalo", 1000L);
+        inyectar("tamanoLote", 1000);
+        victoriasDiferidas.iniciar();
+    }
+
+    private void inyectar(String campo, Object valor) throws ReflectiveOperationException {
+        Field field = VictoriasDiferidas.class.getDeclaredField(campo);
+        field.setAccessible(true);
+        field.set(victoriasDiferidas, valor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        victoriasDiferidas.detener();
+        mongoTemplate.dropCollection(Usuario.class);
+        client.close();
+    }
+
+    private String id() {
+        return ids[ThreadLocalRandom.current().nextInt(USUARIOS)];
+    }
+
+    @Benchmark
+    public Usuario victoriaLeerYGuardar() {
+        Usuario usuario = mongoTemplate.findById(id(), Usuario.class);
+        usuario.victoria();
+        return mongoTemplate.save(usuario);
+    }
+
+    @Benchmark
+    public Object victoriaInc() {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id())),
+                new Update().inc("wins", 1), Usuario.class);
+    }
+
+    @Benchmark
+    public void victoriaDiferida() {
+        victoriasDiferidas.acumular(id(), VictoriasDiferidas.VICTORIA);
+    }
+}
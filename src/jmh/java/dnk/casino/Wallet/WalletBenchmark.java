@@ -0,0 +1,97 @@
+package dnk.casino.Wallet;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Metrics.CasinoMetricsBenchmark;
+import dnk.casino.Users.Usuario;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prueba de carga del monedero contra un MongoDB real: lectura-modificación-
+ * guardado del documento completo frente a $inc atómico.
+ *
+ * Usa la URI de la variable de entorno MONGODB_URI (por defecto
+ * mongodb://localhost:27017) y la base de datos dnk-casino-bench.
+ *
+ * @author Danikileitor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class WalletBenchmark {
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private WalletService walletService;
+    private String id;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        String uri = System.getenv().getOrDefault("MONGODB_URI", "mongodb://localhost:27017");
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-bench");
+        mongoTemplate.dropCollection(Usuario.class);
+
+        Usuario usuario = new Usuario("bench", "password", "bench@dnk.casino");
+        usuario.setCoins(1_000_000_000);
+        id = mongoTemplate.insert(usuario).getId();
+
+        walletService = new WalletService();
+        Field field = WalletService.class.getDeclaredField("mongoTemplate");
+        field.setAccessible(true);
+        field.set(walletService, mongoTemplate);
+        field = WalletService.class.getDeclaredField("casinoMetrics");
+        field.setAccessible(true);
+        field.set(walletService, CasinoMetricsBenchmark.crear(new SimpleMeterRegistry(), true));
+        field = WalletService.class.getDeclaredField("leaderboardService");
+        field.setAccessible(true);
+        field.set(walletService, new LeaderboardService());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(Usuario.class);
+        client.close();
+    }
+
+    @Benchmark
+    public Usuario apuestaLeerYGuardar() {
+        Usuario usuario = mongoTemplate.findById(id, Usuario.class);
+        usuario.pagar(1);
+        return mongoTemplate.save(usuario);
+    }
+
+    @Benchmark
+    public Object apuestaAtomica() {
+        return walletService.cargar(id, 1);
+    }
+
+    @Benchmark
+    public int premioAtomico() {
+        return walletService.abonar(id, 1);
+    }
+}
@@ -2,18 +2,28 @@ package dnk.casino.Admin;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import dnk.casino.Skins.Skin;
 import dnk.casino.Skins.SkinService;
+import dnk.casino.Users.ActualizacionUsuario;
+import dnk.casino.Users.FiltroUsuarios;
+import dnk.casino.Users.PaginaUsuarios;
+import dnk.casino.Users.ResultadoActualizacion;
 import dnk.casino.Users.Usuario;
 import dnk.casino.Users.Usuario.Rol;
 import dnk.casino.Users.UsuarioService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -24,6 +34,7 @@ import java.util.stream.Stream;
  * 
  * @author Danikileitor
  */
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @RestController
 @RequestMapping("/admin/api")
 public class AdminController {
@@ -40,6 +51,17 @@ public class AdminController {
     @Autowired
     private SkinService skinService;
 
+    /**
+     * Serializador JSON.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Número máximo de usuarios por página.
+     */
+    private static final int MAX_USUARIOS_PAGINA = 500;
+
     /**
      * Obtiene una lista de todos los usuarios en el sistema.
      * 
@@ -50,6 +72,66 @@ public class AdminController {
         return usuarioService.getAllUsers();
     }
 
+    /**
+     * Obtiene una página de usuarios, paginada por cursor.
+     * 
+     * @param filtro      filtro de los usuarios (minCoins, maxCoins, minWins,
+     *                    maxWins y rol)
+     * @param orden       campo de ordenación: id, coins, wins o bjwins
+     * @param descendente true para ordenar de mayor a menor
+     * @param cursor      cursor devuelto por la página anterior
+     * @param limite      número máximo de usuarios de la página
+     * @return la página de usuarios
+     */
+    @GetMapping("/users/page")
+    public ResponseEntity<?> getUsersPage(FiltroUsuarios filtro,
+            @RequestParam(defaultValue = "id") String orden,
+            @RequestParam(defaultValue = "false") boolean descendente,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limite) {
+        try {
+            PaginaUsuarios pagina = usuarioService.buscarUsuarios(filtro, orden, descendente, cursor,
+                    Math.max(1, Math.min(limite, MAX_USUARIOS_PAGINA)));
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Cuenta los usuarios que han iniciado sesión en los últimos días.
+     * 
+     * @param dias número de días, contando hoy: 1 para hoy, 7 para la última
+     *             semana
+     * @return el número de usuarios activos
+     */
+    @GetMapping("/users/activos")
+    public long countActiveUsers(@RequestParam(defaultValue = "1") int dias) {
+        return usuarioService.contarActivos(dias);
+    }
+
+    /**
+     * Exporta los usuarios en formato NDJSON (un usuario JSON por línea),
+     * escribiendo directamente desde el cursor de MongoDB con memoria constante.
+     * 
+     * @param filtro filtro de los usuarios (minCoins, maxCoins, minWins, maxWins y
+     *               rol)
+     * @return la respuesta con los usuarios
+     */
+    @GetMapping(value = "/users/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(FiltroUsuarios filtro) {
+        StreamingResponseBody body = out -> {
+            try (Stream<Usuario> usuarios = usuarioService.streamUsuarios(filtro)) {
+                Iterator<Usuario> it = usuarios.iterator();
+                while (it.hasNext()) {
+                    out.write(objectMapper.writeValueAsBytes(it.next()));
+                    out.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Actualiza la información de un usuario.
      * 
@@ -75,6 +157,18 @@ public class AdminController {
         return usuarioService.updateUser(id, updatedUser);
     }
 
+    /**
+     * Actualiza varios usuarios a la vez, por ejemplo para dar una skin de evento
+     * a un grupo de jugadores.
+     * 
+     * @param actualizaciones las actualizaciones a aplicar
+     * @return el resultado de cada actualización, en el mismo orden
+     */
+    @PutMapping("/users")
+    public List<ResultadoActualizacion> updateUsers(@RequestBody List<ActualizacionUsuario> actualizaciones) {
+        return usuarioService.actualizarUsuarios(actualizaciones);
+    }
+
     /**
      * Elimina un usuario del sistema.
      * 
@@ -1,17 +1,39 @@
 package dnk.casino;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
 /**
  * Clase de configuración automática para la aplicación. Esta clase habilita la
  * configuración automática de Spring Boot,
  * el escaneo de componentes y la habilitación de repositorios de MongoDB.
- * 
+ *
+ * Los controladores y la seguridad de servlet solo se cargan en aplicaciones
+ * servlet. En aplicaciones reactivas (WebFlux) se carga en su lugar el paquete
+ * Reactive, siempre que esté disponible el driver reactivo de MongoDB.
+ *
  * @author Danikileitor
  */
 @AutoConfiguration
-@ComponentScan
-@EnableMongoRepositories
-public class AutoConfigure {}
+@ComponentScan(excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "dnk\\.casino\\.Reactive\\..*"))
+@EnableMongoRepositories(excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "dnk\\.casino\\.Reactive\\..*"))
+public class AutoConfigure {
+
+    /**
+     * Configuración de la variante reactiva.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = Type.REACTIVE)
+    @ConditionalOnClass(name = "com.mongodb.reactivestreams.client.MongoClient")
+    @ComponentScan("dnk.casino.Reactive")
+    @EnableReactiveMongoRepositories("dnk.casino.Reactive")
+    static class Reactivo {
+    }
+}
@@ -0,0 +1,99 @@
+package dnk.casino.Config;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Días del casino, contados como días desde la época (1970-01-01) en la zona
+ * horaria del casino.
+ *
+ * El día actual se guarda junto con sus límites en milisegundos, así que
+ * {@link #hoy()} solo lee el reloj y compara: no reserva memoria salvo una vez
+ * al cambiar de día. Los límites se calculan con las reglas de la zona, por lo
+ * que los días de cambio de hora tienen su duración real.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class CalendarioCasino {
+
+    /**
+     * Día actual y sus límites.
+     *
+     * @param dia    día desde la época
+     * @param inicio inicio del día, en milisegundos desde la época
+     * @param fin    inicio del día siguiente, en milisegundos desde la época
+     */
+    private record Dia(int dia, long inicio, long fin) {
+    }
+
+    /**
+     * Zona horaria del casino.
+     */
+    private final ZoneId zona;
+
+    /**
+     * Último día calculado.
+     */
+    private volatile Dia actual = new Dia(Integer.MIN_VALUE, 0, 0);
+
+    /**
+     * Crea el calendario.
+     *
+     * @param zona la zona horaria del casino; vacía para usar la del sistema
+     */
+    public CalendarioCasino(@Value("${dnk.casino.zona-horaria:}") String zona) {
+        this.zona = zona == null || zona.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zona);
+    }
+
+    /**
+     * Obtiene la zona horaria del casino.
+     *
+     * @return la zona horaria
+     */
+    public ZoneId getZona() {
+        return zona;
+    }
+
+    /**
+     * Obtiene el día actual.
+     *
+     * @return días desde la época
+     */
+    public int hoy() {
+        long ahora = System.currentTimeMillis();
+        Dia dia = actual;
+        if (ahora < dia.inicio() || ahora >= dia.fin()) {
+            dia = calcular(ahora);
+            actual = dia;
+        }
+        return dia.dia();
+    }
+
+    /**
+     * Obtiene el día de una fecha.
+     *
+     * @param fecha la fecha
+     * @return días desde la época
+     */
+    public int diaDe(Date fecha) {
+        return (int) LocalDate.ofInstant(fecha.toInstant(), zona).toEpochDay();
+    }
+
+    /**
+     * Calcula el día de un instante y sus límites.
+     *
+     * @param ahora el instante, en milisegundos desde la época
+     * @return el día
+     */
+    private Dia calcular(long ahora) {
+        LocalDate fecha = LocalDate.ofInstant(Instant.ofEpochMilli(ahora), zona);
+        return new Dia((int) fecha.toEpochDay(), fecha.atStartOfDay(zona).toInstant().toEpochMilli(),
+                fecha.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,49 @@
+package dnk.casino.Config;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crea los hilos de las tareas internas del starter (bandeja de correo,
+ * escrituras diferidas, recargas de cachés).
+ *
+ * Con dnk.casino.virtual-threads.enabled=true los hilos son virtuales; si no,
+ * son hilos de plataforma en segundo plano. El trabajo que consume CPU, como
+ * BCrypt, no debe usar esta fábrica: los hilos virtuales no aportan nada ahí y
+ * {@link PasswordHasher} mantiene su propio grupo de hilos de plataforma.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class FabricaHilos {
+
+    /**
+     * Indica si se usan hilos virtuales.
+     */
+    @Value("${" + HilosVirtualesPostProcessor.PROPIEDAD + ":false}")
+    private boolean virtuales;
+
+    /**
+     * Crea una fábrica de hilos con nombre.
+     *
+     * @param nombre el prefijo del nombre de los hilos
+     * @return la fábrica de hilos
+     */
+    public ThreadFactory crear(String nombre) {
+        if (virtuales) {
+            return Thread.ofVirtual().name(nombre + "-", 1).factory();
+        }
+        return Thread.ofPlatform().name(nombre + "-", 1).daemon().factory();
+    }
+
+    /**
+     * Indica si se usan hilos virtuales.
+     *
+     * @return true si los hilos son virtuales, false en caso contrario
+     */
+    public boolean isVirtuales() {
+        return virtuales;
+    }
+}
@@ -0,0 +1,46 @@
+package dnk.casino.Config;
+
+import java.util.Map;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+/**
+ * Activa los hilos virtuales de Spring Boot cuando se activan los del starter.
+ *
+ * Con dnk.casino.virtual-threads.enabled=true establece
+ * spring.threads.virtual.enabled=true, de modo que Tomcat atiende cada
+ * petición en un hilo virtual y los ejecutores de Spring también los usan. La
+ * propiedad se añade con la prioridad más baja, así que un valor explícito de
+ * la aplicación prevalece.
+ *
+ * No toca las propiedades del sistema: para detectar hilos virtuales
+ * bloqueados dentro de código synchronized, el operador puede arrancar la JVM
+ * con -Djdk.tracePinnedThreads=short.
+ *
+ * @author Danikileitor
+ */
+public class HilosVirtualesPostProcessor implements EnvironmentPostProcessor {
+
+    /**
+     * Propiedad que activa los hilos virtuales del starter.
+     */
+    public static final String PROPIEDAD = "dnk.casino.virtual-threads.enabled";
+
+    /**
+     * Añade las propiedades de los hilos virtuales si están activados.
+     *
+     * @param environment el entorno de la aplicación
+     * @param application la aplicación
+     */
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.getProperty(PROPIEDAD, Boolean.class, false)) {
+            return;
+        }
+        environment.getPropertySources().addLast(new MapPropertySource("dnkCasinoHilosVirtuales",
+                Map.of("spring.threads.virtual.enabled", "true")));
+    }
+}
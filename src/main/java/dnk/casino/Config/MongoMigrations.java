@@ -0,0 +1,261 @@
+package dnk.casino.Config;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Component;
+
+import dnk.casino.Idempotencia.ClaveIdempotencia;
+import dnk.casino.Idempotencia.IdempotenciaService;
+import dnk.casino.Leaderboard.PuntuacionPeriodo;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Users.TokenRestablecimiento;
+import dnk.casino.Users.Usuario;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Migraciones de MongoDB que se ejecutan al arrancar la aplicación.
+ *
+ * Todas las migraciones son idempotentes: solo actualizan los documentos que
+ * aún no están migrados y los índices se crean únicamente si no existen.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class MongoMigrations {
+
+    /**
+     * Número de documentos por cada bulkWrite de las migraciones.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Servicio de claves de idempotencia.
+     */
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    /**
+     * Días del casino.
+     */
+    @Autowired
+    private CalendarioCasino calendarioCasino;
+
+    /**
+     * Ejecuta todas las migraciones.
+     */
+    @PostConstruct
+    public void migrar() {
+        migrarCamposNormalizados();
+        crearIndicesListados();
+        crearIndiceIdempotencia();
+        asignarOrdinalesSkins();
+        migrarTokensRestablecimiento();
+        migrarDiaUltimoLogin();
+        crearIndicesClasificacionesPeriodicas();
+    }
+
+    /**
+     * Rellena los campos en minúsculas usados por las búsquedas sin distinguir
+     * mayúsculas y crea sus índices.
+     */
+    private void migrarCamposNormalizados() {
+        rellenar(Usuario.class,
+                new Criteria().orOperator(where("usernameLower").exists(false), where("emailLower").exists(false)),
+                doc -> new Update()
+                        .set("usernameLower", Usuario.normalizar(doc.getString("username")))
+                        .set("emailLower", Usuario.normalizar(doc.getString("email"))),
+                "username", "email");
+        rellenar(Skin.class, where("nameLower").exists(false),
+                doc -> new Update().set("nameLower",
+                        doc.getString("name") != null ? doc.getString("name").toLowerCase(Locale.ROOT) : null),
+                "name");
+
+        crearIndiceUnico(Usuario.class, "usernameLower");
+        crearIndiceUnico(Usuario.class, "emailLower");
+        crearIndiceUnico(Skin.class, "nameLower");
+    }
+
+    /**
+     * Crea los índices compuestos que usan los listados de usuarios paginados por
+     * cursor (sirven tanto para orden ascendente como descendente).
+     */
+    private void crearIndicesListados() {
+        for (String campo : new String[] { "coins", "wins", "bjwins" }) {
+            mongoTemplate.indexOps(Usuario.class)
+                    .ensureIndex(new Index().on(campo, Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+        }
+    }
+
+    /**
+     * Asigna un ordinal estable a las skins que aún no lo tienen, a continuación
+     * del mayor existente y en orden de creación, y crea su índice único. Las
+     * skins de los usuarios siguen guardadas como IDs, así que no hay que migrar
+     * los usuarios.
+     */
+    private void asignarOrdinalesSkins() {
+        Query ultima = new Query(where("ordinal").ne(null)).with(Sort.by(Sort.Direction.DESC, "ordinal"));
+        ultima.fields().include("ordinal");
+        Skin mayor = mongoTemplate.findOne(ultima, Skin.class);
+        int[] siguiente = { mayor != null ? mayor.getOrdinal() + 1 : 0 };
+
+        rellenar(Skin.class, where("ordinal").is(null), doc -> new Update().set("ordinal", siguiente[0]++));
+
+        try {
+            mongoTemplate.indexOps(Skin.class).ensureIndex(new Index("ordinal", Sort.Direction.ASC).unique()
+                    .partial(PartialIndexFilter.of(where("ordinal").type(JsonSchemaObject.Type.INT_32))));
+        } catch (RuntimeException e) {
+            System.out.println("No se pudo crear el índice único sobre ordinal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea el índice TTL que elimina las claves de idempotencia caducadas. Si ya
+     * existe con otra duración, se sustituye.
+     */
+    private void crearIndiceIdempotencia() {
+        Index index = new Index("creadaEn", Sort.Direction.ASC).named("creadaEn_ttl")
+                .expire(idempotenciaService.getTtl());
+        try {
+            mongoTemplate.indexOps(ClaveIdempotencia.class).ensureIndex(index);
+        } catch (RuntimeException e) {
+            mongoTemplate.indexOps(ClaveIdempotencia.class).dropIndex("creadaEn_ttl");
+            mongoTemplate.indexOps(ClaveIdempotencia.class).ensureIndex(index);
+        }
+    }
+
+    /**
+     * Mueve los tokens de restablecimiento de contraseña aún vigentes de los
+     * usuarios a su propia colección, los elimina de los usuarios y crea los
+     * índices de la colección: el TTL sobre expira y el de usuarioId, que se usa
+     * para invalidar los tokens anteriores de un usuario.
+     */
+    private void migrarTokensRestablecimiento() {
+        Query query = Query.query(new Criteria().orOperator(where("tokenRestablecimientoContrasena").exists(true),
+                where("fechaExpiracionTokenRestablecimientoContrasena").exists(true)));
+        query.fields().include("tokenRestablecimientoContrasena", "fechaExpiracionTokenRestablecimientoContrasena");
+        String coleccion = mongoTemplate.getCollectionName(Usuario.class);
+        Date ahora = new Date();
+        try (Stream<Document> docs = mongoTemplate.stream(query, Document.class, coleccion)) {
+            for (Document doc : (Iterable<Document>) docs::iterator) {
+                String token = doc.getString("tokenRestablecimientoContrasena");
+                Date expira = doc.getDate("fechaExpiracionTokenRestablecimientoContrasena");
+                if (token != null && expira != null && expira.after(ahora)) {
+                    // save en lugar de insert por si una ejecución anterior se interrumpió
+                    mongoTemplate.save(new TokenRestablecimiento(TokenRestablecimiento.hash(token),
+                            doc.get("_id").toString(), expira));
+                }
+            }
+        }
+        long migrados = mongoTemplate.updateMulti(query, new Update().unset("tokenRestablecimientoContrasena")
+                .unset("fechaExpiracionTokenRestablecimientoContrasena"), coleccion).getModifiedCount();
+        if (migrados > 0) {
+            System.out.println("Migrados " + migrados + " tokens de restablecimiento de contraseña");
+        }
+
+        mongoTemplate.indexOps(TokenRestablecimiento.class)
+                .ensureIndex(new Index("expira", Sort.Direction.ASC).named("expira_ttl").expire(Duration.ZERO));
+        mongoTemplate.indexOps(TokenRestablecimiento.class).ensureIndex(new Index("usuarioId", Sort.Direction.ASC));
+    }
+
+    /**
+     * Rellena el día del último inicio de sesión a partir de su fecha, en la zona
+     * horaria del casino, y crea su índice para contar los usuarios activos.
+     */
+    private void migrarDiaUltimoLogin() {
+        rellenar(Usuario.class, where("lastLoginDay").exists(false), doc -> {
+            Date fecha = doc.getDate("lastLoginDate");
+            return new Update().set("lastLoginDay", fecha != null ? calendarioCasino.diaDe(fecha) : 0);
+        }, "lastLoginDate");
+        mongoTemplate.indexOps(Usuario.class).ensureIndex(new Index("lastLoginDay", Sort.Direction.ASC));
+    }
+
+    /**
+     * Crea los índices de las puntuaciones periódicas: el de clasificacion,
+     * periodo y actualizado para cargarlas al arrancar y leer las que cambian
+     * después, el de usuarioId para eliminar las de un usuario y el TTL sobre
+     * expira para borrar los periodos pasados.
+     */
+    private void crearIndicesClasificacionesPeriodicas() {
+        mongoTemplate.indexOps(PuntuacionPeriodo.class).ensureIndex(new Index().on("clasificacion", Sort.Direction.ASC)
+                .on("periodo", Sort.Direction.ASC).on("actualizado", Sort.Direction.ASC));
+        mongoTemplate.indexOps(PuntuacionPeriodo.class).ensureIndex(new Index("usuarioId", Sort.Direction.ASC));
+        mongoTemplate.indexOps(PuntuacionPeriodo.class)
+                .ensureIndex(new Index("expira", Sort.Direction.ASC).named("expira_ttl").expire(Duration.ZERO));
+    }
+
+    /**
+     * Actualiza por lotes los documentos de una colección que cumplen un criterio.
+     *
+     * @param entidad  la clase de la entidad de la colección
+     * @param criterio el criterio de los documentos a actualizar
+     * @param update   la función que calcula la actualización de cada documento,
+     *                 que se aplica en orden de _id
+     * @param campos   los campos que necesita leer la función
+     * @return el número de documentos actualizados
+     */
+    private int rellenar(Class<?> entidad, Criteria criterio, Function<Document, Update> update, String... campos) {
+        String coleccion = mongoTemplate.getCollectionName(entidad);
+        Query query = Query.query(criterio).with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields().include(campos);
+
+        int total = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, coleccion);
+        try (Stream<Document> docs = mongoTemplate.stream(query, Document.class, coleccion)) {
+            for (Document doc : (Iterable<Document>) docs::iterator) {
+                bulk.updateOne(Query.query(where("_id").is(doc.get("_id"))), update.apply(doc));
+                if (++total % BATCH_SIZE == 0) {
+                    bulk.execute();
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, coleccion);
+                }
+            }
+        }
+        if (total % BATCH_SIZE != 0) {
+            bulk.execute();
+        }
+        if (total > 0) {
+            System.out.println("Migrados " + total + " documentos de " + coleccion);
+        }
+        return total;
+    }
+
+    /**
+     * Crea un índice único sobre un campo. Si los datos existentes tienen
+     * duplicados, se crea un índice normal para no impedir el arranque.
+     *
+     * @param entidad la clase de la entidad de la colección
+     * @param campo   el campo a indexar
+     */
+    private void crearIndiceUnico(Class<?> entidad, String campo) {
+        try {
+            // Los documentos sin valor quedan fuera del índice para no colisionar entre sí
+            mongoTemplate.indexOps(entidad).ensureIndex(new Index(campo, Sort.Direction.ASC).unique()
+                    .partial(PartialIndexFilter.of(where(campo).type(JsonSchemaObject.Type.STRING))));
+        } catch (RuntimeException e) {
+            System.out.println("No se pudo crear el índice único sobre " + campo + ": " + e.getMessage());
+            mongoTemplate.indexOps(entidad).ensureIndex(new Index(campo, Sort.Direction.ASC));
+        }
+    }
+}
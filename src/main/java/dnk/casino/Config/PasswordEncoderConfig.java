@@ -0,0 +1,74 @@
+package dnk.casino.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Configuración del codificador de contraseñas, común a las aplicaciones
+ * servlet y reactivas.
+ * 
+ * @author Danikileitor
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    /**
+     * Coste mínimo de BCrypt.
+     */
+    private static final int COSTE_MINIMO = 10;
+
+    /**
+     * Coste máximo de BCrypt al calibrar.
+     */
+    private static final int COSTE_MAXIMO = 16;
+
+    /**
+     * Codificador de contraseñas.
+     * 
+     * Si no se configura el coste, se calibra al arrancar: se elige el mayor
+     * coste cuyo hash tarde como mucho el tiempo objetivo, y nunca menos de
+     * {@value #COSTE_MINIMO}.
+     * 
+     * @param coste    el coste de BCrypt, o 0 para calibrarlo
+     * @param objetivo el tiempo objetivo de un hash, en milisegundos
+     * @return el codificador de contraseñas
+     */
+    @Bean
+    PasswordEncoder passwordEncoder(@Value("${dnk.casino.bcrypt.coste:0}") int coste,
+            @Value("${dnk.casino.bcrypt.objetivo-ms:250}") long objetivo) {
+        if (coste <= 0) {
+            coste = calibrarCoste(objetivo);
+        }
+        System.out.println("Coste de BCrypt: " + coste);
+        return new BCryptPasswordEncoder(coste);
+    }
+
+    /**
+     * Calcula el coste de BCrypt para un tiempo objetivo. Cada punto de coste
+     * duplica el tiempo, así que basta con medir el coste mínimo.
+     * 
+     * @param objetivo el tiempo objetivo de un hash, en milisegundos
+     * @return el coste
+     */
+    private static int calibrarCoste(long objetivo) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(COSTE_MINIMO);
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long inicio = System.nanoTime();
+            encoder.encode("calibracion");
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+        int coste = COSTE_MINIMO;
+        long tiempo = TimeUnit.NANOSECONDS.toMillis(mejor);
+        while (coste < COSTE_MAXIMO && tiempo * 2 <= objetivo) {
+            tiempo *= 2;
+            coste++;
+        }
+        return coste;
+    }
+}
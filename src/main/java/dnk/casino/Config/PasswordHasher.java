@@ -0,0 +1,273 @@
+package dnk.casino.Config;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import dnk.casino.Error.ServidorOcupadoException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Codifica y verifica contraseñas fuera de los hilos de las peticiones.
+ *
+ * BCrypt consume CPU de forma deliberada, así que se ejecuta en un grupo de
+ * hilos propio del tamaño del número de procesadores y con una cola acotada.
+ * Cada operación tiene además un límite de peticiones simultáneas, de forma
+ * que una avalancha de logins no impida registrarse o cambiar la contraseña.
+ * Si no hay sitio, la petición se rechaza al momento con
+ * {@link ServidorOcupadoException} en lugar de esperar.
+ *
+ * Las variantes asíncronas devuelven un CompletableFuture en lugar de esperar
+ * el resultado, para que la variante reactiva no bloquee sus hilos.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class PasswordHasher {
+
+    /**
+     * Operaciones que usan el codificador de contraseñas.
+     */
+    public enum Operacion {
+        LOGIN, REGISTRO, CONTRASENA
+    }
+
+    /**
+     * Codificador de contraseñas.
+     */
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Número de hilos de codificación, por defecto uno por procesador.
+     */
+    @Value("${dnk.casino.bcrypt.hilos:0}")
+    private int hilos;
+
+    /**
+     * Número máximo de tareas esperando un hilo libre, por defecto ocho por hilo.
+     */
+    @Value("${dnk.casino.bcrypt.cola:0}")
+    private int capacidadCola;
+
+    /**
+     * Número máximo de logins simultáneos, por defecto cuatro por hilo.
+     */
+    @Value("${dnk.casino.bcrypt.limite.login:0}")
+    private int limiteLogin;
+
+    /**
+     * Número máximo de registros simultáneos, por defecto dos por hilo.
+     */
+    @Value("${dnk.casino.bcrypt.limite.registro:0}")
+    private int limiteRegistro;
+
+    /**
+     * Número máximo de cambios de contraseña simultáneos, por defecto uno por
+     * hilo.
+     */
+    @Value("${dnk.casino.bcrypt.limite.contrasena:0}")
+    private int limiteContrasena;
+
+    /**
+     * Tiempo máximo de espera de una tarea, en milisegundos.
+     */
+    @Value("${dnk.casino.bcrypt.espera-ms:2000}")
+    private long espera;
+
+    /**
+     * Grupo de hilos de codificación.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Límite de peticiones simultáneas de cada operación.
+     */
+    private final Map<Operacion, Semaphore> limites = new EnumMap<>(Operacion.class);
+
+    /**
+     * Crea el grupo de hilos, los límites de cada operación y la métrica de la
+     * cola.
+     */
+    @PostConstruct
+    public void iniciar() {
+        int n = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola > 0 ? capacidadCola : n * 8), r -> {
+                    Thread thread = new Thread(r, "dnk-bcrypt-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+        limites.put(Operacion.LOGIN, new Semaphore(limiteLogin > 0 ? limiteLogin : n * 4));
+        limites.put(Operacion.REGISTRO, new Semaphore(limiteRegistro > 0 ? limiteRegistro : n * 2));
+        limites.put(Operacion.CONTRASENA, new Semaphore(limiteContrasena > 0 ? limiteContrasena : n));
+        Gauge.builder("dnk.casino.bcrypt.cola", this, PasswordHasher::getEnCola)
+                .description("Operaciones de BCrypt esperando un hilo libre")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Detiene el grupo de hilos.
+     */
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Codifica una contraseña.
+     *
+     * @param operacion la operación que la codifica
+     * @param password  la contraseña en claro
+     * @return la contraseña codificada
+     * @throws ServidorOcupadoException si no hay capacidad para atenderla
+     */
+    public String encode(Operacion operacion, CharSequence password) {
+        return ejecutar(operacion, () -> passwordEncoder.encode(password));
+    }
+
+    /**
+     * Comprueba si una contraseña coincide con su versión codificada.
+     *
+     * @param operacion la operación que la comprueba
+     * @param password  la contraseña en claro
+     * @param hash      la contraseña codificada
+     * @return true si coinciden, false en caso contrario
+     * @throws ServidorOcupadoException si no hay capacidad para atenderla
+     */
+    public boolean matches(Operacion operacion, CharSequence password, String hash) {
+        return ejecutar(operacion, () -> passwordEncoder.matches(password, hash));
+    }
+
+    /**
+     * Codifica una contraseña sin bloquear el hilo que la solicita.
+     *
+     * @param operacion la operación que la codifica
+     * @param password  la contraseña en claro
+     * @return la contraseña codificada, o un fallo con
+     *         {@link ServidorOcupadoException} si no hay capacidad para atenderla
+     */
+    public CompletableFuture<String> encodeAsync(Operacion operacion, CharSequence password) {
+        return ejecutarAsync(operacion, () -> passwordEncoder.encode(password));
+    }
+
+    /**
+     * Comprueba si una contraseña coincide con su versión codificada sin bloquear
+     * el hilo que la solicita.
+     *
+     * @param operacion la operación que la comprueba
+     * @param password  la contraseña en claro
+     * @param hash      la contraseña codificada
+     * @return true si coinciden, false en caso contrario, o un fallo con
+     *         {@link ServidorOcupadoException} si no hay capacidad para atenderla
+     */
+    public CompletableFuture<Boolean> matchesAsync(Operacion operacion, CharSequence password, String hash) {
+        return ejecutarAsync(operacion, () -> passwordEncoder.matches(password, hash));
+    }
+
+    /**
+     * Obtiene el número de tareas esperando un hilo libre.
+     *
+     * @return número de tareas en cola
+     */
+    public int getEnCola() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Ejecuta una tarea en el grupo de hilos respetando el límite de su
+     * operación.
+     *
+     * @param <T>       el tipo del resultado
+     * @param operacion la operación
+     * @param tarea     la tarea
+     * @return el resultado de la tarea
+     */
+    private <T> T ejecutar(Operacion operacion, Callable<T> tarea) {
+        Semaphore limite = limites.get(operacion);
+        if (!limite.tryAcquire()) {
+            throw new ServidorOcupadoException("Demasiadas solicitudes, inténtalo de nuevo en unos segundos");
+        }
+        Future<T> future = null;
+        try {
+            future = executor.submit(tarea);
+            return future.get(espera, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            if (future != null) {
+                future.cancel(true);
+            }
+            throw new ServidorOcupadoException("Demasiadas solicitudes, inténtalo de nuevo en unos segundos");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServidorOcupadoException("Solicitud interrumpida");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            limite.release();
+        }
+    }
+
+    /**
+     * Ejecuta una tarea en el grupo de hilos respetando el límite de su
+     * operación, sin esperar su resultado.
+     *
+     * @param <T>       el tipo del resultado
+     * @param operacion la operación
+     * @param tarea     la tarea
+     * @return el resultado de la tarea
+     */
+    private <T> CompletableFuture<T> ejecutarAsync(Operacion operacion, Supplier<T> tarea) {
+        Semaphore limite = limites.get(operacion);
+        if (!limite.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new ServidorOcupadoException("Demasiadas solicitudes, inténtalo de nuevo en unos segundos"));
+        }
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(tarea, executor);
+        } catch (RejectedExecutionException e) {
+            limite.release();
+            return CompletableFuture.failedFuture(
+                    new ServidorOcupadoException("Demasiadas solicitudes, inténtalo de nuevo en unos segundos"));
+        }
+        future.whenComplete((resultado, error) -> limite.release());
+        return future.orTimeout(espera, TimeUnit.MILLISECONDS).exceptionallyCompose(error -> {
+            Throwable causa = error instanceof CompletionException ? error.getCause() : error;
+            return CompletableFuture.failedFuture(causa instanceof TimeoutException
+                    ? new ServidorOcupadoException("Demasiadas solicitudes, inténtalo de nuevo en unos segundos")
+                    : causa);
+        });
+    }
+}
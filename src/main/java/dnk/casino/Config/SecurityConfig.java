@@ -3,26 +3,29 @@ package dnk.casino.Config;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import dnk.casino.Limites.LimitePeticionesFilter;
 import dnk.casino.Users.JwtAuthenticationFilter;
 
 /**
- * Configuración de seguridad para la aplicación.
+ * Configuración de seguridad para la aplicación. Solo se carga en aplicaciones
+ * servlet; la variante reactiva está en ReactiveSecurityConfig.
  * 
  * @author Danikileitor
  */
 @Configuration
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @EnableWebSecurity
 public class SecurityConfig {
 
@@ -33,14 +36,10 @@ public class SecurityConfig {
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
     /**
-     * Codificador de contraseñas.
-     * 
-     * @return el codificador de contraseñas
+     * Filtro de límites de peticiones de autenticación.
      */
-    @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
+    @Autowired
+    private LimitePeticionesFilter limitePeticionesFilter;
 
     /**
      * Configuración de la cadena de filtros de seguridad.
@@ -66,6 +65,8 @@ public class SecurityConfig {
                 .formLogin(login -> login.disable())
                 // Deshabilita X-Frame-Options para que se pueda insertar en iframes
                 .headers(headers -> headers.frameOptions(options -> options.disable()))
+                // Rechazar las peticiones que superan su límite antes de autenticarlas
+                .addFilterBefore(limitePeticionesFilter, UsernamePasswordAuthenticationFilter.class)
                 // Añadir el filtro JWT
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
                 // Build
@@ -80,7 +81,8 @@ public class SecurityConfig {
     @Bean
     CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration corsConfiguration = new CorsConfiguration();
-        corsConfiguration.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type"));
+        corsConfiguration.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type",
+                "Idempotency-Key"));
         corsConfiguration.setAllowedOriginPatterns(List.of("*"));
         corsConfiguration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         corsConfiguration.setAllowCredentials(true);
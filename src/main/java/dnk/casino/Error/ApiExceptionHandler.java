@@ -1,5 +1,8 @@
 package dnk.casino.Error;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +13,7 @@ import org.springframework.web.servlet.NoHandlerFoundException;
 
 import jakarta.servlet.http.HttpServletRequest;
 
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @ControllerAdvice
 public class ApiExceptionHandler {
 
@@ -26,6 +30,13 @@ public class ApiExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(error);
     }
 
+    @ExceptionHandler(ServidorOcupadoException.class)
+    public ResponseEntity<ErrorResponse> handleServidorOcupadoException(ServidorOcupadoException ex) {
+        ErrorResponse error = new ErrorResponse("Demasiadas solicitudes", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
         ErrorResponse error = new ErrorResponse("Ocurrió un error interno", ex.getMessage());
@@ -0,0 +1,19 @@
+package dnk.casino.Error;
+
+/**
+ * Excepción lanzada cuando el servidor rechaza una solicitud por estar
+ * saturado. Se responde con 429 Too Many Requests.
+ *
+ * @author Danikileitor
+ */
+public class ServidorOcupadoException extends RuntimeException {
+
+    /**
+     * Crea la excepción con un mensaje.
+     *
+     * @param message el mensaje de error
+     */
+    public ServidorOcupadoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,126 @@
+package dnk.casino.Idempotencia;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Clave de idempotencia de una operación, con el resultado que devolvió.
+ *
+ * La colección tiene un índice TTL sobre creadaEn, así que MongoDB elimina las
+ * claves caducadas.
+ *
+ * @author Danikileitor
+ */
+@Document(collection = "idempotency_keys")
+public class ClaveIdempotencia {
+
+    /**
+     * Clave completa: operación, sujeto y clave enviada por el cliente.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Parámetros de la operación, para detectar una clave reutilizada con otros
+     * datos.
+     */
+    private String huella;
+
+    /**
+     * Indica si la operación ha terminado y su resultado está guardado.
+     */
+    private boolean completada;
+
+    /**
+     * Resultado de la operación, convertido a un tipo de MongoDB.
+     */
+    private Object resultado;
+
+    /**
+     * Fecha de creación de la clave.
+     */
+    private Date creadaEn;
+
+    /**
+     * Fin de la reserva de una operación en curso. Pasada esta fecha, un
+     * reintento puede volver a ejecutarla.
+     */
+    private Date reservadaHasta;
+
+    /**
+     * Constructor vacío.
+     */
+    public ClaveIdempotencia() {
+    }
+
+    /**
+     * Constructor que reserva una clave para una operación en curso.
+     *
+     * @param id             la clave completa
+     * @param huella         los parámetros de la operación
+     * @param reservadaHasta el fin de la reserva
+     */
+    public ClaveIdempotencia(String id, String huella, Date reservadaHasta) {
+        this.id = id;
+        this.huella = huella;
+        this.completada = false;
+        this.creadaEn = new Date();
+        this.reservadaHasta = reservadaHasta;
+    }
+
+    /**
+     * Obtiene la clave completa.
+     *
+     * @return la clave
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene los parámetros de la operación.
+     *
+     * @return la huella
+     */
+    public String getHuella() {
+        return huella;
+    }
+
+    /**
+     * Indica si la operación ha terminado.
+     *
+     * @return true si ha terminado, false si sigue en curso
+     */
+    public boolean isCompletada() {
+        return completada;
+    }
+
+    /**
+     * Obtiene el resultado de la operación.
+     *
+     * @return el resultado, o null si no tiene
+     */
+    public Object getResultado() {
+        return resultado;
+    }
+
+    /**
+     * Obtiene la fecha de creación de la clave.
+     *
+     * @return fecha de creación
+     */
+    public Date getCreadaEn() {
+        return creadaEn;
+    }
+
+    /**
+     * Obtiene el fin de la reserva de la operación en curso.
+     *
+     * @return el fin de la reserva
+     */
+    public Date getReservadaHasta() {
+        return reservadaHasta;
+    }
+}
@@ -0,0 +1,397 @@
+package dnk.casino.Idempotencia;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.MongoException;
+
+import dnk.casino.Error.ServidorOcupadoException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Servicio de claves de idempotencia para las operaciones que los clientes
+ * reintentan tras un timeout (monedero y tienda).
+ *
+ * La primera ejecución reserva la clave insertándola en MongoDB: no hace
+ * ninguna lectura, y si otro intento ya la había reservado la inserción falla
+ * por clave duplicada. Solo entonces, en el reintento, se lee el resultado
+ * guardado. Los resultados recientes se guardan además en una caché en memoria
+ * acotada, de modo que los reintentos que llegan al mismo nodo se responden sin
+ * acceder a MongoDB.
+ *
+ * La reserva no basta para saber si la operación se ha aplicado: un timeout
+ * puede llegar después de que MongoDB la aplique, o el nodo puede caerse antes
+ * de guardar el resultado. Por eso la operación anota la clave en el propio
+ * documento que modifica, con el mismo findAndModify (ver
+ * {@link #noAplicada(String)}, {@link #anotar(Update, String)} y
+ * {@link #incrementar(String, int, String)}), y así no se aplica dos veces
+ * aunque se vuelva a ejecutar. La reserva dura dnk.casino.idempotencia.reserva:
+ * si la operación termina con un error de MongoDB, se desconoce si se ha
+ * aplicado y la clave se queda reservada hasta entonces; después, un reintento
+ * la vuelve a ejecutar y obtiene el resultado anotado en el documento. Los
+ * rechazos (saldo insuficiente, skin ya desbloqueada, usuario inexistente) no
+ * se recuerdan: liberan la clave.
+ *
+ * @author Danikileitor
+ */
+@Service
+public class IdempotenciaService {
+
+    /**
+     * Campo de los documentos modificados en el que se anotan las claves de las
+     * operaciones aplicadas.
+     */
+    public static final String APLICADAS = "idempotencia";
+
+    /**
+     * Número de claves que se conservan en cada documento. Solo hacen falta
+     * mientras dura la reserva; después responde la colección de claves.
+     */
+    private static final int CLAVES_POR_DOCUMENTO = 20;
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Tiempo durante el que se recuerda el resultado de una operación.
+     */
+    @Value("${dnk.casino.idempotencia.ttl:24h}")
+    private Duration ttl;
+
+    /**
+     * Tiempo durante el que una operación en curso tiene la clave reservada.
+     */
+    @Value("${dnk.casino.idempotencia.reserva:30s}")
+    private Duration reserva;
+
+    /**
+     * Número máximo de resultados en la caché en memoria.
+     */
+    @Value("${dnk.casino.idempotencia.capacidad:100000}")
+    private int capacidad;
+
+    /**
+     * Resultado guardado en la caché en memoria.
+     *
+     * @param huella    los parámetros de la operación
+     * @param resultado el resultado, que puede ser null
+     * @param expira    instante de caducidad, en milisegundos desde la época
+     */
+    private record Entrada(String huella, Object resultado, long expira) {
+    }
+
+    /**
+     * Resultados recientes indexados por la clave completa.
+     */
+    private final Map<String, Entrada> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Registra el tamaño de la caché en memoria como métrica.
+     */
+    @PostConstruct
+    public void iniciar() {
+        Gauge.builder("dnk.casino.idempotencia.cache", cache, Map::size)
+                .description("Resultados de operaciones idempotentes en memoria")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta una operación una sola vez por clave de idempotencia. Si la clave
+     * ya se usó, devuelve el resultado original sin volver a ejecutarla.
+     *
+     * @param <T>       el tipo del resultado
+     * @param operacion el nombre de la operación
+     * @param sujeto    el usuario sobre el que se aplica
+     * @param clave     la clave enviada por el cliente, o null para ejecutar sin
+     *                  idempotencia
+     * @param huella    los parámetros de la operación
+     * @param tipo      la clase del resultado, que se guarda en MongoDB y en
+     *                  memoria durante el TTL: debe ser un valor pequeño, como
+     *                  un saldo o un {@code enum}, nunca una entidad completa
+     * @param accion    la operación a ejecutar, que recibe la clave completa
+     *                  (o null sin idempotencia) y debe anotarla en el documento
+     *                  que modifica con el mismo findAndModify
+     * @param aplicada  indica si un resultado corresponde a una operación
+     *                  aplicada; si no, es un rechazo y se libera la clave
+     * @return el resultado de la operación
+     * @throws IllegalArgumentException si la clave se usó con otros parámetros
+     * @throws ServidorOcupadoException si la operación original sigue en curso
+     */
+    public <T> T ejecutar(String operacion, String sujeto, String clave, String huella, Class<T> tipo,
+            Function<String, T> accion, Predicate<? super T> aplicada) {
+        if (clave == null || clave.isBlank()) {
+            return accion.apply(null);
+        }
+        String id = operacion + ":" + sujeto + ":" + clave;
+        long ahora = System.currentTimeMillis();
+
+        Entrada entrada = cache.get(id);
+        if (entrada != null && entrada.expira() > ahora) {
+            return repetir(entrada.huella(), huella, tipo.cast(entrada.resultado()));
+        }
+
+        try {
+            mongoTemplate.insert(new ClaveIdempotencia(id, huella, new Date(ahora + reserva.toMillis())));
+        } catch (DuplicateKeyException e) {
+            ClaveIdempotencia guardada = mongoTemplate.findById(id, ClaveIdempotencia.class);
+            if (guardada != null && guardada.isCompletada()) {
+                return recuperar(guardada, huella, tipo, ahora);
+            }
+            retomar(id, huella, guardada, ahora);
+        }
+
+        T resultado;
+        try {
+            resultado = accion.apply(id);
+        } catch (DataAccessException | MongoException e) {
+            // No se sabe si se ha aplicado: la clave sigue reservada hasta que caduque la reserva
+            throw e;
+        } catch (RuntimeException e) {
+            liberar(id);
+            throw e;
+        }
+        if (!aplicada.test(resultado)) {
+            liberar(id);
+            return resultado;
+        }
+        try {
+            mongoTemplate.updateFirst(Query.query(where("_id").is(id)),
+                    new Update().set("completada", true).set("resultado",
+                            mongoTemplate.getConverter().convertToMongoType(resultado)),
+                    ClaveIdempotencia.class);
+        } catch (RuntimeException e) {
+            // La operación está anotada en su documento: un reintento obtendrá el mismo resultado
+            System.out.println("Error al guardar el resultado de la clave " + id + ": " + e.getMessage());
+        }
+        guardar(id, huella, resultado, ahora);
+        return resultado;
+    }
+
+    /**
+     * Retoma una clave reservada por un intento anterior cuya reserva ha
+     * caducado, para volver a ejecutar la operación.
+     *
+     * @param id       la clave completa
+     * @param huella   los parámetros del reintento
+     * @param guardada la clave guardada, o null si ya no existe
+     * @param ahora    el instante actual, en milisegundos desde la época
+     * @throws IllegalArgumentException si la clave se usó con otros parámetros
+     * @throws ServidorOcupadoException si la operación original sigue en curso
+     */
+    private void retomar(String id, String huella, ClaveIdempotencia guardada, long ahora) {
+        if (guardada != null && !Objects.equals(guardada.getHuella(), huella)) {
+            throw new IllegalArgumentException("La clave de idempotencia ya se ha usado con otros datos");
+        }
+        ClaveIdempotencia retomada = null;
+        if (guardada != null && guardada.getReservadaHasta() != null
+                && guardada.getReservadaHasta().getTime() <= ahora) {
+            retomada = mongoTemplate.findAndModify(
+                    Query.query(where("_id").is(id).and("completada").is(false)
+                            .and("reservadaHasta").is(guardada.getReservadaHasta())),
+                    new Update().set("reservadaHasta", new Date(ahora + reserva.toMillis())),
+                    ClaveIdempotencia.class);
+        }
+        if (retomada == null) {
+            throw new ServidorOcupadoException("La operación con esta clave de idempotencia está en curso");
+        }
+    }
+
+    /**
+     * Libera la clave de una operación que no se ha aplicado, para que se pueda
+     * reintentar.
+     *
+     * @param id la clave completa
+     */
+    private void liberar(String id) {
+        mongoTemplate.remove(Query.query(where("_id").is(id).and("completada").is(false)), ClaveIdempotencia.class);
+    }
+
+    /**
+     * Condición de que una clave no está anotada en el documento, para añadirla
+     * al filtro del findAndModify de la operación.
+     *
+     * @param id la clave completa
+     * @return la condición
+     */
+    public static Criteria noAplicada(String id) {
+        return where(APLICADAS + ".clave").ne(id);
+    }
+
+    /**
+     * Añade a una actualización la anotación de una clave en el documento,
+     * conservando solo las más recientes.
+     *
+     * @param update la actualización de la operación
+     * @param id     la clave completa
+     * @return la misma actualización
+     */
+    public static Update anotar(Update update, String id) {
+        return update.push(APLICADAS).slice(-CLAVES_POR_DOCUMENTO).each(new Document("clave", id));
+    }
+
+    /**
+     * Crea una actualización que suma una cantidad a un campo numérico, suma uno
+     * a su versión y anota la clave junto con el valor resultante, que es el
+     * resultado de la operación.
+     *
+     * @param campo   el campo numérico
+     * @param version el campo con la versión del numérico
+     * @param delta   la cantidad a sumar
+     * @param id      la clave completa
+     * @return la actualización, un pipeline de agregación
+     */
+    public static AggregationUpdate incrementar(String campo, String version, int delta, String id) {
+        Document nuevo = new Document("$add", List.of("$" + campo, delta));
+        Document siguiente = new Document("$add",
+                List.of(new Document("$ifNull", List.of("$" + version, 0)), 1));
+        Document anteriores = new Document("$slice",
+                List.of(new Document("$ifNull", List.of("$" + APLICADAS, List.of())), 1 - CLAVES_POR_DOCUMENTO));
+        Document aplicadas = new Document("$concatArrays",
+                List.of(anteriores, List.of(new Document("clave", id).append("resultado", nuevo))));
+        return AggregationUpdate.from(List.of(contexto -> new Document("$set",
+                new Document(campo, nuevo).append(version, siguiente).append(APLICADAS, aplicadas))));
+    }
+
+    /**
+     * Busca la anotación de una clave en un documento, para responder a una
+     * operación que ya se había aplicado.
+     *
+     * @param entidad   la clase de los documentos
+     * @param documento la condición que identifica el documento
+     * @param id        la clave completa
+     * @return la anotación, con la clave y el resultado si lo tiene, o null si el
+     *         documento no existe o no tiene la clave
+     */
+    public Document buscarAplicada(Class<?> entidad, Criteria documento, String id) {
+        Query query = Query.query(documento).addCriteria(where(APLICADAS + ".clave").is(id));
+        query.fields().elemMatch(APLICADAS, where("clave").is(id));
+        Document encontrado = mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(entidad));
+        if (encontrado == null) {
+            return null;
+        }
+        List<Document> aplicadas = encontrado.getList(APLICADAS, Document.class);
+        return aplicadas != null && !aplicadas.isEmpty() ? aplicadas.get(0) : null;
+    }
+
+    /**
+     * Devuelve el resultado guardado de una clave completada.
+     *
+     * @param <T>      el tipo del resultado
+     * @param guardada la clave guardada
+     * @param huella   los parámetros del reintento
+     * @param tipo     la clase del resultado
+     * @param ahora    el instante actual, en milisegundos desde la época
+     * @return el resultado original
+     */
+    private <T> T recuperar(ClaveIdempotencia guardada, String huella, Class<T> tipo, long ahora) {
+        T resultado = convertir(guardada.getResultado(), tipo);
+        guardar(guardada.getId(), guardada.getHuella(), resultado, ahora);
+        return repetir(guardada.getHuella(), huella, resultado);
+    }
+
+    /**
+     * Devuelve el resultado de un reintento, comprobando que tiene los mismos
+     * parámetros que la operación original.
+     *
+     * @param <T>       el tipo del resultado
+     * @param original  los parámetros de la operación original
+     * @param huella    los parámetros del reintento
+     * @param resultado el resultado original
+     * @return el resultado original
+     */
+    private static <T> T repetir(String original, String huella, T resultado) {
+        if (!Objects.equals(original, huella)) {
+            throw new IllegalArgumentException("La clave de idempotencia ya se ha usado con otros datos");
+        }
+        return resultado;
+    }
+
+    /**
+     * Convierte un resultado guardado en MongoDB a su tipo.
+     *
+     * @param <T>   el tipo del resultado
+     * @param valor el valor guardado
+     * @param tipo  la clase del resultado
+     * @return el resultado
+     */
+    private <T> T convertir(Object valor, Class<T> tipo) {
+        if (valor == null) {
+            return null;
+        }
+        if (valor instanceof Document documento) {
+            return mongoTemplate.getConverter().read(tipo, documento);
+        }
+        return mongoTemplate.getConverter().getConversionService().convert(valor, tipo);
+    }
+
+    /**
+     * Guarda un resultado en la caché en memoria, liberando espacio si está
+     * llena.
+     *
+     * @param id        la clave completa
+     * @param huella    los parámetros de la operación
+     * @param resultado el resultado
+     * @param ahora     el instante actual, en milisegundos desde la época
+     */
+    private void guardar(String id, String huella, Object resultado, long ahora) {
+        if (cache.size() >= capacidad) {
+            cache.values().removeIf(entrada -> entrada.expira() <= ahora);
+            Iterator<String> it = cache.keySet().iterator();
+            while (cache.size() >= capacidad * 9 / 10 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(id, new Entrada(huella, resultado, ahora + ttl.toMillis()));
+    }
+
+    /**
+     * Obtiene el tiempo durante el que se recuerda el resultado de una operación.
+     *
+     * @return el tiempo de vida de las claves
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Obtiene el número de resultados en la caché en memoria.
+     *
+     * @return número de resultados
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+}
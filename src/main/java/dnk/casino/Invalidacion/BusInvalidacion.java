@@ -0,0 +1,76 @@
+package dnk.casino.Invalidacion;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+
+/**
+ * Bus de invalidación de cachés entre los nodos de la aplicación.
+ *
+ * Cada nodo publica un aviso cuando modifica un usuario o una skin, y los demás
+ * nodos lo reciben y descartan su copia. Un nodo no recibe sus propios avisos:
+ * sus cachés ya se actualizan al hacer el cambio. La entrega es de como mucho
+ * una vez: un nodo que arranca solo recibe los avisos publicados desde
+ * entonces, así que las cachés deben cargarse de MongoDB al arrancar.
+ *
+ * Se elige con dnk.casino.invalidacion.backend: memoria (por defecto) entrega
+ * los avisos a los contextos de aplicación de la misma JVM, y mongo los reparte
+ * entre todos los nodos con una colección limitada y un cursor tailable.
+ *
+ * @author Danikileitor
+ */
+public interface BusInvalidacion {
+
+    /**
+     * Publica un aviso de que una entidad ha cambiado.
+     *
+     * @param tipo    el tipo de la entidad
+     * @param id      el ID de la entidad
+     * @param version la versión de la entidad tras el cambio
+     */
+    void publicar(Tipo tipo, String id, long version);
+
+    /**
+     * Publica un aviso de que una entidad ha cambiado ahora, usando el instante
+     * actual como versión.
+     *
+     * @param tipo el tipo de la entidad
+     * @param id   el ID de la entidad
+     */
+    default void publicar(Tipo tipo, String id) {
+        publicar(tipo, id, System.currentTimeMillis());
+    }
+
+    /**
+     * Publica de una vez los avisos de varias entidades del mismo tipo que han
+     * cambiado, usando el instante actual como versión. Los demás nodos reciben
+     * un aviso por entidad.
+     *
+     * @param tipo el tipo de las entidades
+     * @param ids  los IDs de las entidades
+     */
+    default void publicar(Tipo tipo, Collection<String> ids) {
+        long version = System.currentTimeMillis();
+        for (String id : ids) {
+            publicar(tipo, id, version);
+        }
+    }
+
+    /**
+     * Registra un oyente de los avisos de otros nodos sobre un tipo de entidad.
+     * Los oyentes se ejecutan en el hilo que entrega el aviso, así que deben ser
+     * rápidos.
+     *
+     * @param tipo   el tipo de la entidad
+     * @param oyente el oyente
+     */
+    void suscribir(Tipo tipo, Consumer<Invalidacion> oyente);
+
+    /**
+     * Obtiene el identificador de este nodo, que va en el origen de sus avisos.
+     *
+     * @return el identificador del nodo
+     */
+    String getNodo();
+}
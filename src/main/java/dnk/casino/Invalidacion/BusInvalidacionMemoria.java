@@ -0,0 +1,72 @@
+package dnk.casino.Invalidacion;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bus de invalidación dentro de la JVM.
+ *
+ * Los buses del mismo canal (dnk.casino.invalidacion.canal) se avisan entre sí
+ * de forma síncrona, en el hilo que publica. Con un solo contexto de aplicación
+ * equivale a no invalidar nada; con varios en la misma JVM permite probar la
+ * invalidación entre nodos sin MongoDB.
+ *
+ * @author Danikileitor
+ */
+public class BusInvalidacionMemoria extends OyentesInvalidacion {
+
+    /**
+     * Buses registrados en cada canal.
+     */
+    private static final Map<String, Set<BusInvalidacionMemoria>> CANALES = new ConcurrentHashMap<>();
+
+    /**
+     * Canal del bus.
+     */
+    private final String canal;
+
+    /**
+     * Crea un bus en memoria.
+     *
+     * @param canal         el canal del bus
+     * @param meterRegistry el registro de métricas
+     */
+    public BusInvalidacionMemoria(String canal, MeterRegistry meterRegistry) {
+        super("memoria", meterRegistry);
+        this.canal = canal;
+    }
+
+    /**
+     * Registra el bus en su canal.
+     */
+    @PostConstruct
+    public void iniciar() {
+        CANALES.computeIfAbsent(canal, clave -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    /**
+     * Retira el bus de su canal.
+     */
+    @PreDestroy
+    public void detener() {
+        CANALES.computeIfPresent(canal, (clave, buses) -> {
+            buses.remove(this);
+            return buses.isEmpty() ? null : buses;
+        });
+    }
+
+    @Override
+    public void publicar(Tipo tipo, String id, long version) {
+        Invalidacion invalidacion = new Invalidacion(tipo, id, version, getNodo());
+        contarPublicada();
+        for (BusInvalidacionMemoria bus : CANALES.getOrDefault(canal, Set.of())) {
+            bus.entregar(invalidacion);
+        }
+    }
+}
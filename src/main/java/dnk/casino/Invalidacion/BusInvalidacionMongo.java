@@ -0,0 +1,302 @@
+package dnk.casino.Invalidacion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.CursorType;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Sorts;
+
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bus de invalidación entre nodos sobre MongoDB.
+ *
+ * Los avisos se insertan en una colección limitada (capped), que conserva el
+ * orden de inserción y descarta los más antiguos al llenarse. Cada nodo la
+ * sigue con un cursor tailable con espera: el servidor responde en cuanto se
+ * inserta un aviso, así que llegan a los demás nodos en milisegundos sin
+ * consultas periódicas. Si el cursor se pierde, se vuelve a abrir a partir del
+ * último aviso recibido, buscándolo por su posición en la colección: los _id
+ * los generan los clientes con su reloj, así que no siguen el orden de
+ * inserción. Los avisos publicados de una vez van juntos en
+ * documentos de hasta {@value #IDS_POR_AVISO} IDs, para no llenar la colección
+ * con un documento por entidad.
+ *
+ * @author Danikileitor
+ */
+public class BusInvalidacionMongo extends OyentesInvalidacion {
+
+    /**
+     * Tiempo máximo que el servidor retiene el cursor esperando avisos, que
+     * también acota lo que tarda en detenerse el hilo.
+     */
+    private static final long ESPERA_CURSOR_MS = 1000;
+
+    /**
+     * Espera antes de volver a abrir un cursor que se ha cerrado sin error, por
+     * ejemplo porque la colección estaba vacía.
+     */
+    private static final long ESPERA_REAPERTURA_MS = 100;
+
+    /**
+     * Espera antes de volver a abrir el cursor después de un error.
+     */
+    private static final long ESPERA_ERROR_MS = 1000;
+
+    /**
+     * Número máximo de IDs de un documento con varios avisos.
+     */
+    private static final int IDS_POR_AVISO = 1000;
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Fábrica del hilo que sigue la colección.
+     */
+    private final FabricaHilos fabricaHilos;
+
+    /**
+     * Nombre de la colección de avisos.
+     */
+    private final String coleccion;
+
+    /**
+     * Tamaño máximo de la colección, en bytes.
+     */
+    private final long tamano;
+
+    /**
+     * Colección de avisos.
+     */
+    private MongoCollection<Document> avisos;
+
+    /**
+     * _id del último aviso recibido, o null para leer la colección desde el
+     * principio.
+     */
+    private ObjectId ultimo;
+
+    /**
+     * Hilo que sigue la colección.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Indica si el hilo debe seguir funcionando.
+     */
+    private volatile boolean activo;
+
+    /**
+     * Crea un bus sobre MongoDB.
+     *
+     * @param mongoTemplate la plantilla de MongoDB
+     * @param fabricaHilos  la fábrica del hilo que sigue la colección
+     * @param coleccion     el nombre de la colección de avisos
+     * @param tamano        el tamaño máximo de la colección, en bytes
+     * @param meterRegistry el registro de métricas
+     */
+    public BusInvalidacionMongo(MongoTemplate mongoTemplate, FabricaHilos fabricaHilos, String coleccion, long tamano,
+            MeterRegistry meterRegistry) {
+        super("mongo", meterRegistry);
+        this.mongoTemplate = mongoTemplate;
+        this.fabricaHilos = fabricaHilos;
+        this.coleccion = coleccion;
+        this.tamano = tamano;
+    }
+
+    /**
+     * Crea la colección limitada si no existe y empieza a seguirla a partir del
+     * último aviso, sin procesar los anteriores al arranque.
+     */
+    @PostConstruct
+    public void iniciar() {
+        if (!mongoTemplate.collectionExists(coleccion)) {
+            try {
+                mongoTemplate.createCollection(coleccion, CollectionOptions.empty().capped().size(tamano));
+            } catch (DataAccessException e) {
+                // Otro nodo la ha creado a la vez
+                System.out.println("No se ha creado la colección " + coleccion + ": " + e.getMessage());
+            }
+        }
+        avisos = mongoTemplate.getCollection(coleccion);
+        Document ultimoAviso = avisos.find().sort(Sorts.descending("$natural")).limit(1).first();
+        ultimo = ultimoAviso != null ? ultimoAviso.getObjectId("_id") : null;
+
+        activo = true;
+        executor = Executors.newSingleThreadExecutor(fabricaHilos.crear("dnk-invalidacion"));
+        executor.execute(this::seguir);
+    }
+
+    /**
+     * Detiene el hilo que sigue la colección.
+     *
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        executor.shutdown();
+        executor.awaitTermination(ESPERA_CURSOR_MS * 2, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Inserta un aviso en la colección. Si falla, el cambio ya está guardado, así
+     * que solo se registra el error: las cachés de los demás nodos tendrán la
+     * copia anterior hasta que se recarguen.
+     */
+    @Override
+    public void publicar(Tipo tipo, String id, long version) {
+        try {
+            avisos.insertOne(new Document("tipo", tipo.name())
+                    .append("entidadId", id)
+                    .append("version", version)
+                    .append("origen", getNodo()));
+            contarPublicada();
+        } catch (MongoException e) {
+            contarFallo();
+            System.out.println("Error al publicar la invalidación de " + tipo + " " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Inserta los avisos de varias entidades en documentos con el campo
+     * entidadIds, con un único insertMany.
+     */
+    @Override
+    public void publicar(Tipo tipo, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        long version = System.currentTimeMillis();
+        List<Document> documentos = new ArrayList<>();
+        List<String> lote = new ArrayList<>(Math.min(ids.size(), IDS_POR_AVISO));
+        for (String id : ids) {
+            lote.add(id);
+            if (lote.size() == IDS_POR_AVISO) {
+                documentos.add(aviso(tipo, lote, version));
+                lote = new ArrayList<>(IDS_POR_AVISO);
+            }
+        }
+        if (!lote.isEmpty()) {
+            documentos.add(aviso(tipo, lote, version));
+        }
+        try {
+            avisos.insertMany(documentos);
+            contarPublicadas(ids.size());
+        } catch (MongoException e) {
+            contarFallo();
+            System.out.println("Error al publicar " + ids.size() + " invalidaciones de " + tipo + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea un documento con los avisos de varias entidades.
+     *
+     * @param tipo    el tipo de las entidades
+     * @param ids     los IDs de las entidades
+     * @param version la versión de las entidades
+     * @return el documento
+     */
+    private Document aviso(Tipo tipo, List<String> ids, long version) {
+        return new Document("tipo", tipo.name())
+                .append("entidadIds", ids)
+                .append("version", version)
+                .append("origen", getNodo());
+    }
+
+    /**
+     * Entrega los avisos de un documento, que puede llevar un ID en entidadId o
+     * varios en entidadIds.
+     *
+     * @param doc el documento
+     */
+    private void entregar(Document doc) {
+        Tipo tipo = Tipo.valueOf(doc.getString("tipo"));
+        long version = doc.getLong("version");
+        String origen = doc.getString("origen");
+        List<String> ids = doc.getList("entidadIds", String.class);
+        if (ids == null) {
+            entregar(new Invalidacion(tipo, doc.getString("entidadId"), version, origen));
+            return;
+        }
+        for (String id : ids) {
+            entregar(new Invalidacion(tipo, id, version, origen));
+        }
+    }
+
+    /**
+     * Bucle del hilo: abre un cursor tailable en orden natural, salta los avisos
+     * hasta el último recibido y entrega los siguientes según llegan, volviendo a
+     * abrirlo si se cierra. Si el último aviso recibido ya se ha descartado de la
+     * colección, se han perdido avisos y se entregan todos los que quedan, porque
+     * invalidar de más solo cuesta una lectura.
+     */
+    private void seguir() {
+        while (activo) {
+            ObjectId desde = ultimo;
+            boolean encontrado = desde == null;
+            try (MongoCursor<Document> cursor = avisos.find()
+                    .sort(Sorts.ascending("$natural"))
+                    .cursorType(CursorType.TailableAwait)
+                    .maxAwaitTime(ESPERA_CURSOR_MS, TimeUnit.MILLISECONDS)
+                    .iterator()) {
+                while (activo) {
+                    Document doc = cursor.tryNext();
+                    if (doc != null) {
+                        if (encontrado) {
+                            ultimo = doc.getObjectId("_id");
+                            entregar(doc);
+                        } else {
+                            encontrado = desde.equals(doc.getObjectId("_id"));
+                        }
+                    } else if (cursor.getServerCursor() == null) {
+                        // El servidor ha cerrado el cursor: se vuelve a abrir
+                        break;
+                    } else if (!encontrado) {
+                        contarFallo();
+                        System.out.println("El último aviso de invalidación recibido ya no está en " + coleccion
+                                + ", se entregarán todos los avisos");
+                        ultimo = null;
+                        break;
+                    }
+                }
+                if (activo) {
+                    Thread.sleep(ESPERA_REAPERTURA_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                contarFallo();
+                System.out.println("Error al seguir las invalidaciones, se reintentará: " + e.getMessage());
+                try {
+                    Thread.sleep(ESPERA_ERROR_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
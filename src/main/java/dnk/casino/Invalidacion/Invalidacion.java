@@ -0,0 +1,22 @@
+package dnk.casino.Invalidacion;
+
+/**
+ * Aviso de que una entidad ha cambiado y las cachés deben descartar su copia.
+ *
+ * @param tipo    el tipo de la entidad
+ * @param id      el ID de la entidad
+ * @param version la versión de la entidad tras el cambio: el instante de la
+ *                modificación en milisegundos, para que una caché pueda ignorar
+ *                avisos más antiguos que su copia
+ * @param origen  el nodo que ha hecho el cambio
+ * @author Danikileitor
+ */
+public record Invalidacion(Tipo tipo, String id, long version, String origen) {
+
+    /**
+     * Tipos de entidad que se invalidan.
+     */
+    public enum Tipo {
+        USUARIO, SKIN
+    }
+}
@@ -0,0 +1,44 @@
+package dnk.casino.Invalidacion;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import dnk.casino.Config.FabricaHilos;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuración del bus de invalidación, común a las aplicaciones servlet y
+ * reactivas.
+ *
+ * @author Danikileitor
+ */
+@Configuration
+public class InvalidacionConfig {
+
+    /**
+     * Bus de invalidación elegido con dnk.casino.invalidacion.backend.
+     *
+     * @param backend       memoria o mongo
+     * @param canal         el canal del bus en memoria
+     * @param coleccion     la colección limitada del bus sobre MongoDB
+     * @param tamano        el tamaño máximo de la colección, en bytes
+     * @param mongoTemplate la plantilla de MongoDB
+     * @param fabricaHilos  la fábrica de hilos
+     * @param meterRegistry el registro de métricas
+     * @return el bus de invalidación
+     */
+    @Bean
+    BusInvalidacion busInvalidacion(@Value("${dnk.casino.invalidacion.backend:memoria}") String backend,
+            @Value("${dnk.casino.invalidacion.canal:dnk-casino}") String canal,
+            @Value("${dnk.casino.invalidacion.coleccion:cache_invalidations}") String coleccion,
+            @Value("${dnk.casino.invalidacion.tamano-bytes:1048576}") long tamano,
+            MongoTemplate mongoTemplate, FabricaHilos fabricaHilos, MeterRegistry meterRegistry) {
+        return switch (backend) {
+            case "memoria" -> new BusInvalidacionMemoria(canal, meterRegistry);
+            case "mongo" -> new BusInvalidacionMongo(mongoTemplate, fabricaHilos, coleccion, tamano, meterRegistry);
+            default -> throw new IllegalArgumentException("Backend de invalidación desconocido: " + backend);
+        };
+    }
+}
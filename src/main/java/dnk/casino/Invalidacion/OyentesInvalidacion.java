@@ -0,0 +1,114 @@
+package dnk.casino.Invalidacion;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Parte común de los buses de invalidación: el identificador del nodo, los
+ * oyentes de cada tipo y las métricas.
+ *
+ * @author Danikileitor
+ */
+abstract class OyentesInvalidacion implements BusInvalidacion {
+
+    /**
+     * Identificador de este nodo.
+     */
+    private final String nodo = UUID.randomUUID().toString();
+
+    /**
+     * Oyentes de cada tipo de entidad.
+     */
+    private final Map<Tipo, List<Consumer<Invalidacion>>> oyentes = new EnumMap<>(Tipo.class);
+
+    private final Counter publicadas;
+    private final Counter recibidas;
+    private final Counter fallos;
+
+    /**
+     * Crea los oyentes y registra las métricas.
+     *
+     * @param backend       el nombre del backend, como etiqueta de las métricas
+     * @param meterRegistry el registro de métricas
+     */
+    OyentesInvalidacion(String backend, MeterRegistry meterRegistry) {
+        for (Tipo tipo : Tipo.values()) {
+            oyentes.put(tipo, new CopyOnWriteArrayList<>());
+        }
+        publicadas = Counter.builder("dnk.casino.invalidacion.publicadas")
+                .description("Avisos de invalidación publicados por este nodo")
+                .tag("backend", backend)
+                .register(meterRegistry);
+        recibidas = Counter.builder("dnk.casino.invalidacion.recibidas")
+                .description("Avisos de invalidación de otros nodos recibidos")
+                .tag("backend", backend)
+                .register(meterRegistry);
+        fallos = Counter.builder("dnk.casino.invalidacion.fallos")
+                .description("Avisos de invalidación que no se han podido publicar o procesar")
+                .tag("backend", backend)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void suscribir(Tipo tipo, Consumer<Invalidacion> oyente) {
+        oyentes.get(tipo).add(oyente);
+    }
+
+    @Override
+    public String getNodo() {
+        return nodo;
+    }
+
+    /**
+     * Entrega un aviso a los oyentes de su tipo, salvo que lo haya publicado este
+     * nodo. Un oyente que falla no impide que se avise a los demás.
+     *
+     * @param invalidacion el aviso
+     */
+    void entregar(Invalidacion invalidacion) {
+        if (nodo.equals(invalidacion.origen())) {
+            return;
+        }
+        recibidas.increment();
+        for (Consumer<Invalidacion> oyente : oyentes.get(invalidacion.tipo())) {
+            try {
+                oyente.accept(invalidacion);
+            } catch (RuntimeException e) {
+                fallos.increment();
+                System.out.println("Error al procesar la invalidación de " + invalidacion.tipo() + " "
+                        + invalidacion.id() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Cuenta un aviso publicado.
+     */
+    void contarPublicada() {
+        publicadas.increment();
+    }
+
+    /**
+     * Cuenta varios avisos publicados de una vez.
+     *
+     * @param avisos el número de avisos
+     */
+    void contarPublicadas(int avisos) {
+        publicadas.increment(avisos);
+    }
+
+    /**
+     * Cuenta un aviso que no se ha podido publicar o recibir.
+     */
+    void contarFallo() {
+        fallos.increment();
+    }
+}
@@ -0,0 +1,225 @@
+package dnk.casino.Leaderboard;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Clasificación que se reinicia en cada periodo (día o semana).
+ *
+ * Guarda el periodo en curso y el anterior, cada uno con su
+ * {@link Leaderboard}. Al llegar una puntuación de un periodo nuevo, el en
+ * curso pasa a ser el anterior y se empieza uno vacío. Las puntuaciones
+ * sumadas desde el último volcado se acumulan por usuario para que
+ * {@link LeaderboardService} escriba solo esos incrementos.
+ *
+ * @author Danikileitor
+ */
+class ClasificacionPeriodica {
+
+    /**
+     * Duración de los periodos.
+     */
+    enum Duracion {
+        DIA(1), SEMANA(7);
+
+        /**
+         * Días del periodo.
+         */
+        private final int dias;
+
+        Duracion(int dias) {
+            this.dias = dias;
+        }
+
+        /**
+         * Obtiene el periodo de un día. Las semanas empiezan en lunes.
+         *
+         * @param dia el día desde la época
+         * @return el número del periodo
+         */
+        int periodo(int dia) {
+            // El día 0 (1970-01-01) fue jueves, así que el lunes anterior es el día -3
+            return this == DIA ? dia : Math.floorDiv(dia + 3, 7);
+        }
+
+        /**
+         * Obtiene el primer día de un periodo.
+         *
+         * @param periodo el número del periodo
+         * @return el día desde la época
+         */
+        int primerDia(int periodo) {
+            return this == DIA ? periodo : periodo * 7 - 3;
+        }
+
+        /**
+         * Obtiene los días del periodo.
+         *
+         * @return los días
+         */
+        int getDias() {
+            return dias;
+        }
+    }
+
+    /**
+     * Puntuaciones de un periodo.
+     *
+     * @param numero       el número del periodo
+     * @param tabla        la clasificación del periodo, con las puntuaciones de
+     *                     todos los nodos
+     * @param pendientes   las puntuaciones sumadas en este nodo desde el último
+     *                     volcado, por usuario
+     * @param sincronizado la fecha de actualización más reciente leída de
+     *                     MongoDB, en milisegundos desde la época, o 0 si aún no
+     *                     se ha leído
+     */
+    record Periodo(int numero, Leaderboard tabla, Map<String, Long> pendientes, AtomicLong sincronizado) {
+
+        Periodo(int numero) {
+            this(numero, new Leaderboard(), new ConcurrentHashMap<>(), new AtomicLong());
+        }
+    }
+
+    /**
+     * Nombre de la clasificación, por ejemplo wins:dia.
+     */
+    private final String nombre;
+
+    /**
+     * Duración de los periodos.
+     */
+    private final Duracion duracion;
+
+    /**
+     * Periodo en curso.
+     */
+    private volatile Periodo actual;
+
+    /**
+     * Periodo anterior, que se mantiene para volcar las puntuaciones que llegan
+     * justo al cambiar de periodo.
+     */
+    private volatile Periodo anterior;
+
+    /**
+     * Cerrojo del cambio de periodo.
+     */
+    private final ReentrantLock cambio = new ReentrantLock();
+
+    /**
+     * Crea una clasificación periódica.
+     *
+     * @param nombre   el nombre de la clasificación
+     * @param duracion la duración de los periodos
+     * @param hoy      el día actual desde la época
+     */
+    ClasificacionPeriodica(String nombre, Duracion duracion, int hoy) {
+        this.nombre = nombre;
+        this.duracion = duracion;
+        this.actual = new Periodo(duracion.periodo(hoy));
+        this.anterior = new Periodo(duracion.periodo(hoy) - 1);
+    }
+
+    /**
+     * Obtiene el nombre de la clasificación.
+     *
+     * @return el nombre
+     */
+    String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Obtiene la duración de los periodos.
+     *
+     * @return la duración
+     */
+    Duracion getDuracion() {
+        return duracion;
+    }
+
+    /**
+     * Suma una puntuación a un usuario en el periodo de hoy.
+     *
+     * @param id    el ID del usuario
+     * @param delta la puntuación a sumar
+     * @param hoy   el día actual desde la época
+     */
+    void sumar(String id, long delta, int hoy) {
+        Periodo periodo = periodo(hoy);
+        periodo.tabla().add(id, delta);
+        periodo.pendientes().merge(id, delta, Long::sum);
+    }
+
+    /**
+     * Elimina a un usuario de los periodos guardados, junto con sus puntuaciones
+     * pendientes de volcar.
+     *
+     * @param id el ID del usuario
+     */
+    void eliminar(String id) {
+        for (Periodo periodo : periodos()) {
+            periodo.pendientes().remove(id);
+            periodo.tabla().remove(id);
+        }
+    }
+
+    /**
+     * Obtiene el periodo en curso, empezando uno nuevo si hoy ya no pertenece al
+     * guardado.
+     *
+     * @param hoy el día actual desde la época
+     * @return el periodo en curso
+     */
+    Periodo periodo(int hoy) {
+        int numero = duracion.periodo(hoy);
+        Periodo periodo = actual;
+        if (periodo.numero() >= numero) {
+            return periodo;
+        }
+        cambio.lock();
+        try {
+            if (actual.numero() < numero) {
+                // Si ha pasado más de un periodo sin puntuaciones, el anterior está vacío
+                anterior = actual.numero() == numero - 1 ? actual : new Periodo(numero - 1);
+                actual = new Periodo(numero);
+            }
+            return actual;
+        } finally {
+            cambio.unlock();
+        }
+    }
+
+    /**
+     * Obtiene los periodos que pueden tener puntuaciones sin volcar.
+     *
+     * @return el periodo anterior y el en curso
+     */
+    List<Periodo> periodos() {
+        return List.of(anterior, actual);
+    }
+
+    /**
+     * Retira las puntuaciones pendientes de un periodo. Cada una se quita del
+     * mapa de forma atómica, así que una suma que llega a la vez queda para el
+     * siguiente volcado.
+     *
+     * @param periodo el periodo
+     * @return las puntuaciones pendientes por ID de usuario
+     */
+    static Map<String, Long> retirarPendientes(Periodo periodo) {
+        Map<String, Long> retiradas = new HashMap<>();
+        for (String id : periodo.pendientes().keySet()) {
+            Long delta = periodo.pendientes().remove(id);
+            if (delta != null && delta != 0) {
+                retiradas.put(id, delta);
+            }
+        }
+        return retiradas;
+    }
+}
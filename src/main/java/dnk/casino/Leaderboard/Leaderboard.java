@@ -0,0 +1,268 @@
+package dnk.casino.Leaderboard;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Clasificación concurrente de usuarios ordenada por puntuación.
+ *
+ * Mantiene las entradas ordenadas de mayor a menor puntuación (y por ID en
+ * caso de empate) en una {@link ListaIndexada}, de modo que obtener los N
+ * primeros cuesta O(log n + N) y cada actualización y la posición de un usuario
+ * O(log n), sin consultar la base de datos. La lista se protege con un cerrojo
+ * de lectura y escritura: las consultas se ejecutan en paralelo y las
+ * actualizaciones de una en una. La puntuación de un usuario se lee del mapa
+ * de entradas sin bloquear.
+ *
+ * El cerrojo es de cada clasificación, así que las victorias, las partidas de
+ * blackjack, las monedas y cada periodo no compiten entre sí, pero dentro de
+ * una misma clasificación las escrituras se serializan y esperan a las
+ * consultas en curso. Se mantiene en ese tamaño a propósito: la sección crítica
+ * es un borrado y una inserción en la lista, O(log n), y repartir la lista en
+ * fragmentos obligaría a mezclarlos en cada top y en cada posición. Los casos
+ * con contención de LeaderboardBenchmark miden ese límite.
+ *
+ * @author Danikileitor
+ */
+public class Leaderboard {
+
+    /**
+     * Entradas ordenadas por puntuación descendente.
+     */
+    private final ListaIndexada<Entrada> ranking = new ListaIndexada<>();
+
+    /**
+     * Cerrojo de la lista ordenada y de las modificaciones del mapa de entradas.
+     */
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    /**
+     * Entrada actual de cada usuario, indexada por su ID.
+     */
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    /**
+     * Entrada de la clasificación.
+     *
+     * @param id         ID del usuario
+     * @param puntuacion puntuación del usuario
+     */
+    public record Entrada(String id, long puntuacion) implements Comparable<Entrada> {
+
+        /**
+         * Ordena de mayor a menor puntuación y, en caso de empate, por ID.
+         *
+         * @param otra la otra entrada
+         * @return el resultado de la comparación
+         */
+        @Override
+        public int compareTo(Entrada otra) {
+            int cmp = Long.compare(otra.puntuacion, puntuacion);
+            return cmp != 0 ? cmp : id.compareTo(otra.id);
+        }
+    }
+
+    /**
+     * Posición de un usuario y las entradas que la rodean.
+     *
+     * @param posicion posición del usuario, empezando por 1
+     * @param total    número de usuarios en la clasificación
+     * @param primera  posición de la primera entrada
+     * @param entradas entradas consecutivas desde la primera, incluida la del
+     *                 usuario
+     */
+    public record Vecindario(int posicion, int total, int primera, List<Entrada> entradas) {
+    }
+
+    /**
+     * Establece la puntuación de un usuario, añadiéndolo si no existía.
+     *
+     * @param id         ID del usuario
+     * @param puntuacion nueva puntuación
+     */
+    public void set(String id, long puntuacion) {
+        // Sin cambios no hace falta el cerrojo de escritura, que bloquea las consultas
+        Entrada previa = entradas.get(id);
+        if (previa != null && previa.puntuacion() == puntuacion) {
+            return;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            Entrada actual = entradas.get(id);
+            if (actual != null) {
+                if (actual.puntuacion() == puntuacion) {
+                    return;
+                }
+                ranking.remove(actual);
+            }
+            Entrada nueva = new Entrada(id, puntuacion);
+            ranking.add(nueva);
+            entradas.put(id, nueva);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Establece la puntuación de un usuario solo si es mayor que la actual,
+     * añadiéndolo si no existía. Es para puntuaciones que solo crecen, como las
+     * victorias: un valor leído antes que otro no lo sustituye aunque llegue
+     * después.
+     *
+     * @param id         ID del usuario
+     * @param puntuacion puntuación leída
+     */
+    public void subir(String id, long puntuacion) {
+        Entrada previa = entradas.get(id);
+        if (previa != null && previa.puntuacion() >= puntuacion) {
+            return;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            Entrada actual = entradas.get(id);
+            if (actual != null) {
+                if (actual.puntuacion() >= puntuacion) {
+                    return;
+                }
+                ranking.remove(actual);
+            }
+            Entrada nueva = new Entrada(id, puntuacion);
+            ranking.add(nueva);
+            entradas.put(id, nueva);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suma una cantidad a la puntuación de un usuario, añadiéndolo si no existía.
+     *
+     * @param id    ID del usuario
+     * @param delta cantidad a sumar
+     */
+    public void add(String id, long delta) {
+        cerrojo.writeLock().lock();
+        try {
+            Entrada actual = entradas.get(id);
+            long puntuacion = delta;
+            if (actual != null) {
+                ranking.remove(actual);
+                puntuacion += actual.puntuacion();
+            }
+            Entrada nueva = new Entrada(id, puntuacion);
+            ranking.add(nueva);
+            entradas.put(id, nueva);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina a un usuario de la clasificación.
+     *
+     * @param id ID del usuario
+     */
+    public void remove(String id) {
+        cerrojo.writeLock().lock();
+        try {
+            Entrada actual = entradas.remove(id);
+            if (actual != null) {
+                ranking.remove(actual);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía la clasificación.
+     */
+    public void clear() {
+        cerrojo.writeLock().lock();
+        try {
+            entradas.clear();
+            ranking.clear();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene la puntuación de un usuario.
+     *
+     * @param id ID del usuario
+     * @return la puntuación, o 0 si el usuario no está en la clasificación
+     */
+    public long get(String id) {
+        Entrada entrada = entradas.get(id);
+        return entrada != null ? entrada.puntuacion() : 0;
+    }
+
+    /**
+     * Obtiene las N primeras entradas de la clasificación.
+     *
+     * @param n número de entradas a obtener
+     * @return lista con las N primeras entradas, de mayor a menor puntuación
+     */
+    public List<Entrada> top(int n) {
+        cerrojo.readLock().lock();
+        try {
+            return ranking.desde(1, n);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene la posición de un usuario.
+     *
+     * @param id ID del usuario
+     * @return la posición, empezando por 1, o 0 si el usuario no está en la
+     *         clasificación
+     */
+    public int posicion(String id) {
+        cerrojo.readLock().lock();
+        try {
+            Entrada entrada = entradas.get(id);
+            return entrada != null ? ranking.posicion(entrada) : 0;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene la posición de un usuario junto con las entradas que tiene
+     * inmediatamente por encima y por debajo, en una única lectura coherente.
+     *
+     * @param id      ID del usuario
+     * @param vecinos número de entradas a cada lado del usuario
+     * @return el vecindario, o un Optional vacío si el usuario no está en la
+     *         clasificación
+     */
+    public Optional<Vecindario> alrededor(String id, int vecinos) {
+        cerrojo.readLock().lock();
+        try {
+            Entrada entrada = entradas.get(id);
+            if (entrada == null) {
+                return Optional.empty();
+            }
+            int posicion = ranking.posicion(entrada);
+            int primera = Math.max(1, posicion - vecinos);
+            return Optional.of(new Vecindario(posicion, ranking.size(), primera,
+                    ranking.desde(primera, posicion - primera + 1 + vecinos)));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el número de usuarios en la clasificación.
+     *
+     * @return número de usuarios
+     */
+    public int size() {
+        return entradas.size();
+    }
+}
@@ -0,0 +1,70 @@
+package dnk.casino.Leaderboard;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import dnk.casino.Leaderboard.LeaderboardService.Clasificacion;
+import dnk.casino.Leaderboard.LeaderboardService.Ventana;
+import dnk.casino.Users.JwtTokenUtil;
+import dnk.casino.Users.UsuarioService;
+
+/**
+ * Controlador de las clasificaciones del casino.
+ * 
+ * @author Danikileitor
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@RestController
+@RequestMapping("/leaderboard/api")
+public class LeaderboardController {
+
+    /**
+     * Servicio de usuarios.
+     */
+    @Autowired
+    private UsuarioService usuarioService;
+
+    /**
+     * Obtiene la posición del usuario autenticado en una clasificación, con los
+     * jugadores que tiene justo por encima y por debajo.
+     * 
+     * @param token         el token de autenticación
+     * @param clasificacion wins, bjwins o coins
+     * @param ventana       dia, semana o total
+     * @param vecinos       número de jugadores a cada lado
+     * @return la posición del usuario
+     */
+    @GetMapping("/posicion")
+    public ResponseEntity<?> getPosicion(@RequestHeader("Authorization") String token,
+            @RequestParam(defaultValue = "wins") String clasificacion,
+            @RequestParam(defaultValue = "total") String ventana,
+            @RequestParam(defaultValue = "2") int vecinos) {
+        // Extrae el nombre de usuario del token
+        Optional<String> usernameOpt = JwtTokenUtil.extractUsernameFromToken(token);
+        if (usernameOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token inválido");
+        }
+
+        Optional<PosicionClasificacion> posicion;
+        try {
+            posicion = usuarioService.getPosicionPorUsername(usernameOpt.get(), Clasificacion.desde(clasificacion),
+                    Ventana.desde(ventana), vecinos);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        if (posicion.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No apareces en esta clasificación");
+        }
+        return ResponseEntity.ok(posicion.get());
+    }
+}
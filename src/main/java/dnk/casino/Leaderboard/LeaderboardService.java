@@ -0,0 +1,893 @@
+package dnk.casino.Leaderboard;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import dnk.casino.Config.CalendarioCasino;
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Invalidacion.BusInvalidacion;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import dnk.casino.Leaderboard.ClasificacionPeriodica.Duracion;
+import dnk.casino.Leaderboard.ClasificacionPeriodica.Periodo;
+import dnk.casino.Users.Usuario;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Servicio de clasificaciones en memoria.
+ *
+ * Las clasificaciones totales (victorias, victorias en blackjack y monedas) se
+ * cargan una sola vez al arrancar y después se actualizan de forma incremental
+ * con cada victoria o cambio de saldo, por lo que las consultas no acceden a
+ * MongoDB.
+ *
+ * Las victorias también se cuentan por día y por semana en la zona horaria del
+ * casino. Estas clasificaciones empiezan vacías al cambiar de periodo y un hilo
+ * suma cada dnk.casino.leaderboard.volcado-ms las puntuaciones de este nodo a
+ * la colección leaderboard_periods con $inc, de modo que varios nodos no se
+ * pisan. Después del volcado lee los documentos que han cambiado desde el
+ * anterior, así que las clasificaciones de todos los nodos coinciden tras un
+ * intervalo. Al arrancar se cargan de ahí sin recorrer los usuarios. Si el nodo
+ * se cae, se pierde como mucho el último intervalo.
+ *
+ * También guarda el nombre de cada usuario, para mostrar las clasificaciones y
+ * buscar la posición de un jugador sin leer los usuarios de MongoDB. Cuando
+ * otro nodo modifica o elimina un usuario, el aviso del {@link BusInvalidacion}
+ * hace que se vuelva a leer. Los cambios de victorias y de monedas, que son
+ * muchos, no se publican uno a uno: se anotan los usuarios y el hilo de volcado
+ * los publica juntos, así que las clasificaciones totales de los demás nodos se
+ * ponen al día en un intervalo. Los avisos recibidos también se juntan y se
+ * leen con una sola consulta.
+ *
+ * @author Danikileitor
+ */
+@Service
+public class LeaderboardService {
+
+    /**
+     * Puntuación por la que se ordena una clasificación.
+     */
+    public enum Clasificacion {
+        WINS, BJWINS, COINS;
+
+        /**
+         * Obtiene una clasificación por su nombre, sin distinguir mayúsculas.
+         *
+         * @param nombre el nombre, por ejemplo wins
+         * @return la clasificación
+         * @throws IllegalArgumentException si no existe
+         */
+        public static Clasificacion desde(String nombre) {
+            for (Clasificacion clasificacion : values()) {
+                if (clasificacion.name().equalsIgnoreCase(nombre)) {
+                    return clasificacion;
+                }
+            }
+            throw new IllegalArgumentException("Clasificación desconocida: " + nombre);
+        }
+    }
+
+    /**
+     * Periodo de tiempo que cubre una clasificación. Las monedas son un saldo, no
+     * un contador, así que solo tienen clasificación total.
+     */
+    public enum Ventana {
+        DIA, SEMANA, TOTAL;
+
+        /**
+         * Obtiene una ventana por su nombre, sin distinguir mayúsculas.
+         *
+         * @param nombre el nombre, por ejemplo semana
+         * @return la ventana
+         * @throws IllegalArgumentException si no existe
+         */
+        public static Ventana desde(String nombre) {
+            for (Ventana ventana : values()) {
+                if (ventana.name().equalsIgnoreCase(nombre)) {
+                    return ventana;
+                }
+            }
+            throw new IllegalArgumentException("Ventana desconocida: " + nombre);
+        }
+    }
+
+    /**
+     * Victorias que se han sumado a las clasificaciones pero aún no se han
+     * escrito en MongoDB, como las de la escritura diferida. Se suman a las que
+     * se leen de MongoDB para no perderlas al refrescar un usuario.
+     */
+    public interface VictoriasPendientes {
+
+        /**
+         * Obtiene las victorias pendientes de un usuario.
+         *
+         * @param id ID del usuario
+         * @return victorias sin escribir
+         */
+        long victorias(String id);
+
+        /**
+         * Obtiene las victorias en blackjack pendientes de un usuario.
+         *
+         * @param id ID del usuario
+         * @return victorias en blackjack sin escribir
+         */
+        long victoriasBj(String id);
+    }
+
+    /**
+     * Número máximo de usuarios que se leen en cada consulta al refrescarlos.
+     */
+    private static final int LOTE_REFRESCO = 1000;
+
+    /**
+     * Margen con el que se vuelven a leer las puntuaciones periódicas ya leídas,
+     * para no perder las que otro nodo escribe justo durante la lectura.
+     */
+    private static final long MARGEN_SINCRONIZACION_MS = 1000;
+
+    /**
+     * Incremento de la puntuación de un usuario retirado para un volcado.
+     *
+     * @param periodo el periodo
+     * @param id      el ID del usuario
+     * @param delta   la puntuación sumada
+     */
+    private record Incremento(Periodo periodo, String id, long delta) {
+    }
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Días del casino.
+     */
+    @Autowired
+    private CalendarioCasino calendarioCasino;
+
+    /**
+     * Fábrica del hilo de volcado.
+     */
+    @Autowired
+    private FabricaHilos fabricaHilos;
+
+    /**
+     * Bus de invalidación, con los cambios de usuarios de otros nodos.
+     */
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    /**
+     * Tiempo entre volcados de las clasificaciones periódicas, en milisegundos.
+     */
+    @Value("${dnk.casino.leaderboard.volcado-ms:5000}")
+    private long intervaloVolcado;
+
+    /**
+     * Clasificación por victorias.
+     */
+    private final Leaderboard wins = new Leaderboard();
+
+    /**
+     * Clasificación por victorias en blackjack.
+     */
+    private final Leaderboard bjwins = new Leaderboard();
+
+    /**
+     * Clasificación por monedas.
+     */
+    private final Leaderboard coins = new Leaderboard();
+
+    /**
+     * Versión del saldo de cada usuario de la clasificación por monedas.
+     */
+    private final Map<String, Long> versiones = new ConcurrentHashMap<>();
+
+    /**
+     * Victorias sumadas que aún no están en MongoDB. Sin escritura diferida no hay
+     * ninguna.
+     */
+    private volatile VictoriasPendientes victoriasPendientes = new VictoriasPendientes() {
+        @Override
+        public long victorias(String id) {
+            return 0;
+        }
+
+        @Override
+        public long victoriasBj(String id) {
+            return 0;
+        }
+    };
+
+    /**
+     * Nombre de cada usuario, por su ID.
+     */
+    private final Map<String, String> nombres = new ConcurrentHashMap<>();
+
+    /**
+     * ID de cada usuario, por su nombre normalizado.
+     */
+    private final Map<String, String> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Usuarios cuyas victorias o monedas ha cambiado este nodo desde el último
+     * volcado, que se publican en el bus.
+     */
+    private final Set<String> cambiados = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Usuarios cambiados por otros nodos que falta volver a leer.
+     */
+    private final Set<String> porRefrescar = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Indica si ya hay un refresco pendiente en el hilo de volcado.
+     */
+    private final AtomicBoolean refrescoProgramado = new AtomicBoolean();
+
+    private ClasificacionPeriodica winsDia;
+    private ClasificacionPeriodica winsSemana;
+    private ClasificacionPeriodica bjwinsDia;
+    private ClasificacionPeriodica bjwinsSemana;
+
+    /**
+     * Cerrojo del volcado, que comparten el hilo de volcado y la parada. Es un
+     * ReentrantLock y no synchronized para que un hilo virtual que espera a
+     * MongoDB no ancle su hilo de plataforma.
+     */
+    private final ReentrantLock volcando = new ReentrantLock();
+
+    /**
+     * Hilo de volcado.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Puntuaciones periódicas de volcados que han fallado sin respuesta de
+     * MongoDB.
+     */
+    private Counter inciertas;
+
+    /**
+     * Registra el tamaño de las clasificaciones como métricas, las carga y
+     * arranca el hilo de volcado.
+     */
+    @PostConstruct
+    public void iniciar() {
+        int hoy = calendarioCasino.hoy();
+        winsDia = new ClasificacionPeriodica("wins:dia", Duracion.DIA, hoy);
+        winsSemana = new ClasificacionPeriodica("wins:semana", Duracion.SEMANA, hoy);
+        bjwinsDia = new ClasificacionPeriodica("bjwins:dia", Duracion.DIA, hoy);
+        bjwinsSemana = new ClasificacionPeriodica("bjwins:semana", Duracion.SEMANA, hoy);
+
+        inciertas = Counter.builder("dnk.casino.leaderboard.inciertas")
+                .description("Puntuaciones periódicas de volcados sin respuesta, que no se reintentan")
+                .register(meterRegistry);
+        registrarTamano("wins", wins);
+        registrarTamano("bjwins", bjwins);
+        registrarTamano("coins", coins);
+        for (ClasificacionPeriodica periodica : periodicas()) {
+            Gauge.builder("dnk.casino.leaderboard.tamano", periodica,
+                    p -> p.periodo(calendarioCasino.hoy()).tabla().size())
+                    .tag("clasificacion", periodica.getNombre())
+                    .register(meterRegistry);
+        }
+        cargar();
+        cargarPeriodos();
+
+        executor = Executors.newSingleThreadScheduledExecutor(fabricaHilos.crear("dnk-leaderboard"));
+        executor.scheduleWithFixedDelay(this::volcarSeguro, intervaloVolcado, intervaloVolcado,
+                TimeUnit.MILLISECONDS);
+        busInvalidacion.suscribir(Tipo.USUARIO, invalidacion -> programarRefresco(invalidacion.id()));
+    }
+
+    /**
+     * Detiene el hilo de volcado y vuelca las puntuaciones pendientes.
+     *
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        volcar();
+    }
+
+    /**
+     * Registra el tamaño de una clasificación total como métrica.
+     *
+     * @param nombre la etiqueta de la clasificación
+     * @param tabla  la clasificación
+     */
+    private void registrarTamano(String nombre, Leaderboard tabla) {
+        Gauge.builder("dnk.casino.leaderboard.tamano", tabla, Leaderboard::size)
+                .tag("clasificacion", nombre)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Carga las clasificaciones totales a partir de los usuarios existentes,
+     * leyendo únicamente los campos necesarios.
+     */
+    public void cargar() {
+        wins.clear();
+        bjwins.clear();
+        coins.clear();
+        versiones.clear();
+        Query query = new Query();
+        query.fields().include("username", "wins", "bjwins", "coins", "versionSaldo");
+        try (Stream<Usuario> usuarios = mongoTemplate.stream(query, Usuario.class)) {
+            usuarios.forEach(this::actualizarUsuario);
+        }
+    }
+
+    /**
+     * Carga las clasificaciones periódicas del periodo en curso y del anterior a
+     * partir de sus documentos.
+     */
+    private void cargarPeriodos() {
+        int hoy = calendarioCasino.hoy();
+        for (ClasificacionPeriodica periodica : periodicas()) {
+            periodica.periodo(hoy);
+            for (Periodo periodo : periodica.periodos()) {
+                sincronizar(periodica, periodo);
+            }
+        }
+    }
+
+    /**
+     * Lee las puntuaciones de un periodo que han cambiado desde la última
+     * lectura, usando el índice sobre clasificacion, periodo y actualizado. La
+     * primera vez las lee todas. Cada puntuación es el total de todos los nodos,
+     * al que se suma lo que este nodo aún no ha volcado.
+     *
+     * @param periodica la clasificación periódica
+     * @param periodo   el periodo
+     */
+    private void sincronizar(ClasificacionPeriodica periodica, Periodo periodo) {
+        Criteria criterio = where("clasificacion").is(periodica.getNombre()).and("periodo").is(periodo.numero());
+        long sincronizado = periodo.sincronizado().get();
+        if (sincronizado > 0) {
+            criterio.and("actualizado").gte(new Date(sincronizado - MARGEN_SINCRONIZACION_MS));
+        }
+        Query query = Query.query(criterio);
+        query.fields().include("usuarioId", "puntuacion", "actualizado");
+        try (Stream<PuntuacionPeriodo> puntuaciones = mongoTemplate.stream(query, PuntuacionPeriodo.class)) {
+            puntuaciones.forEach(p -> {
+                periodo.tabla().set(p.getUsuarioId(),
+                        p.getPuntuacion() + periodo.pendientes().getOrDefault(p.getUsuarioId(), 0L));
+                if (p.getActualizado() != null) {
+                    periodo.sincronizado().accumulateAndGet(p.getActualizado().getTime(), Math::max);
+                }
+            });
+        }
+    }
+
+    /**
+     * Añade o actualiza un usuario en las clasificaciones totales con sus
+     * victorias y monedas actuales, y guarda su nombre si se ha leído.
+     *
+     * El usuario es una copia leída de MongoDB y puede llegar después de otra
+     * más reciente: como las victorias solo crecen se queda la mayor, y las
+     * monedas solo se cambian si la versión del saldo es más nueva. A las
+     * victorias leídas se suman las que este nodo aún no ha escrito, que se
+     * consultan después de leer el usuario para no contar dos veces las que se
+     * escriben entre medias.
+     *
+     * @param usuario el usuario a añadir o actualizar
+     */
+    public void actualizarUsuario(Usuario usuario) {
+        if (usuario.getUsername() != null) {
+            String anterior = nombres.put(usuario.getId(), usuario.getUsername());
+            if (anterior != null && !anterior.equals(usuario.getUsername())) {
+                ids.remove(Usuario.normalizar(anterior), usuario.getId());
+            }
+            ids.put(Usuario.normalizar(usuario.getUsername()), usuario.getId());
+        }
+        wins.subir(usuario.getId(), usuario.getWins() + victoriasPendientes.victorias(usuario.getId()));
+        bjwins.subir(usuario.getId(), usuario.getBjwins() + victoriasPendientes.victoriasBj(usuario.getId()));
+        establecerMonedas(usuario.getId(), usuario.getCoins(), usuario.getVersionSaldo());
+    }
+
+    /**
+     * Registra victorias ya escritas en MongoDB: actualiza las clasificaciones
+     * totales con el usuario devuelto y suma las victorias a las del día y la
+     * semana.
+     *
+     * @param usuario     el usuario actualizado
+     * @param victorias   victorias sumadas
+     * @param victoriasBj victorias en blackjack sumadas
+     */
+    public void registrarVictorias(Usuario usuario, long victorias, long victoriasBj) {
+        actualizarUsuario(usuario);
+        cambiados.add(usuario.getId());
+        sumarPeriodos(usuario.getId(), victorias, victoriasBj);
+    }
+
+    /**
+     * Registra las victorias pendientes de escribir que hay que sumar al leer un
+     * usuario.
+     *
+     * @param victoriasPendientes las victorias pendientes
+     */
+    public void setVictoriasPendientes(VictoriasPendientes victoriasPendientes) {
+        this.victoriasPendientes = victoriasPendientes;
+    }
+
+    /**
+     * Añade un usuario recién registrado a las clasificaciones y lo anota para
+     * avisar a los demás nodos.
+     *
+     * @param usuario el usuario guardado
+     */
+    public void registrarUsuario(Usuario usuario) {
+        actualizarUsuario(usuario);
+        cambiados.add(usuario.getId());
+    }
+
+    /**
+     * Anota usuarios cuyas victorias ya se han escrito en MongoDB por otra vía,
+     * como la escritura diferida, para avisar a los demás nodos en el siguiente
+     * volcado.
+     *
+     * @param ids IDs de los usuarios
+     */
+    public void marcarCambiados(Collection<String> ids) {
+        cambiados.addAll(ids);
+    }
+
+    /**
+     * Suma victorias a un usuario en las clasificaciones, sin leer sus victorias
+     * de MongoDB. Un usuario que no estaba se añade con las victorias sumadas,
+     * que es lo correcto para un usuario nuevo. No se anota para los demás
+     * nodos hasta que las victorias se escriben en MongoDB.
+     *
+     * @param id          ID del usuario
+     * @param victorias   victorias a sumar
+     * @param victoriasBj victorias en blackjack a sumar
+     */
+    public void sumarVictorias(String id, long victorias, long victoriasBj) {
+        if (victorias != 0) {
+            wins.add(id, victorias);
+        }
+        if (victoriasBj != 0) {
+            bjwins.add(id, victoriasBj);
+        }
+        sumarPeriodos(id, victorias, victoriasBj);
+    }
+
+    /**
+     * Suma victorias a las clasificaciones del día y la semana.
+     *
+     * @param id          ID del usuario
+     * @param victorias   victorias a sumar
+     * @param victoriasBj victorias en blackjack a sumar
+     */
+    private void sumarPeriodos(String id, long victorias, long victoriasBj) {
+        int hoy = calendarioCasino.hoy();
+        if (victorias != 0) {
+            winsDia.sumar(id, victorias, hoy);
+            winsSemana.sumar(id, victorias, hoy);
+        }
+        if (victoriasBj != 0) {
+            bjwinsDia.sumar(id, victoriasBj, hoy);
+            bjwinsSemana.sumar(id, victoriasBj, hoy);
+        }
+    }
+
+    /**
+     * Establece las monedas de un usuario en la clasificación por monedas, si el
+     * saldo no es más antiguo que el que ya tiene.
+     *
+     * @param id      ID del usuario
+     * @param saldo   monedas del usuario
+     * @param version versión del saldo
+     */
+    public void actualizarMonedas(String id, long saldo, long version) {
+        establecerMonedas(id, saldo, version);
+        cambiados.add(id);
+    }
+
+    /**
+     * Establece las monedas de un usuario si la versión del saldo es más nueva
+     * que la de la clasificación. La comparación y el cambio se hacen dentro del
+     * compute del mapa de versiones, así que dos saldos del mismo usuario no se
+     * cruzan.
+     *
+     * @param id      ID del usuario
+     * @param saldo   monedas del usuario
+     * @param version versión del saldo
+     */
+    private void establecerMonedas(String id, long saldo, long version) {
+        versiones.compute(id, (clave, actual) -> {
+            if (actual != null && actual >= version) {
+                return actual;
+            }
+            coins.set(id, saldo);
+            return version;
+        });
+    }
+
+    /**
+     * Elimina un usuario de las clasificaciones y sus puntuaciones periódicas
+     * guardadas.
+     *
+     * @param id ID del usuario
+     */
+    public void eliminarUsuario(String id) {
+        // Primero los documentos, para que una lectura de otro volcado no lo vuelva a añadir
+        mongoTemplate.remove(Query.query(where("usuarioId").is(id)), PuntuacionPeriodo.class);
+        olvidarUsuario(id);
+    }
+
+    /**
+     * Vuelve a leer de MongoDB unos usuarios en el hilo de volcado. Es para
+     * cambios de este nodo cuyo resultado no se conoce, como un saldo fijado en
+     * un bulkWrite.
+     *
+     * @param ids IDs de los usuarios
+     */
+    public void refrescar(Collection<String> ids) {
+        ids.forEach(this::programarRefresco);
+    }
+
+    /**
+     * Anota un usuario que ha cambiado otro nodo y, si no lo hay ya, programa un
+     * refresco en el hilo de volcado, para no consultar MongoDB en el hilo que
+     * entrega los avisos. Los avisos que llegan mientras tanto se leen en el
+     * mismo refresco.
+     *
+     * @param id ID del usuario
+     */
+    private void programarRefresco(String id) {
+        porRefrescar.add(id);
+        if (refrescoProgramado.compareAndSet(false, true)) {
+            executor.execute(this::refrescarSeguro);
+        }
+    }
+
+    /**
+     * Refresca los usuarios pendientes sin propagar los errores.
+     */
+    private void refrescarSeguro() {
+        try {
+            refrescarUsuarios();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Vuelve a leer de MongoDB los usuarios que han modificado otros nodos, en
+     * lotes de {@value #LOTE_REFRESCO} con una consulta por lote, y quita de las
+     * clasificaciones los que ya no existen. Si una consulta falla, sus usuarios
+     * se vuelven a leer en el siguiente volcado.
+     */
+    private void refrescarUsuarios() {
+        refrescoProgramado.set(false);
+        List<String> lote = new ArrayList<>();
+        for (String id : retirar(porRefrescar)) {
+            lote.add(id);
+            if (lote.size() == LOTE_REFRESCO) {
+                refrescarLote(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        if (!lote.isEmpty()) {
+            refrescarLote(lote);
+        }
+    }
+
+    /**
+     * Vuelve a leer un lote de usuarios de MongoDB.
+     *
+     * @param lote IDs de los usuarios
+     */
+    private void refrescarLote(List<String> lote) {
+        Set<String> ausentes = new HashSet<>(lote);
+        Query query = Query.query(where("_id").in(lote));
+        query.fields().include("username", "wins", "bjwins", "coins", "versionSaldo");
+        try (Stream<Usuario> usuarios = mongoTemplate.stream(query, Usuario.class)) {
+            usuarios.forEach(usuario -> {
+                actualizarUsuario(usuario);
+                ausentes.remove(usuario.getId());
+            });
+        } catch (RuntimeException e) {
+            porRefrescar.addAll(lote);
+            throw e;
+        }
+        ausentes.forEach(this::olvidarUsuario);
+    }
+
+    /**
+     * Retira todos los IDs de un conjunto concurrente. Los que se añaden a la vez
+     * se quedan para la siguiente vez.
+     *
+     * @param conjunto el conjunto
+     * @return los IDs retirados
+     */
+    private static List<String> retirar(Set<String> conjunto) {
+        List<String> retirados = new ArrayList<>();
+        for (Iterator<String> it = conjunto.iterator(); it.hasNext();) {
+            retirados.add(it.next());
+            it.remove();
+        }
+        return retirados;
+    }
+
+    /**
+     * Quita un usuario de las clasificaciones en memoria.
+     *
+     * @param id ID del usuario
+     */
+    private void olvidarUsuario(String id) {
+        wins.remove(id);
+        bjwins.remove(id);
+        versiones.compute(id, (clave, actual) -> {
+            coins.remove(id);
+            return null;
+        });
+        String nombre = nombres.remove(id);
+        if (nombre != null) {
+            ids.remove(Usuario.normalizar(nombre), id);
+        }
+        for (ClasificacionPeriodica periodica : periodicas()) {
+            periodica.eliminar(id);
+        }
+    }
+
+    /**
+     * Obtiene los N usuarios con más victorias.
+     *
+     * @param n número de usuarios
+     * @return lista de entradas de mayor a menor número de victorias
+     */
+    public List<Leaderboard.Entrada> getTopWinners(int n) {
+        return wins.top(n);
+    }
+
+    /**
+     * Obtiene los N usuarios con más victorias en blackjack.
+     *
+     * @param n número de usuarios
+     * @return lista de entradas de mayor a menor número de victorias en blackjack
+     */
+    public List<Leaderboard.Entrada> getTopBJWinners(int n) {
+        return bjwins.top(n);
+    }
+
+    /**
+     * Obtiene los N primeros usuarios de una clasificación en una ventana de
+     * tiempo.
+     *
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param n             número de usuarios
+     * @return lista de entradas de mayor a menor puntuación
+     * @throws IllegalArgumentException si la clasificación no tiene esa ventana
+     */
+    public List<Leaderboard.Entrada> getTop(Clasificacion clasificacion, Ventana ventana, int n) {
+        return tabla(clasificacion, ventana).top(n);
+    }
+
+    /**
+     * Obtiene la posición de un usuario en una clasificación y las entradas que
+     * tiene por encima y por debajo, en O(log n).
+     *
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param id            ID del usuario
+     * @param vecinos       número de entradas a cada lado del usuario
+     * @return el vecindario, o un Optional vacío si el usuario no está en la
+     *         clasificación
+     * @throws IllegalArgumentException si la clasificación no tiene esa ventana
+     */
+    public Optional<Leaderboard.Vecindario> getVecindario(Clasificacion clasificacion, Ventana ventana, String id,
+            int vecinos) {
+        return tabla(clasificacion, ventana).alrededor(id, vecinos);
+    }
+
+    /**
+     * Obtiene el nombre de un usuario de las clasificaciones.
+     *
+     * @param id ID del usuario
+     * @return el nombre, o null si no se conoce
+     */
+    public String getNombre(String id) {
+        return nombres.get(id);
+    }
+
+    /**
+     * Busca el ID de un usuario de las clasificaciones por su nombre, sin
+     * distinguir mayúsculas.
+     *
+     * @param username nombre del usuario
+     * @return el ID, o un Optional vacío si no se conoce
+     */
+    public Optional<String> buscarId(String username) {
+        return username != null ? Optional.ofNullable(ids.get(Usuario.normalizar(username))) : Optional.empty();
+    }
+
+    /**
+     * Obtiene la tabla de una clasificación en una ventana de tiempo, empezando
+     * un periodo nuevo si ha cambiado el día o la semana.
+     *
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @return la tabla
+     * @throws IllegalArgumentException si la clasificación no tiene esa ventana
+     */
+    private Leaderboard tabla(Clasificacion clasificacion, Ventana ventana) {
+        if (ventana == Ventana.TOTAL) {
+            return switch (clasificacion) {
+                case WINS -> wins;
+                case BJWINS -> bjwins;
+                case COINS -> coins;
+            };
+        }
+        ClasificacionPeriodica periodica = switch (clasificacion) {
+            case WINS -> ventana == Ventana.DIA ? winsDia : winsSemana;
+            case BJWINS -> ventana == Ventana.DIA ? bjwinsDia : bjwinsSemana;
+            case COINS -> throw new IllegalArgumentException("Las monedas solo tienen clasificación total");
+        };
+        return periodica.periodo(calendarioCasino.hoy()).tabla();
+    }
+
+    /**
+     * Obtiene las clasificaciones periódicas.
+     *
+     * @return las clasificaciones periódicas
+     */
+    private List<ClasificacionPeriodica> periodicas() {
+        return List.of(winsDia, winsSemana, bjwinsDia, bjwinsSemana);
+    }
+
+    /**
+     * Vuelca las puntuaciones pendientes sin propagar los errores, para que el
+     * hilo programado siga funcionando.
+     */
+    private void volcarSeguro() {
+        try {
+            volcar();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Suma en MongoDB las puntuaciones periódicas de este nodo desde el último
+     * volcado, con un único bulkWrite de upserts con $inc, y después lee las que
+     * han cambiado en otros nodos. Si el bulkWrite falla, los incrementos que no
+     * se han aplicado se vuelven a acumular para el siguiente volcado; si falla
+     * sin respuesta, no se sabe cuáles se han aplicado y no se reintentan. Por
+     * último publica los usuarios que ha cambiado este nodo y vuelve a leer los
+     * que no se pudieron refrescar.
+     */
+    private void volcar() {
+        volcando.lock();
+        try {
+            // Cambia de periodo si hace falta, para no dejar sin volcar el que termina
+            int hoy = calendarioCasino.hoy();
+            for (ClasificacionPeriodica periodica : periodicas()) {
+                periodica.periodo(hoy);
+            }
+            escribir();
+            for (ClasificacionPeriodica periodica : periodicas()) {
+                for (Periodo periodo : periodica.periodos()) {
+                    sincronizar(periodica, periodo);
+                }
+            }
+            List<String> publicar = retirar(cambiados);
+            if (!publicar.isEmpty()) {
+                busInvalidacion.publicar(Tipo.USUARIO, publicar);
+            }
+            if (!porRefrescar.isEmpty()) {
+                refrescarUsuarios();
+            }
+        } finally {
+            volcando.unlock();
+        }
+    }
+
+    /**
+     * Escribe los incrementos pendientes de todas las clasificaciones periódicas.
+     */
+    private void escribir() {
+        List<Incremento> incrementos = new ArrayList<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PuntuacionPeriodo.class);
+        for (ClasificacionPeriodica periodica : periodicas()) {
+            for (Periodo periodo : periodica.periodos()) {
+                Date expira = expira(periodica.getDuracion(), periodo.numero());
+                ClasificacionPeriodica.retirarPendientes(periodo).forEach((id, delta) -> {
+                    incrementos.add(new Incremento(periodo, id, delta));
+                    bulk.upsert(Query.query(where("_id").is(PuntuacionPeriodo.id(periodica.getNombre(),
+                            periodo.numero(), id))), new Update()
+                            .inc("puntuacion", delta)
+                            .currentDate("actualizado")
+                            .setOnInsert("clasificacion", periodica.getNombre())
+                            .setOnInsert("periodo", periodo.numero())
+                            .setOnInsert("usuarioId", id)
+                            .setOnInsert("expira", expira));
+                });
+            }
+        }
+        if (incrementos.isEmpty()) {
+            return;
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // En un lote no ordenado el resto de operaciones sí se han aplicado
+            e.getErrors().forEach(error -> devolver(incrementos.get(error.getIndex())));
+            System.out.println("Error al escribir " + e.getErrors().size()
+                    + " puntuaciones periódicas, se reintentarán");
+        } catch (RuntimeException e) {
+            // Sin respuesta del servidor no se sabe si se han aplicado, y reintentarlos
+            // podría sumarlos dos veces: se dan por escritos y se cuentan aparte
+            incrementos.forEach(incremento -> inciertas.increment(incremento.delta()));
+            System.out.println("Error al escribir las clasificaciones periódicas, no se reintentarán: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a acumular un incremento que no se ha podido escribir.
+     *
+     * @param incremento el incremento
+     */
+    private static void devolver(Incremento incremento) {
+        incremento.periodo().pendientes().merge(incremento.id(), incremento.delta(), Long::sum);
+    }
+
+    /**
+     * Calcula cuándo deja de hacer falta un periodo: al terminar el periodo
+     * siguiente, que es el último en el que se carga como anterior.
+     *
+     * @param duracion la duración de los periodos
+     * @param periodo  el número del periodo
+     * @return la fecha de expiración
+     */
+    private Date expira(Duracion duracion, int periodo) {
+        long dia = duracion.primerDia(periodo) + 2L * duracion.getDias();
+        return Date.from(LocalDate.ofEpochDay(dia).atStartOfDay(calendarioCasino.getZona()).toInstant());
+    }
+}
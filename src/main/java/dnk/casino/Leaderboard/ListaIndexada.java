@@ -0,0 +1,231 @@
+package dnk.casino.Leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lista de saltos indexable: una lista de saltos ordenada en la que cada enlace
+ * guarda cuántos nodos salta, de modo que insertar, eliminar, obtener la
+ * posición de un elemento y obtener el elemento de una posición cuestan
+ * O(log n).
+ *
+ * No es segura para hilos: {@link Leaderboard} la protege con un cerrojo de
+ * lectura y escritura.
+ *
+ * @param <T> el tipo de los elementos, ordenados por su orden natural
+ * @author Danikileitor
+ */
+class ListaIndexada<T extends Comparable<T>> {
+
+    /**
+     * Número máximo de niveles, suficiente para 4^16 elementos.
+     */
+    private static final int MAX_NIVELES = 16;
+
+    /**
+     * Nodo de la lista.
+     */
+    private static final class Nodo<T> {
+
+        /**
+         * Elemento del nodo, o null en la cabecera.
+         */
+        final T valor;
+
+        /**
+         * Siguiente nodo en cada nivel.
+         */
+        final Nodo<T>[] siguiente;
+
+        /**
+         * Nodos que salta el enlace de cada nivel, contando el de destino. En el
+         * último nodo de un nivel, los que quedan hasta el final.
+         */
+        final int[] salto;
+
+        @SuppressWarnings("unchecked")
+        Nodo(T valor, int niveles) {
+            this.valor = valor;
+            this.siguiente = new Nodo[niveles];
+            this.salto = new int[niveles];
+        }
+    }
+
+    /**
+     * Cabecera, con todos los niveles.
+     */
+    private final Nodo<T> cabecera = new Nodo<>(null, MAX_NIVELES);
+
+    /**
+     * Niveles en uso.
+     */
+    private int niveles = 1;
+
+    /**
+     * Número de elementos.
+     */
+    private int tamano;
+
+    /**
+     * Inserta un elemento.
+     *
+     * @param valor el elemento
+     */
+    void add(T valor) {
+        @SuppressWarnings("unchecked")
+        Nodo<T>[] anteriores = new Nodo[MAX_NIVELES];
+        int[] posiciones = new int[MAX_NIVELES];
+        Nodo<T> x = cabecera;
+        for (int i = niveles - 1; i >= 0; i--) {
+            posiciones[i] = i == niveles - 1 ? 0 : posiciones[i + 1];
+            while (x.siguiente[i] != null && x.siguiente[i].valor.compareTo(valor) < 0) {
+                posiciones[i] += x.salto[i];
+                x = x.siguiente[i];
+            }
+            anteriores[i] = x;
+        }
+
+        int nivel = nivelAleatorio();
+        if (nivel > niveles) {
+            for (int i = niveles; i < nivel; i++) {
+                posiciones[i] = 0;
+                anteriores[i] = cabecera;
+                cabecera.salto[i] = tamano;
+            }
+            niveles = nivel;
+        }
+
+        Nodo<T> nodo = new Nodo<>(valor, nivel);
+        for (int i = 0; i < nivel; i++) {
+            nodo.siguiente[i] = anteriores[i].siguiente[i];
+            anteriores[i].siguiente[i] = nodo;
+            // posiciones[0] - posiciones[i] son los nodos entre anteriores[i] y el nuevo
+            nodo.salto[i] = anteriores[i].salto[i] - (posiciones[0] - posiciones[i]);
+            anteriores[i].salto[i] = posiciones[0] - posiciones[i] + 1;
+        }
+        for (int i = nivel; i < niveles; i++) {
+            anteriores[i].salto[i]++;
+        }
+        tamano++;
+    }
+
+    /**
+     * Elimina un elemento.
+     *
+     * @param valor el elemento
+     * @return true si estaba en la lista, false en caso contrario
+     */
+    boolean remove(T valor) {
+        @SuppressWarnings("unchecked")
+        Nodo<T>[] anteriores = new Nodo[MAX_NIVELES];
+        Nodo<T> x = cabecera;
+        for (int i = niveles - 1; i >= 0; i--) {
+            while (x.siguiente[i] != null && x.siguiente[i].valor.compareTo(valor) < 0) {
+                x = x.siguiente[i];
+            }
+            anteriores[i] = x;
+        }
+        x = x.siguiente[0];
+        if (x == null || x.valor.compareTo(valor) != 0) {
+            return false;
+        }
+
+        for (int i = 0; i < niveles; i++) {
+            if (anteriores[i].siguiente[i] == x) {
+                anteriores[i].salto[i] += x.salto[i] - 1;
+                anteriores[i].siguiente[i] = x.siguiente[i];
+            } else {
+                anteriores[i].salto[i]--;
+            }
+        }
+        while (niveles > 1 && cabecera.siguiente[niveles - 1] == null) {
+            niveles--;
+        }
+        tamano--;
+        return true;
+    }
+
+    /**
+     * Obtiene la posición de un elemento.
+     *
+     * @param valor el elemento
+     * @return la posición, empezando por 1, o 0 si no está en la lista
+     */
+    int posicion(T valor) {
+        int posicion = 0;
+        Nodo<T> x = cabecera;
+        for (int i = niveles - 1; i >= 0; i--) {
+            while (x.siguiente[i] != null && x.siguiente[i].valor.compareTo(valor) <= 0) {
+                posicion += x.salto[i];
+                x = x.siguiente[i];
+            }
+            if (x != cabecera && x.valor.compareTo(valor) == 0) {
+                return posicion;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Obtiene los elementos a partir de una posición.
+     *
+     * @param desde la primera posición, empezando por 1
+     * @param n     número máximo de elementos
+     * @return los elementos, en orden
+     */
+    List<T> desde(int desde, int n) {
+        List<T> resultado = new ArrayList<>(Math.max(0, Math.min(n, tamano - desde + 1)));
+        if (desde < 1 || desde > tamano) {
+            return resultado;
+        }
+        int posicion = 0;
+        Nodo<T> x = cabecera;
+        for (int i = niveles - 1; i >= 0; i--) {
+            while (x.siguiente[i] != null && posicion + x.salto[i] <= desde) {
+                posicion += x.salto[i];
+                x = x.siguiente[i];
+            }
+        }
+        while (x != null && resultado.size() < n) {
+            resultado.add(x.valor);
+            x = x.siguiente[0];
+        }
+        return resultado;
+    }
+
+    /**
+     * Vacía la lista.
+     */
+    void clear() {
+        for (int i = 0; i < MAX_NIVELES; i++) {
+            cabecera.siguiente[i] = null;
+            cabecera.salto[i] = 0;
+        }
+        niveles = 1;
+        tamano = 0;
+    }
+
+    /**
+     * Obtiene el número de elementos.
+     *
+     * @return número de elementos
+     */
+    int size() {
+        return tamano;
+    }
+
+    /**
+     * Elige el número de niveles de un nodo nuevo: cada nivel adicional con
+     * probabilidad 1/4.
+     *
+     * @return el número de niveles
+     */
+    private static int nivelAleatorio() {
+        int nivel = 1;
+        while (nivel < MAX_NIVELES && (ThreadLocalRandom.current().nextInt() & 3) == 0) {
+            nivel++;
+        }
+        return nivel;
+    }
+}
@@ -0,0 +1,15 @@
+package dnk.casino.Leaderboard;
+
+import java.util.List;
+
+/**
+ * Posición de un jugador en una clasificación, con los jugadores que tiene justo
+ * por encima y por debajo.
+ *
+ * @param posicion posición del jugador, empezando por 1
+ * @param total    número de jugadores en la clasificación
+ * @param puestos  puestos consecutivos alrededor del jugador, incluido el suyo
+ * @author Danikileitor
+ */
+public record PosicionClasificacion(int posicion, int total, List<PuestoClasificacion> puestos) {
+}
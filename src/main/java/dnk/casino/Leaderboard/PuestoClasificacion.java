@@ -0,0 +1,13 @@
+package dnk.casino.Leaderboard;
+
+/**
+ * Puesto de un usuario en una clasificación, con su nombre para mostrarlo.
+ *
+ * @param posicion   posición del usuario, empezando por 1
+ * @param id         ID del usuario
+ * @param username   nombre del usuario
+ * @param puntuacion puntuación del usuario en la clasificación
+ * @author Danikileitor
+ */
+public record PuestoClasificacion(int posicion, String id, String username, long puntuacion) {
+}
@@ -0,0 +1,131 @@
+package dnk.casino.Leaderboard;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Puntuación de un usuario en un periodo de una clasificación periódica (por
+ * ejemplo, sus victorias de un día).
+ *
+ * Todos los nodos suman sus puntuaciones al mismo documento con $inc, así que
+ * guarda el total del periodo. Al arrancar se cargan solo los documentos de los
+ * periodos vigentes, así que no hay que recorrer los usuarios, y después cada
+ * nodo lee los que han cambiado según su fecha de actualización. La colección
+ * tiene un índice TTL sobre expira, que elimina los periodos que ya no se
+ * consultan.
+ *
+ * @author Danikileitor
+ */
+@Document(collection = "leaderboard_periods")
+public class PuntuacionPeriodo {
+
+    /**
+     * Clasificación, periodo e ID del usuario, separados por dos puntos.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Nombre de la clasificación periódica, por ejemplo wins:dia.
+     */
+    private String clasificacion;
+
+    /**
+     * Número del periodo: día o semana desde la época.
+     */
+    private int periodo;
+
+    /**
+     * ID del usuario.
+     */
+    private String usuarioId;
+
+    /**
+     * Puntuación del usuario en el periodo.
+     */
+    private long puntuacion;
+
+    /**
+     * Fecha a partir de la que se puede eliminar el documento.
+     */
+    private Date expira;
+
+    /**
+     * Fecha de la última actualización, puesta por el servidor de MongoDB.
+     */
+    private Date actualizado;
+
+    /**
+     * Constructor vacío.
+     */
+    public PuntuacionPeriodo() {
+    }
+
+    /**
+     * Construye el _id del documento de un usuario en un periodo.
+     *
+     * @param clasificacion el nombre de la clasificación periódica
+     * @param periodo       el número del periodo
+     * @param usuarioId     el ID del usuario
+     * @return el _id
+     */
+    public static String id(String clasificacion, int periodo, String usuarioId) {
+        return clasificacion + ":" + periodo + ":" + usuarioId;
+    }
+
+    /**
+     * Obtiene el nombre de la clasificación periódica.
+     *
+     * @return el nombre
+     */
+    public String getClasificacion() {
+        return clasificacion;
+    }
+
+    /**
+     * Obtiene el número del periodo.
+     *
+     * @return el número del periodo
+     */
+    public int getPeriodo() {
+        return periodo;
+    }
+
+    /**
+     * Obtiene el ID del usuario.
+     *
+     * @return el ID del usuario
+     */
+    public String getUsuarioId() {
+        return usuarioId;
+    }
+
+    /**
+     * Obtiene la puntuación del usuario en el periodo.
+     *
+     * @return la puntuación
+     */
+    public long getPuntuacion() {
+        return puntuacion;
+    }
+
+    /**
+     * Obtiene la fecha a partir de la que se puede eliminar el documento.
+     *
+     * @return la fecha de expiración
+     */
+    public Date getExpira() {
+        return expira;
+    }
+
+    /**
+     * Obtiene la fecha de la última actualización.
+     *
+     * @return la fecha de actualización
+     */
+    public Date getActualizado() {
+        return actualizado;
+    }
+}
@@ -0,0 +1,383 @@
+package dnk.casino.Limites;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dnk.casino.Users.Usuario;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Limita las peticiones a los endpoints de autenticación, que gastan BCrypt o
+ * envían correos.
+ *
+ * Cada endpoint tiene un cubo de tokens por IP y otro por nombre de usuario o
+ * correo electrónico, guardados en una {@link TablaGcra}; el restablecimiento
+ * de contraseña solo se limita por IP, porque su clave es el propio token. Los límites se
+ * configuran como "peticiones/periodo", por ejemplo 10/1m: se permite una
+ * ráfaga de 10 peticiones y después una cada 6 segundos. Un límite de 0
+ * desactiva esa comprobación.
+ *
+ * Las comprobaciones se hacen en memoria, sin acceder a MongoDB, y los rechazos
+ * se cuentan en dnk.casino.limites.rechazos, etiquetado por endpoint y
+ * dimensión.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class LimitadorPeticiones {
+
+    /**
+     * Endpoints limitados.
+     */
+    public enum Endpoint {
+        LOGIN("username"), REGISTRO("username", "email"), OLVIDAR_CONTRASENA("email"), RESTABLECER_CONTRASENA;
+
+        /**
+         * Campos del cuerpo que identifican al usuario.
+         */
+        private final String[] campos;
+
+        /**
+         * Valor de la etiqueta del endpoint.
+         */
+        private final String etiqueta = name().toLowerCase(Locale.ROOT);
+
+        Endpoint(String... campos) {
+            this.campos = campos;
+        }
+    }
+
+    /**
+     * Dimensiones por las que se limita cada endpoint.
+     */
+    public enum Dimension {
+        IP, CLAVE;
+
+        /**
+         * Valor de la etiqueta de la dimensión.
+         */
+        private final String etiqueta = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Tamaño máximo del cuerpo de las peticiones limitadas, en bytes.
+     */
+    public static final int MAX_CUERPO = 16 * 1024;
+
+    /**
+     * Límite de logins por IP.
+     */
+    @Value("${dnk.casino.limites.login.ip:30/1m}")
+    private String loginIp;
+
+    /**
+     * Límite de logins por nombre de usuario.
+     */
+    @Value("${dnk.casino.limites.login.clave:10/1m}")
+    private String loginClave;
+
+    /**
+     * Límite de registros por IP.
+     */
+    @Value("${dnk.casino.limites.registro.ip:10/1h}")
+    private String registroIp;
+
+    /**
+     * Límite de registros por nombre de usuario y por correo electrónico.
+     */
+    @Value("${dnk.casino.limites.registro.clave:5/1h}")
+    private String registroClave;
+
+    /**
+     * Límite de correos de restablecimiento de contraseña por IP.
+     */
+    @Value("${dnk.casino.limites.olvidar-contrasena.ip:10/1h}")
+    private String olvidarIp;
+
+    /**
+     * Límite de correos de restablecimiento de contraseña por correo
+     * electrónico.
+     */
+    @Value("${dnk.casino.limites.olvidar-contrasena.clave:3/1h}")
+    private String olvidarClave;
+
+    /**
+     * Límite de restablecimientos de contraseña por IP.
+     */
+    @Value("${dnk.casino.limites.restablecer-contrasena.ip:20/1h}")
+    private String restablecerIp;
+
+    /**
+     * Número máximo de cubos en memoria.
+     */
+    @Value("${dnk.casino.limites.capacidad:65536}")
+    private int capacidad;
+
+    /**
+     * Número de franjas de la tabla de cubos.
+     */
+    @Value("${dnk.casino.limites.franjas:64}")
+    private int numFranjas;
+
+    /**
+     * Conversor de JSON.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Límite de un endpoint en una dimensión.
+     *
+     * @param intervalo  milisegundos entre tokens
+     * @param tolerancia ráfaga permitida, en milisegundos
+     */
+    private record Limite(long intervalo, long tolerancia) {
+    }
+
+    /**
+     * Límites indexados por los ordinales del endpoint y de la dimensión; null si
+     * la comprobación está desactivada.
+     */
+    private final Limite[][] limites = new Limite[Endpoint.values().length][Dimension.values().length];
+
+    /**
+     * Contadores de rechazos indexados por los ordinales del endpoint y de la
+     * dimensión.
+     */
+    private final Counter[][] rechazos = new Counter[Endpoint.values().length][Dimension.values().length];
+
+    /**
+     * Semilla del hash de las claves, distinta en cada arranque para que no se
+     * puedan buscar colisiones a propósito.
+     */
+    private final long semilla = new SecureRandom().nextLong();
+
+    /**
+     * Cubos de tokens.
+     */
+    private TablaGcra tabla;
+
+    /**
+     * Lee los límites, crea la tabla de cubos y registra las métricas.
+     */
+    @PostConstruct
+    public void iniciar() {
+        configurar(Endpoint.LOGIN, loginIp, loginClave);
+        configurar(Endpoint.REGISTRO, registroIp, registroClave);
+        configurar(Endpoint.OLVIDAR_CONTRASENA, olvidarIp, olvidarClave);
+        configurar(Endpoint.RESTABLECER_CONTRASENA, restablecerIp, "0/1h");
+        tabla = new TablaGcra(capacidad, numFranjas);
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (Dimension dimension : Dimension.values()) {
+                rechazos[endpoint.ordinal()][dimension.ordinal()] = Counter.builder("dnk.casino.limites.rechazos")
+                        .description("Peticiones rechazadas por superar el límite")
+                        .tag("endpoint", endpoint.etiqueta)
+                        .tag("dimension", dimension.etiqueta)
+                        .register(meterRegistry);
+            }
+        }
+        FunctionCounter.builder("dnk.casino.limites.desalojos", tabla, TablaGcra::getDesalojos)
+                .description("Cubos de tokens desalojados por falta de sitio")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Configura los límites de un endpoint.
+     *
+     * @param endpoint el endpoint
+     * @param ip       el límite por IP
+     * @param clave    el límite por nombre de usuario o correo electrónico
+     */
+    private void configurar(Endpoint endpoint, String ip, String clave) {
+        limites[endpoint.ordinal()][Dimension.IP.ordinal()] = parsear(ip);
+        limites[endpoint.ordinal()][Dimension.CLAVE.ordinal()] = parsear(clave);
+    }
+
+    /**
+     * Convierte un límite "peticiones/periodo" en intervalo y tolerancia.
+     *
+     * @param limite el límite, por ejemplo 10/1m
+     * @return el límite, o null si está desactivado
+     */
+    private static Limite parsear(String limite) {
+        String[] partes = limite.trim().split("/", 2);
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("Límite no válido, se espera peticiones/periodo: " + limite);
+        }
+        int peticiones = Integer.parseInt(partes[0].trim());
+        if (peticiones <= 0) {
+            return null;
+        }
+        Duration periodo = DurationStyle.detectAndParse(partes[1].trim());
+        long intervalo = Math.max(1, periodo.toMillis() / peticiones);
+        return new Limite(intervalo, intervalo * (peticiones - 1));
+    }
+
+    /**
+     * Obtiene el endpoint limitado de una ruta.
+     *
+     * @param ruta la ruta de la petición, sin el contexto de la aplicación
+     * @return el endpoint, o null si la ruta no está limitada
+     */
+    public Endpoint endpoint(String ruta) {
+        if (ruta.startsWith("/api/auth/restablecer-contrasena/")) {
+            return Endpoint.RESTABLECER_CONTRASENA;
+        }
+        return switch (ruta) {
+            case "/api/auth/login", "/api/auth/admin/login" -> Endpoint.LOGIN;
+            case "/api/auth/register" -> Endpoint.REGISTRO;
+            case "/api/auth/olvidar-contrasena" -> Endpoint.OLVIDAR_CONTRASENA;
+            default -> null;
+        };
+    }
+
+    /**
+     * Comprueba y consume el límite por IP de una petición.
+     *
+     * @param endpoint el endpoint
+     * @param ip       la IP del cliente
+     * @return 0 si se permite, o los milisegundos que faltan para que se permita
+     */
+    public long comprobarIp(Endpoint endpoint, String ip) {
+        return comprobar(endpoint, Dimension.IP, ip);
+    }
+
+    /**
+     * Indica si un endpoint se limita también por el contenido del cuerpo.
+     *
+     * @param endpoint el endpoint
+     * @return true si hay que leer el cuerpo antes de dejar pasar la petición
+     */
+    public boolean limitaCuerpo(Endpoint endpoint) {
+        return limites[endpoint.ordinal()][Dimension.CLAVE.ordinal()] != null;
+    }
+
+    /**
+     * Comprueba y consume los límites por nombre de usuario o correo electrónico
+     * de una petición, a partir de su cuerpo JSON. Primero se consultan todos los
+     * cubos y solo si todos lo permiten se consumen, para que una petición
+     * rechazada por el correo no gaste el cubo del nombre de usuario.
+     *
+     * @param endpoint el endpoint
+     * @param cuerpo   el cuerpo de la petición
+     * @return 0 si se permite, o los milisegundos que faltan para que se permita
+     */
+    public long comprobarCuerpo(Endpoint endpoint, byte[] cuerpo) {
+        List<String> claves = claves(endpoint, cuerpo);
+        Limite limite = limites[endpoint.ordinal()][Dimension.CLAVE.ordinal()];
+        for (String clave : claves) {
+            long espera = tabla.consultar(hash(endpoint, Dimension.CLAVE, clave), limite.tolerancia());
+            if (espera > 0) {
+                rechazos[endpoint.ordinal()][Dimension.CLAVE.ordinal()].increment();
+                return espera;
+            }
+        }
+        for (String clave : claves) {
+            // Otra petición puede haber gastado el cubo después de consultarlo
+            long espera = comprobar(endpoint, Dimension.CLAVE, clave);
+            if (espera > 0) {
+                return espera;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Comprueba y consume un límite.
+     *
+     * @param endpoint  el endpoint
+     * @param dimension la dimensión
+     * @param clave     la IP, el nombre de usuario o el correo electrónico
+     * @return 0 si se permite, o los milisegundos que faltan para que se permita
+     */
+    private long comprobar(Endpoint endpoint, Dimension dimension, String clave) {
+        Limite limite = limites[endpoint.ordinal()][dimension.ordinal()];
+        if (limite == null || clave == null) {
+            return 0;
+        }
+        long espera = tabla.adquirir(hash(endpoint, dimension, clave), limite.intervalo(), limite.tolerancia());
+        if (espera > 0) {
+            rechazos[endpoint.ordinal()][dimension.ordinal()].increment();
+        }
+        return espera;
+    }
+
+    /**
+     * Extrae del cuerpo JSON los nombres de usuario o correos electrónicos por
+     * los que se limita un endpoint.
+     *
+     * @param endpoint el endpoint
+     * @param cuerpo   el cuerpo de la petición
+     * @return las claves normalizadas; vacía si el cuerpo no es JSON válido
+     */
+    private List<String> claves(Endpoint endpoint, byte[] cuerpo) {
+        if (!limitaCuerpo(endpoint) || cuerpo.length == 0) {
+            return List.of();
+        }
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(cuerpo);
+        } catch (IOException e) {
+            // El controlador responderá con su propio error
+            return List.of();
+        }
+        List<String> claves = new ArrayList<>(endpoint.campos.length);
+        for (String campo : endpoint.campos) {
+            JsonNode valor = json != null ? json.get(campo) : null;
+            if (valor != null && valor.isTextual()) {
+                claves.add(campo + ":" + Usuario.normalizar(valor.asText()));
+            }
+        }
+        return claves;
+    }
+
+    /**
+     * Calcula el hash de 64 bits de una clave con la semilla de este arranque.
+     *
+     * @param endpoint  el endpoint
+     * @param dimension la dimensión
+     * @param clave     la clave
+     * @return el hash
+     */
+    private long hash(Endpoint endpoint, Dimension dimension, String clave) {
+        long h = semilla ^ (endpoint.ordinal() * 31L + dimension.ordinal());
+        for (int i = 0; i < clave.length(); i++) {
+            h = (h ^ clave.charAt(i)) * 0x100000001b3L;
+        }
+        // Mezcla final de splitmix64 para repartir todos los bits
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Convierte una espera en el valor de la cabecera Retry-After.
+     *
+     * @param espera la espera, en milisegundos
+     * @return la espera, en segundos redondeados hacia arriba
+     */
+    public static long segundos(long espera) {
+        return Math.max(1, (espera + 999) / 1000);
+    }
+}
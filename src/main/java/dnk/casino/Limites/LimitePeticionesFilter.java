@@ -0,0 +1,224 @@
+package dnk.casino.Limites;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dnk.casino.Error.ErrorResponse;
+import dnk.casino.Limites.LimitadorPeticiones.Endpoint;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Filtro que rechaza con 429 las peticiones de autenticación que superan su
+ * límite, antes de que lleguen a los controladores y a MongoDB.
+ *
+ * Primero se comprueba el límite por IP, que no necesita leer el cuerpo. Si
+ * pasa, se lee el cuerpo para comprobar el límite por nombre de usuario o
+ * correo electrónico y se vuelve a ofrecer al controlador.
+ *
+ * @author Danikileitor
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@Component
+public class LimitePeticionesFilter extends OncePerRequestFilter {
+
+    /**
+     * Limitador de peticiones.
+     */
+    @Autowired
+    private LimitadorPeticiones limitador;
+
+    /**
+     * Conversor de JSON.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Solo se filtran los POST a los endpoints limitados.
+     *
+     * @param request la solicitud HTTP
+     * @return true si la solicitud no se limita
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || limitador.endpoint(ruta(request)) == null;
+    }
+
+    /**
+     * Comprueba los límites de la solicitud.
+     *
+     * @param request     la solicitud HTTP
+     * @param response    la respuesta HTTP
+     * @param filterChain la cadena de filtros
+     * @throws ServletException si ocurre un error en el filtro
+     * @throws IOException      si ocurre un error de E/S
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Endpoint endpoint = limitador.endpoint(ruta(request));
+
+        long espera = limitador.comprobarIp(endpoint, request.getRemoteAddr());
+        if (espera > 0) {
+            rechazar(response, espera);
+            return;
+        }
+
+        if (!limitador.limitaCuerpo(endpoint)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        byte[] cuerpo = request.getInputStream().readNBytes(LimitadorPeticiones.MAX_CUERPO + 1);
+        if (cuerpo.length > LimitadorPeticiones.MAX_CUERPO) {
+            escribir(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    new ErrorResponse("Solicitud demasiado grande", "El cuerpo no puede superar "
+                            + LimitadorPeticiones.MAX_CUERPO + " bytes"));
+            return;
+        }
+
+        espera = limitador.comprobarCuerpo(endpoint, cuerpo);
+        if (espera > 0) {
+            rechazar(response, espera);
+            return;
+        }
+
+        filterChain.doFilter(new CuerpoLeido(request, cuerpo), response);
+    }
+
+    /**
+     * Obtiene la ruta de la solicitud sin el contexto de la aplicación.
+     *
+     * @param request la solicitud HTTP
+     * @return la ruta
+     */
+    private static String ruta(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    /**
+     * Responde con 429 y la cabecera Retry-After.
+     *
+     * @param response la respuesta HTTP
+     * @param espera   los milisegundos que faltan para que se permita
+     * @throws IOException si ocurre un error de E/S
+     */
+    private void rechazar(HttpServletResponse response, long espera) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(LimitadorPeticiones.segundos(espera)));
+        escribir(response, HttpStatus.TOO_MANY_REQUESTS,
+                new ErrorResponse("Demasiadas solicitudes", "Inténtalo de nuevo más tarde"));
+    }
+
+    /**
+     * Escribe una respuesta de error en JSON.
+     *
+     * @param response la respuesta HTTP
+     * @param estado   el estado HTTP
+     * @param error    el error
+     * @throws IOException si ocurre un error de E/S
+     */
+    private void escribir(HttpServletResponse response, HttpStatus estado, ErrorResponse error) throws IOException {
+        response.setStatus(estado.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+
+    /**
+     * Solicitud cuyo cuerpo ya se ha leído y se vuelve a ofrecer desde memoria.
+     */
+    private static class CuerpoLeido extends HttpServletRequestWrapper {
+
+        /**
+         * El cuerpo leído.
+         */
+        private final byte[] cuerpo;
+
+        /**
+         * Crea la solicitud.
+         *
+         * @param request la solicitud original
+         * @param cuerpo  el cuerpo leído
+         */
+        CuerpoLeido(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // Todo el cuerpo está ya en memoria: se avisa de que hay datos y de que
+                    // se han leído todos
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException {
+            String codificacion = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    codificacion != null ? codificacion : StandardCharsets.UTF_8.name()));
+        }
+
+        @Override
+        public int getContentLength() {
+            return cuerpo.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return cuerpo.length;
+        }
+    }
+}
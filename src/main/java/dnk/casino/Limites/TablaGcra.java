@@ -0,0 +1,225 @@
+package dnk.casino.Limites;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tabla de cubos de tokens sin bloqueos, de tamaño fijo.
+ *
+ * Cada cubo se guarda con el algoritmo GCRA como un único long: 24 bits de
+ * huella de la clave y 40 bits con el instante teórico de llegada (TAT) de la
+ * siguiente petición, en milisegundos. Así cada petición se resuelve con una
+ * lectura y un compareAndSet, sin reservar memoria.
+ *
+ * Los cubos se reparten en franjas independientes. Dentro de su franja, cada
+ * clave busca su cubo en unas pocas posiciones consecutivas. Un cubo cuyo TAT
+ * ya ha pasado está lleno, así que equivale a no tener cubo y su posición se
+ * reutiliza. Si todas las posiciones están ocupadas por cubos vivos de otras
+ * claves, se desaloja el que antes se iba a llenar.
+ *
+ * Dos claves con la misma huella en la misma posición comparten cubo: el límite
+ * para ellas es más estricto, nunca más permisivo.
+ *
+ * @author Danikileitor
+ */
+public class TablaGcra {
+
+    /**
+     * Número de posiciones en las que se busca el cubo de una clave.
+     */
+    private static final int SONDEO = 4;
+
+    /**
+     * Bits del TAT.
+     */
+    private static final int BITS_TAT = 40;
+
+    /**
+     * Máscara del TAT.
+     */
+    private static final long MASCARA_TAT = (1L << BITS_TAT) - 1;
+
+    /**
+     * Franjas de cubos.
+     */
+    private final AtomicLongArray[] franjas;
+
+    /**
+     * Máscara del índice de franja.
+     */
+    private final int mascaraFranjas;
+
+    /**
+     * Máscara de la posición dentro de una franja.
+     */
+    private final int mascaraPosiciones;
+
+    /**
+     * Instante de referencia de los TAT, en milisegundos desde la época.
+     */
+    private final long origen = System.currentTimeMillis() - 1;
+
+    /**
+     * Número de cubos vivos desalojados por falta de sitio.
+     */
+    private final LongAdder desalojos = new LongAdder();
+
+    /**
+     * Crea una tabla.
+     *
+     * @param capacidad  número total de cubos, redondeado a potencia de dos
+     * @param numFranjas número de franjas, redondeado a potencia de dos
+     */
+    public TablaGcra(int capacidad, int numFranjas) {
+        int franjasReales = potenciaDeDos(Math.max(1, numFranjas));
+        int porFranja = potenciaDeDos(Math.max(SONDEO, capacidad / franjasReales));
+        franjas = new AtomicLongArray[franjasReales];
+        for (int i = 0; i < franjasReales; i++) {
+            franjas[i] = new AtomicLongArray(porFranja);
+        }
+        mascaraFranjas = franjasReales - 1;
+        mascaraPosiciones = porFranja - 1;
+    }
+
+    /**
+     * Intenta consumir un token del cubo de una clave.
+     *
+     * @param hash       hash de 64 bits de la clave
+     * @param intervalo  milisegundos entre tokens
+     * @param tolerancia ráfaga permitida, en milisegundos de adelanto sobre el
+     *                   ritmo sostenido
+     * @return 0 si se permite la petición, o los milisegundos que faltan para que
+     *         se permita
+     */
+    public long adquirir(long hash, long intervalo, long tolerancia) {
+        return adquirir(hash, intervalo, tolerancia, System.currentTimeMillis() - origen);
+    }
+
+    /**
+     * Intenta consumir un token del cubo de una clave en un instante dado.
+     *
+     * @param hash       hash de 64 bits de la clave
+     * @param intervalo  milisegundos entre tokens
+     * @param tolerancia ráfaga permitida, en milisegundos
+     * @param ahora      el instante, en milisegundos desde el origen de la tabla
+     * @return 0 si se permite la petición, o los milisegundos que faltan para que
+     *         se permita
+     */
+    long adquirir(long hash, long intervalo, long tolerancia, long ahora) {
+        AtomicLongArray franja = franjas[(int) (hash >>> 32) & mascaraFranjas];
+        int base = (int) hash & mascaraPosiciones;
+        long huella = hash >>> BITS_TAT;
+        while (true) {
+            int propia = -1;
+            int libre = -1;
+            int victima = -1;
+            long valorPropio = 0;
+            long valorLibre = 0;
+            long valorVictima = 0;
+            for (int i = 0; i < SONDEO; i++) {
+                int posicion = (base + i) & mascaraPosiciones;
+                long valor = franja.get(posicion);
+                long tat = valor & MASCARA_TAT;
+                if (tat <= ahora) {
+                    if (libre < 0) {
+                        libre = posicion;
+                        valorLibre = valor;
+                    }
+                } else if (valor >>> BITS_TAT == huella) {
+                    propia = posicion;
+                    valorPropio = valor;
+                    break;
+                } else if (victima < 0 || tat < (valorVictima & MASCARA_TAT)) {
+                    victima = posicion;
+                    valorVictima = valor;
+                }
+            }
+
+            if (propia >= 0) {
+                long tat = valorPropio & MASCARA_TAT;
+                if (tat - ahora > tolerancia) {
+                    return tat - tolerancia - ahora;
+                }
+                if (franja.compareAndSet(propia, valorPropio, empaquetar(huella, tat + intervalo))) {
+                    return 0;
+                }
+            } else if (libre >= 0) {
+                // Cubo lleno: se permite y el TAT pasa a ser ahora + intervalo
+                if (franja.compareAndSet(libre, valorLibre, empaquetar(huella, ahora + intervalo))) {
+                    return 0;
+                }
+            } else if (franja.compareAndSet(victima, valorVictima, empaquetar(huella, ahora + intervalo))) {
+                desalojos.increment();
+                return 0;
+            }
+            // Otro hilo ha cambiado la posición entre medias: se vuelve a leer
+        }
+    }
+
+    /**
+     * Consulta, sin consumir ningún token, si el cubo de una clave permitiría una
+     * petición.
+     *
+     * @param hash       hash de 64 bits de la clave
+     * @param tolerancia ráfaga permitida, en milisegundos
+     * @return 0 si se permitiría la petición, o los milisegundos que faltan para
+     *         que se permita
+     */
+    public long consultar(long hash, long tolerancia) {
+        return consultar(hash, tolerancia, System.currentTimeMillis() - origen);
+    }
+
+    /**
+     * Consulta, sin consumir ningún token, si el cubo de una clave permitiría una
+     * petición en un instante dado.
+     *
+     * @param hash       hash de 64 bits de la clave
+     * @param tolerancia ráfaga permitida, en milisegundos
+     * @param ahora      el instante, en milisegundos desde el origen de la tabla
+     * @return 0 si se permitiría la petición, o los milisegundos que faltan para
+     *         que se permita
+     */
+    long consultar(long hash, long tolerancia, long ahora) {
+        AtomicLongArray franja = franjas[(int) (hash >>> 32) & mascaraFranjas];
+        int base = (int) hash & mascaraPosiciones;
+        long huella = hash >>> BITS_TAT;
+        for (int i = 0; i < SONDEO; i++) {
+            long valor = franja.get((base + i) & mascaraPosiciones);
+            long tat = valor & MASCARA_TAT;
+            if (tat > ahora && valor >>> BITS_TAT == huella) {
+                return Math.max(0, tat - tolerancia - ahora);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Obtiene el número de cubos vivos desalojados por falta de sitio.
+     *
+     * @return número de desalojos
+     */
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    /**
+     * Empaqueta una huella y un TAT en un long.
+     *
+     * @param huella la huella de la clave
+     * @param tat    el TAT
+     * @return el valor empaquetado
+     */
+    private static long empaquetar(long huella, long tat) {
+        return huella << BITS_TAT | tat & MASCARA_TAT;
+    }
+
+    /**
+     * Redondea un número a la potencia de dos igual o superior.
+     *
+     * @param n el número
+     * @return la potencia de dos
+     */
+    private static int potenciaDeDos(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+}
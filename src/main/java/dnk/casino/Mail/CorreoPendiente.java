@@ -0,0 +1,207 @@
+package dnk.casino.Mail;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Correo electrónico pendiente de envío en la bandeja de salida.
+ *
+ * @author Danikileitor
+ */
+@Document(collection = "mail_outbox")
+public class CorreoPendiente implements Delayed {
+
+    /**
+     * Identificador único del correo.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Correo electrónico del destinatario.
+     */
+    private String destinatario;
+
+    /**
+     * Asunto del correo electrónico.
+     */
+    private String asunto;
+
+    /**
+     * Mensaje del correo electrónico.
+     */
+    private String mensaje;
+
+    /**
+     * Ruta del archivo adjunto, o null si no tiene.
+     */
+    private String adjunto;
+
+    /**
+     * Número de intentos de envío fallidos.
+     */
+    private int intentos;
+
+    /**
+     * Instante del siguiente intento de envío, en milisegundos desde la época.
+     */
+    private long siguienteIntento;
+
+    /**
+     * Nodo que tiene reclamado el correo para enviarlo.
+     */
+    private String propietario;
+
+    /**
+     * Instante en el que el nodo propietario reclamó el correo, en milisegundos
+     * desde la época.
+     */
+    private long reclamadoEn;
+
+    /**
+     * Constructor vacío.
+     */
+    public CorreoPendiente() {
+    }
+
+    /**
+     * Constructor que inicializa el correo con sus datos.
+     *
+     * @param destinatario el correo electrónico del destinatario
+     * @param asunto       el asunto del correo electrónico
+     * @param mensaje      el mensaje del correo electrónico
+     * @param adjunto      la ruta del archivo adjunto, o null si no tiene
+     */
+    public CorreoPendiente(String destinatario, String asunto, String mensaje, String adjunto) {
+        this.destinatario = destinatario;
+        this.asunto = asunto;
+        this.mensaje = mensaje;
+        this.adjunto = adjunto;
+        this.intentos = 0;
+        this.siguienteIntento = System.currentTimeMillis();
+    }
+
+    /**
+     * Obtiene el identificador único del correo.
+     *
+     * @return identificador único
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Establece el identificador único del correo.
+     *
+     * @param id identificador único
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtiene el correo electrónico del destinatario.
+     *
+     * @return correo electrónico del destinatario
+     */
+    public String getDestinatario() {
+        return destinatario;
+    }
+
+    /**
+     * Obtiene el asunto del correo electrónico.
+     *
+     * @return asunto
+     */
+    public String getAsunto() {
+        return asunto;
+    }
+
+    /**
+     * Obtiene el mensaje del correo electrónico.
+     *
+     * @return mensaje
+     */
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    /**
+     * Obtiene la ruta del archivo adjunto.
+     *
+     * @return ruta del archivo adjunto, o null si no tiene
+     */
+    public String getAdjunto() {
+        return adjunto;
+    }
+
+    /**
+     * Obtiene el número de intentos de envío fallidos.
+     *
+     * @return número de intentos
+     */
+    public int getIntentos() {
+        return intentos;
+    }
+
+    /**
+     * Obtiene el nodo que tiene reclamado el correo.
+     *
+     * @return el nodo propietario
+     */
+    public String getPropietario() {
+        return propietario;
+    }
+
+    /**
+     * Marca el correo como reclamado por un nodo.
+     *
+     * @param propietario el nodo propietario
+     * @param instante    el instante de la reclamación, en milisegundos desde la
+     *                    época
+     */
+    public void reclamar(String propietario, long instante) {
+        this.propietario = propietario;
+        this.reclamadoEn = instante;
+    }
+
+    /**
+     * Registra un intento fallido y programa el siguiente con espera
+     * exponencial.
+     *
+     * @param esperaBase espera del primer reintento, en milisegundos
+     */
+    public void reintentar(long esperaBase) {
+        long espera = esperaBase << Math.min(intentos, 20);
+        intentos++;
+        siguienteIntento = System.currentTimeMillis() + espera;
+    }
+
+    /**
+     * Obtiene el tiempo que falta para el siguiente intento de envío.
+     *
+     * @param unit la unidad de tiempo
+     * @return el tiempo restante
+     */
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(siguienteIntento - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ordena los correos por el instante de su siguiente intento.
+     *
+     * @param otro el otro correo
+     * @return el resultado de la comparación
+     */
+    @Override
+    public int compareTo(Delayed otro) {
+        if (otro instanceof CorreoPendiente correo) {
+            return Long.compare(siguienteIntento, correo.siguienteIntento);
+        }
+        return Long.compare(getDelay(TimeUnit.MILLISECONDS), otro.getDelay(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,457 @@
+package dnk.casino.Mail;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Error.ServidorOcupadoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Bandeja de salida de correo electrónico.
+ *
+ * Los correos se encolan en memoria (y, opcionalmente, en la colección
+ * mail_outbox para no perderlos si el nodo se reinicia) y los envía un grupo
+ * acotado de hilos en lotes que comparten una misma conexión SMTP. Los envíos
+ * fallidos se reintentan con espera exponencial.
+ *
+ * Con la colección, cada nodo busca periódicamente los correos que otro nodo
+ * ha dejado sin enviar. Sin ella, al detenerse se intenta enviar una vez lo que
+ * quede en la cola y los correos que aun así no salen se cuentan como perdidos.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class EmailOutbox {
+
+    /**
+     * Servicio de correo electrónico de JavaMail.
+     */
+    @Autowired
+    private JavaMailSender javaMailSender;
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Fábrica de los hilos de envío.
+     */
+    @Autowired
+    private FabricaHilos fabricaHilos;
+
+    /**
+     * Número de hilos de envío.
+     */
+    @Value("${dnk.casino.mail.outbox.hilos:2}")
+    private int hilos;
+
+    /**
+     * Número máximo de correos por lote.
+     */
+    @Value("${dnk.casino.mail.outbox.lote:50}")
+    private int tamanoLote;
+
+    /**
+     * Número máximo de correos pendientes.
+     */
+    @Value("${dnk.casino.mail.outbox.capacidad:10000}")
+    private int capacidad;
+
+    /**
+     * Número máximo de intentos de envío de cada correo.
+     */
+    @Value("${dnk.casino.mail.outbox.intentos:5}")
+    private int maxIntentos;
+
+    /**
+     * Espera antes del primer reintento, en milisegundos.
+     */
+    @Value("${dnk.casino.mail.outbox.espera-ms:2000}")
+    private long esperaBase;
+
+    /**
+     * Indica si los correos pendientes se guardan también en MongoDB.
+     */
+    @Value("${dnk.casino.mail.outbox.persistente:false}")
+    private boolean persistente;
+
+    /**
+     * Tiempo tras el que un correo reclamado por otro nodo se considera
+     * abandonado, en milisegundos.
+     */
+    @Value("${dnk.casino.mail.outbox.reclamacion-ms:900000}")
+    private long duracionReclamacion;
+
+    /**
+     * Tiempo entre búsquedas de correos abandonados, en milisegundos.
+     */
+    @Value("${dnk.casino.mail.outbox.recuperacion-ms:60000}")
+    private long intervaloRecuperacion;
+
+    /**
+     * Identificador de este nodo en la colección de correos pendientes.
+     */
+    private final String nodo = UUID.randomUUID().toString();
+
+    /**
+     * Correos pendientes, ordenados por el instante de su siguiente intento.
+     */
+    private final DelayQueue<CorreoPendiente> cola = new DelayQueue<>();
+
+    /**
+     * Número de correos pendientes.
+     */
+    private final AtomicInteger pendientes = new AtomicInteger();
+
+    /**
+     * Hilos de envío.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Hilo de recuperación de correos abandonados, si se persisten.
+     */
+    private ScheduledExecutorService recuperacion;
+
+    /**
+     * Indica si los hilos de envío deben seguir funcionando.
+     */
+    private volatile boolean activo;
+
+    private Counter enviados;
+    private Counter reintentos;
+    private Counter descartados;
+    private Counter perdidos;
+
+    /**
+     * Registra las métricas, recupera los correos abandonados y arranca los hilos
+     * de envío.
+     */
+    @PostConstruct
+    public void iniciar() {
+        Gauge.builder("dnk.casino.mail.outbox.pendientes", pendientes, AtomicInteger::get)
+                .description("Correos pendientes de envío")
+                .register(meterRegistry);
+        enviados = meterRegistry.counter("dnk.casino.mail.outbox.enviados");
+        reintentos = meterRegistry.counter("dnk.casino.mail.outbox.reintentos");
+        descartados = meterRegistry.counter("dnk.casino.mail.outbox.descartados");
+        perdidos = meterRegistry.counter("dnk.casino.mail.outbox.perdidos");
+
+        if (persistente) {
+            recuperar();
+            recuperacion = Executors.newSingleThreadScheduledExecutor(fabricaHilos.crear("dnk-mail-recuperacion"));
+            recuperacion.scheduleWithFixedDelay(this::recuperarSeguro, intervaloRecuperacion,
+                    intervaloRecuperacion, TimeUnit.MILLISECONDS);
+        }
+
+        activo = true;
+        executor = Executors.newThreadPerTaskExecutor(fabricaHilos.crear("dnk-mail-outbox"));
+        for (int i = 0; i < hilos; i++) {
+            executor.execute(this::procesar);
+        }
+    }
+
+    /**
+     * Detiene los hilos de envío. Los correos persistidos que queden pendientes
+     * se liberan para que otro nodo los recupere. Sin persistencia, los que
+     * queden en la cola se intentan enviar una vez, sin esperar a su reintento,
+     * dentro de los mismos 10 segundos de espera; los que no salen se registran
+     * y se cuentan en dnk.casino.mail.outbox.perdidos.
+     *
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        activo = false;
+        if (recuperacion != null) {
+            recuperacion.shutdownNow();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        if (persistente) {
+            mongoTemplate.updateMulti(Query.query(where("propietario").is(nodo)),
+                    new Update().set("reclamadoEn", 0L), CorreoPendiente.class);
+            return;
+        }
+        vaciar(limite);
+    }
+
+    /**
+     * Intenta enviar una vez los correos que quedan en la cola, en lotes y hasta
+     * un instante límite, y cuenta como perdidos los que no se envían.
+     *
+     * @param limite el instante límite, en el reloj de System.nanoTime()
+     */
+    private void vaciar(long limite) {
+        List<CorreoPendiente> restantes = retirarCola();
+        int intentados = 0;
+        while (intentados < restantes.size() && System.nanoTime() - limite < 0) {
+            int fin = Math.min(intentados + tamanoLote, restantes.size());
+            // Los que fallan vuelven a la cola, pero ya no se reintentan
+            enviar(restantes.subList(intentados, fin));
+            intentados = fin;
+        }
+        List<CorreoPendiente> noEnviados = new ArrayList<>(restantes.subList(intentados, restantes.size()));
+        noEnviados.addAll(retirarCola());
+        if (!noEnviados.isEmpty()) {
+            System.out.println("Se pierden " + noEnviados.size() + " correos sin enviar al detener la bandeja de salida");
+            pendientes.addAndGet(-noEnviados.size());
+            perdidos.increment(noEnviados.size());
+        }
+    }
+
+    /**
+     * Saca de la cola todos los correos, también los que esperan a su reintento,
+     * que drainTo no devuelve.
+     *
+     * @return los correos retirados
+     */
+    private List<CorreoPendiente> retirarCola() {
+        List<CorreoPendiente> retirados = new ArrayList<>();
+        for (Iterator<CorreoPendiente> it = cola.iterator(); it.hasNext();) {
+            retirados.add(it.next());
+            it.remove();
+        }
+        return retirados;
+    }
+
+    /**
+     * Encola un correo electrónico para su envío.
+     *
+     * @param destinatario el correo electrónico del destinatario
+     * @param asunto       el asunto del correo electrónico
+     * @param mensaje      el mensaje del correo electrónico
+     * @param adjunto      la ruta del archivo adjunto, o null si no tiene
+     * @throws ServidorOcupadoException si la bandeja de salida está llena
+     */
+    public void encolar(String destinatario, String asunto, String mensaje, String adjunto) {
+        if (pendientes.incrementAndGet() > capacidad) {
+            pendientes.decrementAndGet();
+            throw new ServidorOcupadoException("La bandeja de salida de correo está llena, inténtalo más tarde");
+        }
+        CorreoPendiente correo = new CorreoPendiente(destinatario, asunto, mensaje, adjunto);
+        if (persistente) {
+            correo.reclamar(nodo, System.currentTimeMillis());
+            mongoTemplate.insert(correo);
+        }
+        cola.add(correo);
+    }
+
+    /**
+     * Obtiene el número de correos pendientes de envío.
+     *
+     * @return número de correos pendientes
+     */
+    public int getPendientes() {
+        return pendientes.get();
+    }
+
+    /**
+     * Recupera los correos abandonados sin propagar los errores.
+     */
+    private void recuperarSeguro() {
+        try {
+            recuperar();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reclama uno a uno los correos persistidos que ningún nodo está enviando,
+     * mientras quede sitio en la cola. Los de este nodo ya están en su cola y no
+     * se reclaman.
+     */
+    private void recuperar() {
+        FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true);
+        CorreoPendiente correo;
+        do {
+            long ahora = System.currentTimeMillis();
+            correo = mongoTemplate.findAndModify(
+                    Query.query(where("reclamadoEn").lt(ahora - duracionReclamacion).and("propietario").ne(nodo)),
+                    new Update().set("propietario", nodo).set("reclamadoEn", ahora),
+                    options, CorreoPendiente.class);
+            if (correo != null) {
+                pendientes.incrementAndGet();
+                cola.add(correo);
+            }
+        } while (correo != null && pendientes.get() < capacidad);
+    }
+
+    /**
+     * Bucle de cada hilo de envío: espera al primer correo listo y lo envía junto
+     * con los demás que ya estén listos, hasta el tamaño máximo del lote.
+     */
+    private void procesar() {
+        List<CorreoPendiente> lote = new ArrayList<>(tamanoLote);
+        while (activo) {
+            try {
+                CorreoPendiente primero = cola.poll(1, TimeUnit.SECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                cola.drainTo(lote, tamanoLote - 1);
+                enviar(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Envía un lote de correos por una única conexión SMTP.
+     *
+     * @param lote los correos a enviar
+     */
+    private void enviar(List<CorreoPendiente> lote) {
+        Map<MimeMessage, CorreoPendiente> mensajes = new IdentityHashMap<>();
+        for (CorreoPendiente correo : lote) {
+            try {
+                mensajes.put(crearMensaje(correo), correo);
+            } catch (MessagingException e) {
+                // El correo no se puede construir, reintentarlo no sirve de nada
+                e.printStackTrace();
+                descartar(correo);
+            }
+        }
+        if (mensajes.isEmpty()) {
+            return;
+        }
+
+        try {
+            javaMailSender.send(mensajes.keySet().toArray(MimeMessage[]::new));
+            mensajes.values().forEach(this::completar);
+        } catch (MailSendException e) {
+            Map<Object, Exception> fallidos = e.getFailedMessages();
+            mensajes.forEach((mensaje, correo) -> {
+                if (fallidos.containsKey(mensaje)) {
+                    fallar(correo);
+                } else {
+                    completar(correo);
+                }
+            });
+        } catch (MailException e) {
+            System.out.println("Error al enviar correos: " + e.getMessage());
+            mensajes.values().forEach(this::fallar);
+        }
+    }
+
+    /**
+     * Construye el mensaje MIME de un correo pendiente.
+     *
+     * @param correo el correo pendiente
+     * @return el mensaje MIME
+     * @throws MessagingException si el correo no es válido
+     */
+    private MimeMessage crearMensaje(CorreoPendiente correo) throws MessagingException {
+        MimeMessage message = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, correo.getAdjunto() != null);
+        helper.setFrom(System.getenv().get("MAIL_USERNAME"));
+        helper.setTo(correo.getDestinatario());
+        helper.setSubject(correo.getAsunto());
+        helper.setText(correo.getMensaje());
+        if (correo.getAdjunto() != null) {
+            FileSystemResource file = new FileSystemResource(new File(correo.getAdjunto()));
+            helper.addAttachment(file.getFilename(), file);
+        }
+        return message;
+    }
+
+    /**
+     * Marca un correo como enviado.
+     *
+     * @param correo el correo enviado
+     */
+    private void completar(CorreoPendiente correo) {
+        eliminar(correo);
+        enviados.increment();
+    }
+
+    /**
+     * Registra un envío fallido, programando un reintento o descartando el correo
+     * si ya ha agotado sus intentos.
+     *
+     * @param correo el correo fallido
+     */
+    private void fallar(CorreoPendiente correo) {
+        if (correo.getIntentos() + 1 >= maxIntentos) {
+            System.out.println("Descartado el correo a " + correo.getDestinatario() + " tras "
+                    + maxIntentos + " intentos");
+            descartar(correo);
+        } else {
+            correo.reintentar(esperaBase);
+            reintentos.increment();
+            cola.add(correo);
+        }
+    }
+
+    /**
+     * Descarta un correo que no se puede enviar.
+     *
+     * @param correo el correo descartado
+     */
+    private void descartar(CorreoPendiente correo) {
+        eliminar(correo);
+        descartados.increment();
+    }
+
+    /**
+     * Elimina un correo de los pendientes.
+     *
+     * @param correo el correo a eliminar
+     */
+    private void eliminar(CorreoPendiente correo) {
+        pendientes.decrementAndGet();
+        if (persistente && correo.getId() != null) {
+            mongoTemplate.remove(Query.query(where("_id").is(correo.getId())), CorreoPendiente.class);
+        }
+    }
+}
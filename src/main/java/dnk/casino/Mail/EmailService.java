@@ -1,30 +1,24 @@
 package dnk.casino.Mail;
 
-import java.io.File;
-
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-
 /**
  * Servicio de correo electrónico para enviar mensajes a los usuarios.
  * 
+ * Los correos se encolan en la bandeja de salida y se envían en segundo plano,
+ * sin bloquear el hilo de la solicitud.
+ * 
  * @author Danikileitor
  */
 @Service
 public class EmailService {
 
     /**
-     * Servicio de correo electrónico de JavaMail.
+     * Bandeja de salida de correo electrónico.
      */
     @Autowired
-    private JavaMailSender javaMailSender;
+    private EmailOutbox emailOutbox;
 
     /**
      * Envía un correo electrónico simple a un destinatario.
@@ -32,15 +26,11 @@ public class EmailService {
      * @param destinatario el correo electrónico del destinatario
      * @param asunto       el asunto del correo electrónico
      * @param mensaje      el mensaje del correo electrónico
+     * @throws dnk.casino.Error.ServidorOcupadoException si la bandeja de salida
+     *                                                   está llena
      */
     public void enviarCorreo(String destinatario, String asunto, String mensaje) {
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-        mailMessage.setFrom(System.getenv().get("MAIL_USERNAME"));
-        mailMessage.setTo(destinatario);
-        mailMessage.setSubject(asunto);
-        mailMessage.setText(mensaje);
-
-        javaMailSender.send(mailMessage);
+        emailOutbox.encolar(destinatario, asunto, mensaje, null);
     }
 
     /**
@@ -50,21 +40,10 @@ public class EmailService {
      * @param asunto       el asunto del correo electrónico
      * @param mensaje      el mensaje del correo electrónico
      * @param adjunto      la ruta del archivo adjunto
+     * @throws dnk.casino.Error.ServidorOcupadoException si la bandeja de salida
+     *                                                   está llena
      */
     public void enviarCorreo(String destinatario, String asunto, String mensaje, String adjunto) {
-        try {
-            MimeMessage message = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
-            helper.setFrom(System.getenv().get("MAIL_USERNAME"));
-            helper.setTo(destinatario);
-            helper.setSubject(asunto);
-            helper.setText(mensaje);
-            FileSystemResource file = new FileSystemResource(new File(adjunto));
-            helper.addAttachment(file.getFilename(), file);
-
-            javaMailSender.send(message);
-        } catch (MessagingException e) {
-            e.printStackTrace();
-        }
+        emailOutbox.encolar(destinatario, asunto, mensaje, adjunto);
     }
 }
@@ -0,0 +1,152 @@
+package dnk.casino.Metrics;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import dnk.casino.Users.JwtTokenUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Métricas de las operaciones del casino, publicadas en el registro de
+ * Micrometer del actuator.
+ *
+ * Cada operación tiene un temporizador dnk.casino.operaciones etiquetado con
+ * su nombre y, por defecto, con histograma de percentiles. Los resultados de
+ * negocio (monedas insuficientes, skin ya desbloqueada, usuario no
+ * encontrado...) se cuentan en dnk.casino.resultados, etiquetado por operación
+ * y resultado.
+ *
+ * Los medidores se crean una sola vez y se guardan en arrays indexados por el
+ * ordinal de cada enum, así que registrar una medida no busca nada en el
+ * registro ni reserva memoria.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class CasinoMetrics {
+
+    /**
+     * Operaciones medidas.
+     */
+    public enum Metrica {
+        REGISTRO, LOGIN, REGISTRAR_LOGIN, BUSCAR_POR_ID, BUSCAR_POR_USERNAME, BUSCAR_POR_EMAIL, BUSCAR_USUARIOS,
+        ACTUALIZAR_USUARIO, ACTUALIZAR_USUARIOS, ELIMINAR_USUARIO, CAMBIAR_CONTRASENA, PAGAR, COBRAR, VICTORIA,
+        BJVICTORIA, TOP_WINNERS, TOP_BJWINNERS, ABONAR, CARGAR, COMPRAR_SKIN, CREAR_SKIN, ACTUALIZAR_SKIN,
+        ELIMINAR_SKIN, FILTRAR_SKINS, CLASIFICACION, POSICION;
+
+        /**
+         * Valor de la etiqueta de la operación.
+         */
+        private final String etiqueta = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Resultados de negocio contados.
+     */
+    public enum Resultado {
+        USUARIO_NO_ENCONTRADO, SKIN_NO_ENCONTRADA, MONEDAS_INSUFICIENTES, SKIN_YA_DESBLOQUEADA,
+        CREDENCIALES_INVALIDAS;
+
+        /**
+         * Valor de la etiqueta del resultado.
+         */
+        private final String etiqueta = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Indica si los temporizadores publican histogramas de percentiles.
+     */
+    @Value("${dnk.casino.metricas.histogramas:true}")
+    private boolean histogramas;
+
+    /**
+     * Temporizadores indexados por el ordinal de la operación.
+     */
+    private final Timer[] timers = new Timer[Metrica.values().length];
+
+    /**
+     * Contadores indexados por los ordinales de la operación y del resultado.
+     * Se crean la primera vez que se usan para no publicar series vacías; si dos
+     * hilos lo crean a la vez, el registro devuelve el mismo contador a ambos.
+     */
+    private final Counter[][] contadores = new Counter[Metrica.values().length][Resultado.values().length];
+
+    /**
+     * Crea los temporizadores y el indicador del tamaño de la caché de JWT.
+     */
+    @PostConstruct
+    public void iniciar() {
+        for (Metrica metrica : Metrica.values()) {
+            timers[metrica.ordinal()] = Timer.builder("dnk.casino.operaciones")
+                    .description("Duración de las operaciones del casino")
+                    .tag("operacion", metrica.etiqueta)
+                    .publishPercentileHistogram(histogramas)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("dnk.casino.jwt.cache", JwtTokenUtil::getCacheSize)
+                .description("Tokens JWT verificados en caché")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta y mide una operación.
+     *
+     * @param <T>      el tipo del resultado
+     * @param metrica   la operación
+     * @param operacion la operación a ejecutar
+     * @return el resultado de la operación
+     */
+    public <T> T medir(Metrica metrica, Supplier<T> operacion) {
+        return timers[metrica.ordinal()].record(operacion);
+    }
+
+    /**
+     * Ejecuta y mide una operación sin resultado.
+     *
+     * @param metrica   la operación
+     * @param operacion la operación a ejecutar
+     */
+    public void medir(Metrica metrica, Runnable operacion) {
+        timers[metrica.ordinal()].record(operacion);
+    }
+
+    /**
+     * Obtiene el temporizador de una operación.
+     *
+     * @param metrica la operación
+     * @return el temporizador
+     */
+    public Timer timer(Metrica metrica) {
+        return timers[metrica.ordinal()];
+    }
+
+    /**
+     * Cuenta un resultado de una operación.
+     *
+     * @param metrica   la operación
+     * @param resultado el resultado
+     */
+    public void contar(Metrica metrica, Resultado resultado) {
+        Counter counter = contadores[metrica.ordinal()][resultado.ordinal()];
+        if (counter == null) {
+            counter = meterRegistry.counter("dnk.casino.resultados", "operacion", metrica.etiqueta,
+                    "resultado", resultado.etiqueta);
+            contadores[metrica.ordinal()][resultado.ordinal()] = counter;
+        }
+        counter.increment();
+    }
+}
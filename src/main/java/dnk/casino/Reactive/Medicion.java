@@ -0,0 +1,52 @@
+package dnk.casino.Reactive;
+
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Medición de operaciones reactivas con los temporizadores de
+ * {@link CasinoMetrics}. El tiempo se cuenta desde la suscripción hasta que la
+ * operación termina, falla o se cancela.
+ *
+ * @author Danikileitor
+ */
+final class Medicion {
+
+    private Medicion() {
+    }
+
+    /**
+     * Mide una operación que devuelve un único resultado.
+     *
+     * @param <T>           el tipo del resultado
+     * @param casinoMetrics las métricas del casino
+     * @param metrica       la operación
+     * @param operacion     la operación a medir
+     * @return la operación medida
+     */
+    static <T> Mono<T> medir(CasinoMetrics casinoMetrics, Metrica metrica, Mono<T> operacion) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return operacion.doFinally(senal -> sample.stop(casinoMetrics.timer(metrica)));
+        });
+    }
+
+    /**
+     * Mide una operación que devuelve varios resultados.
+     *
+     * @param <T>           el tipo de los resultados
+     * @param casinoMetrics las métricas del casino
+     * @param metrica       la operación
+     * @param operacion     la operación a medir
+     * @return la operación medida
+     */
+    static <T> Flux<T> medir(CasinoMetrics casinoMetrics, Metrica metrica, Flux<T> operacion) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return operacion.doFinally(senal -> sample.stop(casinoMetrics.timer(metrica)));
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package dnk.casino.Reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dnk.casino.Error.ServidorOcupadoException;
+import dnk.casino.Users.JwtTokenUtil;
+import dnk.casino.Users.Usuario.Rol;
+import reactor.core.publisher.Mono;
+
+/**
+ * Controlador reactivo de autenticación para la API, con las mismas rutas y
+ * respuestas que el de servlet.
+ *
+ * @author Danikileitor
+ */
+@RestController
+@RequestMapping("/api/auth")
+public class ReactiveAuthController {
+
+    /**
+     * Servicio reactivo de usuarios.
+     */
+    @Autowired
+    private ReactiveUsuarioService usuarioService;
+
+    /**
+     * Registra un nuevo usuario en el sistema.
+     *
+     * @param registroRequest la solicitud de registro
+     * @return el usuario registrado o un mensaje de error
+     */
+    @PostMapping("/register")
+    public Mono<ResponseEntity<Object>> register(@RequestBody RegistroRequest registroRequest) {
+        return Mono
+                .fromCallable(() -> registroRequest.rol() != null
+                        ? Rol.valueOf(registroRequest.rol().toUpperCase())
+                        : Rol.ROLE_USER)
+                .flatMap(rol -> usuarioService.registrarUsuario(registroRequest.username(),
+                        registroRequest.password(), registroRequest.email(), rol))
+                .map(usuario -> ResponseEntity.<Object>ok(usuario))
+                .onErrorResume(e -> !(e instanceof ServidorOcupadoException),
+                        e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())));
+    }
+
+    /**
+     * Inicia sesión un usuario en el sistema.
+     *
+     * @param loginRequest la solicitud de login
+     * @return el token de autenticación o un mensaje de error
+     */
+    @PostMapping("/login")
+    public Mono<ResponseEntity<String>> login(@RequestBody LoginRequest loginRequest) {
+        return usuarioService.autenticar(loginRequest.username(), loginRequest.password())
+                // Actualiza la fecha de login y, si es su primer login del día, da una
+                // recompensa
+                .flatMap(usuario -> usuarioService.registrarLogin(usuario.getId())
+                        .thenReturn(ResponseEntity.ok(
+                                JwtTokenUtil.generateToken(usuario.getUsername(), usuario.getRol()))))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Usuario o contraseña incorrectos"));
+    }
+
+    /**
+     * Inicia sesión un administrador en el sistema.
+     *
+     * @param loginRequest la solicitud de login
+     * @return el token de autenticación o un mensaje de error
+     */
+    @PostMapping("/admin/login")
+    public Mono<ResponseEntity<String>> adminLogin(@RequestBody LoginRequest loginRequest) {
+        return usuarioService.autenticar(loginRequest.username(), loginRequest.password())
+                .filter(usuario -> usuario.getRol() == Rol.ROLE_ADMIN)
+                .map(usuario -> ResponseEntity.ok(JwtTokenUtil.generateToken(usuario.getUsername(), usuario.getRol())))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("Acceso denegado. Solo los administradores pueden acceder."));
+    }
+
+    /**
+     * Solicitud de registro de un usuario.
+     *
+     * @param username el nombre de usuario
+     * @param password la contraseña
+     * @param email    el correo electrónico
+     * @param rol      el rol, o null para un usuario normal
+     */
+    public record RegistroRequest(String username, String password, String email, String rol) {
+    }
+
+    /**
+     * Solicitud de login de un usuario.
+     *
+     * @param username el nombre de usuario
+     * @param password la contraseña
+     */
+    public record LoginRequest(String username, String password) {
+    }
+}
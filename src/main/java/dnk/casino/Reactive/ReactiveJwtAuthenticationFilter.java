@@ -0,0 +1,54 @@
+package dnk.casino.Reactive;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import dnk.casino.Users.JwtPrincipal;
+import dnk.casino.Users.JwtTokenUtil;
+import reactor.core.publisher.Mono;
+
+/**
+ * Filtro reactivo de autenticación JWT que verifica y valida tokens en cada
+ * solicitud.
+ *
+ * No es un componente: lo añade {@link ReactiveSecurityConfig} a la cadena de
+ * seguridad, para que WebFlux no lo ejecute una segunda vez como filtro global.
+ *
+ * @author Danikileitor
+ */
+public class ReactiveJwtAuthenticationFilter implements WebFilter {
+
+    /**
+     * Procesa la solicitud y, si lleva un token JWT válido en el encabezado de
+     * autorización, la autentica con su usuario y su rol.
+     *
+     * @param exchange la solicitud y la respuesta HTTP
+     * @param chain    la cadena de filtros
+     * @return la finalización del resto de la cadena
+     */
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            // La verificación usa la caché de JwtTokenUtil y no bloquea
+            Optional<JwtPrincipal> principalOpt = JwtTokenUtil.verifyToken(authHeader.substring(7));
+            if (principalOpt.isPresent() && principalOpt.get().username() != null
+                    && principalOpt.get().role() != null) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        principalOpt.get().username(), null,
+                        List.of(new SimpleGrantedAuthority(principalOpt.get().role())));
+                return chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
+            }
+        }
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,64 @@
+package dnk.casino.Reactive;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import dnk.casino.Leaderboard.LeaderboardService.Clasificacion;
+import dnk.casino.Leaderboard.LeaderboardService.Ventana;
+import dnk.casino.Users.JwtTokenUtil;
+import reactor.core.publisher.Mono;
+
+/**
+ * Controlador reactivo de las clasificaciones del casino, con las mismas rutas
+ * y respuestas que el de servlet.
+ *
+ * @author Danikileitor
+ */
+@RestController
+@RequestMapping("/leaderboard/api")
+public class ReactiveLeaderboardController {
+
+    /**
+     * Servicio reactivo de usuarios.
+     */
+    @Autowired
+    private ReactiveUsuarioService usuarioService;
+
+    /**
+     * Obtiene la posición del usuario autenticado en una clasificación, con los
+     * jugadores que tiene justo por encima y por debajo.
+     *
+     * @param token         el token de autenticación
+     * @param clasificacion wins, bjwins o coins
+     * @param ventana       dia, semana o total
+     * @param vecinos       número de jugadores a cada lado
+     * @return la posición del usuario
+     */
+    @GetMapping("/posicion")
+    public Mono<ResponseEntity<Object>> getPosicion(@RequestHeader("Authorization") String token,
+            @RequestParam(defaultValue = "wins") String clasificacion,
+            @RequestParam(defaultValue = "total") String ventana,
+            @RequestParam(defaultValue = "2") int vecinos) {
+        // Extrae el nombre de usuario del token
+        Optional<String> usernameOpt = JwtTokenUtil.extractUsernameFromToken(token);
+        if (usernameOpt.isEmpty()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token inválido"));
+        }
+
+        return Mono.defer(() -> usuarioService.getPosicionPorUsername(usernameOpt.get(),
+                Clasificacion.desde(clasificacion), Ventana.desde(ventana), vecinos))
+                .map(posicion -> ResponseEntity.ok((Object) posicion))
+                .defaultIfEmpty(
+                        ResponseEntity.status(HttpStatus.NOT_FOUND).body("No apareces en esta clasificación"))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage())));
+    }
+}
@@ -0,0 +1,191 @@
+package dnk.casino.Reactive;
+
+import java.net.InetSocketAddress;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dnk.casino.Error.ErrorResponse;
+import dnk.casino.Limites.LimitadorPeticiones;
+import dnk.casino.Limites.LimitadorPeticiones.Endpoint;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Filtro reactivo que rechaza con 429 las peticiones de autenticación que
+ * superan su límite, con las mismas reglas que el de servlet.
+ *
+ * No es un componente: lo añade {@link ReactiveSecurityConfig} a la cadena de
+ * seguridad, delante del filtro JWT.
+ *
+ * @author Danikileitor
+ */
+public class ReactiveLimitePeticionesFilter implements WebFilter {
+
+    /**
+     * Limitador de peticiones.
+     */
+    private final LimitadorPeticiones limitador;
+
+    /**
+     * Conversor de JSON.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Crea el filtro.
+     *
+     * @param limitador    el limitador de peticiones
+     * @param objectMapper el conversor de JSON
+     */
+    public ReactiveLimitePeticionesFilter(LimitadorPeticiones limitador, ObjectMapper objectMapper) {
+        this.limitador = limitador;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Comprueba los límites de la solicitud.
+     *
+     * @param exchange la solicitud y la respuesta HTTP
+     * @param chain    la cadena de filtros
+     * @return la finalización del resto de la cadena o de la respuesta de error
+     */
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.POST) {
+            return chain.filter(exchange);
+        }
+        Endpoint endpoint = limitador.endpoint(request.getPath().pathWithinApplication().value());
+        if (endpoint == null) {
+            return chain.filter(exchange);
+        }
+
+        long espera = limitador.comprobarIp(endpoint, ip(request));
+        if (espera > 0) {
+            return rechazar(exchange, espera);
+        }
+
+        if (!limitador.limitaCuerpo(endpoint)) {
+            return chain.filter(exchange);
+        }
+
+        return DataBufferUtils.join(request.getBody(), LimitadorPeticiones.MAX_CUERPO)
+                .map(ReactiveLimitePeticionesFilter::leer)
+                .defaultIfEmpty(new byte[0])
+                .flatMap(cuerpo -> {
+                    long esperaCuerpo = limitador.comprobarCuerpo(endpoint, cuerpo);
+                    if (esperaCuerpo > 0) {
+                        return rechazar(exchange, esperaCuerpo);
+                    }
+                    return chain.filter(exchange.mutate().request(new CuerpoLeido(exchange, cuerpo)).build());
+                })
+                .onErrorResume(DataBufferLimitException.class,
+                        e -> escribir(exchange, HttpStatus.PAYLOAD_TOO_LARGE,
+                                new ErrorResponse("Solicitud demasiado grande", "El cuerpo no puede superar "
+                                        + LimitadorPeticiones.MAX_CUERPO + " bytes")));
+    }
+
+    /**
+     * Obtiene la IP del cliente.
+     *
+     * @param request la solicitud HTTP
+     * @return la IP, o null si no se conoce
+     */
+    private static String ip(ServerHttpRequest request) {
+        InetSocketAddress direccion = request.getRemoteAddress();
+        return direccion != null && direccion.getAddress() != null ? direccion.getAddress().getHostAddress() : null;
+    }
+
+    /**
+     * Copia el contenido de un buffer y lo libera.
+     *
+     * @param buffer el buffer
+     * @return el contenido
+     */
+    private static byte[] leer(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Responde con 429 y la cabecera Retry-After.
+     *
+     * @param exchange la solicitud y la respuesta HTTP
+     * @param espera   los milisegundos que faltan para que se permita
+     * @return la finalización de la respuesta
+     */
+    private Mono<Void> rechazar(ServerWebExchange exchange, long espera) {
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                Long.toString(LimitadorPeticiones.segundos(espera)));
+        return escribir(exchange, HttpStatus.TOO_MANY_REQUESTS,
+                new ErrorResponse("Demasiadas solicitudes", "Inténtalo de nuevo más tarde"));
+    }
+
+    /**
+     * Escribe una respuesta de error en JSON.
+     *
+     * @param exchange la solicitud y la respuesta HTTP
+     * @param estado   el estado HTTP
+     * @param error    el error
+     * @return la finalización de la respuesta
+     */
+    private Mono<Void> escribir(ServerWebExchange exchange, HttpStatus estado, ErrorResponse error) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(estado);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return Mono.fromCallable(() -> objectMapper.writeValueAsBytes(error))
+                .flatMap(bytes -> response.writeWith(Mono.just(response.bufferFactory().wrap(bytes))));
+    }
+
+    /**
+     * Solicitud cuyo cuerpo ya se ha leído y se vuelve a ofrecer desde memoria.
+     */
+    private static class CuerpoLeido extends ServerHttpRequestDecorator {
+
+        /**
+         * La solicitud y la respuesta HTTP, para crear los buffers.
+         */
+        private final ServerWebExchange exchange;
+
+        /**
+         * El cuerpo leído.
+         */
+        private final byte[] cuerpo;
+
+        /**
+         * Crea la solicitud.
+         *
+         * @param exchange la solicitud y la respuesta HTTP originales
+         * @param cuerpo   el cuerpo leído
+         */
+        CuerpoLeido(ServerWebExchange exchange, byte[] cuerpo) {
+            super(exchange.getRequest());
+            this.exchange = exchange;
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(cuerpo)));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dnk.casino.Reactive;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsConfigurationSource;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dnk.casino.Limites.LimitadorPeticiones;
+
+/**
+ * Configuración de seguridad de la variante reactiva, con las mismas reglas que
+ * la de servlet.
+ *
+ * @author Danikileitor
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+
+    /**
+     * Limitador de peticiones de autenticación.
+     */
+    @Autowired
+    private LimitadorPeticiones limitadorPeticiones;
+
+    /**
+     * Conversor de JSON.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Configuración de la cadena de filtros de seguridad.
+     *
+     * @param http la configuración de seguridad HTTP
+     * @return la cadena de filtros de seguridad
+     */
+    @Bean
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                // Deshabilitar CSRF
+                .csrf(csrf -> csrf.disable())
+                // Permitimos todas las CORS
+                .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+                // Solo la administración exige un rol
+                .authorizeExchange(auth -> auth
+                        .pathMatchers("/admin/api", "/admin/api/**", "/users", "/users/**")
+                        .hasAuthority("ROLE_ADMIN")
+                        .anyExchange().permitAll())
+                // Deshabilita el login por formulario y la autenticación básica
+                .formLogin(login -> login.disable())
+                .httpBasic(basic -> basic.disable())
+                // Deshabilita X-Frame-Options para que se pueda insertar en iframes
+                .headers(headers -> headers.frameOptions(options -> options.disable()))
+                // Sin sesiones: cada solicitud se autentica con su token
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                // Rechazar las peticiones que superan su límite antes de autenticarlas
+                .addFilterBefore(new ReactiveLimitePeticionesFilter(limitadorPeticiones, objectMapper),
+                        SecurityWebFiltersOrder.AUTHENTICATION)
+                // Añadir el filtro JWT
+                .addFilterAt(new ReactiveJwtAuthenticationFilter(), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    /**
+     * Configuración de CORS para la aplicación.
+     *
+     * @return la configuración de CORS
+     */
+    @Bean
+    CorsConfigurationSource corsConfigurationSource() {
+        CorsConfiguration corsConfiguration = new CorsConfiguration();
+        corsConfiguration.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type",
+                "Idempotency-Key"));
+        corsConfiguration.setAllowedOriginPatterns(List.of("*"));
+        corsConfiguration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
+        corsConfiguration.setAllowCredentials(true);
+        corsConfiguration.setExposedHeaders(List.of("Authorization", "Content-Type"));
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", corsConfiguration);
+        return source;
+    }
+}
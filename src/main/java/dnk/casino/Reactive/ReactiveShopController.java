@@ -0,0 +1,128 @@
+package dnk.casino.Reactive;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Users.JwtTokenUtil;
+import dnk.casino.Users.ResultadoCompra;
+import reactor.core.publisher.Mono;
+
+/**
+ * Controlador reactivo de la tienda del casino, con las mismas rutas y
+ * respuestas que el de servlet.
+ *
+ * @author Danikileitor
+ */
+@RestController
+@RequestMapping("/shop/api")
+public class ReactiveShopController {
+
+    /**
+     * Servicio reactivo de usuarios.
+     */
+    @Autowired
+    private ReactiveUsuarioService usuarioService;
+
+    /**
+     * Servicio reactivo de skins.
+     */
+    @Autowired
+    private ReactiveSkinService skinService;
+
+    /**
+     * Métricas del casino.
+     */
+    @Autowired
+    private CasinoMetrics casinoMetrics;
+
+    /**
+     * Compra una skin para un usuario.
+     *
+     * Si se envía la cabecera Idempotency-Key, los reintentos con la misma clave
+     * devuelven la respuesta original sin volver a cobrar.
+     *
+     * @param token             el token de autenticación
+     * @param claveIdempotencia la clave de idempotencia, opcional
+     * @param request           la solicitud de compra de skin
+     * @return la respuesta de la compra
+     */
+    @PostMapping("/comprar/skin")
+    public Mono<ResponseEntity<String>> buySkin(@RequestHeader("Authorization") String token,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @RequestBody BuySkinRequest request) {
+        return Medicion.medir(casinoMetrics, Metrica.COMPRAR_SKIN, comprarSkin(token, claveIdempotencia, request));
+    }
+
+    /**
+     * Realiza la compra de una skin.
+     *
+     * @param token             el token de autenticación
+     * @param claveIdempotencia la clave de idempotencia, o null
+     * @param request           la solicitud de compra de skin
+     * @return la respuesta de la compra
+     */
+    private Mono<ResponseEntity<String>> comprarSkin(String token, String claveIdempotencia,
+            BuySkinRequest request) {
+        // Extrae el nombre de usuario del token
+        Optional<String> usernameOpt = JwtTokenUtil.extractUsernameFromToken(token);
+        if (usernameOpt.isEmpty()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token inválido"));
+        }
+
+        // Cobra y desbloquea la skin en una única operación atómica
+        return skinService.findByName(request.name())
+                .flatMap(skin -> usuarioService.comprarSkin(usernameOpt.get(), skin, claveIdempotencia)
+                        .map(resultado -> respuesta(resultado, skin)))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.SKIN_NO_ENCONTRADA);
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No existe la skin: " + request.name());
+                }))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage())));
+    }
+
+    /**
+     * Construye la respuesta de una compra y cuenta su resultado.
+     *
+     * @param resultado el resultado de la compra
+     * @param skin      la skin comprada
+     * @return la respuesta
+     */
+    private ResponseEntity<String> respuesta(ResultadoCompra resultado, Skin skin) {
+        return switch (resultado) {
+            case COMPRADA -> ResponseEntity.ok("Has desbloqueado la skin: " + skin.getName());
+            case YA_DESBLOQUEADA -> {
+                casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.SKIN_YA_DESBLOQUEADA);
+                yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Ya tienes la skin: " + skin.getName());
+            }
+            case MONEDAS_INSUFICIENTES -> {
+                casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.MONEDAS_INSUFICIENTES);
+                yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No tienes suficientes monedas");
+            }
+            case USUARIO_NO_ENCONTRADO -> {
+                casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.USUARIO_NO_ENCONTRADO);
+                yield ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuario no encontrado");
+            }
+        };
+    }
+
+    /**
+     * Solicitud de compra de skin.
+     *
+     * @param name el nombre de la skin a comprar
+     */
+    public record BuySkinRequest(String name) {
+    }
+}
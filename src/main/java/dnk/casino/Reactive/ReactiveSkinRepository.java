@@ -0,0 +1,39 @@
+package dnk.casino.Reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+import dnk.casino.Skins.Skin;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Repositorio reactivo de skins para la Tragaperras.
+ *
+ * @author Danikileitor
+ */
+public interface ReactiveSkinRepository extends ReactiveMongoRepository<Skin, String> {
+
+    /**
+     * Busca una skin por su nombre normalizado.
+     *
+     * @param nameLower nombre de la skin en minúsculas
+     * @return la skin encontrada, o vacío si no se encuentra
+     */
+    Mono<Skin> findByNameLower(String nameLower);
+
+    /**
+     * Obtiene las skins que son vendibles o no, según el parámetro.
+     *
+     * @param vendible true para obtener skins vendibles, false para obtener skins
+     *                 no vendibles
+     * @return las skins
+     */
+    Flux<Skin> findAllByVendible(boolean vendible);
+
+    /**
+     * Busca la skin con el mayor ordinal.
+     *
+     * @return la skin encontrada, o vacío si ninguna tiene ordinal
+     */
+    Mono<Skin> findFirstByOrdinalNotNullOrderByOrdinalDesc();
+}
@@ -0,0 +1,204 @@
+package dnk.casino.Reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import dnk.casino.Invalidacion.BusInvalidacion;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
+import dnk.casino.Skins.OrdinalesSkins;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Skins.SkinCatalog;
+import dnk.casino.Skins.SkinService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Servicio reactivo de skins para la Tragaperras.
+ *
+ * Las lecturas se sirven del catálogo en memoria, igual que en
+ * {@link SkinService}; las escrituras usan el driver reactivo de MongoDB y
+ * actualizan el catálogo al terminar.
+ *
+ * @author Danikileitor
+ */
+@Service
+public class ReactiveSkinService {
+
+    /**
+     * Repositorio reactivo de skins.
+     */
+    @Autowired
+    private ReactiveSkinRepository skinRepository;
+
+    /**
+     * Catálogo de skins en memoria.
+     */
+    @Autowired
+    private SkinCatalog skinCatalog;
+
+    /**
+     * Bus de invalidación, que avisa a los catálogos de los demás nodos.
+     */
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    /**
+     * Métricas del casino.
+     */
+    @Autowired
+    private CasinoMetrics casinoMetrics;
+
+    /**
+     * Número máximo de intentos de asignar un ordinal a una skin nueva.
+     */
+    private static final int MAX_INTENTOS_ORDINAL = 3;
+
+    /**
+     * Crea una nueva skin en el sistema.
+     *
+     * @param skin la skin a crear
+     * @return la skin creada
+     */
+    public Mono<Skin> createSkin(Skin skin) {
+        return Medicion.medir(casinoMetrics, Metrica.CREAR_SKIN, Mono.defer(() -> {
+            if (skinCatalog.getByName(skin.getName()) != null) {
+                return Mono.error(new IllegalArgumentException("El nombre de la skin ya existe"));
+            }
+            Skin newSkin = new Skin(skin.getName(), skin.getPrecio(), skin.getDescription(), skin.getReels(),
+                    skin.isVendible());
+            return insertar(newSkin, 1)
+                    .doOnNext(skinCatalog::publicar)
+                    .flatMap(insertada -> invalidar(insertada.getId()).thenReturn(insertada));
+        }));
+    }
+
+    /**
+     * Inserta una skin nueva con el siguiente ordinal libre, reintentando si otro
+     * nodo usa el mismo ordinal a la vez.
+     *
+     * @param skin    la skin
+     * @param intento el número de intento, empezando por 1
+     * @return la skin insertada
+     */
+    private Mono<Skin> insertar(Skin skin, int intento) {
+        return siguienteOrdinal()
+                .flatMap(ordinal -> {
+                    skin.setOrdinal(ordinal);
+                    return skinRepository.insert(skin);
+                })
+                .onErrorResume(DuplicateKeyException.class,
+                        e -> intento < MAX_INTENTOS_ORDINAL ? insertar(skin, intento + 1) : Mono.error(e));
+    }
+
+    /**
+     * Calcula el ordinal de una skin nueva: el siguiente al mayor que hay en
+     * MongoDB o que ha usado este nodo.
+     *
+     * @return el ordinal
+     */
+    private Mono<Integer> siguienteOrdinal() {
+        return skinRepository.findFirstByOrdinalNotNullOrderByOrdinalDesc()
+                .map(ultima -> ultima.getOrdinal() + 1)
+                .defaultIfEmpty(0)
+                .map(siguiente -> Math.max(siguiente, OrdinalesSkins.siguiente()));
+    }
+
+    /**
+     * Busca una skin por su ID.
+     *
+     * @param id el ID de la skin a buscar
+     * @return la skin encontrada, o vacío si no se encuentra
+     */
+    public Mono<Skin> findById(String id) {
+        return Mono.justOrEmpty(skinCatalog.getById(id));
+    }
+
+    /**
+     * Busca una skin por su nombre.
+     *
+     * @param name el nombre de la skin a buscar
+     * @return la skin encontrada, o vacío si no se encuentra
+     */
+    public Mono<Skin> findByName(String name) {
+        return Mono.justOrEmpty(skinCatalog.getByName(name));
+    }
+
+    /**
+     * Obtiene todas las skins.
+     *
+     * @return las skins
+     */
+    public Flux<Skin> getSkins() {
+        return Flux.fromIterable(skinCatalog.getSkins());
+    }
+
+    /**
+     * Actualiza una skin existente en el sistema.
+     *
+     * @param id          el ID de la skin a actualizar
+     * @param updatedSkin la skin actualizada
+     * @return la skin actualizada
+     */
+    public Mono<Skin> updateSkin(String id, Skin updatedSkin) {
+        return Medicion.medir(casinoMetrics, Metrica.ACTUALIZAR_SKIN, skinRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> {
+                    casinoMetrics.contar(Metrica.ACTUALIZAR_SKIN, Resultado.SKIN_NO_ENCONTRADA);
+                    return new RuntimeException("Skin no encontrada");
+                }))
+                .flatMap(skin -> {
+                    if (updatedSkin.getName() != null) {
+                        skin.setName(updatedSkin.getName());
+                    }
+                    if (updatedSkin.getPrecio() >= 0) {
+                        skin.setPrecio(updatedSkin.getPrecio());
+                    }
+                    if (updatedSkin.getDescription() != null) {
+                        skin.setDescription(updatedSkin.getDescription());
+                    }
+                    if (updatedSkin.getReels() != null && updatedSkin.getReels().length > 0) {
+                        skin.setReels(updatedSkin.getReels());
+                    }
+                    skin.setVendible(updatedSkin.isVendible());
+                    return skinRepository.save(skin);
+                })
+                .doOnNext(skinCatalog::publicar)
+                .flatMap(skin -> invalidar(skin.getId()).thenReturn(skin)));
+    }
+
+    /**
+     * Elimina una skin del sistema.
+     *
+     * @param id el ID de la skin a eliminar
+     * @return true si la skin se elimina con éxito, false en caso contrario
+     */
+    public Mono<Boolean> deleteSkin(String id) {
+        return Medicion.medir(casinoMetrics, Metrica.ELIMINAR_SKIN, skinRepository.existsById(id)
+                .flatMap(existe -> {
+                    if (!existe) {
+                        casinoMetrics.contar(Metrica.ELIMINAR_SKIN, Resultado.SKIN_NO_ENCONTRADA);
+                        return Mono.just(false);
+                    }
+                    return skinRepository.deleteById(id)
+                            .then(Mono.fromRunnable(() -> skinCatalog.retirar(id)))
+                            .then(invalidar(id))
+                            .thenReturn(true);
+                }));
+    }
+
+    /**
+     * Avisa a los demás nodos de que una skin ha cambiado. El bus sobre MongoDB
+     * es bloqueante, así que se publica en el planificador boundedElastic.
+     *
+     * @param id el ID de la skin
+     * @return la finalización de la publicación
+     */
+    private Mono<Void> invalidar(String id) {
+        return Mono.<Void>fromRunnable(() -> busInvalidacion.publicar(Tipo.SKIN, id))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,98 @@
+package dnk.casino.Reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import dnk.casino.Users.AuthView;
+import dnk.casino.Users.EstadisticasView;
+import dnk.casino.Users.SaldoView;
+import dnk.casino.Users.Usuario;
+import reactor.core.publisher.Mono;
+
+/**
+ * Repositorio reactivo para la entidad Usuario.
+ *
+ * @author Danikileitor
+ */
+@Repository
+public interface ReactiveUsuarioRepository extends ReactiveMongoRepository<Usuario, String> {
+
+    /**
+     * Busca un usuario por su nombre de usuario, sin distinguir mayúsculas.
+     *
+     * @param username nombre de usuario a buscar
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    default Mono<Usuario> findByUsername(String username) {
+        return username != null ? findByUsernameLower(Usuario.normalizar(username)) : Mono.empty();
+    }
+
+    /**
+     * Busca un usuario por su nombre de usuario normalizado.
+     *
+     * @param usernameLower nombre de usuario en minúsculas
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    Mono<Usuario> findByUsernameLower(String usernameLower);
+
+    /**
+     * Comprueba si existe un usuario con un nombre de usuario normalizado, sin
+     * leer el documento.
+     *
+     * @param usernameLower nombre de usuario en minúsculas
+     * @return true si existe, false en caso contrario
+     */
+    Mono<Boolean> existsByUsernameLower(String usernameLower);
+
+    /**
+     * Busca los datos de autenticación de un usuario por su nombre de usuario
+     * normalizado.
+     *
+     * @param usernameLower nombre de usuario en minúsculas
+     * @return los datos de autenticación, o vacío si no se encuentra
+     */
+    Mono<AuthView> findAuthByUsernameLower(String usernameLower);
+
+    /**
+     * Busca el saldo de un usuario por su ID.
+     *
+     * @param id ID del usuario
+     * @return el saldo, o vacío si no se encuentra
+     */
+    Mono<SaldoView> findSaldoById(String id);
+
+    /**
+     * Busca las estadísticas de juego de un usuario por su ID.
+     *
+     * @param id ID del usuario
+     * @return las estadísticas, o vacío si no se encuentra
+     */
+    Mono<EstadisticasView> findEstadisticasById(String id);
+
+    /**
+     * Busca un usuario por su correo electrónico, sin distinguir mayúsculas.
+     *
+     * @param email correo electrónico a buscar
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    default Mono<Usuario> findByEmail(String email) {
+        return email != null ? findByEmailLower(Usuario.normalizar(email)) : Mono.empty();
+    }
+
+    /**
+     * Busca un usuario por su correo electrónico normalizado.
+     *
+     * @param emailLower correo electrónico en minúsculas
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    Mono<Usuario> findByEmailLower(String emailLower);
+
+    /**
+     * Comprueba si existe un usuario con un correo electrónico normalizado, sin
+     * leer el documento.
+     *
+     * @param emailLower correo electrónico en minúsculas
+     * @return true si existe, false en caso contrario
+     */
+    Mono<Boolean> existsByEmailLower(String emailLower);
+}
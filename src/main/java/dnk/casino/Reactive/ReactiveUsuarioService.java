@@ -0,0 +1,565 @@
+package dnk.casino.Reactive;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import dnk.casino.Config.CalendarioCasino;
+import dnk.casino.Config.PasswordHasher;
+import dnk.casino.Config.PasswordHasher.Operacion;
+import dnk.casino.Error.ServidorOcupadoException;
+import dnk.casino.Invalidacion.BusInvalidacion;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import dnk.casino.Leaderboard.Leaderboard;
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Leaderboard.LeaderboardService.Clasificacion;
+import dnk.casino.Leaderboard.LeaderboardService.Ventana;
+import dnk.casino.Leaderboard.PosicionClasificacion;
+import dnk.casino.Leaderboard.PuestoClasificacion;
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Skins.SkinCatalog;
+import dnk.casino.Users.AuthView;
+import dnk.casino.Users.EstadisticasView;
+import dnk.casino.Users.ResultadoCompra;
+import dnk.casino.Users.SaldoView;
+import dnk.casino.Users.Usuario;
+import dnk.casino.Users.UsuarioService;
+import dnk.casino.Users.VictoriasDiferidas;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Servicio reactivo para la gestión de usuarios.
+ *
+ * Ofrece las mismas operaciones que {@link UsuarioService} sin bloquear el hilo
+ * que las solicita: MongoDB se usa a través del driver reactivo y BCrypt se
+ * ejecuta en el grupo de hilos de {@link PasswordHasher}.
+ *
+ * @author Danikileitor
+ */
+@Service
+public class ReactiveUsuarioService {
+
+    /**
+     * Repositorio reactivo de usuarios.
+     */
+    @Autowired
+    private ReactiveUsuarioRepository usuarioRepository;
+
+    /**
+     * Plantilla reactiva de MongoDB.
+     */
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Servicio de usuarios bloqueante, usado solo por las compras con clave de
+     * idempotencia.
+     */
+    @Autowired
+    private UsuarioService usuarioService;
+
+    /**
+     * Catálogo de skins en memoria.
+     */
+    @Autowired
+    private SkinCatalog skinCatalog;
+
+    /**
+     * Codificador de contraseñas.
+     */
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    /**
+     * Métricas del casino.
+     */
+    @Autowired
+    private CasinoMetrics casinoMetrics;
+
+    /**
+     * Servicio de clasificaciones.
+     */
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    /**
+     * Bus de invalidación de cachés entre nodos.
+     */
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    /**
+     * Días del casino.
+     */
+    @Autowired
+    private CalendarioCasino calendarioCasino;
+
+    /**
+     * Escritura diferida de las victorias.
+     */
+    @Autowired
+    private VictoriasDiferidas victoriasDiferidas;
+
+    /**
+     * Número máximo de intentos de una compra cuyo estado cambia mientras se
+     * comprueba el motivo del fallo.
+     */
+    private static final int MAX_INTENTOS_COMPRA = 3;
+
+    /**
+     * Registra un nuevo usuario en el sistema.
+     *
+     * @param username nombre de usuario
+     * @param password contraseña
+     * @param email    correo electrónico
+     * @param rol      rol del usuario
+     * @return el usuario registrado
+     */
+    public Mono<Usuario> registrarUsuario(String username, String password, String email, Usuario.Rol rol) {
+        Mono<Boolean> usernameExiste = username != null
+                ? usuarioRepository.existsByUsernameLower(Usuario.normalizar(username))
+                : Mono.just(false);
+        Mono<Boolean> emailExiste = email != null
+                ? usuarioRepository.existsByEmailLower(Usuario.normalizar(email))
+                : Mono.just(false);
+        return Medicion.medir(casinoMetrics, Metrica.REGISTRO, usernameExiste
+                .flatMap(existe -> existe
+                        ? Mono.<Boolean>error(new IllegalArgumentException("El nombre de usuario ya existe"))
+                        : emailExiste)
+                .flatMap(existe -> existe
+                        ? Mono.<String>error(new IllegalArgumentException("El email ya está en uso"))
+                        : Mono.fromFuture(() -> passwordHasher.encodeAsync(Operacion.REGISTRO, password)))
+                .flatMap(hash -> {
+                    Usuario usuario = new Usuario(username, hash, email);
+                    usuario.setRol(rol);
+                    usuario.desbloquearSkin(skinCatalog.findByName("Comida Basura").get().getId());
+                    return usuarioRepository.save(usuario);
+                })
+                .doOnNext(leaderboardService::registrarUsuario));
+    }
+
+    /**
+     * Inicia sesión un usuario en el sistema.
+     *
+     * Lee el usuario completo después de autenticarlo; si solo se necesitan el
+     * ID, el nombre y el rol, es preferible {@link #autenticar(String, String)}.
+     *
+     * @param username nombre de usuario
+     * @param password contraseña
+     * @return el usuario logueado, o vacío si no se loguea con éxito
+     */
+    public Mono<Usuario> login(String username, String password) {
+        return autenticar(username, password).flatMap(auth -> usuarioRepository.findById(auth.getId()));
+    }
+
+    /**
+     * Autentica a un usuario leyendo solo su ID, nombre, contraseña codificada y
+     * rol.
+     *
+     * @param username nombre de usuario
+     * @param password contraseña
+     * @return los datos de autenticación del usuario, o vacío si no se autentica
+     *         con éxito
+     */
+    public Mono<AuthView> autenticar(String username, String password) {
+        Mono<AuthView> usuario = username != null
+                ? usuarioRepository.findAuthByUsernameLower(Usuario.normalizar(username))
+                : Mono.empty();
+        return Medicion.medir(casinoMetrics, Metrica.LOGIN, usuario
+                .switchIfEmpty(Mono.fromRunnable(
+                        () -> casinoMetrics.contar(Metrica.LOGIN, Resultado.USUARIO_NO_ENCONTRADO)))
+                .flatMap(auth -> Mono
+                        .fromFuture(() -> passwordHasher.matchesAsync(Operacion.LOGIN, password, auth.getPassword()))
+                        .flatMap(coincide -> coincide
+                                ? Mono.just(auth)
+                                : Mono.<AuthView>fromRunnable(() -> casinoMetrics.contar(Metrica.LOGIN,
+                                        Resultado.CREDENCIALES_INVALIDAS)))));
+    }
+
+    /**
+     * Busca un usuario por su id.
+     *
+     * @param id id del usuario a buscar
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    public Mono<Usuario> findById(String id) {
+        return Medicion.medir(casinoMetrics, Metrica.BUSCAR_POR_ID, usuarioRepository.findById(id));
+    }
+
+    /**
+     * Busca un usuario por su nombre de usuario.
+     *
+     * @param username nombre de usuario a buscar
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    public Mono<Usuario> findByUsername(String username) {
+        return Medicion.medir(casinoMetrics, Metrica.BUSCAR_POR_USERNAME, usuarioRepository.findByUsername(username));
+    }
+
+    /**
+     * Busca un usuario por su correo electrónico.
+     *
+     * @param email correo electrónico a buscar
+     * @return el usuario encontrado, o vacío si no se encuentra
+     */
+    public Mono<Usuario> findByEmail(String email) {
+        return Medicion.medir(casinoMetrics, Metrica.BUSCAR_POR_EMAIL, usuarioRepository.findByEmail(email));
+    }
+
+    /**
+     * Registra un inicio de sesión con una única actualización atómica, igual
+     * que {@link UsuarioService#registrarLogin(String)}.
+     *
+     * @param id ID del usuario
+     * @return true si se ha dado la recompensa diaria, false en caso contrario
+     */
+    public Mono<Boolean> registrarLogin(String id) {
+        return Medicion.medir(casinoMetrics, Metrica.REGISTRAR_LOGIN, Mono.defer(() -> {
+            int hoy = calendarioCasino.hoy();
+
+            Query query = Query.query(Criteria.where("_id").is(id));
+            query.fields().include("lastLoginDay", "coins", "versionSaldo");
+
+            // Se devuelve el documento anterior para saber si se ha dado la recompensa
+            return reactiveMongoTemplate.findAndModify(query, UsuarioService.actualizacionLogin(hoy), Usuario.class)
+                    .switchIfEmpty(Mono.error(() -> usuarioNoEncontrado(Metrica.REGISTRAR_LOGIN)))
+                    .map(anterior -> {
+                        boolean recompensa = anterior.isFirstLoginOfDay(hoy);
+                        if (recompensa) {
+                            leaderboardService.actualizarMonedas(id,
+                                    anterior.getCoins() + UsuarioService.RECOMPENSA_DIARIA,
+                                    anterior.getVersionSaldo() + 1);
+                        }
+                        return recompensa;
+                    });
+        }));
+    }
+
+    /**
+     * Elimina un usuario del sistema.
+     *
+     * @param id ID del usuario a eliminar
+     * @return true si el usuario se elimina con éxito, false en caso contrario
+     */
+    public Mono<Boolean> deleteUser(String id) {
+        return Medicion.medir(casinoMetrics, Metrica.ELIMINAR_USUARIO, reactiveMongoTemplate
+                .remove(Query.query(Criteria.where("_id").is(id)), Usuario.class)
+                .flatMap(resultado -> {
+                    if (resultado.getDeletedCount() > 0) {
+                        // Borrar sus puntuaciones y publicar la invalidación bloquean
+                        return Mono.fromRunnable(() -> {
+                            leaderboardService.eliminarUsuario(id);
+                            busInvalidacion.publicar(Tipo.USUARIO, id);
+                        }).subscribeOn(Schedulers.boundedElastic()).thenReturn(true);
+                    }
+                    casinoMetrics.contar(Metrica.ELIMINAR_USUARIO, Resultado.USUARIO_NO_ENCONTRADO);
+                    return Mono.just(false);
+                }));
+    }
+
+    /**
+     * Reduce una cantidad de monedas a un usuario.
+     *
+     * @param id    ID del usuario a pagar
+     * @param coins cantidad de monedas a pagar
+     * @return el usuario actualizado
+     */
+    public Mono<Usuario> pagar(String id, int coins) {
+        return Medicion.medir(casinoMetrics, Metrica.PAGAR, incrementar(Metrica.PAGAR, id, "coins", -coins));
+    }
+
+    /**
+     * Aumenta una cantidad de monedas a un usuario.
+     *
+     * @param id    ID del usuario a cobrar
+     * @param coins cantidad de monedas a cobrar
+     * @return el usuario actualizado
+     */
+    public Mono<Usuario> cobrar(String id, int coins) {
+        return Medicion.medir(casinoMetrics, Metrica.COBRAR, incrementar(Metrica.COBRAR, id, "coins", coins));
+    }
+
+    /**
+     * Suma (o resta, si es negativa) una cantidad a un campo numérico de un
+     * usuario con un único $inc atómico.
+     *
+     * @param metrica la operación que modifica el campo
+     * @param id      ID del usuario
+     * @param campo   el campo
+     * @param delta   cantidad a sumar
+     * @return el usuario actualizado
+     */
+    private Mono<Usuario> incrementar(Metrica metrica, String id, String campo, int delta) {
+        Update update = new Update().inc(campo, delta);
+        if (campo.equals("coins")) {
+            update.inc("versionSaldo", 1);
+        }
+        return reactiveMongoTemplate
+                .findAndModify(Query.query(Criteria.where("_id").is(id)), update,
+                        FindAndModifyOptions.options().returnNew(true), Usuario.class)
+                .switchIfEmpty(Mono.error(() -> usuarioNoEncontrado(metrica)))
+                .doOnNext(usuario -> {
+                    if (campo.equals("coins")) {
+                        leaderboardService.actualizarMonedas(id, usuario.getCoins(), usuario.getVersionSaldo());
+                    }
+                });
+    }
+
+    /**
+     * Compra una skin para un usuario con un único findAndModify condicional,
+     * igual que {@link UsuarioService#comprarSkin(String, Skin)}.
+     *
+     * @param username nombre del usuario
+     * @param skin     skin a comprar
+     * @return el resultado de la compra, o un fallo con
+     *         {@link ServidorOcupadoException} si el estado del usuario cambia en
+     *         cada intento
+     */
+    public Mono<ResultadoCompra> comprarSkin(String username, Skin skin) {
+        if (skin.getPrecio() < 0) {
+            return Mono.error(new IllegalArgumentException("El precio de la skin no puede ser negativo"));
+        }
+        Criteria porUsername = Criteria.where("usernameLower").is(Usuario.normalizar(username));
+        Query compra = Query.query(porUsername)
+                .addCriteria(Criteria.where("coins").gte(skin.getPrecio()))
+                .addCriteria(Criteria.where("skins").ne(skin.getId()));
+        compra.fields().include("coins", "versionSaldo");
+        Update update = new Update().inc("coins", -skin.getPrecio()).inc("versionSaldo", 1)
+                .addToSet("skins", skin.getId());
+
+        Query estado = Query.query(porUsername);
+        estado.fields().include("coins", "skins");
+        return intentarCompra(compra, update, estado, skin, 0);
+    }
+
+    /**
+     * Compra una skin para un usuario una sola vez por clave de idempotencia.
+     *
+     * El registro de claves de idempotencia es bloqueante, así que las compras
+     * con clave se ejecutan en el planificador boundedElastic; las compras sin
+     * clave no bloquean.
+     *
+     * @param username          nombre del usuario
+     * @param skin              skin a comprar
+     * @param claveIdempotencia clave de idempotencia, o null para no usarla
+     * @return el resultado de la compra
+     */
+    public Mono<ResultadoCompra> comprarSkin(String username, Skin skin, String claveIdempotencia) {
+        if (claveIdempotencia == null) {
+            return comprarSkin(username, skin);
+        }
+        return Mono.fromCallable(() -> usuarioService.comprarSkin(username, skin, claveIdempotencia))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Intenta aplicar una compra y, si no se aplica, lee el usuario para saber el
+     * motivo. Si para entonces ya cumple las condiciones, vuelve a intentarlo.
+     *
+     * @param compra  la consulta condicional de la compra
+     * @param update  la actualización de la compra
+     * @param estado  la consulta del saldo y las skins del usuario
+     * @param skin    la skin a comprar
+     * @param intento el número de intento, empezando por 0
+     * @return el resultado de la compra
+     */
+    private Mono<ResultadoCompra> intentarCompra(Query compra, Update update, Query estado, Skin skin,
+            int intento) {
+        return reactiveMongoTemplate
+                .findAndModify(compra, update, FindAndModifyOptions.options().returnNew(true), Usuario.class)
+                .map(usuario -> {
+                    leaderboardService.actualizarMonedas(usuario.getId(), usuario.getCoins(),
+                            usuario.getVersionSaldo());
+                    return ResultadoCompra.COMPRADA;
+                })
+                .switchIfEmpty(Mono.defer(() -> reactiveMongoTemplate.findOne(estado, Usuario.class)
+                        .flatMap(usuario -> Mono.justOrEmpty(motivoFallo(usuario, skin))
+                                .switchIfEmpty(Mono.defer(() -> intento + 1 < MAX_INTENTOS_COMPRA
+                                        ? intentarCompra(compra, update, estado, skin, intento + 1)
+                                        : Mono.error(new ServidorOcupadoException(
+                                                "No se ha podido completar la compra, inténtalo de nuevo")))))
+                        .defaultIfEmpty(ResultadoCompra.USUARIO_NO_ENCONTRADO)));
+    }
+
+    /**
+     * Obtiene el motivo por el que un usuario no puede comprar una skin.
+     *
+     * @param usuario el usuario, con su saldo y sus skins
+     * @param skin    la skin
+     * @return el motivo, o null si el usuario puede comprarla
+     */
+    private static ResultadoCompra motivoFallo(Usuario usuario, Skin skin) {
+        if (usuario.getSkins() != null && usuario.getSkins().contains(skin.getId())) {
+            return ResultadoCompra.YA_DESBLOQUEADA;
+        }
+        if (usuario.getCoins() < skin.getPrecio()) {
+            return ResultadoCompra.MONEDAS_INSUFICIENTES;
+        }
+        return null;
+    }
+
+    /**
+     * Obtiene las estadísticas de juego de un usuario, leyendo solo sus
+     * victorias.
+     *
+     * @param id ID del usuario
+     * @return las estadísticas del usuario
+     */
+    public Mono<EstadisticasView> getEstadisticas(String id) {
+        return usuarioRepository.findEstadisticasById(id)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Usuario no encontrado")));
+    }
+
+    /**
+     * Obtiene el saldo de un usuario, leyendo solo sus monedas.
+     *
+     * @param id ID del usuario
+     * @return el saldo del usuario
+     */
+    public Mono<SaldoView> getSaldo(String id) {
+        return usuarioRepository.findSaldoById(id)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Usuario no encontrado")));
+    }
+
+    /**
+     * Registra una victoria para un usuario con un único $inc.
+     *
+     * @param id ID del usuario
+     * @return el usuario actualizado
+     */
+    public Mono<Usuario> victoria(String id) {
+        return Medicion.medir(casinoMetrics, Metrica.VICTORIA,
+                incrementar(Metrica.VICTORIA, id, "wins", 1)
+                        .doOnNext(usuario -> leaderboardService.registrarVictorias(usuario, 1, 0)));
+    }
+
+    /**
+     * Registra una victoria en blackjack para un usuario con un único $inc.
+     *
+     * @param id ID del usuario
+     * @return el usuario actualizado
+     */
+    public Mono<Usuario> bjvictoria(String id) {
+        return Medicion.medir(casinoMetrics, Metrica.BJVICTORIA,
+                incrementar(Metrica.BJVICTORIA, id, "bjwins", 1)
+                        .doOnNext(usuario -> leaderboardService.registrarVictorias(usuario, 0, 1)));
+    }
+
+    /**
+     * Registra una victoria para un usuario sin devolverlo, igual que
+     * {@link UsuarioService#registrarVictoria(String)}.
+     *
+     * @param id ID del usuario
+     * @return la finalización del registro
+     */
+    public Mono<Void> registrarVictoria(String id) {
+        if (victoriasDiferidas.isActivas()) {
+            // Acumular en memoria no bloquea
+            return Mono.fromRunnable(() -> usuarioService.registrarVictoria(id));
+        }
+        return victoria(id).then();
+    }
+
+    /**
+     * Registra una victoria en blackjack para un usuario sin devolverlo, igual que
+     * {@link UsuarioService#registrarBjVictoria(String)}.
+     *
+     * @param id ID del usuario
+     * @return la finalización del registro
+     */
+    public Mono<Void> registrarBjVictoria(String id) {
+        if (victoriasDiferidas.isActivas()) {
+            return Mono.fromRunnable(() -> usuarioService.registrarBjVictoria(id));
+        }
+        return bjvictoria(id).then();
+    }
+
+    /**
+     * Obtiene los 5 usuarios con más victorias.
+     *
+     * @return los usuarios, de mayor a menor número de victorias
+     */
+    public Flux<Usuario> getTop5Winners() {
+        return Medicion.medir(casinoMetrics, Metrica.TOP_WINNERS,
+                cargarUsuarios(leaderboardService.getTopWinners(5)));
+    }
+
+    /**
+     * Obtiene los 5 usuarios con más victorias en blackjack.
+     *
+     * @return los usuarios, de mayor a menor número de victorias en blackjack
+     */
+    public Flux<Usuario> getTop5BJWinners() {
+        return Medicion.medir(casinoMetrics, Metrica.TOP_BJWINNERS,
+                cargarUsuarios(leaderboardService.getTopBJWinners(5)));
+    }
+
+    /**
+     * Obtiene los N primeros usuarios de una clasificación en una ventana de
+     * tiempo, igual que
+     * {@link UsuarioService#getClasificacion(Clasificacion, Ventana, int)}. Se
+     * lee de memoria, así que no bloquea.
+     *
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param n             número de usuarios
+     * @return los puestos, de mayor a menor puntuación
+     */
+    public Flux<PuestoClasificacion> getClasificacion(Clasificacion clasificacion, Ventana ventana, int n) {
+        return Flux.defer(() -> Flux.fromIterable(usuarioService.getClasificacion(clasificacion, ventana, n)));
+    }
+
+    /**
+     * Obtiene la posición de un usuario en una clasificación a partir de su
+     * nombre, igual que
+     * {@link UsuarioService#getPosicionPorUsername(String, Clasificacion, Ventana, int)}.
+     * Se calcula en memoria, así que no bloquea.
+     *
+     * @param username      nombre del usuario
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param vecinos       número de usuarios a cada lado
+     * @return la posición, o vacío si el usuario no está en la clasificación
+     */
+    public Mono<PosicionClasificacion> getPosicionPorUsername(String username, Clasificacion clasificacion,
+            Ventana ventana, int vecinos) {
+        return Mono.defer(() -> Mono.justOrEmpty(
+                usuarioService.getPosicionPorUsername(username, clasificacion, ventana, vecinos)));
+    }
+
+    /**
+     * Carga en una sola consulta los usuarios de una clasificación, conservando
+     * su orden.
+     *
+     * @param entradas entradas de la clasificación
+     * @return los usuarios en el mismo orden que las entradas
+     */
+    private Flux<Usuario> cargarUsuarios(List<Leaderboard.Entrada> entradas) {
+        return usuarioRepository.findAllById(entradas.stream().map(Leaderboard.Entrada::id).toList())
+                .collectMap(Usuario::getId)
+                .flatMapMany(usuarios -> Flux.fromIterable(entradas)
+                        .mapNotNull(entrada -> usuarios.get(entrada.id())));
+    }
+
+    /**
+     * Cuenta un usuario no encontrado y crea la excepción correspondiente.
+     *
+     * @param metrica la operación que no lo ha encontrado
+     * @return la excepción
+     */
+    private RuntimeException usuarioNoEncontrado(Metrica metrica) {
+        casinoMetrics.contar(metrica, Resultado.USUARIO_NO_ENCONTRADO);
+        return new RuntimeException("Usuario no encontrado");
+    }
+}
@@ -0,0 +1,108 @@
+package dnk.casino.Skins;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registro de los ordinales de las skins.
+ *
+ * Cada skin tiene un ordinal estable y persistido que permite guardar las
+ * skins desbloqueadas de un usuario como un conjunto de bits. El registro es
+ * estático porque lo usan las entidades que descodifica MongoDB, que no son
+ * beans de Spring; lo publica {@link SkinCatalog} cada vez que cambia el
+ * catálogo.
+ *
+ * Dentro de un mismo proceso las asignaciones nunca se retiran, ni siquiera al
+ * eliminar la skin, para que un bit ya activado siga correspondiendo siempre a
+ * la misma skin.
+ *
+ * @author Danikileitor
+ */
+public final class OrdinalesSkins {
+
+    /**
+     * Instantánea inmutable del registro.
+     *
+     * @param porId      ordinal de cada ID de skin
+     * @param porOrdinal ID de la skin de cada ordinal, o null si está libre
+     */
+    private record Registro(Map<String, Integer> porId, String[] porOrdinal) {
+    }
+
+    /**
+     * Registro actual.
+     */
+    private static final AtomicReference<Registro> registro = new AtomicReference<>(
+            new Registro(Map.of(), new String[0]));
+
+    private OrdinalesSkins() {
+    }
+
+    /**
+     * Obtiene el ordinal de una skin.
+     *
+     * @param id el ID de la skin
+     * @return el ordinal, o -1 si la skin no está registrada
+     */
+    public static int ordinal(String id) {
+        Integer ordinal = registro.get().porId().get(id);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Obtiene el ID de la skin de un ordinal.
+     *
+     * @param ordinal el ordinal
+     * @return el ID de la skin, o null si el ordinal no está asignado
+     */
+    public static String id(int ordinal) {
+        String[] porOrdinal = registro.get().porOrdinal();
+        return ordinal >= 0 && ordinal < porOrdinal.length ? porOrdinal[ordinal] : null;
+    }
+
+    /**
+     * Obtiene el primer ordinal que no ha usado ninguna skin registrada.
+     *
+     * @return el siguiente ordinal libre
+     */
+    public static int siguiente() {
+        return registro.get().porOrdinal().length;
+    }
+
+    /**
+     * Añade al registro los ordinales de unas skins. Las skins sin ordinal, las
+     * ya registradas y las que tienen un ordinal ocupado por otra skin se
+     * ignoran; sus IDs se siguen guardando como texto.
+     *
+     * @param skins las skins
+     */
+    static void registrar(Collection<Skin> skins) {
+        registro.updateAndGet(actual -> {
+            Map<String, Integer> porId = null;
+            String[] porOrdinal = actual.porOrdinal();
+            for (Skin skin : skins) {
+                Integer ordinal = skin.getOrdinal();
+                if (ordinal == null || ordinal < 0 || skin.getId() == null
+                        || actual.porId().containsKey(skin.getId())) {
+                    continue;
+                }
+                if (ordinal < porOrdinal.length && porOrdinal[ordinal] != null) {
+                    continue;
+                }
+                if (porId == null) {
+                    porId = new HashMap<>(actual.porId());
+                    porOrdinal = porOrdinal.clone();
+                }
+                if (ordinal >= porOrdinal.length) {
+                    porOrdinal = Arrays.copyOf(porOrdinal, ordinal + 1);
+                }
+                porOrdinal[ordinal] = skin.getId();
+                porId.put(skin.getId(), ordinal);
+            }
+            return porId == null ? actual : new Registro(Map.copyOf(porId), porOrdinal);
+        });
+    }
+}
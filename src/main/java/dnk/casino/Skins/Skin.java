@@ -1,5 +1,7 @@
 package dnk.casino.Skins;
 
+import java.util.Locale;
+
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -21,6 +23,12 @@ public class Skin {
      */
     private String name;
 
+    /**
+     * Nombre de la skin normalizado en minúsculas, usado para las búsquedas
+     * indexadas sin distinguir mayúsculas.
+     */
+    private String nameLower;
+
     /**
      * Precio de la skin.
      */
@@ -41,6 +49,12 @@ public class Skin {
      */
     private boolean vendible;
 
+    /**
+     * Ordinal estable de la skin, usado para guardar las skins desbloqueadas de
+     * los usuarios como bits. Es null hasta que se asigna.
+     */
+    private Integer ordinal;
+
     /**
      * Constructor que inicializa la skin con todos los atributos.
      * 
@@ -51,7 +65,7 @@ public class Skin {
      * @param vendible    indica si la skin es vendible
      */
     public Skin(String name, int precio, String description, String[] reels, boolean vendible) {
-        this.name = name;
+        setName(name);
         this.precio = precio;
         this.description = description;
         this.reels = reels;
@@ -96,6 +110,19 @@ public class Skin {
         this(name, 0, description, reels, true);
     }
 
+    /**
+     * Constructor que copia otra skin, incluidos su ID, su ordinal y una copia de
+     * sus reels.
+     * 
+     * @param otra la skin a copiar
+     */
+    public Skin(Skin otra) {
+        this(otra.name, otra.precio, otra.description, otra.reels != null ? otra.reels.clone() : null,
+                otra.vendible);
+        this.id = otra.id;
+        this.ordinal = otra.ordinal;
+    }
+
     /**
      * Constructor vacío.
      */
@@ -136,6 +163,7 @@ public class Skin {
      */
     public void setName(String name) {
         this.name = name;
+        this.nameLower = name != null ? name.toLowerCase(Locale.ROOT) : null;
     }
 
     /**
@@ -209,4 +237,22 @@ public class Skin {
     public void setVendible(boolean vendible) {
         this.vendible = vendible;
     }
+
+    /**
+     * Obtiene el ordinal de la skin.
+     * 
+     * @return ordinal, o null si no tiene
+     */
+    public Integer getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Establece el ordinal de la skin.
+     * 
+     * @param ordinal ordinal
+     */
+    public void setOrdinal(Integer ordinal) {
+        this.ordinal = ordinal;
+    }
 }
@@ -0,0 +1,245 @@
+package dnk.casino.Skins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import dnk.casino.Invalidacion.BusInvalidacion;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Catálogo de skins en memoria.
+ *
+ * Guarda una instantánea inmutable de todas las skins, indexada por ID y por
+ * nombre (sin distinguir mayúsculas). Las lecturas no acceden a MongoDB; las
+ * escrituras de {@link SkinService} sustituyen la instantánea de forma atómica.
+ *
+ * Skin es mutable, así que el catálogo guarda copias de las skins que recibe y
+ * devuelve una copia en cada lectura: modificar una skin leída no cambia la de
+ * los demás hilos ni la del catálogo. Se carga después de las migraciones para
+ * que todas las skins tengan ya su ordinal. Los cambios hechos en otros nodos
+ * llegan por el {@link BusInvalidacion}, y la skin afectada se vuelve a leer de
+ * MongoDB.
+ *
+ * @author Danikileitor
+ */
+@Component
+@DependsOn("mongoMigrations")
+public class SkinCatalog {
+
+    /**
+     * Repositorio de skins.
+     */
+    @Autowired
+    private SkinRepository skinRepository;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Bus de invalidación, con los cambios de skins de otros nodos.
+     */
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    /**
+     * Instantánea actual del catálogo.
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.of(List.of()));
+
+    /**
+     * Instantánea inmutable del catálogo.
+     *
+     * @param skins     todas las skins
+     * @param porId     skins indexadas por ID
+     * @param porNombre skins indexadas por nombre, sin distinguir mayúsculas
+     */
+    private record Snapshot(List<Skin> skins, Map<String, Skin> porId, NavigableMap<String, Skin> porNombre) {
+
+        /**
+         * Crea una instantánea a partir de una lista de skins.
+         *
+         * @param skins las skins
+         * @return la instantánea
+         */
+        static Snapshot of(List<Skin> skins) {
+            Map<String, Skin> porId = new HashMap<>();
+            TreeMap<String, Skin> porNombre = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Skin skin : skins) {
+                porId.put(skin.getId(), skin);
+                if (skin.getName() != null) {
+                    porNombre.put(skin.getName(), skin);
+                }
+            }
+            return new Snapshot(List.copyOf(skins), Map.copyOf(porId),
+                    Collections.unmodifiableNavigableMap(porNombre));
+        }
+
+        /**
+         * Crea una nueva instantánea con una skin añadida o sustituida.
+         *
+         * @param skin la skin
+         * @return la nueva instantánea
+         */
+        Snapshot with(Skin skin) {
+            List<Skin> nuevas = new ArrayList<>(skins.size() + 1);
+            for (Skin actual : skins) {
+                if (!actual.getId().equals(skin.getId())) {
+                    nuevas.add(actual);
+                }
+            }
+            nuevas.add(skin);
+            return of(nuevas);
+        }
+
+        /**
+         * Crea una nueva instantánea sin una skin.
+         *
+         * @param id el ID de la skin
+         * @return la nueva instantánea
+         */
+        Snapshot without(String id) {
+            List<Skin> nuevas = new ArrayList<>(skins);
+            nuevas.removeIf(skin -> skin.getId().equals(id));
+            return of(nuevas);
+        }
+    }
+
+    /**
+     * Registra el tamaño del catálogo como métrica, lo carga y se suscribe a los
+     * cambios de skins de otros nodos.
+     */
+    @PostConstruct
+    public void iniciar() {
+        Gauge.builder("dnk.casino.skins.catalogo", this, SkinCatalog::size)
+                .description("Skins en el catálogo en memoria")
+                .register(meterRegistry);
+        recargar();
+        busInvalidacion.suscribir(Tipo.SKIN, invalidacion -> refrescar(invalidacion.id()));
+    }
+
+    /**
+     * Carga el catálogo completo desde MongoDB.
+     */
+    public void recargar() {
+        List<Skin> skins = skinRepository.findAll();
+        OrdinalesSkins.registrar(skins);
+        snapshot.set(Snapshot.of(skins.stream().map(Skin::new).toList()));
+    }
+
+    /**
+     * Añade o sustituye una skin en el catálogo. Lo usan los servicios de skins
+     * después de guardarla.
+     *
+     * @param skin la skin guardada
+     */
+    public void publicar(Skin skin) {
+        Skin copia = new Skin(skin);
+        OrdinalesSkins.registrar(List.of(copia));
+        snapshot.updateAndGet(actual -> actual.with(copia));
+    }
+
+    /**
+     * Retira una skin del catálogo. Lo usan los servicios de skins después de
+     * eliminarla.
+     *
+     * @param id el ID de la skin
+     */
+    public void retirar(String id) {
+        snapshot.updateAndGet(actual -> actual.without(id));
+    }
+
+    /**
+     * Vuelve a leer una skin de MongoDB después de que otro nodo la haya
+     * cambiado: la sustituye en el catálogo o la retira si ya no existe.
+     *
+     * @param id el ID de la skin
+     */
+    private void refrescar(String id) {
+        skinRepository.findById(id).ifPresentOrElse(this::publicar, () -> retirar(id));
+    }
+
+    /**
+     * Obtiene una skin por su ID.
+     *
+     * @param id el ID de la skin
+     * @return una copia de la skin, o null si no existe
+     */
+    public Skin getById(String id) {
+        return copiar(id != null ? snapshot.get().porId().get(id) : null);
+    }
+
+    /**
+     * Obtiene una skin por su nombre, sin distinguir mayúsculas.
+     *
+     * @param name el nombre de la skin
+     * @return una copia de la skin, o null si no existe
+     */
+    public Skin getByName(String name) {
+        return copiar(name != null ? snapshot.get().porNombre().get(name) : null);
+    }
+
+    /**
+     * Busca una skin por su ID.
+     *
+     * @param id el ID de la skin
+     * @return la skin encontrada, o un Optional vacío si no se encuentra
+     */
+    public Optional<Skin> findById(String id) {
+        return Optional.ofNullable(getById(id));
+    }
+
+    /**
+     * Busca una skin por su nombre, sin distinguir mayúsculas.
+     *
+     * @param name el nombre de la skin
+     * @return la skin encontrada, o un Optional vacío si no se encuentra
+     */
+    public Optional<Skin> findByName(String name) {
+        return Optional.ofNullable(getByName(name));
+    }
+
+    /**
+     * Obtiene todas las skins del catálogo.
+     *
+     * @return lista inmutable con una copia de cada skin
+     */
+    public List<Skin> getSkins() {
+        return snapshot.get().skins().stream().map(Skin::new).toList();
+    }
+
+    /**
+     * Copia una skin del catálogo para devolverla.
+     *
+     * @param skin la skin del catálogo, o null
+     * @return la copia, o null si la skin es null
+     */
+    private static Skin copiar(Skin skin) {
+        return skin != null ? new Skin(skin) : null;
+    }
+
+    /**
+     * Obtiene el número de skins del catálogo.
+     *
+     * @return número de skins
+     */
+    public int size() {
+        return snapshot.get().skins().size();
+    }
+}
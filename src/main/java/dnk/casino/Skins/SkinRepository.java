@@ -1,10 +1,10 @@
 package dnk.casino.Skins;
 
+import java.util.Locale;
 import java.util.Optional;
 import java.util.List;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 
 /**
  * Repositorio de skins para la Tragaperras.
@@ -14,13 +14,22 @@ import org.springframework.data.mongodb.repository.Query;
 public interface SkinRepository extends MongoRepository<Skin, String> {
 
     /**
-     * Busca una skin por su nombre.
+     * Busca una skin por su nombre, sin distinguir mayúsculas.
      * 
      * @param name nombre de la skin a buscar
      * @return la skin encontrada, o un Optional vacío si no se encuentra
      */
-    @Query("{'name' : { '$regex' : ?0 , $options: 'i' }}")
-    Optional<Skin> findByName(String name);
+    default Optional<Skin> findByName(String name) {
+        return name != null ? findByNameLower(name.toLowerCase(Locale.ROOT)) : Optional.empty();
+    }
+
+    /**
+     * Busca una skin por su nombre normalizado.
+     * 
+     * @param nameLower nombre de la skin en minúsculas
+     * @return la skin encontrada, o un Optional vacío si no se encuentra
+     */
+    Optional<Skin> findByNameLower(String nameLower);
 
     /**
      * Obtiene una lista de skins que son vendibles o no, según el parámetro.
@@ -30,4 +39,11 @@ public interface SkinRepository extends MongoRepository<Skin, String> {
      * @return lista de skins
      */
     List<Skin> findAllByVendible(boolean vendible);
+
+    /**
+     * Busca la skin con el mayor ordinal.
+     * 
+     * @return la skin encontrada, o un Optional vacío si ninguna tiene ordinal
+     */
+    Optional<Skin> findFirstByOrdinalNotNullOrderByOrdinalDesc();
 }
@@ -1,10 +1,21 @@
 package dnk.casino.Skins;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import dnk.casino.Invalidacion.BusInvalidacion;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
+
 /**
  * Servicio de skins para la Tragaperras.
  * 
@@ -19,6 +30,29 @@ public class SkinService {
   @Autowired
   private SkinRepository skinRepository;
 
+  /**
+   * Número máximo de intentos de asignar un ordinal a una skin nueva.
+   */
+  private static final int MAX_INTENTOS_ORDINAL = 3;
+
+  /**
+   * Catálogo de skins en memoria.
+   */
+  @Autowired
+  private SkinCatalog skinCatalog;
+
+  /**
+   * Bus de invalidación, que avisa a los catálogos de los demás nodos.
+   */
+  @Autowired
+  private BusInvalidacion busInvalidacion;
+
+  /**
+   * Métricas del casino.
+   */
+  @Autowired
+  private CasinoMetrics casinoMetrics;
+
   /**
    * Crea una nueva skin en el sistema.
    * 
@@ -26,13 +60,42 @@ public class SkinService {
    * @return la skin creada
    */
   public Skin createSkin(Skin skin) {
-    if (skinRepository.findByName(skin.getName()).isPresent()) {
-      throw new IllegalArgumentException("El nombre de la skin ya existe");
-    }
-    Skin newSkin = new Skin(skin.getName(), skin.getPrecio(), skin.getDescription(), skin.getReels(),
-        skin.isVendible());
-    skinRepository.save(newSkin);
-    return newSkin;
+    return casinoMetrics.medir(Metrica.CREAR_SKIN, () -> {
+      if (skinCatalog.getByName(skin.getName()) != null) {
+        throw new IllegalArgumentException("El nombre de la skin ya existe");
+      }
+      Skin newSkin = new Skin(skin.getName(), skin.getPrecio(), skin.getDescription(), skin.getReels(),
+          skin.isVendible());
+      for (int intento = 1;; intento++) {
+        newSkin.setOrdinal(siguienteOrdinal());
+        try {
+          skinRepository.insert(newSkin);
+          break;
+        } catch (DuplicateKeyException e) {
+          // Otro nodo ha usado el mismo ordinal (o el mismo nombre) a la vez
+          if (intento == MAX_INTENTOS_ORDINAL) {
+            throw e;
+          }
+        }
+      }
+      skinCatalog.publicar(newSkin);
+      busInvalidacion.publicar(Tipo.SKIN, newSkin.getId());
+      return newSkin;
+    });
+  }
+
+  /**
+   * Calcula el ordinal de una skin nueva: el siguiente al mayor que hay en
+   * MongoDB o que ha usado este nodo, para no reutilizar nunca el de una skin
+   * eliminada mientras haya usuarios cargados que lo tengan.
+   * 
+   * @return el ordinal
+   */
+  private int siguienteOrdinal() {
+    int siguiente = skinRepository.findFirstByOrdinalNotNullOrderByOrdinalDesc()
+        .map(ultima -> ultima.getOrdinal() + 1)
+        .orElse(0);
+    return Math.max(siguiente, OrdinalesSkins.siguiente());
   }
 
   /**
@@ -42,7 +105,24 @@ public class SkinService {
    * @return la skin encontrada, o un Optional vacío si no se encuentra
    */
   public Optional<Skin> findById(String id) {
-    return skinRepository.findById(id);
+    return skinCatalog.findById(id);
+  }
+
+  /**
+   * Obtiene, con una única consulta $in a MongoDB, cuáles de los IDs indicados
+   * corresponden a skins existentes.
+   * 
+   * @param ids los IDs de las skins
+   * @return el conjunto de IDs que existen
+   */
+  public Set<String> filtrarExistentes(Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return Set.of();
+    }
+    return casinoMetrics.medir(Metrica.FILTRAR_SKINS,
+        () -> StreamSupport.stream(skinRepository.findAllById(ids).spliterator(), false)
+            .map(Skin::getId)
+            .collect(Collectors.toSet()));
   }
 
   /**
@@ -52,7 +132,7 @@ public class SkinService {
    * @return la skin encontrada, o un Optional vacío si no se encuentra
    */
   public Optional<Skin> findByName(String name) {
-    return skinRepository.findByName(name);
+    return skinCatalog.findByName(name);
   }
 
   /**
@@ -63,25 +143,33 @@ public class SkinService {
    * @return la skin actualizada
    */
   public Skin updateSkin(String id, Skin updatedSkin) {
-    Skin skin = skinRepository.findById(id).orElseThrow(() -> new RuntimeException("Skin no encontrada"));
-    if (updatedSkin.getName() != null) {
-      skin.setName(updatedSkin.getName());
-    }
-    if (updatedSkin.getPrecio() >= 0) {
-      skin.setPrecio(updatedSkin.getPrecio());
-    }
-    if (updatedSkin.getDescription() != null) {
-      skin.setDescription(updatedSkin.getDescription());
-    }
-    if (updatedSkin.getReels() != null) {
-      if (updatedSkin.getReels().length > 0) {
-        skin.setReels(updatedSkin.getReels());
+    return casinoMetrics.medir(Metrica.ACTUALIZAR_SKIN, () -> {
+      Skin skin = skinRepository.findById(id).orElseThrow(() -> {
+        casinoMetrics.contar(Metrica.ACTUALIZAR_SKIN, Resultado.SKIN_NO_ENCONTRADA);
+        return new RuntimeException("Skin no encontrada");
+      });
+      if (updatedSkin.getName() != null) {
+        skin.setName(updatedSkin.getName());
       }
-    }
-    if (updatedSkin.isVendible() == true || updatedSkin.isVendible() == false) {
-      skin.setVendible(updatedSkin.isVendible());
-    }
-    return skinRepository.save(skin);
+      if (updatedSkin.getPrecio() >= 0) {
+        skin.setPrecio(updatedSkin.getPrecio());
+      }
+      if (updatedSkin.getDescription() != null) {
+        skin.setDescription(updatedSkin.getDescription());
+      }
+      if (updatedSkin.getReels() != null) {
+        if (updatedSkin.getReels().length > 0) {
+          skin.setReels(updatedSkin.getReels());
+        }
+      }
+      if (updatedSkin.isVendible() == true || updatedSkin.isVendible() == false) {
+        skin.setVendible(updatedSkin.isVendible());
+      }
+      Skin savedSkin = skinRepository.save(skin);
+      skinCatalog.publicar(savedSkin);
+      busInvalidacion.publicar(Tipo.SKIN, id);
+      return savedSkin;
+    });
   }
 
   /**
@@ -91,12 +179,17 @@ public class SkinService {
    * @return true si la skin se elimina con éxito, false en caso contrario
    */
   public boolean deleteSkin(String id) {
-    Optional<Skin> skin = skinRepository.findById(id);
-    if (skin.isPresent()) {
-      skinRepository.deleteById(id);
-      return true;
-    } else {
-      return false;
-    }
+    return casinoMetrics.medir(Metrica.ELIMINAR_SKIN, () -> {
+      Optional<Skin> skin = skinRepository.findById(id);
+      if (skin.isPresent()) {
+        skinRepository.deleteById(id);
+        skinCatalog.retirar(id);
+        busInvalidacion.publicar(Tipo.SKIN, id);
+        return true;
+      } else {
+        casinoMetrics.contar(Metrica.ELIMINAR_SKIN, Resultado.SKIN_NO_ENCONTRADA);
+        return false;
+      }
+    });
   }
 }
@@ -3,6 +3,8 @@ package dnk.casino.Tienda;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -13,10 +15,13 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
 import dnk.casino.Skins.Skin;
 import dnk.casino.Skins.SkinService;
 import dnk.casino.Users.JwtTokenUtil;
-import dnk.casino.Users.Usuario;
+import dnk.casino.Users.ResultadoCompra;
 import dnk.casino.Users.UsuarioService;
 
 /**
@@ -24,6 +29,7 @@ import dnk.casino.Users.UsuarioService;
  * 
  * @author Danikileitor
  */
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @RestController
 @RequestMapping("/shop/api")
 public class ShopController {
@@ -40,54 +46,74 @@ public class ShopController {
     @Autowired
     private SkinService skinService;
 
+    /**
+     * Métricas del casino.
+     */
+    @Autowired
+    private CasinoMetrics casinoMetrics;
+
     /**
      * Compra una skin para un usuario.
      * 
-     * @param token   el token de autenticación
-     * @param request la solicitud de compra de skin
+     * Si se envía la cabecera Idempotency-Key, los reintentos con la misma clave
+     * devuelven la respuesta original sin volver a cobrar.
+     * 
+     * @param token             el token de autenticación
+     * @param claveIdempotencia la clave de idempotencia, opcional
+     * @param request           la solicitud de compra de skin
      * @return la respuesta de la compra
      */
     @PostMapping("/comprar/skin")
     public ResponseEntity<?> buySkin(@RequestHeader("Authorization") String token,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
             @RequestBody BuySkinRequest request) {
+        return casinoMetrics.medir(Metrica.COMPRAR_SKIN, () -> comprarSkin(token, claveIdempotencia, request));
+    }
 
+    /**
+     * Realiza la compra de una skin.
+     * 
+     * @param token             el token de autenticación
+     * @param claveIdempotencia la clave de idempotencia, o null
+     * @param request           la solicitud de compra de skin
+     * @return la respuesta de la compra
+     */
+    private ResponseEntity<?> comprarSkin(String token, String claveIdempotencia, BuySkinRequest request) {
         // Extrae el nombre de usuario del token
         Optional<String> usernameOpt = JwtTokenUtil.extractUsernameFromToken(token);
-
-        if (usernameOpt.isPresent()) {
-            // Busca el usuario por su nombre
-            Optional<Usuario> usuarioOpt = usuarioService.findByUsername(usernameOpt.get());
-            if (usuarioOpt.isPresent()) {
-                // Busca la skin por su nombre
-                Optional<Skin> skinOpt = skinService.findByName(request.getName());
-                if (skinOpt.isPresent()) {
-                    // Verifica si el usuario tiene suficientes monedas para comprar la skin
-                    if (usuarioOpt.get().getCoins() >= skinOpt.get().getPrecio()) {
-                        // Actualiza las monedas del usuario
-                        int newCoins = usuarioOpt.get().getCoins() - skinOpt.get().getPrecio();
-                        usuarioOpt.get().setCoins(newCoins);
-                        // Desbloquea la skin para el usuario
-                        if (usuarioOpt.get().desbloquearSkin(skinOpt.get().getId())) {
-                            // Actualiza el usuario en la base de datos
-                            usuarioService.updateUser(usuarioOpt.get().getId(), usuarioOpt.get());
-                            return ResponseEntity.ok("Has desbloqueado la skin: " + skinOpt.get().getName());
-                        } else {
-                            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                    .body("Ya tienes la skin: " + request.getName());
-                        }
-                    } else {
-                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No tienes suficientes monedas");
-                    }
-                } else {
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                            .body("No existe la skin: " + request.getName());
-                }
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuario no encontrado");
-            }
-        } else {
+        if (usernameOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token inválido");
         }
+
+        // Busca la skin por su nombre
+        Optional<Skin> skinOpt = skinService.findByName(request.getName());
+        if (skinOpt.isEmpty()) {
+            casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.SKIN_NO_ENCONTRADA);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No existe la skin: " + request.getName());
+        }
+
+        // Cobra y desbloquea la skin en una única operación atómica
+        ResultadoCompra resultado;
+        try {
+            resultado = usuarioService.comprarSkin(usernameOpt.get(), skinOpt.get(), claveIdempotencia);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        }
+        return switch (resultado) {
+            case COMPRADA -> ResponseEntity.ok("Has desbloqueado la skin: " + skinOpt.get().getName());
+            case YA_DESBLOQUEADA -> {
+                casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.SKIN_YA_DESBLOQUEADA);
+                yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Ya tienes la skin: " + request.getName());
+            }
+            case MONEDAS_INSUFICIENTES -> {
+                casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.MONEDAS_INSUFICIENTES);
+                yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No tienes suficientes monedas");
+            }
+            case USUARIO_NO_ENCONTRADO -> {
+                casinoMetrics.contar(Metrica.COMPRAR_SKIN, Resultado.USUARIO_NO_ENCONTRADO);
+                yield ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuario no encontrado");
+            }
+        };
     }
 
     /**
@@ -0,0 +1,136 @@
+package dnk.casino.Users;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import dnk.casino.Users.Usuario.Rol;
+
+/**
+ * Actualización de un usuario dentro de una actualización por lotes.
+ *
+ * Todos los campos salvo el ID son opcionales; los que son null no se
+ * modifican.
+ *
+ * @author Danikileitor
+ */
+public class ActualizacionUsuario {
+
+    /**
+     * ID del usuario.
+     */
+    @JsonProperty("id")
+    private String id;
+
+    /**
+     * Nuevo rol del usuario.
+     */
+    @JsonProperty("rol")
+    private Rol rol;
+
+    /**
+     * Nuevas monedas del usuario.
+     */
+    @JsonProperty("coins")
+    private Integer coins;
+
+    /**
+     * IDs de las skins que sustituyen a las actuales.
+     */
+    @JsonProperty("skinsId")
+    private String[] skinsId;
+
+    /**
+     * IDs de las skins que se añaden a las actuales.
+     */
+    @JsonProperty("addSkinsId")
+    private String[] addSkinsId;
+
+    /**
+     * Obtiene el ID del usuario.
+     *
+     * @return el ID del usuario
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Establece el ID del usuario.
+     *
+     * @param id el ID del usuario
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtiene el nuevo rol del usuario.
+     *
+     * @return el rol del usuario
+     */
+    public Rol getRol() {
+        return rol;
+    }
+
+    /**
+     * Establece el nuevo rol del usuario.
+     *
+     * @param rol el rol del usuario
+     */
+    public void setRol(Rol rol) {
+        this.rol = rol;
+    }
+
+    /**
+     * Obtiene las nuevas monedas del usuario.
+     *
+     * @return las monedas del usuario
+     */
+    public Integer getCoins() {
+        return coins;
+    }
+
+    /**
+     * Establece las nuevas monedas del usuario.
+     *
+     * @param coins las monedas del usuario
+     */
+    public void setCoins(Integer coins) {
+        this.coins = coins;
+    }
+
+    /**
+     * Obtiene los IDs de las skins que sustituyen a las actuales.
+     *
+     * @return los IDs de las skins
+     */
+    public String[] getSkinsId() {
+        return skinsId;
+    }
+
+    /**
+     * Establece los IDs de las skins que sustituyen a las actuales.
+     *
+     * @param skinsId los IDs de las skins
+     */
+    public void setSkinsId(String[] skinsId) {
+        this.skinsId = skinsId;
+    }
+
+    /**
+     * Obtiene los IDs de las skins que se añaden a las actuales.
+     *
+     * @return los IDs de las skins
+     */
+    public String[] getAddSkinsId() {
+        return addSkinsId;
+    }
+
+    /**
+     * Establece los IDs de las skins que se añaden a las actuales.
+     *
+     * @param addSkinsId los IDs de las skins
+     */
+    public void setAddSkinsId(String[] addSkinsId) {
+        this.addSkinsId = addSkinsId;
+    }
+}
@@ -5,6 +5,8 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,6 +15,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import dnk.casino.Error.ServidorOcupadoException;
 import dnk.casino.Mail.EmailService;
 import dnk.casino.Users.Usuario.Rol;
 
@@ -21,6 +24,7 @@ import dnk.casino.Users.Usuario.Rol;
  * 
  * @author Danikileitor
  */
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
@@ -53,6 +57,8 @@ public class AuthController {
                         registroRequest.getEmail(),
                         Rol.valueOf(registroRequest.getRol().toUpperCase()));
                 return ResponseEntity.ok(usuario);
+            } catch (ServidorOcupadoException e) {
+                throw e;
             } catch (Exception e) {
                 return ResponseEntity.badRequest().body(e.getMessage());
             }
@@ -64,6 +70,8 @@ public class AuthController {
                         registroRequest.getEmail(),
                         Rol.ROLE_USER);
                 return ResponseEntity.ok(usuario);
+            } catch (ServidorOcupadoException e) {
+                throw e;
             } catch (Exception e) {
                 return ResponseEntity.badRequest().body(e.getMessage());
             }
@@ -78,25 +86,22 @@ public class AuthController {
      */
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
-        Optional<Usuario> usuario = usuarioService.login(
+        Optional<AuthView> usuario = usuarioService.autenticar(
                 loginRequest.getUsername(),
                 loginRequest.getPassword());
         if (usuario.isPresent()) {
-            String token = JwtTokenUtil.generateToken(usuario.get());
+            String token = JwtTokenUtil.generateToken(usuario.get().getUsername(), usuario.get().getRol());
 
             Authentication authentication = new UsernamePasswordAuthenticationToken(
-                    usuario.get(), // Principal (Usuario autenticado)
+                    usuario.get().getUsername(), // Principal (nombre del usuario autenticado)
                     null, // Credenciales (pueden ser null después de autenticación)
                     List.of(new SimpleGrantedAuthority(usuario.get().getRol().name())) // Rol/Authorities
             );
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
-            // Si es su primer login del día damos una recompensa
-            if (usuario.get().isFirstLoginOfDay()) {
-                usuario.get().setCoins(usuario.get().getCoins() + 20);
-                usuarioService.updateUser(usuario.get().getId(), usuario.get());
-            }
-            usuarioService.updateUserLoginDate(usuario.get().getId());
+            // Actualiza la fecha de login y, si es su primer login del día, da una
+            // recompensa
+            usuarioService.registrarLogin(usuario.get().getId());
 
             return ResponseEntity.ok(token); // Devuelve el token como texto plano
         }
@@ -111,14 +116,14 @@ public class AuthController {
      */
     @PostMapping("/admin/login")
     public ResponseEntity<?> adminLogin(@RequestBody LoginRequest loginRequest) {
-        Optional<Usuario> usuario = usuarioService.login(
+        Optional<AuthView> usuario = usuarioService.autenticar(
                 loginRequest.getUsername(),
                 loginRequest.getPassword());
         if (usuario.isPresent() && usuario.get().getRol() == Rol.ROLE_ADMIN) {
-            String token = JwtTokenUtil.generateToken(usuario.get());
+            String token = JwtTokenUtil.generateToken(usuario.get().getUsername(), usuario.get().getRol());
 
             Authentication authentication = new UsernamePasswordAuthenticationToken(
-                    usuario.get(), // Principal (Usuario autenticado)
+                    usuario.get().getUsername(), // Principal (nombre del usuario autenticado)
                     null, // Credenciales (pueden ser null después de autenticación)
                     List.of(new SimpleGrantedAuthority(usuario.get().getRol().name())) // Rol/Authorities
             );
@@ -143,11 +148,12 @@ public class AuthController {
         if (usuarioOpt.isPresent()) {
             // Generar token de restablecimiento de contraseña
             String token = UUID.randomUUID().toString();
-            usuarioService.guardarTokenRestablecimientoContrasena(usuarioOpt.get(), token);
 
-            // Enviar correo electrónico con el enlace de restablecimiento
+            // Encolar el correo antes de guardar el token: si la bandeja está llena
+            // se responde 429 sin dejar un token que nadie va a recibir
             String mensaje = System.getenv().get("WEB_HOST") + "/restablecer-contrasena?token=" + token;
             emailService.enviarCorreo(email, "Restablecimiento de contraseña", mensaje);
+            usuarioService.guardarTokenRestablecimientoContrasena(usuarioOpt.get(), token);
 
             return ResponseEntity.ok("Correo electrónico enviado con éxito");
         } else {
@@ -165,9 +171,7 @@ public class AuthController {
     @PostMapping("/restablecer-contrasena/{token}")
     public ResponseEntity<?> restablecerContrasena(@PathVariable String token,
             @RequestBody NuevaContrasenaRequest nuevaContrasenaRequest) {
-        Optional<Usuario> usuarioOpt = usuarioService.findByTokenRestablecimientoContrasena(token);
-        if (usuarioOpt.isPresent()) {
-            usuarioService.actualizarContrasena(usuarioOpt.get(), nuevaContrasenaRequest.getNuevaContrasena());
+        if (usuarioService.restablecerContrasena(token, nuevaContrasenaRequest.getNuevaContrasena())) {
             return ResponseEntity.ok("Contraseña restablecida con éxito");
         } else {
             return ResponseEntity.badRequest().body("Token inválido");
@@ -0,0 +1,40 @@
+package dnk.casino.Users;
+
+import dnk.casino.Users.Usuario.Rol;
+
+/**
+ * Proyección con los datos necesarios para autenticar a un usuario. Solo lee
+ * de MongoDB el ID, el nombre de usuario, la contraseña codificada y el rol.
+ *
+ * @author Danikileitor
+ */
+public interface AuthView {
+
+    /**
+     * Obtiene el ID del usuario.
+     *
+     * @return ID del usuario
+     */
+    String getId();
+
+    /**
+     * Obtiene el nombre de usuario.
+     *
+     * @return nombre de usuario
+     */
+    String getUsername();
+
+    /**
+     * Obtiene la contraseña codificada del usuario.
+     *
+     * @return contraseña codificada
+     */
+    String getPassword();
+
+    /**
+     * Obtiene el rol del usuario.
+     *
+     * @return rol del usuario
+     */
+    Rol getRol();
+}
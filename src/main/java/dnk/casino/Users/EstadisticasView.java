@@ -0,0 +1,38 @@
+package dnk.casino.Users;
+
+/**
+ * Proyección de las estadísticas de juego de un usuario. Solo lee de MongoDB
+ * el ID, el nombre de usuario y las victorias.
+ *
+ * @author Danikileitor
+ */
+public interface EstadisticasView {
+
+    /**
+     * Obtiene el ID del usuario.
+     *
+     * @return ID del usuario
+     */
+    String getId();
+
+    /**
+     * Obtiene el nombre de usuario.
+     *
+     * @return nombre de usuario
+     */
+    String getUsername();
+
+    /**
+     * Obtiene el número de victorias del usuario.
+     *
+     * @return número de victorias
+     */
+    int getWins();
+
+    /**
+     * Obtiene el número de victorias en blackjack del usuario.
+     *
+     * @return número de victorias en blackjack
+     */
+    int getBjwins();
+}
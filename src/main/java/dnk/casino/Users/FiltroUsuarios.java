@@ -0,0 +1,173 @@
+package dnk.casino.Users;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import dnk.casino.Users.Usuario.Rol;
+
+/**
+ * Filtro para los listados de usuarios de la administración.
+ *
+ * Todos los campos son opcionales; los que son null no se aplican.
+ *
+ * @author Danikileitor
+ */
+public class FiltroUsuarios {
+
+    /**
+     * Número mínimo de monedas.
+     */
+    private Integer minCoins;
+
+    /**
+     * Número máximo de monedas.
+     */
+    private Integer maxCoins;
+
+    /**
+     * Número mínimo de victorias.
+     */
+    private Integer minWins;
+
+    /**
+     * Número máximo de victorias.
+     */
+    private Integer maxWins;
+
+    /**
+     * Rol de los usuarios.
+     */
+    private Rol rol;
+
+    /**
+     * Convierte el filtro en criterios de MongoDB.
+     *
+     * @return lista de criterios, vacía si no hay ningún filtro
+     */
+    public List<Criteria> toCriteria() {
+        List<Criteria> criterios = new ArrayList<>();
+        if (minCoins != null || maxCoins != null) {
+            criterios.add(rango("coins", minCoins, maxCoins));
+        }
+        if (minWins != null || maxWins != null) {
+            criterios.add(rango("wins", minWins, maxWins));
+        }
+        if (rol != null) {
+            criterios.add(where("rol").is(rol));
+        }
+        return criterios;
+    }
+
+    /**
+     * Crea un criterio de rango sobre un campo.
+     *
+     * @param campo el campo
+     * @param min   el valor mínimo, o null
+     * @param max   el valor máximo, o null
+     * @return el criterio
+     */
+    private static Criteria rango(String campo, Integer min, Integer max) {
+        Criteria criterio = where(campo);
+        if (min != null) {
+            criterio = criterio.gte(min);
+        }
+        if (max != null) {
+            criterio = criterio.lte(max);
+        }
+        return criterio;
+    }
+
+    /**
+     * Obtiene el número mínimo de monedas.
+     *
+     * @return número mínimo de monedas
+     */
+    public Integer getMinCoins() {
+        return minCoins;
+    }
+
+    /**
+     * Establece el número mínimo de monedas.
+     *
+     * @param minCoins número mínimo de monedas
+     */
+    public void setMinCoins(Integer minCoins) {
+        this.minCoins = minCoins;
+    }
+
+    /**
+     * Obtiene el número máximo de monedas.
+     *
+     * @return número máximo de monedas
+     */
+    public Integer getMaxCoins() {
+        return maxCoins;
+    }
+
+    /**
+     * Establece el número máximo de monedas.
+     *
+     * @param maxCoins número máximo de monedas
+     */
+    public void setMaxCoins(Integer maxCoins) {
+        this.maxCoins = maxCoins;
+    }
+
+    /**
+     * Obtiene el número mínimo de victorias.
+     *
+     * @return número mínimo de victorias
+     */
+    public Integer getMinWins() {
+        return minWins;
+    }
+
+    /**
+     * Establece el número mínimo de victorias.
+     *
+     * @param minWins número mínimo de victorias
+     */
+    public void setMinWins(Integer minWins) {
+        this.minWins = minWins;
+    }
+
+    /**
+     * Obtiene el número máximo de victorias.
+     *
+     * @return número máximo de victorias
+     */
+    public Integer getMaxWins() {
+        return maxWins;
+    }
+
+    /**
+     * Establece el número máximo de victorias.
+     *
+     * @param maxWins número máximo de victorias
+     */
+    public void setMaxWins(Integer maxWins) {
+        this.maxWins = maxWins;
+    }
+
+    /**
+     * Obtiene el rol de los usuarios.
+     *
+     * @return rol
+     */
+    public Rol getRol() {
+        return rol;
+    }
+
+    /**
+     * Establece el rol de los usuarios.
+     *
+     * @param rol rol
+     */
+    public void setRol(Rol rol) {
+        this.rol = rol;
+    }
+}
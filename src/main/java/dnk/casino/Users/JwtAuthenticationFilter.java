@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,6 +22,7 @@ import jakarta.servlet.http.HttpServletResponse;
  * 
  * @author Danikileitor
  */
+@ConditionalOnWebApplication(type = Type.SERVLET)
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
@@ -45,19 +48,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String token = authHeader.substring(7);
 
             try {
-                // Validar el token y extraer datos
-                Optional<String> usernameOpt = JwtTokenUtil.extractUsernameFromToken(token);
-                Optional<String> roleOpt = JwtTokenUtil.extractRoleFromToken(token);
+                // Validar el token una sola vez y extraer datos
+                Optional<JwtPrincipal> principalOpt = JwtTokenUtil.verifyToken(token);
 
                 // Verificar si el token es válido y no hay una autenticación existente en el
                 // contexto de seguridad
-                if (usernameOpt.isPresent() && roleOpt.isPresent()
+                if (principalOpt.isPresent() && principalOpt.get().username() != null
+                        && principalOpt.get().role() != null
                         && SecurityContextHolder.getContext().getAuthentication() == null) {
                     // Crear objeto de autenticación con el nombre de usuario y roles
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            usernameOpt.get(), // Nombre de usuario
+                            principalOpt.get().username(), // Nombre de usuario
                             null, // Credenciales (pueden ser null después de autenticación)
-                            List.of(new SimpleGrantedAuthority(roleOpt.get())) // Rol
+                            List.of(new SimpleGrantedAuthority(principalOpt.get().role())) // Rol
                     );
 
                     // Configurar el contexto de seguridad con la autenticación
@@ -0,0 +1,23 @@
+package dnk.casino.Users;
+
+/**
+ * Datos verificados de un token JWT.
+ *
+ * @param username   el nombre de usuario
+ * @param role       el rol del usuario
+ * @param expiration la fecha de expiración del token, en milisegundos desde la
+ *                   época
+ * @author Danikileitor
+ */
+public record JwtPrincipal(String username, String role, long expiration) {
+
+    /**
+     * Indica si el token ha expirado en un instante dado.
+     *
+     * @param now el instante, en milisegundos desde la época
+     * @return true si el token ha expirado, false en caso contrario
+     */
+    public boolean isExpired(long now) {
+        return now >= expiration;
+    }
+}
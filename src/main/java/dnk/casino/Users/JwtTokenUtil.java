@@ -2,11 +2,17 @@ package dnk.casino.Users;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -28,6 +34,44 @@ public class JwtTokenUtil {
      */
     private static Long expiration = Long.parseLong(System.getenv().get("JWT_EXPIRATION"), 10);
 
+    /**
+     * Número máximo de tokens verificados que se guardan en caché.
+     */
+    private static final int cacheSize = Integer
+            .parseInt(System.getenv().getOrDefault("JWT_CACHE_SIZE", "10000"), 10);
+
+    /**
+     * Clave de firma, calculada una sola vez.
+     */
+    private static final SecretKey signInKey = getSignInKey();
+
+    /**
+     * Parser de tokens reutilizable (es inmutable y seguro entre hilos).
+     */
+    private static final JwtParser parser = Jwts.parser().verifyWith(signInKey).build();
+
+    /**
+     * Caché de tokens ya verificados, indexada por el SHA-256 del token.
+     */
+    private static final ConcurrentHashMap<TokenDigest, JwtPrincipal> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Calculador de SHA-256 de cada hilo.
+     */
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * Huella SHA-256 de un token, usada como clave de la caché.
+     */
+    private record TokenDigest(long a, long b, long c, long d) {
+    }
+
     /**
      * Obtiene la clave de firma para los tokens JWT.
      * 
@@ -45,12 +89,23 @@ public class JwtTokenUtil {
      * @return el token JWT generado
      */
     public static String generateToken(Usuario usuario) {
+        return generateToken(usuario.getUsername(), usuario.getRol());
+    }
+
+    /**
+     * Genera un token JWT a partir del nombre y el rol de un usuario.
+     * 
+     * @param username el nombre de usuario
+     * @param rol      el rol del usuario
+     * @return el token JWT generado
+     */
+    public static String generateToken(String username, Usuario.Rol rol) {
         return Jwts.builder()
-                .subject(usuario.getUsername()) // Añade el nombre del usuario
-                .claim("role", usuario.getRol().name()) // Añade el rol del usuario
+                .subject(username) // Añade el nombre del usuario
+                .claim("role", rol.name()) // Añade el rol del usuario
                 .issuedAt(new Date()) // Hora actual como "emitido"
                 .expiration(new Date(System.currentTimeMillis() + expiration)) // Tiempo de expiración
-                .signWith(getSignInKey()) // Firma del token
+                .signWith(signInKey) // Firma del token
                 .compact();
     }
 
@@ -61,46 +116,55 @@ public class JwtTokenUtil {
      * @return las reclamaciones
      */
     private static Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    /**
-     * Obtiene el nombre de usuario desde un token JWT.
-     * 
-     * @param token el token JWT
-     * @return el nombre de usuario
-     */
-    private static String getUsernameFromToken(String token) {
-        return extractAllClaims(token).getSubject();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     /**
-     * Obtiene el rol de usuario desde un token JWT.
+     * Verifica un token JWT sin usar la caché.
      * 
-     * @param token el token JWT
-     * @return el rol de usuario
+     * @param token el token JWT, sin el prefijo "Bearer "
+     * @return los datos del token
      */
-    private static String getRoleFromToken(String token) {
-        return extractAllClaims(token).get("role", String.class);
+    static JwtPrincipal parseToken(String token) {
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        return new JwtPrincipal(claims.getSubject(), claims.get("role", String.class),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
     }
 
     /**
-     * Extrae el nombre de usuario de un token JWT.
+     * Verifica un token JWT una sola vez y devuelve sus datos. Los tokens ya
+     * verificados se sirven desde la caché hasta que expiran.
      * 
-     * @param token el token JWT
-     * @return el nombre de usuario, si está presente
+     * @param token el token JWT, con o sin el prefijo "Bearer "
+     * @return los datos del token, o un Optional vacío si el token no es válido
      */
-    public static Optional<String> extractUsernameFromToken(String token) {
+    public static Optional<JwtPrincipal> verifyToken(String token) {
         try {
             if (token.startsWith("Bearer ")) {
                 token = token.substring(7); // Elimina el prefijo "Bearer "
             }
 
-            return Optional.ofNullable(getUsernameFromToken(token));
+            long now = System.currentTimeMillis();
+            TokenDigest digest = digest(token);
+            JwtPrincipal principal = cache.get(digest);
+            if (principal != null) {
+                if (!principal.isExpired(now)) {
+                    return Optional.of(principal);
+                }
+                cache.remove(digest, principal);
+                System.out.println("El token ha expirado");
+                return Optional.empty();
+            }
+
+            principal = parseToken(token);
+            if (principal.username() != null && principal.role() != null) {
+                if (cache.size() >= cacheSize) {
+                    evict(now);
+                }
+                cache.put(digest, principal);
+            }
+            return Optional.of(principal);
         } catch (Exception e) {
             if (e instanceof ExpiredJwtException) {
                 System.out.println("El token ha expirado");
@@ -112,6 +176,42 @@ public class JwtTokenUtil {
         }
     }
 
+    /**
+     * Calcula la huella SHA-256 de un token.
+     * 
+     * @param token el token JWT
+     * @return la huella del token
+     */
+    private static TokenDigest digest(String token) {
+        ByteBuffer hash = ByteBuffer.wrap(sha256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+        return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * Libera espacio en la caché: primero elimina los tokens expirados y, si no
+     * es suficiente, descarta entradas hasta dejarla al 90% de su capacidad.
+     * 
+     * @param now el instante actual, en milisegundos desde la época
+     */
+    private static void evict(long now) {
+        cache.values().removeIf(principal -> principal.isExpired(now));
+        Iterator<TokenDigest> it = cache.keySet().iterator();
+        while (cache.size() >= cacheSize * 9 / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Extrae el nombre de usuario de un token JWT.
+     * 
+     * @param token el token JWT
+     * @return el nombre de usuario, si está presente
+     */
+    public static Optional<String> extractUsernameFromToken(String token) {
+        return verifyToken(token).map(JwtPrincipal::username);
+    }
+
     /**
      * Extrae el rol de usuario de un token JWT.
      * 
@@ -119,20 +219,15 @@ public class JwtTokenUtil {
      * @return el rol de usuario, si está presente
      */
     public static Optional<String> extractRoleFromToken(String token) {
-        try {
-            if (token.startsWith("Bearer ")) {
-                token = token.substring(7); // Elimina el prefijo "Bearer "
-            }
+        return verifyToken(token).map(JwtPrincipal::role);
+    }
 
-            return Optional.ofNullable(getRoleFromToken(token));
-        } catch (Exception e) {
-            if (e instanceof ExpiredJwtException) {
-                System.out.println("El token ha expirado");
-                return Optional.empty();
-            } else {
-                e.printStackTrace();
-                return Optional.empty();
-            }
-        }
+    /**
+     * Obtiene el número de tokens verificados en caché.
+     * 
+     * @return el tamaño de la caché
+     */
+    public static int getCacheSize() {
+        return cache.size();
     }
 }
@@ -0,0 +1,14 @@
+package dnk.casino.Users;
+
+import java.util.List;
+
+/**
+ * Página de un listado de usuarios paginado por cursor.
+ *
+ * @param usuarios        los usuarios de la página
+ * @param siguienteCursor el cursor de la página siguiente, o null si es la
+ *                        última
+ * @author Danikileitor
+ */
+public record PaginaUsuarios(List<Usuario> usuarios, String siguienteCursor) {
+}
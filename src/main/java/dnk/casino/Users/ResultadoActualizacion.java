@@ -0,0 +1,35 @@
+package dnk.casino.Users;
+
+/**
+ * Resultado de la actualización de un usuario dentro de una actualización por
+ * lotes.
+ *
+ * @param id      ID del usuario
+ * @param estado  estado de la actualización
+ * @param mensaje mensaje de error, o null si se actualizó correctamente
+ * @author Danikileitor
+ */
+public record ResultadoActualizacion(String id, Estado estado, String mensaje) {
+
+    /**
+     * Estados posibles de una actualización.
+     */
+    public enum Estado {
+        /**
+         * El usuario se actualizó correctamente.
+         */
+        OK,
+        /**
+         * El usuario no existe.
+         */
+        NO_ENCONTRADO,
+        /**
+         * Alguna de las skins no existe.
+         */
+        SKIN_INVALIDA,
+        /**
+         * La escritura en MongoDB falló.
+         */
+        ERROR;
+    }
+}
@@ -0,0 +1,25 @@
+package dnk.casino.Users;
+
+/**
+ * Resultado de la compra de una skin.
+ *
+ * @author Danikileitor
+ */
+public enum ResultadoCompra {
+    /**
+     * La skin se compró y se cobró su precio.
+     */
+    COMPRADA,
+    /**
+     * El usuario ya tenía la skin; no se ha cobrado nada.
+     */
+    YA_DESBLOQUEADA,
+    /**
+     * El usuario no tiene monedas suficientes; no se ha cobrado nada.
+     */
+    MONEDAS_INSUFICIENTES,
+    /**
+     * El usuario no existe.
+     */
+    USUARIO_NO_ENCONTRADO;
+}
@@ -0,0 +1,23 @@
+package dnk.casino.Users;
+
+/**
+ * Proyección del saldo de un usuario. Solo lee de MongoDB el ID y las monedas.
+ *
+ * @author Danikileitor
+ */
+public interface SaldoView {
+
+    /**
+     * Obtiene el ID del usuario.
+     *
+     * @return ID del usuario
+     */
+    String getId();
+
+    /**
+     * Obtiene las monedas del usuario.
+     *
+     * @return número de monedas
+     */
+    int getCoins();
+}
@@ -0,0 +1,245 @@
+package dnk.casino.Users;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import dnk.casino.Skins.OrdinalesSkins;
+
+/**
+ * Conjunto de las skins desbloqueadas por un usuario.
+ *
+ * Se comporta como un Set de IDs de skin, así que en MongoDB y en JSON sigue
+ * siendo un array de IDs, pero en memoria guarda cada skin como un bit en la
+ * posición de su ordinal ({@link OrdinalesSkins}). Comprobar o desbloquear una
+ * skin por ordinal no reserva memoria. Los IDs que no tienen ordinal (skins que
+ * aún no ha cargado el catálogo o que ya no existen) se guardan aparte como
+ * texto, para no perderlos.
+ *
+ * @author Danikileitor
+ */
+public class SkinsDesbloqueadas extends AbstractSet<String> {
+
+    /**
+     * Conjunto de bits vacío compartido.
+     */
+    private static final long[] VACIO = new long[0];
+
+    /**
+     * Bits de las skins desbloqueadas, indexados por ordinal.
+     */
+    private long[] bits = VACIO;
+
+    /**
+     * IDs de skins sin ordinal, o null si no hay ninguno.
+     */
+    private Set<String> otras;
+
+    /**
+     * Constructor vacío.
+     */
+    public SkinsDesbloqueadas() {
+    }
+
+    /**
+     * Constructor que inicializa el conjunto con unos IDs de skin.
+     *
+     * @param ids los IDs de las skins
+     */
+    public SkinsDesbloqueadas(Collection<String> ids) {
+        addAll(ids);
+    }
+
+    /**
+     * Comprueba si una skin está desbloqueada.
+     *
+     * @param ordinal el ordinal de la skin
+     * @return true si está desbloqueada, false en caso contrario
+     */
+    public boolean has(int ordinal) {
+        int palabra = ordinal >>> 6;
+        return ordinal >= 0 && palabra < bits.length && (bits[palabra] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Desbloquea una skin.
+     *
+     * @param ordinal el ordinal de la skin
+     * @return true si no estaba desbloqueada, false en caso contrario
+     */
+    public boolean unlock(int ordinal) {
+        if (ordinal < 0 || has(ordinal)) {
+            return false;
+        }
+        if (otras != null && otras.remove(OrdinalesSkins.id(ordinal))) {
+            // Ya estaba desbloqueada como texto; pasa a guardarse como bit
+            activar(ordinal);
+            return false;
+        }
+        activar(ordinal);
+        return true;
+    }
+
+    /**
+     * Activa el bit de un ordinal, ampliando el array si hace falta.
+     *
+     * @param ordinal el ordinal
+     */
+    private void activar(int ordinal) {
+        int palabra = ordinal >>> 6;
+        if (palabra >= bits.length) {
+            bits = Arrays.copyOf(bits, palabra + 1);
+        }
+        bits[palabra] |= 1L << ordinal;
+    }
+
+    /**
+     * Comprueba si una skin está desbloqueada.
+     *
+     * @param o el ID de la skin
+     * @return true si está desbloqueada, false en caso contrario
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String id)) {
+            return false;
+        }
+        return has(OrdinalesSkins.ordinal(id)) || (otras != null && otras.contains(id));
+    }
+
+    /**
+     * Desbloquea una skin.
+     *
+     * @param id el ID de la skin
+     * @return true si no estaba desbloqueada, false en caso contrario
+     */
+    @Override
+    public boolean add(String id) {
+        int ordinal = OrdinalesSkins.ordinal(id);
+        if (ordinal >= 0) {
+            return unlock(ordinal);
+        }
+        if (otras == null) {
+            otras = new HashSet<>();
+        }
+        return otras.add(id);
+    }
+
+    /**
+     * Bloquea de nuevo una skin.
+     *
+     * @param o el ID de la skin
+     * @return true si estaba desbloqueada, false en caso contrario
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String id)) {
+            return false;
+        }
+        boolean eliminada = otras != null && otras.remove(id);
+        int ordinal = OrdinalesSkins.ordinal(id);
+        if (has(ordinal)) {
+            bits[ordinal >>> 6] &= ~(1L << ordinal);
+            eliminada = true;
+        }
+        return eliminada;
+    }
+
+    /**
+     * Bloquea todas las skins.
+     */
+    @Override
+    public void clear() {
+        bits = VACIO;
+        otras = null;
+    }
+
+    /**
+     * Obtiene el número de skins desbloqueadas.
+     *
+     * @return número de skins
+     */
+    @Override
+    public int size() {
+        int size = otras != null ? otras.size() : 0;
+        for (long palabra : bits) {
+            size += Long.bitCount(palabra);
+        }
+        return size;
+    }
+
+    /**
+     * Recorre los IDs de las skins desbloqueadas: primero las que tienen
+     * ordinal, en orden, y después las demás.
+     *
+     * @return el iterador
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+
+            private int siguiente = siguienteBit(0);
+            private int actual = -1;
+            private final Iterator<String> resto = otras != null ? otras.iterator() : null;
+            private boolean enResto;
+
+            @Override
+            public boolean hasNext() {
+                return siguiente >= 0 || (resto != null && resto.hasNext());
+            }
+
+            @Override
+            public String next() {
+                if (siguiente >= 0) {
+                    actual = siguiente;
+                    siguiente = siguienteBit(siguiente + 1);
+                    return OrdinalesSkins.id(actual);
+                }
+                if (resto != null) {
+                    enResto = true;
+                    return resto.next();
+                }
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public void remove() {
+                if (enResto) {
+                    resto.remove();
+                } else if (actual >= 0) {
+                    bits[actual >>> 6] &= ~(1L << actual);
+                    actual = -1;
+                } else {
+                    throw new IllegalStateException();
+                }
+            }
+        };
+    }
+
+    /**
+     * Busca el siguiente bit activo a partir de un ordinal.
+     *
+     * @param desde el primer ordinal a comprobar
+     * @return el ordinal del siguiente bit activo, o -1 si no hay más
+     */
+    private int siguienteBit(int desde) {
+        int palabra = desde >>> 6;
+        if (palabra >= bits.length) {
+            return -1;
+        }
+        long resto = bits[palabra] & (-1L << desde);
+        while (true) {
+            if (resto != 0) {
+                return (palabra << 6) + Long.numberOfTrailingZeros(resto);
+            }
+            if (++palabra >= bits.length) {
+                return -1;
+            }
+            resto = bits[palabra];
+        }
+    }
+}
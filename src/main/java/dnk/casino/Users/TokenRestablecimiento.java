@@ -0,0 +1,101 @@
+package dnk.casino.Users;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Token de restablecimiento de contraseña de un usuario.
+ *
+ * Se guarda en su propia colección con el SHA-256 del token como _id, de modo
+ * que la búsqueda usa el índice de _id y una copia de la base de datos no
+ * permite usar los enlaces enviados. La colección tiene un índice TTL sobre
+ * expira, así que MongoDB elimina los tokens caducados.
+ *
+ * @author Danikileitor
+ */
+@Document(collection = "password_reset_tokens")
+public class TokenRestablecimiento {
+
+    /**
+     * SHA-256 del token, en hexadecimal.
+     */
+    @Id
+    private String id;
+
+    /**
+     * ID del usuario al que pertenece el token.
+     */
+    private String usuarioId;
+
+    /**
+     * Fecha de expiración del token.
+     */
+    private Date expira;
+
+    /**
+     * Constructor vacío.
+     */
+    public TokenRestablecimiento() {
+    }
+
+    /**
+     * Constructor que inicializa el token.
+     *
+     * @param id        el SHA-256 del token
+     * @param usuarioId el ID del usuario
+     * @param expira    la fecha de expiración
+     */
+    public TokenRestablecimiento(String id, String usuarioId, Date expira) {
+        this.id = id;
+        this.usuarioId = usuarioId;
+        this.expira = expira;
+    }
+
+    /**
+     * Obtiene el SHA-256 del token.
+     *
+     * @return el SHA-256 del token
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el ID del usuario al que pertenece el token.
+     *
+     * @return el ID del usuario
+     */
+    public String getUsuarioId() {
+        return usuarioId;
+    }
+
+    /**
+     * Obtiene la fecha de expiración del token.
+     *
+     * @return la fecha de expiración
+     */
+    public Date getExpira() {
+        return expira;
+    }
+
+    /**
+     * Calcula el SHA-256 de un token, que es como se guarda y se busca.
+     *
+     * @param token el token enviado al usuario
+     * @return el SHA-256 en hexadecimal
+     */
+    public static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package dnk.casino.Users;
 
-import java.time.LocalDateTime;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 import org.springframework.data.annotation.Id;
@@ -28,6 +27,12 @@ public class Usuario {
      */
     private String username;
 
+    /**
+     * Nombre de usuario normalizado en minúsculas, usado para las búsquedas
+     * indexadas sin distinguir mayúsculas.
+     */
+    private String usernameLower;
+
     /**
      * Contraseña del usuario (encriptada).
      */
@@ -38,6 +43,12 @@ public class Usuario {
      */
     private String email;
 
+    /**
+     * Correo electrónico normalizado en minúsculas, usado para las búsquedas
+     * indexadas sin distinguir mayúsculas.
+     */
+    private String emailLower;
+
     /**
      * Rol del usuario en el sistema.
      */
@@ -48,6 +59,12 @@ public class Usuario {
      */
     private int coins;
 
+    /**
+     * Versión del saldo, que suma uno cada cambio de monedas. Las clasificaciones
+     * la usan para no sustituir un saldo por otro más antiguo.
+     */
+    private long versionSaldo;
+
     /**
      * Número de victorias del usuario.
      */
@@ -61,7 +78,7 @@ public class Usuario {
     /**
      * Conjunto de skins desbloqueadas por el usuario.
      */
-    private Set<String> skins;
+    private SkinsDesbloqueadas skins;
 
     /**
      * Fecha de último inicio de sesión del usuario.
@@ -69,14 +86,19 @@ public class Usuario {
     private Date lastLoginDate;
 
     /**
-     * Token de restablecimiento de contraseña.
+     * Día del último inicio de sesión del usuario, en días desde la época en la
+     * zona horaria del casino. Es 0 si nunca ha iniciado sesión.
      */
-    private String tokenRestablecimientoContrasena;
+    private int lastLoginDay;
 
     /**
-     * Fecha de expiración del token de restablecimiento de contraseña.
+     * Claves de idempotencia de las últimas operaciones aplicadas al usuario,
+     * que anota {@link dnk.casino.Idempotencia.IdempotenciaService}. No tiene
+     * métodos de acceso: solo se declara para que guardar el usuario completo no
+     * las borre.
      */
-    private LocalDateTime fechaExpiracionTokenRestablecimientoContrasena;
+    @SuppressWarnings("unused")
+    private List<org.bson.Document> idempotencia;
 
     /**
      * Enumeración de roles posibles para un usuario.
@@ -111,17 +133,16 @@ public class Usuario {
      * @param email    correo electrónico
      */
     public Usuario(String username, String password, String email) {
-        this.username = username;
+        setUsername(username);
         this.password = password;
-        this.email = email;
+        setEmail(email);
         this.rol = Rol.ROLE_USER;
         this.coins = 0;
         this.wins = 0;
         this.bjwins = 0;
-        this.skins = new HashSet<>();
+        this.skins = new SkinsDesbloqueadas();
         this.lastLoginDate = new Date(0);
-        this.tokenRestablecimientoContrasena = null;
-        this.fechaExpiracionTokenRestablecimientoContrasena = null;
+        this.lastLoginDay = 0;
     }
 
     /**
@@ -137,7 +158,7 @@ public class Usuario {
     public Usuario(String username, String password, String email, Rol rol, Set<String> skins) {
         this(username, password, email);
         this.rol = rol;
-        this.skins = skins;
+        setSkins(skins);
     }
 
     /**
@@ -174,6 +195,7 @@ public class Usuario {
      */
     public void setUsername(String username) {
         this.username = username;
+        this.usernameLower = normalizar(username);
     }
 
     /**
@@ -210,6 +232,7 @@ public class Usuario {
      */
     public void setEmail(String email) {
         this.email = email;
+        this.emailLower = normalizar(email);
     }
 
     /**
@@ -248,6 +271,24 @@ public class Usuario {
         this.coins = coins;
     }
 
+    /**
+     * Obtiene la versión del saldo del usuario.
+     * 
+     * @return versión del saldo
+     */
+    public long getVersionSaldo() {
+        return versionSaldo;
+    }
+
+    /**
+     * Establece la versión del saldo del usuario.
+     * 
+     * @param versionSaldo versión del saldo
+     */
+    public void setVersionSaldo(long versionSaldo) {
+        this.versionSaldo = versionSaldo;
+    }
+
     /**
      * Obtiene el número de victorias del usuario.
      * 
@@ -299,7 +340,11 @@ public class Usuario {
      * @param skins conjunto de skins
      */
     public void setSkins(Set<String> skins) {
-        this.skins = skins;
+        if (skins == null || skins instanceof SkinsDesbloqueadas) {
+            this.skins = (SkinsDesbloqueadas) skins;
+        } else {
+            this.skins = new SkinsDesbloqueadas(skins);
+        }
     }
 
     /**
@@ -321,41 +366,32 @@ public class Usuario {
     }
 
     /**
-     * Obtiene el token de restablecimiento de contraseña.
+     * Obtiene el día del último inicio de sesión del usuario.
      * 
-     * @return token de restablecimiento de contraseña
+     * @return días desde la época en la zona horaria del casino
      */
-    public String getTokenRestablecimientoContrasena() {
-        return tokenRestablecimientoContrasena;
+    public int getLastLoginDay() {
+        return lastLoginDay;
     }
 
     /**
-     * Establece el token de restablecimiento de contraseña.
+     * Establece el día del último inicio de sesión del usuario.
      * 
-     * @param tokenRestablecimientoContrasena token de restablecimiento de
-     *                                        contraseña
+     * @param lastLoginDay días desde la época en la zona horaria del casino
      */
-    public void setTokenRestablecimientoContrasena(String tokenRestablecimientoContrasena) {
-        this.tokenRestablecimientoContrasena = tokenRestablecimientoContrasena;
+    public void setLastLoginDay(int lastLoginDay) {
+        this.lastLoginDay = lastLoginDay;
     }
 
     /**
-     * Obtiene la fecha de expiración del token de restablecimiento de contraseña.
+     * Normaliza un nombre de usuario o correo electrónico para las búsquedas sin
+     * distinguir mayúsculas.
      * 
-     * @return fecha de expiración
+     * @param valor el valor a normalizar
+     * @return el valor en minúsculas, o null si el valor es null
      */
-    public LocalDateTime getFechaExpiracionTokenRestablecimientoContrasena() {
-        return fechaExpiracionTokenRestablecimientoContrasena;
-    }
-
-    /**
-     * Establece la fecha de expiración del token de restablecimiento de contraseña.
-     * 
-     * @param fechaExpiracionTokenRestablecimientoContrasena fecha de expiración
-     */
-    public void setFechaExpiracionTokenRestablecimientoContrasena(
-            LocalDateTime fechaExpiracionTokenRestablecimientoContrasena) {
-        this.fechaExpiracionTokenRestablecimientoContrasena = fechaExpiracionTokenRestablecimientoContrasena;
+    public static String normalizar(String valor) {
+        return valor != null ? valor.toLowerCase(Locale.ROOT) : null;
     }
 
     /**
@@ -375,17 +411,13 @@ public class Usuario {
     /**
      * Verifica si es el primer inicio de sesión del día para el usuario.
      * 
+     * @param hoy el día actual, en días desde la época en la zona horaria del
+     *            casino
      * @return true si es el primer inicio de sesión del día, false en caso
      *         contrario
      */
-    public boolean isFirstLoginOfDay() {
-        Calendar today = Calendar.getInstance();
-        Calendar lastLogin = Calendar.getInstance();
-        today.setTime(new Date());
-        lastLogin.setTime(lastLoginDate);
-
-        return lastLogin.get(Calendar.DAY_OF_YEAR) != today.get(Calendar.DAY_OF_YEAR)
-                || lastLogin.get(Calendar.YEAR) != today.get(Calendar.YEAR);
+    public boolean isFirstLoginOfDay(long hoy) {
+        return lastLoginDay < hoy;
     }
 
     /**
@@ -1,7 +1,6 @@
 package dnk.casino.Users;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -15,29 +14,81 @@ import java.util.Optional;
 public interface UsuarioRepository extends MongoRepository<Usuario, String> {
 
     /**
-     * Busca un usuario por su nombre de usuario.
+     * Busca un usuario por su nombre de usuario, sin distinguir mayúsculas.
      * 
      * @param username nombre de usuario a buscar
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
-    @Query("{'username' : { '$regex' : ?0 , $options: 'i' }}")
-    Optional<Usuario> findByUsername(String username);
+    default Optional<Usuario> findByUsername(String username) {
+        return username != null ? findByUsernameLower(Usuario.normalizar(username)) : Optional.empty();
+    }
 
     /**
-     * Busca un usuario por su correo electrónico.
+     * Busca un usuario por su nombre de usuario normalizado.
+     * 
+     * @param usernameLower nombre de usuario en minúsculas
+     * @return el usuario encontrado, o un Optional vacío si no se encuentra
+     */
+    Optional<Usuario> findByUsernameLower(String usernameLower);
+
+    /**
+     * Comprueba si existe un usuario con un nombre de usuario normalizado, sin
+     * leer el documento.
+     * 
+     * @param usernameLower nombre de usuario en minúsculas
+     * @return true si existe, false en caso contrario
+     */
+    boolean existsByUsernameLower(String usernameLower);
+
+    /**
+     * Busca los datos de autenticación de un usuario por su nombre de usuario
+     * normalizado.
+     * 
+     * @param usernameLower nombre de usuario en minúsculas
+     * @return los datos de autenticación, o un Optional vacío si no se encuentra
+     */
+    Optional<AuthView> findAuthByUsernameLower(String usernameLower);
+
+    /**
+     * Busca el saldo de un usuario por su ID.
+     * 
+     * @param id ID del usuario
+     * @return el saldo, o un Optional vacío si no se encuentra
+     */
+    Optional<SaldoView> findSaldoById(String id);
+
+    /**
+     * Busca las estadísticas de juego de un usuario por su ID.
+     * 
+     * @param id ID del usuario
+     * @return las estadísticas, o un Optional vacío si no se encuentra
+     */
+    Optional<EstadisticasView> findEstadisticasById(String id);
+
+    /**
+     * Busca un usuario por su correo electrónico, sin distinguir mayúsculas.
      * 
      * @param email correo electrónico a buscar
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
-    @Query("{'email' : { '$regex' : ?0 , $options: 'i' }}")
-    Optional<Usuario> findByEmail(String email);
+    default Optional<Usuario> findByEmail(String email) {
+        return email != null ? findByEmailLower(Usuario.normalizar(email)) : Optional.empty();
+    }
 
     /**
-     * Busca un usuario por su token de restablecimiento de contraseña.
+     * Busca un usuario por su correo electrónico normalizado.
      * 
-     * @param tokenRestablecimientoContrasena token de restablecimiento de
-     *                                        contraseña a buscar
+     * @param emailLower correo electrónico en minúsculas
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
-    Optional<Usuario> findByTokenRestablecimientoContrasena(String tokenRestablecimientoContrasena);
+    Optional<Usuario> findByEmailLower(String emailLower);
+
+    /**
+     * Comprueba si existe un usuario con un correo electrónico normalizado, sin
+     * leer el documento.
+     * 
+     * @param emailLower correo electrónico en minúsculas
+     * @return true si existe, false en caso contrario
+     */
+    boolean existsByEmailLower(String emailLower);
 }
@@ -1,15 +1,56 @@
 package dnk.casino.Users;
 
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.mongodb.bulk.BulkWriteResult;
+
+import dnk.casino.Config.CalendarioCasino;
+import dnk.casino.Config.PasswordHasher;
+import dnk.casino.Config.PasswordHasher.Operacion;
+import dnk.casino.Error.ServidorOcupadoException;
+import dnk.casino.Idempotencia.IdempotenciaService;
+import dnk.casino.Invalidacion.BusInvalidacion;
+import dnk.casino.Invalidacion.Invalidacion.Tipo;
+import dnk.casino.Leaderboard.Leaderboard;
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Leaderboard.LeaderboardService.Clasificacion;
+import dnk.casino.Leaderboard.LeaderboardService.Ventana;
+import dnk.casino.Leaderboard.PosicionClasificacion;
+import dnk.casino.Leaderboard.PuestoClasificacion;
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
 import dnk.casino.Skins.Skin;
-import dnk.casino.Skins.SkinRepository;
+import dnk.casino.Skins.SkinCatalog;
+import dnk.casino.Skins.SkinService;
+import dnk.casino.Users.ResultadoActualizacion.Estado;
 
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -30,16 +71,91 @@ public class UsuarioService {
     private UsuarioRepository usuarioRepository;
 
     /**
-     * Repositorio de skins.
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Catálogo de skins en memoria.
+     */
+    @Autowired
+    private SkinCatalog skinCatalog;
+
+    /**
+     * Servicio de skins.
      */
     @Autowired
-    private SkinRepository skinRepository;
+    private SkinService skinService;
 
     /**
      * Codificador de contraseñas.
      */
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    /**
+     * Métricas del casino.
+     */
+    @Autowired
+    private CasinoMetrics casinoMetrics;
+
+    /**
+     * Servicio de claves de idempotencia.
+     */
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    /**
+     * Servicio de clasificaciones.
+     */
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    /**
+     * Días del casino.
+     */
+    @Autowired
+    private CalendarioCasino calendarioCasino;
+
+    /**
+     * Escritura diferida de las victorias.
+     */
+    @Autowired
+    private VictoriasDiferidas victoriasDiferidas;
+
+    /**
+     * Bus de invalidación de cachés entre nodos.
+     */
+    @Autowired
+    private BusInvalidacion busInvalidacion;
+
+    /**
+     * Tiempo durante el que es válido un token de restablecimiento de contraseña.
+     */
+    @Value("${dnk.casino.restablecimiento.validez:1h}")
+    private Duration validezTokenRestablecimiento;
+
+    /**
+     * Monedas de la recompensa por el primer inicio de sesión del día.
+     */
+    public static final int RECOMPENSA_DIARIA = 20;
+
+    /**
+     * Número máximo de usuarios que se devuelven a cada lado de una posición.
+     */
+    public static final int MAX_VECINOS = 10;
+
+    /**
+     * Número máximo de intentos de una compra cuyo estado cambia mientras se
+     * comprueba el motivo del fallo.
+     */
+    private static final int MAX_INTENTOS_COMPRA = 3;
+
+    /**
+     * Campos por los que se pueden ordenar los listados de usuarios.
+     */
+    private static final Set<String> CAMPOS_ORDENABLES = Set.of("id", "coins", "wins", "bjwins");
 
     /**
      * Registra un nuevo usuario en el sistema.
@@ -51,34 +167,62 @@ public class UsuarioService {
      * @return el usuario registrado
      */
     public Usuario registrarUsuario(String username, String password, String email, Usuario.Rol rol) {
-        if (usuarioRepository.findByUsername(username).isPresent()) {
-            throw new IllegalArgumentException("El nombre de usuario ya existe");
-        }
+        return casinoMetrics.medir(Metrica.REGISTRO, () -> {
+            if (username != null && usuarioRepository.existsByUsernameLower(Usuario.normalizar(username))) {
+                throw new IllegalArgumentException("El nombre de usuario ya existe");
+            }
 
-        if (usuarioRepository.findByEmail(email).isPresent()) {
-            throw new IllegalArgumentException("El email ya está en uso");
-        }
+            if (email != null && usuarioRepository.existsByEmailLower(Usuario.normalizar(email))) {
+                throw new IllegalArgumentException("El email ya está en uso");
+            }
 
-        Usuario usuario = new Usuario(username, passwordEncoder.encode(password), email);
-        usuario.setRol(rol);
-        usuario.desbloquearSkin(skinRepository.findByName("Comida Basura").get().getId());
+            Usuario usuario = new Usuario(username, passwordHasher.encode(Operacion.REGISTRO, password), email);
+            usuario.setRol(rol);
+            usuario.desbloquearSkin(skinCatalog.findByName("Comida Basura").get().getId());
 
-        return usuarioRepository.save(usuario);
+            Usuario nuevoUsuario = usuarioRepository.save(usuario);
+            leaderboardService.registrarUsuario(nuevoUsuario);
+            return nuevoUsuario;
+        });
     }
 
     /**
      * Inicia sesión un usuario en el sistema.
      * 
+     * Lee el usuario completo después de autenticarlo; si solo se necesitan el
+     * ID, el nombre y el rol, es preferible {@link #autenticar(String, String)}.
+     * 
      * @param username nombre de usuario
      * @param password contraseña
      * @return el usuario logueado, o un Optional vacío si no se loguea con éxito
      */
     public Optional<Usuario> login(String username, String password) {
-        Optional<Usuario> usuario = usuarioRepository.findByUsername(username);
-        if (usuario.isPresent() && passwordEncoder.matches(password, usuario.get().getPassword())) {
-            return usuario;
-        }
-        return Optional.empty();
+        return autenticar(username, password).flatMap(auth -> usuarioRepository.findById(auth.getId()));
+    }
+
+    /**
+     * Autentica a un usuario leyendo solo su ID, nombre, contraseña codificada y
+     * rol.
+     * 
+     * @param username nombre de usuario
+     * @param password contraseña
+     * @return los datos de autenticación del usuario, o un Optional vacío si no
+     *         se autentica con éxito
+     */
+    public Optional<AuthView> autenticar(String username, String password) {
+        return casinoMetrics.medir(Metrica.LOGIN, () -> {
+            Optional<AuthView> usuario = username != null
+                    ? usuarioRepository.findAuthByUsernameLower(Usuario.normalizar(username))
+                    : Optional.empty();
+            if (usuario.isEmpty()) {
+                casinoMetrics.contar(Metrica.LOGIN, Resultado.USUARIO_NO_ENCONTRADO);
+            } else if (passwordHasher.matches(Operacion.LOGIN, password, usuario.get().getPassword())) {
+                return usuario;
+            } else {
+                casinoMetrics.contar(Metrica.LOGIN, Resultado.CREDENCIALES_INVALIDAS);
+            }
+            return Optional.<AuthView>empty();
+        });
     }
 
     /**
@@ -97,7 +241,7 @@ public class UsuarioService {
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
     public Optional<Usuario> findById(String id) {
-        return usuarioRepository.findById(id);
+        return casinoMetrics.medir(Metrica.BUSCAR_POR_ID, () -> usuarioRepository.findById(id));
     }
 
     /**
@@ -107,7 +251,7 @@ public class UsuarioService {
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
     public Optional<Usuario> findByUsername(String username) {
-        return usuarioRepository.findByUsername(username);
+        return casinoMetrics.medir(Metrica.BUSCAR_POR_USERNAME, () -> usuarioRepository.findByUsername(username));
     }
 
     /**
@@ -117,7 +261,7 @@ public class UsuarioService {
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
     public Optional<Usuario> findByEmail(String email) {
-        return usuarioRepository.findByEmail(email);
+        return casinoMetrics.medir(Metrica.BUSCAR_POR_EMAIL, () -> usuarioRepository.findByEmail(email));
     }
 
     /**
@@ -129,6 +273,94 @@ public class UsuarioService {
         return usuarioRepository.findAll();
     }
 
+    /**
+     * Obtiene una página de usuarios usando paginación por cursor (keyset), con
+     * ordenación y filtros resueltos en el servidor de MongoDB.
+     * 
+     * @param filtro      filtro de los usuarios
+     * @param orden       campo de ordenación: id, coins, wins o bjwins
+     * @param descendente true para ordenar de mayor a menor
+     * @param cursor      cursor devuelto por la página anterior, o null para la
+     *                    primera página
+     * @param limite      número máximo de usuarios de la página
+     * @return la página de usuarios
+     */
+    public PaginaUsuarios buscarUsuarios(FiltroUsuarios filtro, String orden, boolean descendente, String cursor,
+            int limite) {
+        if (orden == null || !CAMPOS_ORDENABLES.contains(orden)) {
+            throw new IllegalArgumentException("Campo de ordenación no válido: " + orden);
+        }
+        String campo = orden.equals("id") ? "_id" : orden;
+        Sort.Direction direccion = descendente ? Sort.Direction.DESC : Sort.Direction.ASC;
+
+        List<Criteria> criterios = filtro.toCriteria();
+        if (cursor != null && !cursor.isEmpty()) {
+            criterios.add(criterioCursor(campo, descendente, cursor));
+        }
+        Query query = criterios.isEmpty() ? new Query() : new Query(new Criteria().andOperator(criterios));
+        query.with(campo.equals("_id") ? Sort.by(direccion, "_id") : Sort.by(direccion, campo, "_id"));
+        query.limit(limite + 1);
+
+        List<Usuario> usuarios = casinoMetrics.medir(Metrica.BUSCAR_USUARIOS,
+                () -> mongoTemplate.find(query, Usuario.class));
+        String siguienteCursor = null;
+        if (usuarios.size() > limite) {
+            usuarios = new ArrayList<>(usuarios.subList(0, limite));
+            Usuario ultimo = usuarios.get(limite - 1);
+            String valor = switch (orden) {
+                case "coins" -> ultimo.getCoins() + ":";
+                case "wins" -> ultimo.getWins() + ":";
+                case "bjwins" -> ultimo.getBjwins() + ":";
+                default -> "";
+            };
+            siguienteCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((valor + ultimo.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new PaginaUsuarios(usuarios, siguienteCursor);
+    }
+
+    /**
+     * Crea el criterio que selecciona los usuarios posteriores al cursor.
+     * 
+     * @param campo       campo de ordenación
+     * @param descendente true si el orden es de mayor a menor
+     * @param cursor      cursor de la página anterior
+     * @return el criterio
+     */
+    private static Criteria criterioCursor(String campo, boolean descendente, String cursor) {
+        String[] partes;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            if (campo.equals("_id")) {
+                String id = String.join(":", partes);
+                return descendente ? Criteria.where("_id").lt(id) : Criteria.where("_id").gt(id);
+            }
+            int valor = Integer.parseInt(partes[0]);
+            String id = partes[1];
+            return new Criteria().orOperator(
+                    descendente ? Criteria.where(campo).lt(valor) : Criteria.where(campo).gt(valor),
+                    new Criteria().andOperator(Criteria.where(campo).is(valor),
+                            descendente ? Criteria.where("_id").lt(id) : Criteria.where("_id").gt(id)));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+    }
+
+    /**
+     * Recorre los usuarios que cumplen un filtro directamente desde un cursor de
+     * MongoDB, sin cargarlos todos en memoria. El stream debe cerrarse al
+     * terminar.
+     * 
+     * @param filtro filtro de los usuarios
+     * @return stream de usuarios ordenados por ID
+     */
+    public Stream<Usuario> streamUsuarios(FiltroUsuarios filtro) {
+        List<Criteria> criterios = filtro.toCriteria();
+        Query query = criterios.isEmpty() ? new Query() : new Query(new Criteria().andOperator(criterios));
+        query.with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.stream(query, Usuario.class);
+    }
+
     /**
      * Obtiene un conjunto de skins a partir de una lista de IDs de skins.
      * 
@@ -138,7 +370,7 @@ public class UsuarioService {
     public Set<Skin> getSkins(String[] skinsId) {
         return Stream.of(skinsId)
                 .map(skinId -> {
-                    return skinRepository.findById(skinId).get();
+                    return skinCatalog.findById(skinId).get();
                 })
                 .collect(Collectors.toSet());
     }
@@ -151,29 +383,253 @@ public class UsuarioService {
      * @return el usuario actualizado
      */
     public Usuario updateUser(String id, Usuario updatedUser) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        if (!updatedUser.getRol().equals(null)) {
-            user.setRol(updatedUser.getRol());
+        return casinoMetrics.medir(Metrica.ACTUALIZAR_USUARIO, () -> {
+            Usuario user = usuarioRepository.findById(id)
+                    .orElseThrow(() -> usuarioNoEncontrado(Metrica.ACTUALIZAR_USUARIO));
+            if (!updatedUser.getRol().equals(null)) {
+                user.setRol(updatedUser.getRol());
+            }
+            if (updatedUser.getSkins().size() > 0) {
+                user.setSkins(updatedUser.getSkins());
+            }
+            if (updatedUser.getCoins() >= 0) {
+                user.setCoins(updatedUser.getCoins());
+                user.setVersionSaldo(user.getVersionSaldo() + 1);
+            }
+            Usuario guardado = usuarioRepository.save(user);
+            leaderboardService.actualizarUsuario(guardado);
+            busInvalidacion.publicar(Tipo.USUARIO, id);
+            return guardado;
+        });
+    }
+
+    /**
+     * Actualiza varios usuarios a la vez. Las skins se validan con una única
+     * consulta, la existencia de los usuarios con otra, y los cambios se aplican
+     * con un único bulkWrite de operaciones $set/$addToSet.
+     * 
+     * @param actualizaciones las actualizaciones a aplicar
+     * @return el resultado de cada actualización, en el mismo orden
+     */
+    public List<ResultadoActualizacion> actualizarUsuarios(List<ActualizacionUsuario> actualizaciones) {
+        return casinoMetrics.medir(Metrica.ACTUALIZAR_USUARIOS, () -> aplicarActualizaciones(actualizaciones));
+    }
+
+    /**
+     * Aplica una actualización de varios usuarios.
+     * 
+     * @param actualizaciones las actualizaciones a aplicar
+     * @return el resultado de cada actualización, en el mismo orden
+     */
+    private List<ResultadoActualizacion> aplicarActualizaciones(List<ActualizacionUsuario> actualizaciones) {
+        Set<String> skinsSolicitadas = new HashSet<>();
+        Set<String> idsSolicitados = new HashSet<>();
+        for (ActualizacionUsuario actualizacion : actualizaciones) {
+            idsSolicitados.add(actualizacion.getId());
+            if (actualizacion.getSkinsId() != null) {
+                skinsSolicitadas.addAll(Arrays.asList(actualizacion.getSkinsId()));
+            }
+            if (actualizacion.getAddSkinsId() != null) {
+                skinsSolicitadas.addAll(Arrays.asList(actualizacion.getAddSkinsId()));
+            }
         }
-        if (updatedUser.getSkins().size() > 0) {
-            user.setSkins(updatedUser.getSkins());
+        Set<String> skinsValidas = skinService.filtrarExistentes(skinsSolicitadas);
+        Query existentes = Query.query(Criteria.where("_id").in(idsSolicitados));
+        existentes.fields().include("_id");
+        Set<String> idsExistentes = mongoTemplate.find(existentes, Usuario.class).stream()
+                .map(Usuario::getId)
+                .collect(Collectors.toSet());
+
+        ResultadoActualizacion[] resultados = new ResultadoActualizacion[actualizaciones.size()];
+        List<Integer> operaciones = new ArrayList<>();
+        List<Integer> monedas = new ArrayList<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Usuario.class);
+        for (int i = 0; i < actualizaciones.size(); i++) {
+            ActualizacionUsuario actualizacion = actualizaciones.get(i);
+            String id = actualizacion.getId();
+            if (id == null || !idsExistentes.contains(id)) {
+                resultados[i] = new ResultadoActualizacion(id, Estado.NO_ENCONTRADO, "Usuario no encontrado");
+                continue;
+            }
+            Set<String> skins = toSet(actualizacion.getSkinsId());
+            Set<String> nuevasSkins = toSet(actualizacion.getAddSkinsId());
+            if (!skinsValidas.containsAll(skins) || !skinsValidas.containsAll(nuevasSkins)) {
+                resultados[i] = new ResultadoActualizacion(id, Estado.SKIN_INVALIDA, "Skin no encontrada");
+                continue;
+            }
+
+            Update update = new Update();
+            if (actualizacion.getRol() != null) {
+                update.set("rol", actualizacion.getRol());
+            }
+            if (actualizacion.getCoins() != null && actualizacion.getCoins() >= 0) {
+                update.set("coins", actualizacion.getCoins()).inc("versionSaldo", 1);
+                monedas.add(i);
+            }
+            if (!skins.isEmpty()) {
+                // $set y $addToSet no pueden modificar el mismo campo a la vez
+                skins.addAll(nuevasSkins);
+                update.set("skins", skins);
+            } else if (!nuevasSkins.isEmpty()) {
+                update.addToSet("skins").each(nuevasSkins.toArray());
+            }
+            resultados[i] = new ResultadoActualizacion(id, Estado.OK, null);
+            if (!update.getUpdateObject().isEmpty()) {
+                bulk.updateOne(Query.query(Criteria.where("_id").is(id)), update);
+                operaciones.add(i);
+            }
         }
-        if (updatedUser.getCoins() >= 0) {
-            user.setCoins(updatedUser.getCoins());
+
+        if (!operaciones.isEmpty()) {
+            BulkWriteResult resultado;
+            try {
+                resultado = bulk.execute();
+            } catch (BulkOperationException e) {
+                e.getErrors().forEach(error -> {
+                    int i = operaciones.get(error.getIndex());
+                    resultados[i] = new ResultadoActualizacion(resultados[i].id(), Estado.ERROR, error.getMessage());
+                });
+                resultado = e.getResult();
+            }
+            long aplicadas = operaciones.stream().filter(i -> resultados[i].estado() == Estado.OK).count();
+            if (resultado.getMatchedCount() < aplicadas) {
+                marcarEliminados(operaciones, resultados);
+            }
         }
-        return usuarioRepository.save(user);
+        // El saldo fijado no trae su versión: la clasificación lo vuelve a leer
+        leaderboardService.refrescar(monedas.stream()
+                .filter(i -> resultados[i].estado() == Estado.OK)
+                .map(i -> resultados[i].id())
+                .toList());
+        busInvalidacion.publicar(Tipo.USUARIO, operaciones.stream()
+                .filter(i -> resultados[i].estado() == Estado.OK)
+                .map(i -> resultados[i].id())
+                .toList());
+        return Arrays.asList(resultados);
+    }
+
+    /**
+     * Marca como no encontrados los usuarios de un bulkWrite que ya no existen.
+     * El resultado del bulkWrite solo trae el total de documentos coincidentes,
+     * no el de cada operación, así que cuando faltan coincidencias (un usuario
+     * eliminado entre la comprobación y la escritura) se vuelven a buscar con una
+     * única consulta.
+     * 
+     * @param operaciones las posiciones de las actualizaciones del bulkWrite
+     * @param resultados  los resultados, que se corrigen
+     */
+    private void marcarEliminados(List<Integer> operaciones, ResultadoActualizacion[] resultados) {
+        List<Integer> aplicadas = operaciones.stream().filter(i -> resultados[i].estado() == Estado.OK).toList();
+        Query query = Query.query(Criteria.where("_id").in(aplicadas.stream().map(i -> resultados[i].id()).toList()));
+        query.fields().include("_id");
+        Set<String> existentes = mongoTemplate.find(query, Usuario.class).stream()
+                .map(Usuario::getId)
+                .collect(Collectors.toSet());
+        for (int i : aplicadas) {
+            if (!existentes.contains(resultados[i].id())) {
+                resultados[i] = new ResultadoActualizacion(resultados[i].id(), Estado.NO_ENCONTRADO,
+                        "Usuario no encontrado");
+            }
+        }
+    }
+
+    /**
+     * Convierte un array de IDs en un conjunto.
+     * 
+     * @param ids el array de IDs, o null
+     * @return el conjunto de IDs, vacío si el array es null
+     */
+    private static Set<String> toSet(String[] ids) {
+        return ids != null ? new HashSet<>(Arrays.asList(ids)) : new HashSet<>();
     }
 
     /**
-     * Actualiza la fecha de último inicio de sesión de un usuario.
+     * Actualiza el día y la fecha de último inicio de sesión de un usuario con un
+     * único findAndModify, sin recompensa diaria. La fecha la pone el servidor de
+     * MongoDB.
      * 
      * @param id ID del usuario a actualizar
      * @return el usuario actualizado
      */
     public Usuario updateUserLoginDate(String id) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        user.setLastLoginDate(new Date());
-        return usuarioRepository.save(user);
+        Usuario user = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)),
+                new Update().set("lastLoginDay", calendarioCasino.hoy()).currentDate("lastLoginDate"),
+                FindAndModifyOptions.options().returnNew(true), Usuario.class);
+        if (user == null) {
+            throw new RuntimeException("Usuario no encontrado");
+        }
+        return user;
+    }
+
+    /**
+     * Registra un inicio de sesión con una única actualización atómica: establece
+     * el día y la fecha de último inicio de sesión y, si es el primero del día,
+     * suma la recompensa diaria. Como la condición se evalúa en MongoDB, dos
+     * inicios de sesión simultáneos no pueden cobrar la recompensa dos veces.
+     * 
+     * El día se compara como entero en la zona horaria del casino y la fecha la
+     * pone el servidor de MongoDB, así que no se crea ninguna fecha en Java.
+     * 
+     * @param id ID del usuario
+     * @return true si se ha dado la recompensa diaria, false en caso contrario
+     */
+    public boolean registrarLogin(String id) {
+        int hoy = calendarioCasino.hoy();
+
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().include("lastLoginDay", "coins", "versionSaldo");
+        AggregationUpdate update = actualizacionLogin(hoy);
+
+        // Se devuelve el documento anterior para saber si se ha dado la recompensa
+        Usuario anterior = casinoMetrics.medir(Metrica.REGISTRAR_LOGIN,
+                () -> mongoTemplate.findAndModify(query, update, Usuario.class));
+        if (anterior == null) {
+            throw usuarioNoEncontrado(Metrica.REGISTRAR_LOGIN);
+        }
+        boolean recompensa = anterior.isFirstLoginOfDay(hoy);
+        if (recompensa) {
+            leaderboardService.actualizarMonedas(id, anterior.getCoins() + RECOMPENSA_DIARIA,
+                    anterior.getVersionSaldo() + 1);
+        }
+        return recompensa;
+    }
+
+    /**
+     * Construye la actualización de un inicio de sesión: suma la recompensa
+     * diaria y la versión del saldo si el último inicio de sesión fue antes de hoy
+     * y guarda el día y la fecha de este.
+     * 
+     * @param hoy el día actual, en días desde la época
+     * @return la actualización
+     */
+    public static AggregationUpdate actualizacionLogin(int hoy) {
+        // Un campo que no existe es menor que cualquier número
+        ComparisonOperators.Lt primeroDelDia = ComparisonOperators.valueOf("lastLoginDay").lessThanValue(hoy);
+        return AggregationUpdate.update().set(SetOperation
+                .set("coins").toValueOf(ConditionalOperators
+                        .when(primeroDelDia)
+                        .thenValueOf(ArithmeticOperators.valueOf("coins").add(RECOMPENSA_DIARIA))
+                        .otherwiseValueOf("coins"))
+                .and().set("versionSaldo").toValueOf(ArithmeticOperators
+                        .valueOf(ConditionalOperators.ifNull("versionSaldo").then(0))
+                        .add(ConditionalOperators.when(primeroDelDia).then(1).otherwise(0)))
+                .and().set("lastLoginDay").toValue(hoy)
+                // Variable de MongoDB con la fecha del servidor
+                .and().set("lastLoginDate").toValue("$$NOW"));
+    }
+
+    /**
+     * Cuenta los usuarios que han iniciado sesión en los últimos días, usando el
+     * índice sobre lastLoginDay.
+     * 
+     * @param dias número de días, contando hoy: 1 para hoy, 7 para la última
+     *             semana
+     * @return el número de usuarios activos
+     */
+    public long contarActivos(int dias) {
+        return mongoTemplate.count(
+                Query.query(Criteria.where("lastLoginDay").gt(calendarioCasino.hoy() - Math.max(1, dias))),
+                Usuario.class);
     }
 
     /**
@@ -183,13 +639,17 @@ public class UsuarioService {
      * @return true si el usuario se elimina con éxito, false en caso contrario
      */
     public boolean deleteUser(String id) {
-        Optional<Usuario> user = usuarioRepository.findById(id);
-        if (user.isPresent()) {
-            usuarioRepository.deleteById(id);
-            return true;
-        } else {
-            return false;
-        }
+        return casinoMetrics.medir(Metrica.ELIMINAR_USUARIO, () -> {
+            if (mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), Usuario.class)
+                    .getDeletedCount() > 0) {
+                leaderboardService.eliminarUsuario(id);
+                busInvalidacion.publicar(Tipo.USUARIO, id);
+                return true;
+            } else {
+                casinoMetrics.contar(Metrica.ELIMINAR_USUARIO, Resultado.USUARIO_NO_ENCONTRADO);
+                return false;
+            }
+        });
     }
 
     /**
@@ -200,9 +660,7 @@ public class UsuarioService {
      * @return el usuario actualizado
      */
     public Usuario pagar(String id, int coins) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        user.pagar(coins);
-        return usuarioRepository.save(user);
+        return casinoMetrics.medir(Metrica.PAGAR, () -> incrementarMonedas(Metrica.PAGAR, id, -coins));
     }
 
     /**
@@ -213,9 +671,197 @@ public class UsuarioService {
      * @return el usuario actualizado
      */
     public Usuario cobrar(String id, int coins) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        user.cobrar(coins);
-        return usuarioRepository.save(user);
+        return casinoMetrics.medir(Metrica.COBRAR, () -> incrementarMonedas(Metrica.COBRAR, id, coins));
+    }
+
+    /**
+     * Reduce una cantidad de monedas a un usuario una sola vez por clave de
+     * idempotencia: si se reintenta con la misma clave, devuelve el saldo
+     * original sin volver a restar.
+     * 
+     * @param id                ID del usuario a pagar
+     * @param coins             cantidad de monedas a pagar
+     * @param claveIdempotencia clave de idempotencia, o null para no usarla
+     * @return el saldo del usuario tras el pago
+     */
+    public int pagar(String id, int coins, String claveIdempotencia) {
+        return idempotenciaService.ejecutar("pagar", id, claveIdempotencia, String.valueOf(coins), Integer.class,
+                clave -> casinoMetrics.medir(Metrica.PAGAR, () -> incrementarSaldo(Metrica.PAGAR, id, -coins, clave)),
+                saldo -> true);
+    }
+
+    /**
+     * Aumenta una cantidad de monedas a un usuario una sola vez por clave de
+     * idempotencia: si se reintenta con la misma clave, devuelve el saldo
+     * original sin volver a sumar.
+     * 
+     * @param id                ID del usuario a cobrar
+     * @param coins             cantidad de monedas a cobrar
+     * @param claveIdempotencia clave de idempotencia, o null para no usarla
+     * @return el saldo del usuario tras el cobro
+     */
+    public int cobrar(String id, int coins, String claveIdempotencia) {
+        return idempotenciaService.ejecutar("cobrar", id, claveIdempotencia, String.valueOf(coins), Integer.class,
+                clave -> casinoMetrics.medir(Metrica.COBRAR, () -> incrementarSaldo(Metrica.COBRAR, id, coins, clave)),
+                saldo -> true);
+    }
+
+    /**
+     * Suma (o resta, si es negativa) una cantidad de monedas a un usuario con un
+     * único $inc atómico.
+     * 
+     * @param metrica la operación que modifica las monedas
+     * @param id      ID del usuario
+     * @param delta   cantidad de monedas a sumar
+     * @return el usuario actualizado
+     */
+    private Usuario incrementarMonedas(Metrica metrica, String id, int delta) {
+        return incrementarMonedas(metrica, Query.query(Criteria.where("_id").is(id)), delta);
+    }
+
+    /**
+     * Suma (o resta, si es negativa) una cantidad de monedas a un usuario con un
+     * único findAndModify atómico, leyendo solo su saldo. Con clave de
+     * idempotencia, la anota en el usuario en la misma operación; si ya estaba
+     * anotada, no la repite y devuelve el saldo que dejó.
+     * 
+     * @param metrica la operación que modifica las monedas
+     * @param id      ID del usuario
+     * @param delta   cantidad de monedas a sumar
+     * @param clave   la clave de idempotencia completa, o null
+     * @return el saldo del usuario tras la operación
+     */
+    private int incrementarSaldo(Metrica metrica, String id, int delta, String clave) {
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().include("coins", "versionSaldo");
+        if (clave == null) {
+            return incrementarMonedas(metrica, query, delta).getCoins();
+        }
+        query.addCriteria(IdempotenciaService.noAplicada(clave));
+        Usuario user = mongoTemplate.findAndModify(query,
+                IdempotenciaService.incrementar("coins", "versionSaldo", delta, clave),
+                FindAndModifyOptions.options().returnNew(true), Usuario.class);
+        if (user != null) {
+            leaderboardService.actualizarMonedas(user.getId(), user.getCoins(), user.getVersionSaldo());
+            return user.getCoins();
+        }
+        Document aplicada = idempotenciaService.buscarAplicada(Usuario.class, Criteria.where("_id").is(id), clave);
+        if (aplicada == null) {
+            throw usuarioNoEncontrado(metrica);
+        }
+        return aplicada.get("resultado", Number.class).intValue();
+    }
+
+    /**
+     * Aplica un $inc de monedas al usuario de una consulta por ID y actualiza su
+     * saldo en la clasificación.
+     * 
+     * @param metrica la operación que modifica las monedas
+     * @param query   la consulta del usuario, con la proyección a devolver, que
+     *                debe incluir la versión del saldo
+     * @param delta   cantidad de monedas a sumar
+     * @return el usuario actualizado, con los campos de la proyección
+     */
+    private Usuario incrementarMonedas(Metrica metrica, Query query, int delta) {
+        Usuario user = mongoTemplate.findAndModify(query, new Update().inc("coins", delta).inc("versionSaldo", 1),
+                FindAndModifyOptions.options().returnNew(true), Usuario.class);
+        if (user == null) {
+            throw usuarioNoEncontrado(metrica);
+        }
+        leaderboardService.actualizarMonedas(user.getId(), user.getCoins(), user.getVersionSaldo());
+        return user;
+    }
+
+    /**
+     * Compra una skin para un usuario con un único findAndModify: el filtro exige
+     * que el usuario tenga monedas suficientes y que no tenga ya la skin, y la
+     * actualización resta el precio y añade la skin a la vez. Dos compras
+     * simultáneas no pueden pasar las dos la comprobación de saldo ni cobrar dos
+     * veces la misma skin.
+     * 
+     * Solo si la compra no se aplica se lee el usuario para saber el motivo. Si
+     * para entonces ya cumple las condiciones (otra operación ha cambiado su
+     * saldo o sus skins entre medias), se vuelve a intentar.
+     * 
+     * @param username nombre del usuario
+     * @param skin     skin a comprar
+     * @return el resultado de la compra
+     * @throws ServidorOcupadoException si el estado del usuario cambia en cada
+     *                                  intento
+     */
+    public ResultadoCompra comprarSkin(String username, Skin skin) {
+        return comprar(username, skin, null);
+    }
+
+    /**
+     * Compra una skin con un único findAndModify condicional. Con clave de
+     * idempotencia, el filtro exige además que no esté anotada en el usuario y la
+     * actualización la anota; si ya estaba anotada, la compra ya se había hecho.
+     * 
+     * @param username nombre del usuario
+     * @param skin     skin a comprar
+     * @param clave    la clave de idempotencia completa, o null
+     * @return el resultado de la compra
+     * @throws ServidorOcupadoException si el estado del usuario cambia en cada
+     *                                  intento
+     */
+    private ResultadoCompra comprar(String username, Skin skin, String clave) {
+        if (skin.getPrecio() < 0) {
+            throw new IllegalArgumentException("El precio de la skin no puede ser negativo");
+        }
+        Criteria porUsername = Criteria.where("usernameLower").is(Usuario.normalizar(username));
+        Query compra = Query.query(porUsername)
+                .addCriteria(Criteria.where("coins").gte(skin.getPrecio()))
+                .addCriteria(Criteria.where("skins").ne(skin.getId()));
+        compra.fields().include("coins", "versionSaldo");
+        Update update = new Update().inc("coins", -skin.getPrecio()).inc("versionSaldo", 1)
+                .addToSet("skins", skin.getId());
+        if (clave != null) {
+            compra.addCriteria(IdempotenciaService.noAplicada(clave));
+            IdempotenciaService.anotar(update, clave);
+        }
+        FindAndModifyOptions opciones = FindAndModifyOptions.options().returnNew(true);
+
+        Query estado = Query.query(porUsername);
+        estado.fields().include("coins", "skins");
+        for (int intento = 0; intento < MAX_INTENTOS_COMPRA; intento++) {
+            Usuario comprador = mongoTemplate.findAndModify(compra, update, opciones, Usuario.class);
+            if (comprador != null) {
+                leaderboardService.actualizarMonedas(comprador.getId(), comprador.getCoins(),
+                        comprador.getVersionSaldo());
+                return ResultadoCompra.COMPRADA;
+            }
+            if (clave != null && idempotenciaService.buscarAplicada(Usuario.class, porUsername, clave) != null) {
+                return ResultadoCompra.COMPRADA;
+            }
+            Usuario usuario = mongoTemplate.findOne(estado, Usuario.class);
+            if (usuario == null) {
+                return ResultadoCompra.USUARIO_NO_ENCONTRADO;
+            }
+            if (usuario.getSkins() != null && usuario.getSkins().contains(skin.getId())) {
+                return ResultadoCompra.YA_DESBLOQUEADA;
+            }
+            if (usuario.getCoins() < skin.getPrecio()) {
+                return ResultadoCompra.MONEDAS_INSUFICIENTES;
+            }
+        }
+        throw new ServidorOcupadoException("No se ha podido completar la compra, inténtalo de nuevo");
+    }
+
+    /**
+     * Compra una skin para un usuario una sola vez por clave de idempotencia: si
+     * se reintenta con la misma clave, devuelve el resultado original sin volver
+     * a cobrar.
+     * 
+     * @param username          nombre del usuario
+     * @param skin              skin a comprar
+     * @param claveIdempotencia clave de idempotencia, o null para no usarla
+     * @return el resultado de la compra
+     */
+    public ResultadoCompra comprarSkin(String username, Skin skin, String claveIdempotencia) {
+        return idempotenciaService.ejecutar("comprar-skin", Usuario.normalizar(username), claveIdempotencia,
+                skin.getId(), ResultadoCompra.class, clave -> comprar(username, skin, clave),
+                resultado -> resultado == ResultadoCompra.COMPRADA);
     }
 
     /**
@@ -225,8 +871,7 @@ public class UsuarioService {
      * @return número de victorias
      */
     public int getWins(String id) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        return user.getWins();
+        return getEstadisticas(id).getWins();
     }
 
     /**
@@ -236,32 +881,99 @@ public class UsuarioService {
      * @return número de victorias en blackjack
      */
     public int getBjwins(String id) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        return user.getBjwins();
+        return getEstadisticas(id).getBjwins();
     }
 
     /**
-     * Registra una victoria para un usuario.
+     * Obtiene las estadísticas de juego de un usuario, leyendo solo sus
+     * victorias.
+     * 
+     * @param id ID del usuario
+     * @return las estadísticas del usuario
+     */
+    public EstadisticasView getEstadisticas(String id) {
+        return usuarioRepository.findEstadisticasById(id)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+    }
+
+    /**
+     * Obtiene el saldo de un usuario, leyendo solo sus monedas.
+     * 
+     * @param id ID del usuario
+     * @return el saldo del usuario
+     */
+    public SaldoView getSaldo(String id) {
+        return usuarioRepository.findSaldoById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+    }
+
+    /**
+     * Registra una victoria para un usuario con un único $inc.
      * 
      * @param id ID del usuario
      * @return el usuario actualizado
      */
     public Usuario victoria(String id) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        user.victoria();
-        return usuarioRepository.save(user);
+        return casinoMetrics.medir(Metrica.VICTORIA, () -> incrementarVictorias(Metrica.VICTORIA, id, "wins"));
     }
 
     /**
-     * Registra una victoria en blackjack para un usuario.
+     * Registra una victoria en blackjack para un usuario con un único $inc.
      * 
      * @param id ID del usuario
      * @return el usuario actualizado
      */
     public Usuario bjvictoria(String id) {
-        Usuario user = usuarioRepository.findById(id).orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        user.bjvictoria();
-        return usuarioRepository.save(user);
+        return casinoMetrics.medir(Metrica.BJVICTORIA, () -> incrementarVictorias(Metrica.BJVICTORIA, id, "bjwins"));
+    }
+
+    /**
+     * Registra una victoria para un usuario sin devolverlo. Con las victorias
+     * diferidas activadas solo se acumula en memoria y se escribe en el siguiente
+     * volcado, sin comprobar que el usuario existe.
+     * 
+     * @param id ID del usuario
+     */
+    public void registrarVictoria(String id) {
+        if (victoriasDiferidas.isActivas()) {
+            victoriasDiferidas.acumular(id, VictoriasDiferidas.VICTORIA);
+            leaderboardService.sumarVictorias(id, 1, 0);
+        } else {
+            victoria(id);
+        }
+    }
+
+    /**
+     * Registra una victoria en blackjack para un usuario sin devolverlo. Con las
+     * victorias diferidas activadas solo se acumula en memoria y se escribe en el
+     * siguiente volcado, sin comprobar que el usuario existe.
+     * 
+     * @param id ID del usuario
+     */
+    public void registrarBjVictoria(String id) {
+        if (victoriasDiferidas.isActivas()) {
+            victoriasDiferidas.acumular(id, VictoriasDiferidas.BJVICTORIA);
+            leaderboardService.sumarVictorias(id, 0, 1);
+        } else {
+            bjvictoria(id);
+        }
+    }
+
+    /**
+     * Suma una victoria a un usuario y actualiza las clasificaciones.
+     * 
+     * @param metrica la operación que la suma
+     * @param id      ID del usuario
+     * @param campo   wins o bjwins
+     * @return el usuario actualizado
+     */
+    private Usuario incrementarVictorias(Metrica metrica, String id, String campo) {
+        Usuario user = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)),
+                new Update().inc(campo, 1), FindAndModifyOptions.options().returnNew(true), Usuario.class);
+        if (user == null) {
+            throw usuarioNoEncontrado(metrica);
+        }
+        leaderboardService.registrarVictorias(user, campo.equals("wins") ? 1 : 0, campo.equals("bjwins") ? 1 : 0);
+        return user;
     }
 
     /**
@@ -270,15 +982,7 @@ public class UsuarioService {
      * @return lista de usuarios
      */
     public List<Usuario> getTop5Winners() {
-        List<Usuario> usuarios = getAllUsers();
-
-        usuarios.sort((u1, u2) -> {
-            long wins1 = getWins(u1.getId());
-            long wins2 = getWins(u2.getId());
-            return Long.compare(wins2, wins1);
-        });
-
-        return usuarios.subList(0, Math.min(5, usuarios.size()));
+        return casinoMetrics.medir(Metrica.TOP_WINNERS, () -> cargarUsuarios(leaderboardService.getTopWinners(5)));
     }
 
     /**
@@ -287,38 +991,153 @@ public class UsuarioService {
      * @return lista de usuarios
      */
     public List<Usuario> getTop5BJWinners() {
-        List<Usuario> usuarios = getAllUsers();
+        return casinoMetrics.medir(Metrica.TOP_BJWINNERS,
+                () -> cargarUsuarios(leaderboardService.getTopBJWinners(5)));
+    }
 
-        usuarios.sort((u1, u2) -> {
-            long wins1 = getBjwins(u1.getId());
-            long wins2 = getBjwins(u2.getId());
-            return Long.compare(wins2, wins1);
-        });
+    /**
+     * Obtiene los N primeros usuarios de una clasificación en una ventana de
+     * tiempo, por ejemplo las victorias de hoy o de esta semana. Tanto la
+     * clasificación como los nombres se leen de memoria.
+     * 
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param n             número de usuarios
+     * @return los puestos, de mayor a menor puntuación
+     * @throws IllegalArgumentException si la clasificación no tiene esa ventana
+     */
+    public List<PuestoClasificacion> getClasificacion(Clasificacion clasificacion, Ventana ventana, int n) {
+        return casinoMetrics.medir(Metrica.CLASIFICACION,
+                () -> puestos(leaderboardService.getTop(clasificacion, ventana, n), 1));
+    }
 
-        return usuarios.subList(0, Math.min(5, usuarios.size()));
+    /**
+     * Obtiene la posición de un usuario en una clasificación junto con los
+     * usuarios que tiene justo por encima y por debajo. Se calcula en memoria en
+     * O(log n), sin consultar MongoDB.
+     * 
+     * @param id            ID del usuario
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param vecinos       número de usuarios a cada lado, como mucho
+     *                      {@value #MAX_VECINOS}
+     * @return la posición, o un Optional vacío si el usuario no está en la
+     *         clasificación
+     * @throws IllegalArgumentException si la clasificación no tiene esa ventana
+     */
+    public Optional<PosicionClasificacion> getPosicion(String id, Clasificacion clasificacion, Ventana ventana,
+            int vecinos) {
+        return casinoMetrics.medir(Metrica.POSICION, () -> leaderboardService
+                .getVecindario(clasificacion, ventana, id, Math.max(0, Math.min(vecinos, MAX_VECINOS)))
+                .map(vecindario -> new PosicionClasificacion(vecindario.posicion(), vecindario.total(),
+                        puestos(vecindario.entradas(), vecindario.primera()))));
+    }
+
+    /**
+     * Obtiene la posición de un usuario en una clasificación a partir de su
+     * nombre, igual que {@link #getPosicion(String, Clasificacion, Ventana, int)}.
+     * 
+     * @param username      nombre del usuario
+     * @param clasificacion la puntuación por la que se ordena
+     * @param ventana       el periodo que cubre la clasificación
+     * @param vecinos       número de usuarios a cada lado
+     * @return la posición, o un Optional vacío si el usuario no está en la
+     *         clasificación
+     * @throws IllegalArgumentException si la clasificación no tiene esa ventana
+     */
+    public Optional<PosicionClasificacion> getPosicionPorUsername(String username, Clasificacion clasificacion,
+            Ventana ventana, int vecinos) {
+        return leaderboardService.buscarId(username)
+                .flatMap(id -> getPosicion(id, clasificacion, ventana, vecinos));
+    }
+
+    /**
+     * Convierte entradas consecutivas de una clasificación en puestos con el
+     * nombre de cada usuario.
+     * 
+     * @param entradas las entradas
+     * @param primera  la posición de la primera entrada
+     * @return los puestos, en el mismo orden
+     */
+    private List<PuestoClasificacion> puestos(List<Leaderboard.Entrada> entradas, int primera) {
+        List<PuestoClasificacion> puestos = new ArrayList<>(entradas.size());
+        for (Leaderboard.Entrada entrada : entradas) {
+            puestos.add(new PuestoClasificacion(primera + puestos.size(), entrada.id(),
+                    leaderboardService.getNombre(entrada.id()), entrada.puntuacion()));
+        }
+        return puestos;
+    }
+
+    /**
+     * Carga en una sola consulta los usuarios de una clasificación, conservando
+     * su orden.
+     * 
+     * @param entradas entradas de la clasificación
+     * @return lista de usuarios en el mismo orden que las entradas
+     */
+    private List<Usuario> cargarUsuarios(List<Leaderboard.Entrada> entradas) {
+        Map<String, Usuario> usuarios = usuarioRepository
+                .findAllById(entradas.stream().map(Leaderboard.Entrada::id).toList())
+                .stream()
+                .collect(Collectors.toMap(Usuario::getId, usuario -> usuario));
+        return entradas.stream()
+                .map(entrada -> usuarios.get(entrada.id()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
-     * Guarda un token de restablecimiento de contraseña para un usuario.
+     * Guarda un token de restablecimiento de contraseña para un usuario, en su
+     * propia colección y sin modificar el usuario. Los tokens anteriores del
+     * usuario dejan de ser válidos.
      * 
      * @param usuario usuario al que se le guarda el token
      * @param token   token de restablecimiento de contraseña
      */
     public void guardarTokenRestablecimientoContrasena(Usuario usuario, String token) {
-        usuario.setTokenRestablecimientoContrasena(token);
-        usuario.setFechaExpiracionTokenRestablecimientoContrasena(LocalDateTime.now().plusHours(1)); // Token válido por
-                                                                                                     // 1 hora
-        usuarioRepository.save(usuario);
+        mongoTemplate.remove(Query.query(Criteria.where("usuarioId").is(usuario.getId())),
+                TokenRestablecimiento.class);
+        mongoTemplate.insert(new TokenRestablecimiento(TokenRestablecimiento.hash(token), usuario.getId(),
+                new Date(System.currentTimeMillis() + validezTokenRestablecimiento.toMillis())));
     }
 
     /**
-     * Busca un usuario por su token de restablecimiento de contraseña.
+     * Busca un usuario por su token de restablecimiento de contraseña, si el
+     * token no ha caducado.
      * 
      * @param token token de restablecimiento de contraseña a buscar
      * @return el usuario encontrado, o un Optional vacío si no se encuentra
      */
     public Optional<Usuario> findByTokenRestablecimientoContrasena(String token) {
-        return usuarioRepository.findByTokenRestablecimientoContrasena(token);
+        TokenRestablecimiento encontrado = mongoTemplate.findOne(tokenVigente(token), TokenRestablecimiento.class);
+        return encontrado != null ? usuarioRepository.findById(encontrado.getUsuarioId()) : Optional.empty();
+    }
+
+    /**
+     * Restablece la contraseña de un usuario con un token de restablecimiento. El
+     * token se consume con un findAndRemove, así que solo se puede usar una vez,
+     * pero después de codificar la nueva contraseña: si la codificación falla,
+     * el token sigue siendo válido.
+     * 
+     * @param token           token de restablecimiento de contraseña
+     * @param nuevaContrasena nueva contraseña
+     * @return true si se ha restablecido, false si el token no existe o ha
+     *         caducado
+     * @throws ServidorOcupadoException si no hay capacidad para codificar la
+     *                                  contraseña
+     */
+    public boolean restablecerContrasena(String token, String nuevaContrasena) {
+        if (!mongoTemplate.exists(tokenVigente(token), TokenRestablecimiento.class)) {
+            return false;
+        }
+        return casinoMetrics.medir(Metrica.CAMBIAR_CONTRASENA, () -> {
+            // Se codifica antes de consumir el token: si BCrypt está saturado, el
+            // enlace sigue valiendo para otro intento
+            String hash = passwordHasher.encode(Operacion.CONTRASENA, nuevaContrasena);
+            TokenRestablecimiento consumido = mongoTemplate.findAndRemove(tokenVigente(token),
+                    TokenRestablecimiento.class);
+            return consumido != null && guardarContrasena(consumido.getUsuarioId(), hash);
+        });
     }
 
     /**
@@ -328,9 +1147,61 @@ public class UsuarioService {
      * @param nuevaContrasena nueva contraseña
      */
     public void actualizarContrasena(Usuario usuario, String nuevaContrasena) {
-        usuario.setPassword(passwordEncoder.encode(nuevaContrasena));
-        usuario.setTokenRestablecimientoContrasena(null);
-        usuario.setFechaExpiracionTokenRestablecimientoContrasena(null);
-        usuarioRepository.save(usuario);
+        casinoMetrics.medir(Metrica.CAMBIAR_CONTRASENA, () -> {
+            cambiarContrasena(usuario.getId(), nuevaContrasena);
+        });
+    }
+
+    /**
+     * Codifica y guarda la nueva contraseña de un usuario.
+     * 
+     * @param id              ID del usuario
+     * @param nuevaContrasena nueva contraseña
+     * @return true si el usuario existe, false en caso contrario
+     */
+    private boolean cambiarContrasena(String id, String nuevaContrasena) {
+        return guardarContrasena(id, passwordHasher.encode(Operacion.CONTRASENA, nuevaContrasena));
+    }
+
+    /**
+     * Guarda la contraseña ya codificada de un usuario, sin reescribir el resto
+     * del documento, e invalida sus tokens de restablecimiento pendientes.
+     * 
+     * @param id   ID del usuario
+     * @param hash la nueva contraseña codificada
+     * @return true si el usuario existe, false en caso contrario
+     */
+    private boolean guardarContrasena(String id, String hash) {
+        mongoTemplate.remove(Query.query(Criteria.where("usuarioId").is(id)), TokenRestablecimiento.class);
+        if (mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                new Update().set("password", hash), Usuario.class).getMatchedCount() == 0) {
+            casinoMetrics.contar(Metrica.CAMBIAR_CONTRASENA, Resultado.USUARIO_NO_ENCONTRADO);
+            return false;
+        }
+        busInvalidacion.publicar(Tipo.USUARIO, id);
+        return true;
+    }
+
+    /**
+     * Construye la consulta de un token de restablecimiento que aún no ha
+     * caducado. El índice TTL de MongoDB solo elimina los tokens caducados cada
+     * cierto tiempo, así que la caducidad se comprueba también aquí.
+     * 
+     * @param token token de restablecimiento de contraseña
+     * @return la consulta por _id
+     */
+    private static Query tokenVigente(String token) {
+        return Query.query(Criteria.where("_id").is(TokenRestablecimiento.hash(token)).and("expira").gt(new Date()));
+    }
+
+    /**
+     * Cuenta un usuario no encontrado y crea la excepción correspondiente.
+     * 
+     * @param metrica la operación que no lo ha encontrado
+     * @return la excepción
+     */
+    private RuntimeException usuarioNoEncontrado(Metrica metrica) {
+        casinoMetrics.contar(metrica, Resultado.USUARIO_NO_ENCONTRADO);
+        return new RuntimeException("Usuario no encontrado");
     }
 }
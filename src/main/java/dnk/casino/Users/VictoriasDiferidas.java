@@ -0,0 +1,453 @@
+package dnk.casino.Users;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.bulk.BulkWriteResult;
+
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Leaderboard.LeaderboardService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Escritura diferida de las victorias de los usuarios.
+ *
+ * Con dnk.casino.victorias.diferidas=true las victorias no se escriben una a
+ * una: se acumulan en memoria por usuario y un hilo las vuelca a MongoDB con
+ * un bulkWrite de $inc cada dnk.casino.victorias.intervalo-ms, o antes si hay
+ * dnk.casino.victorias.lote usuarios pendientes. Al detener la aplicación se
+ * vuelca lo que quede.
+ *
+ * Las victorias de cada usuario se guardan en un único AtomicLong: las normales
+ * en los 32 bits altos y las de blackjack en los bajos, así que acumular es un
+ * compareAndSet sin bloqueos. El volcado retira cada contador marcándolo antes
+ * de quitarlo del mapa, de modo que una victoria que llega a la vez se suma a
+ * un contador nuevo en lugar de perderse.
+ *
+ * Si el nodo se cae sin detenerse, se pierden las victorias pendientes, como
+ * mucho las del último intervalo. Si un volcado falla sin respuesta de
+ * MongoDB, no se sabe si se ha aplicado y no se reintenta, para no contar dos
+ * veces las victorias. Las victorias de un ID que no es de ningún usuario se
+ * descartan y el ID se quita de las clasificaciones.
+ *
+ * @author Danikileitor
+ */
+@Component
+public class VictoriasDiferidas implements LeaderboardService.VictoriasPendientes {
+
+    /**
+     * Valor de un contador ya volcado que no admite más victorias.
+     */
+    private static final long RETIRADO = Long.MIN_VALUE;
+
+    /**
+     * Incremento de una victoria normal en el contador empaquetado.
+     */
+    static final long VICTORIA = 1L << 32;
+
+    /**
+     * Incremento de una victoria de blackjack en el contador empaquetado.
+     */
+    static final long BJVICTORIA = 1L;
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Registro de métricas.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Fábrica del hilo de volcado.
+     */
+    @Autowired
+    private FabricaHilos fabricaHilos;
+
+    /**
+     * Servicio de clasificaciones, al que se anotan los usuarios volcados para
+     * avisar a los demás nodos.
+     */
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    /**
+     * Indica si las victorias se escriben de forma diferida.
+     */
+    @Value("${dnk.casino.victorias.diferidas:false}")
+    private boolean activas;
+
+    /**
+     * Tiempo máximo entre volcados, en milisegundos.
+     */
+    @Value("${dnk.casino.victorias.intervalo-ms:1000}")
+    private long intervalo;
+
+    /**
+     * Número de usuarios pendientes que adelanta el volcado y número máximo de
+     * operaciones de cada bulkWrite.
+     */
+    @Value("${dnk.casino.victorias.lote:1000}")
+    private int tamanoLote;
+
+    /**
+     * Victorias pendientes por ID de usuario, empaquetadas.
+     */
+    private final Map<String, AtomicLong> pendientes = new ConcurrentHashMap<>();
+
+    /**
+     * Número de usuarios con victorias pendientes.
+     */
+    private final AtomicInteger numPendientes = new AtomicInteger();
+
+    /**
+     * Instante de la victoria pendiente más antigua, en milisegundos desde la
+     * época, o 0 si no hay ninguna.
+     */
+    private final AtomicLong primeraPendiente = new AtomicLong();
+
+    /**
+     * Cerrojo del volcado, que comparten el hilo de volcado y la parada. Es un
+     * ReentrantLock y no synchronized para que un hilo virtual que espera a
+     * MongoDB no ancle su hilo de plataforma.
+     */
+    private final ReentrantLock volcando = new ReentrantLock();
+
+    /**
+     * Aviso al hilo de volcado de que se ha llenado un lote.
+     */
+    private final Semaphore aviso = new Semaphore(0);
+
+    /**
+     * Hilo de volcado.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Indica si el hilo de volcado debe seguir funcionando.
+     */
+    private volatile boolean activo;
+
+    private Counter acumuladas;
+    private Counter volcadas;
+    private Counter fallos;
+    private Counter inciertas;
+    private Timer retraso;
+
+    /**
+     * Registra las métricas y arranca el hilo de volcado, si las victorias
+     * diferidas están activadas.
+     */
+    @PostConstruct
+    public void iniciar() {
+        if (!activas) {
+            return;
+        }
+        Gauge.builder("dnk.casino.victorias.pendientes", numPendientes, AtomicInteger::get)
+                .description("Usuarios con victorias pendientes de escribir")
+                .register(meterRegistry);
+        acumuladas = Counter.builder("dnk.casino.victorias.acumuladas")
+                .description("Victorias acumuladas en memoria")
+                .register(meterRegistry);
+        volcadas = Counter.builder("dnk.casino.victorias.volcadas")
+                .description("Victorias escritas en MongoDB")
+                .register(meterRegistry);
+        fallos = Counter.builder("dnk.casino.victorias.fallos")
+                .description("Volcados de victorias fallidos")
+                .register(meterRegistry);
+        inciertas = Counter.builder("dnk.casino.victorias.inciertas")
+                .description("Victorias de volcados sin respuesta, que no se reintentan")
+                .register(meterRegistry);
+        retraso = Timer.builder("dnk.casino.victorias.retraso")
+                .description("Tiempo de la victoria pendiente más antigua al volcarla")
+                .register(meterRegistry);
+
+        leaderboardService.setVictoriasPendientes(this);
+        activo = true;
+        executor = Executors.newSingleThreadExecutor(fabricaHilos.crear("dnk-victorias"));
+        executor.execute(this::procesar);
+    }
+
+    /**
+     * Detiene el hilo de volcado y vuelca las victorias pendientes.
+     *
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        if (!activas) {
+            return;
+        }
+        activo = false;
+        aviso.release();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        volcar();
+    }
+
+    /**
+     * Indica si las victorias se escriben de forma diferida.
+     *
+     * @return true si están activadas, false en caso contrario
+     */
+    public boolean isActivas() {
+        return activas;
+    }
+
+    /**
+     * Obtiene las victorias de un usuario que aún no se han volcado. Las de un
+     * volcado en curso ya no se cuentan.
+     *
+     * @param id ID del usuario
+     * @return victorias pendientes
+     */
+    @Override
+    public long victorias(String id) {
+        return pendiente(id) >>> 32;
+    }
+
+    /**
+     * Obtiene las victorias en blackjack de un usuario que aún no se han volcado.
+     * Las de un volcado en curso ya no se cuentan.
+     *
+     * @param id ID del usuario
+     * @return victorias en blackjack pendientes
+     */
+    @Override
+    public long victoriasBj(String id) {
+        return pendiente(id) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Obtiene el contador empaquetado pendiente de un usuario.
+     *
+     * @param id ID del usuario
+     * @return victorias empaquetadas, o 0 si no tiene
+     */
+    private long pendiente(String id) {
+        AtomicLong contador = pendientes.get(id);
+        long valor = contador != null ? contador.get() : 0;
+        return valor != RETIRADO ? valor : 0;
+    }
+
+    /**
+     * Acumula victorias de un usuario para el siguiente volcado.
+     *
+     * @param id    ID del usuario
+     * @param delta incremento empaquetado: {@link #VICTORIA} o
+     *              {@link #BJVICTORIA}
+     */
+    void acumular(String id, long delta) {
+        sumar(id, delta);
+        acumuladas.increment();
+    }
+
+    /**
+     * Suma un incremento empaquetado al contador de un usuario.
+     *
+     * @param id    ID del usuario
+     * @param delta incremento empaquetado
+     */
+    private void sumar(String id, long delta) {
+        while (true) {
+            AtomicLong contador = pendientes.computeIfAbsent(id, clave -> {
+                if (numPendientes.incrementAndGet() == tamanoLote) {
+                    aviso.release();
+                }
+                return new AtomicLong();
+            });
+            long actual = contador.get();
+            if (actual == RETIRADO) {
+                // El volcado lo está quitando del mapa: se ayuda y se crea uno nuevo
+                pendientes.remove(id, contador);
+                continue;
+            }
+            if (contador.compareAndSet(actual, actual + delta)) {
+                primeraPendiente.compareAndSet(0, System.currentTimeMillis());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Bucle del hilo de volcado: espera al intervalo o a que se llene un lote y
+     * vuelca las victorias pendientes.
+     */
+    private void procesar() {
+        while (activo) {
+            try {
+                aviso.tryAcquire(intervalo, TimeUnit.MILLISECONDS);
+                aviso.drainPermits();
+                volcar();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Vuelca a MongoDB todas las victorias pendientes, en lotes de bulkWrite.
+     */
+    private void volcar() {
+        volcando.lock();
+        try {
+            volcarPendientes();
+        } finally {
+            volcando.unlock();
+        }
+    }
+
+    /**
+     * Vuelca las victorias pendientes con el cerrojo de volcado ya adquirido.
+     */
+    private void volcarPendientes() {
+        long primera = primeraPendiente.getAndSet(0);
+        if (primera == 0) {
+            return;
+        }
+        retraso.record(System.currentTimeMillis() - primera, TimeUnit.MILLISECONDS);
+
+        List<String> ids = new ArrayList<>(Math.min(tamanoLote, numPendientes.get()));
+        List<Long> valores = new ArrayList<>(Math.min(tamanoLote, numPendientes.get()));
+        for (Map.Entry<String, AtomicLong> entrada : pendientes.entrySet()) {
+            long valor = entrada.getValue().getAndSet(RETIRADO);
+            if (valor == RETIRADO) {
+                continue;
+            }
+            pendientes.remove(entrada.getKey(), entrada.getValue());
+            numPendientes.decrementAndGet();
+            if (valor == 0) {
+                continue;
+            }
+            ids.add(entrada.getKey());
+            valores.add(valor);
+            if (ids.size() == tamanoLote) {
+                ejecutar(ids, valores);
+                ids.clear();
+                valores.clear();
+            }
+        }
+        if (!ids.isEmpty()) {
+            ejecutar(ids, valores);
+        }
+    }
+
+    /**
+     * Ejecuta un lote de incrementos con un único bulkWrite. Las operaciones que
+     * fallan se vuelven a acumular para el siguiente volcado, salvo si no hay
+     * respuesta del servidor, y los usuarios escritos se anotan en las
+     * clasificaciones para avisar a los demás nodos. Si alguna operación no
+     * encuentra su usuario, los IDs inexistentes se quitan de las
+     * clasificaciones.
+     *
+     * @param ids     los IDs de los usuarios del lote
+     * @param valores las victorias empaquetadas de cada usuario, en el mismo
+     *                orden
+     */
+    private void ejecutar(List<String> ids, List<Long> valores) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Usuario.class);
+        for (int i = 0; i < ids.size(); i++) {
+            long valor = valores.get(i);
+            bulk.updateOne(Query.query(where("_id").is(ids.get(i))),
+                    new Update().inc("wins", valor >>> 32).inc("bjwins", valor & 0xFFFFFFFFL));
+        }
+        List<String> escritos = ids;
+        BulkWriteResult resultado;
+        try {
+            resultado = bulk.execute();
+            valores.forEach(valor -> volcadas.increment(contar(valor)));
+        } catch (BulkOperationException e) {
+            // En un lote no ordenado el resto de operaciones sí se han aplicado
+            fallos.increment();
+            boolean[] fallidas = new boolean[ids.size()];
+            e.getErrors().forEach(error -> fallidas[error.getIndex()] = true);
+            escritos = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (fallidas[i]) {
+                    sumar(ids.get(i), valores.get(i));
+                } else {
+                    volcadas.increment(contar(valores.get(i)));
+                    escritos.add(ids.get(i));
+                }
+            }
+            System.out.println("Error al escribir " + e.getErrors().size() + " victorias, se reintentarán");
+            resultado = e.getResult();
+        } catch (RuntimeException e) {
+            // Sin respuesta del servidor no se sabe si se han aplicado, y reintentarlas
+            // podría contarlas dos veces: se dan por escritas y se cuentan aparte
+            fallos.increment();
+            valores.forEach(valor -> inciertas.increment(contar(valor)));
+            leaderboardService.marcarCambiados(ids);
+            System.out.println("Error al escribir victorias, no se reintentarán: " + e.getMessage());
+            return;
+        }
+        if (resultado.getMatchedCount() < escritos.size()) {
+            descartarInexistentes(escritos);
+        }
+        leaderboardService.marcarCambiados(escritos);
+    }
+
+    /**
+     * Quita de las clasificaciones los IDs de un lote que no son de ningún
+     * usuario, que se habían sumado sin comprobarlo. El resultado del bulkWrite
+     * solo trae el total de coincidencias, así que se buscan con una consulta.
+     *
+     * @param ids los IDs escritos del lote
+     */
+    private void descartarInexistentes(List<String> ids) {
+        Query query = Query.query(where("_id").in(ids));
+        query.fields().include("_id");
+        Set<String> existentes = new HashSet<>();
+        mongoTemplate.find(query, Usuario.class).forEach(usuario -> existentes.add(usuario.getId()));
+        for (String id : ids) {
+            if (!existentes.contains(id)) {
+                System.out.println("Descartadas las victorias del usuario inexistente " + id);
+                leaderboardService.eliminarUsuario(id);
+            }
+        }
+    }
+
+    /**
+     * Cuenta las victorias de un contador empaquetado.
+     *
+     * @param valor victorias empaquetadas
+     * @return número total de victorias
+     */
+    private static long contar(long valor) {
+        return (valor >>> 32) + (valor & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,225 @@
+package dnk.casino.Wallet;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.Objects;
+import java.util.OptionalInt;
+
+import org.bson.Document;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import dnk.casino.Idempotencia.IdempotenciaService;
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Metrics.CasinoMetrics.Metrica;
+import dnk.casino.Metrics.CasinoMetrics.Resultado;
+import dnk.casino.Users.Usuario;
+
+/**
+ * Servicio de monedero para las apuestas y los premios de los juegos.
+ *
+ * Todas las operaciones se resuelven en el servidor de MongoDB con un único
+ * findAndModify y un $inc atómico, por lo que cada apuesta o premio cuesta un
+ * solo viaje de red y no se pierden actualizaciones concurrentes.
+ *
+ * @author Danikileitor
+ */
+@Service
+public class WalletService {
+
+    /**
+     * Plantilla de MongoDB.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Métricas del casino.
+     */
+    @Autowired
+    private CasinoMetrics casinoMetrics;
+
+    /**
+     * Servicio de claves de idempotencia.
+     */
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    /**
+     * Servicio de clasificaciones, que incluye la de monedas.
+     */
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    /**
+     * Opciones de findAndModify que devuelven el documento actualizado.
+     */
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    /**
+     * Aumenta una cantidad de monedas a un usuario.
+     *
+     * @param id    ID del usuario
+     * @param coins cantidad de monedas a sumar
+     * @return el nuevo saldo del usuario
+     */
+    public int abonar(String id, int coins) {
+        if (coins < 0) {
+            throw new IllegalArgumentException("La cantidad de monedas no puede ser negativa");
+        }
+        Usuario usuario = casinoMetrics.medir(Metrica.ABONAR, () -> mongoTemplate.findAndModify(saldoQuery(id),
+                new Update().inc("coins", coins).inc("versionSaldo", 1), RETURN_NEW, Usuario.class));
+        if (usuario == null) {
+            casinoMetrics.contar(Metrica.ABONAR, Resultado.USUARIO_NO_ENCONTRADO);
+            throw new RuntimeException("Usuario no encontrado");
+        }
+        leaderboardService.actualizarMonedas(id, usuario.getCoins(), usuario.getVersionSaldo());
+        return usuario.getCoins();
+    }
+
+    /**
+     * Reduce una cantidad de monedas a un usuario solo si tiene saldo suficiente.
+     *
+     * @param id    ID del usuario
+     * @param coins cantidad de monedas a restar
+     * @return el nuevo saldo del usuario, o un OptionalInt vacío si no tiene
+     *         suficientes monedas
+     */
+    public OptionalInt cargar(String id, int coins) {
+        if (coins < 0) {
+            throw new IllegalArgumentException("La cantidad de monedas no puede ser negativa");
+        }
+        return casinoMetrics.medir(Metrica.CARGAR, () -> {
+            Query query = saldoQuery(id).addCriteria(where("coins").gte(coins));
+            Usuario usuario = mongoTemplate.findAndModify(query,
+                    new Update().inc("coins", -coins).inc("versionSaldo", 1), RETURN_NEW, Usuario.class);
+            if (usuario != null) {
+                leaderboardService.actualizarMonedas(id, usuario.getCoins(), usuario.getVersionSaldo());
+                return OptionalInt.of(usuario.getCoins());
+            }
+            // Solo en el caso de fallo se distingue entre usuario inexistente y saldo
+            // insuficiente
+            if (!mongoTemplate.exists(Query.query(where("_id").is(id)), Usuario.class)) {
+                casinoMetrics.contar(Metrica.CARGAR, Resultado.USUARIO_NO_ENCONTRADO);
+                throw new RuntimeException("Usuario no encontrado");
+            }
+            casinoMetrics.contar(Metrica.CARGAR, Resultado.MONEDAS_INSUFICIENTES);
+            return OptionalInt.empty();
+        });
+    }
+
+    /**
+     * Aumenta una cantidad de monedas a un usuario una sola vez por clave de
+     * idempotencia: si se reintenta con la misma clave, devuelve el saldo
+     * original sin volver a sumar.
+     *
+     * @param id                ID del usuario
+     * @param coins             cantidad de monedas a sumar
+     * @param claveIdempotencia clave de idempotencia, o null para no usarla
+     * @return el nuevo saldo del usuario
+     */
+    public int abonar(String id, int coins, String claveIdempotencia) {
+        if (coins < 0) {
+            throw new IllegalArgumentException("La cantidad de monedas no puede ser negativa");
+        }
+        return idempotenciaService.ejecutar("abonar", id, claveIdempotencia, String.valueOf(coins), Integer.class,
+                clave -> clave == null ? abonar(id, coins) : incrementarUnaVez(Metrica.ABONAR, id, coins, clave),
+                saldo -> true);
+    }
+
+    /**
+     * Reduce una cantidad de monedas a un usuario una sola vez por clave de
+     * idempotencia: si se reintenta con la misma clave, devuelve el resultado
+     * original sin volver a restar.
+     *
+     * @param id                ID del usuario
+     * @param coins             cantidad de monedas a restar
+     * @param claveIdempotencia clave de idempotencia, o null para no usarla
+     * @return el nuevo saldo del usuario, o un OptionalInt vacío si no tiene
+     *         suficientes monedas
+     */
+    public OptionalInt cargar(String id, int coins, String claveIdempotencia) {
+        if (coins < 0) {
+            throw new IllegalArgumentException("La cantidad de monedas no puede ser negativa");
+        }
+        Integer saldo = idempotenciaService.ejecutar("cargar", id, claveIdempotencia, String.valueOf(coins),
+                Integer.class, clave -> {
+                    if (clave != null) {
+                        return incrementarUnaVez(Metrica.CARGAR, id, -coins, clave);
+                    }
+                    OptionalInt resultado = cargar(id, coins);
+                    return resultado.isPresent() ? resultado.getAsInt() : null;
+                }, Objects::nonNull);
+        return saldo != null ? OptionalInt.of(saldo) : OptionalInt.empty();
+    }
+
+    /**
+     * Suma (o resta, si es negativa) una cantidad de monedas a un usuario y anota
+     * la clave de idempotencia en el mismo findAndModify. Una resta solo se
+     * aplica si el usuario tiene saldo suficiente. Si la clave ya estaba anotada,
+     * la operación no se repite y se devuelve el saldo que dejó.
+     *
+     * @param metrica la operación que modifica las monedas
+     * @param id      ID del usuario
+     * @param delta   cantidad de monedas a sumar
+     * @param clave   la clave de idempotencia completa
+     * @return el saldo tras la operación, o null si no tiene suficientes monedas
+     */
+    private Integer incrementarUnaVez(Metrica metrica, String id, int delta, String clave) {
+        return casinoMetrics.medir(metrica, () -> {
+            Query query = saldoQuery(id).addCriteria(IdempotenciaService.noAplicada(clave));
+            if (delta < 0) {
+                query.addCriteria(where("coins").gte(-delta));
+            }
+            Usuario usuario = mongoTemplate.findAndModify(query,
+                    IdempotenciaService.incrementar("coins", "versionSaldo", delta, clave), RETURN_NEW, Usuario.class);
+            if (usuario != null) {
+                leaderboardService.actualizarMonedas(id, usuario.getCoins(), usuario.getVersionSaldo());
+                return usuario.getCoins();
+            }
+            Document aplicada = idempotenciaService.buscarAplicada(Usuario.class, where("_id").is(id), clave);
+            if (aplicada != null) {
+                return aplicada.get("resultado", Number.class).intValue();
+            }
+            if (!mongoTemplate.exists(Query.query(where("_id").is(id)), Usuario.class)) {
+                casinoMetrics.contar(metrica, Resultado.USUARIO_NO_ENCONTRADO);
+                throw new RuntimeException("Usuario no encontrado");
+            }
+            casinoMetrics.contar(metrica, Resultado.MONEDAS_INSUFICIENTES);
+            return null;
+        });
+    }
+
+    /**
+     * Obtiene el saldo de un usuario.
+     *
+     * @param id ID del usuario
+     * @return el saldo del usuario
+     */
+    public int getSaldo(String id) {
+        Usuario usuario = mongoTemplate.findOne(saldoQuery(id), Usuario.class);
+        if (usuario == null) {
+            throw new RuntimeException("Usuario no encontrado");
+        }
+        return usuario.getCoins();
+    }
+
+    /**
+     * Crea una consulta por ID que solo devuelve las monedas y la versión del
+     * saldo.
+     *
+     * @param id ID del usuario
+     * @return la consulta
+     */
+    private static Query saldoQuery(String id) {
+        Query query = Query.query(where("_id").is(id));
+        query.fields().include("coins", "versionSaldo");
+        return query;
+    }
+}
@@ -0,0 +1,80 @@
+package dnk.casino.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * Pruebas de {@link HilosVirtualesPostProcessor}.
+ *
+ * @author Danikileitor
+ */
+class HilosVirtualesPostProcessorTest {
+
+    /**
+     * Configuración vacía para arrancar una aplicación sin beans.
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class Vacia {
+    }
+
+    @Test
+    void seRegistraEnSpringFactories() {
+        SpringApplication application = new SpringApplication(Vacia.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        try (ConfigurableApplicationContext context = application.run(
+                "--" + HilosVirtualesPostProcessor.PROPIEDAD + "=true")) {
+            assertThat(context.getEnvironment().getProperty("spring.threads.virtual.enabled")).isEqualTo("true");
+        }
+    }
+
+    @Test
+    void activaLosHilosVirtualesDeSpring() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty(HilosVirtualesPostProcessor.PROPIEDAD, "true");
+
+        new HilosVirtualesPostProcessor().postProcessEnvironment(environment, new SpringApplication());
+
+        assertThat(environment.getProperty("spring.threads.virtual.enabled")).isEqualTo("true");
+    }
+
+    @Test
+    void respetaElValorExplicitoDeLaAplicacion() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty(HilosVirtualesPostProcessor.PROPIEDAD, "true");
+        environment.getPropertySources().addFirst(new MapPropertySource("aplicacion",
+                Map.of("spring.threads.virtual.enabled", "false")));
+
+        new HilosVirtualesPostProcessor().postProcessEnvironment(environment, new SpringApplication());
+
+        assertThat(environment.getProperty("spring.threads.virtual.enabled")).isEqualTo("false");
+    }
+
+    @Test
+    void noCambiaLasPropiedadesDelSistema() {
+        String anterior = System.getProperty("jdk.tracePinnedThreads");
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty(HilosVirtualesPostProcessor.PROPIEDAD, "true");
+
+        new HilosVirtualesPostProcessor().postProcessEnvironment(environment, new SpringApplication());
+
+        assertThat(System.getProperty("jdk.tracePinnedThreads")).isEqualTo(anterior);
+    }
+
+    @Test
+    void noHaceNadaSinActivar() {
+        MockEnvironment environment = new MockEnvironment();
+
+        new HilosVirtualesPostProcessor().postProcessEnvironment(environment, new SpringApplication());
+
+        assertThat(environment.getProperty("spring.threads.virtual.enabled")).isNull();
+    }
+}
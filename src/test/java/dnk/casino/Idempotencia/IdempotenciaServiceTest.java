@@ -0,0 +1,174 @@
+package dnk.casino.Idempotencia;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.util.Date;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import dnk.casino.Error.ServidorOcupadoException;
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Users.ResultadoCompra;
+import dnk.casino.Users.Usuario;
+import dnk.casino.Users.UsuarioService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Pruebas de las claves de idempotencia con la compra de skins, incluido el
+ * caso en que la respuesta de MongoDB se pierde después de aplicar la compra.
+ *
+ * Las operaciones del monedero anotan la clave con un pipeline de agregación
+ * en el findAndModify, que mongo-java-server no admite, así que se prueba la
+ * tienda, que lo hace con un $push.
+ *
+ * @author Danikileitor
+ */
+class IdempotenciaServiceTest {
+
+    private MongoServer servidor;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private IdempotenciaService idempotenciaService;
+    private UsuarioService usuarioService;
+    private String id;
+    private Skin skin;
+
+    @BeforeEach
+    void crear() {
+        servidor = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(servidor.bindAndGetConnectionString());
+        mongoTemplate = spy(new MongoTemplate(client, "dnk-casino-test"));
+
+        idempotenciaService = new IdempotenciaService();
+        ReflectionTestUtils.setField(idempotenciaService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(idempotenciaService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(idempotenciaService, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(idempotenciaService, "reserva", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(idempotenciaService, "capacidad", 1000);
+
+        usuarioService = new UsuarioService();
+        ReflectionTestUtils.setField(usuarioService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(usuarioService, "idempotenciaService", idempotenciaService);
+        ReflectionTestUtils.setField(usuarioService, "leaderboardService", mock(LeaderboardService.class));
+
+        Usuario usuario = new Usuario("jugador", "password", "jugador@dnk.casino");
+        usuario.setCoins(100);
+        id = mongoTemplate.insert(usuario).getId();
+        skin = new Skin("skin", 40, "", new String[0], true);
+        skin.setId("skin");
+    }
+
+    @AfterEach
+    void cerrar() {
+        client.close();
+        servidor.shutdownNow();
+    }
+
+    @Test
+    void unReintentoConLaMismaClaveNoVuelveACobrar() {
+        assertThat(usuarioService.comprarSkin("jugador", skin, "clave")).isEqualTo(ResultadoCompra.COMPRADA);
+        assertThat(usuarioService.comprarSkin("jugador", skin, "clave")).isEqualTo(ResultadoCompra.COMPRADA);
+        assertThat(saldo()).isEqualTo(60);
+    }
+
+    @Test
+    void unTimeoutTrasAplicarLaOperacionNoCobraDosVeces() {
+        perderRespuestaDelPrimerFindAndModify();
+
+        assertThatThrownBy(() -> usuarioService.comprarSkin("jugador", skin, "clave"))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(saldo()).isEqualTo(60);
+
+        // Mientras dura la reserva, el reintento espera
+        assertThatThrownBy(() -> usuarioService.comprarSkin("jugador", skin, "clave"))
+                .isInstanceOf(ServidorOcupadoException.class);
+
+        // Caducada la reserva, el reintento encuentra la clave anotada en el usuario
+        caducarReserva();
+        assertThat(usuarioService.comprarSkin("jugador", skin, "clave")).isEqualTo(ResultadoCompra.COMPRADA);
+        assertThat(saldo()).isEqualTo(60);
+        assertThat(mongoTemplate.findById("comprar-skin:jugador:clave", ClaveIdempotencia.class).isCompletada())
+                .isTrue();
+    }
+
+    @Test
+    void unRechazoLiberaLaClave() {
+        Skin cara = new Skin("cara", 150, "", new String[0], true);
+        cara.setId("cara");
+        assertThat(usuarioService.comprarSkin("jugador", cara, "clave"))
+                .isEqualTo(ResultadoCompra.MONEDAS_INSUFICIENTES);
+        assertThat(mongoTemplate.findById("comprar-skin:jugador:clave", ClaveIdempotencia.class)).isNull();
+        mongoTemplate.updateFirst(Query.query(where("_id").is(id)), new Update().inc("coins", 100), Usuario.class);
+
+        assertThat(usuarioService.comprarSkin("jugador", cara, "clave")).isEqualTo(ResultadoCompra.COMPRADA);
+        assertThat(saldo()).isEqualTo(50);
+    }
+
+    @Test
+    void soloSeConservanLasUltimasClavesEnElUsuario() {
+        for (int i = 0; i < 30; i++) {
+            Skin gratis = new Skin("gratis" + i, 0, "", new String[0], true);
+            gratis.setId("gratis" + i);
+            usuarioService.comprarSkin("jugador", gratis, "clave" + i);
+        }
+        Document usuario = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Usuario.class))
+                .find(new Document("usernameLower", "jugador")).first();
+        assertThat(usuario.getList(IdempotenciaService.APLICADAS, Document.class)).hasSize(20)
+                .last().satisfies(aplicada -> assertThat(aplicada.getString("clave"))
+                        .isEqualTo("comprar-skin:jugador:clave29"));
+    }
+
+    /**
+     * Hace que el primer findAndModify sobre un usuario se aplique en MongoDB
+     * pero lance un error como si se hubiera perdido la respuesta.
+     */
+    private void perderRespuestaDelPrimerFindAndModify() {
+        boolean[] perdida = new boolean[1];
+        doAnswer(invocacion -> {
+            Object resultado = invocacion.callRealMethod();
+            if (!perdida[0]) {
+                perdida[0] = true;
+                throw new DataAccessResourceFailureException("Timeout al leer la respuesta");
+            }
+            return resultado;
+        }).when(mongoTemplate).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Usuario.class));
+    }
+
+    /**
+     * Adelanta el fin de la reserva de una clave, como si hubiera pasado su
+     * duración.
+     */
+    private void caducarReserva() {
+        mongoTemplate.updateFirst(Query.query(where("_id").is("comprar-skin:jugador:clave")),
+                new Update().set("reservadaHasta", new Date(0)), ClaveIdempotencia.class);
+    }
+
+    private int saldo() {
+        return mongoTemplate.findById(id, Usuario.class).getCoins();
+    }
+}
@@ -0,0 +1,221 @@
+package dnk.casino.Invalidacion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import dnk.casino.Config.CalendarioCasino;
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Leaderboard.Leaderboard;
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Leaderboard.LeaderboardService.Clasificacion;
+import dnk.casino.Leaderboard.LeaderboardService.Ventana;
+import dnk.casino.Metrics.CasinoMetrics;
+import dnk.casino.Skins.Skin;
+import dnk.casino.Skins.SkinCatalog;
+import dnk.casino.Skins.SkinRepository;
+import dnk.casino.Skins.SkinService;
+import dnk.casino.Users.ActualizacionUsuario;
+import dnk.casino.Users.Usuario;
+import dnk.casino.Users.UsuarioService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prueba de la invalidación entre dos nodos en la misma JVM con el bus en
+ * memoria.
+ *
+ * Cada nodo tiene su propio catálogo de skins y sus clasificaciones, y los dos
+ * comparten la base de datos de mongo-java-server y el canal del bus, como dos
+ * contextos de aplicación con dnk.casino.invalidacion.backend=memoria.
+ *
+ * @author Danikileitor
+ */
+class InvalidacionMultinodoTest {
+
+    /**
+     * Tiempo máximo que se espera a que un nodo aplique un aviso en su hilo.
+     */
+    private static final long ESPERA_MS = 5000;
+
+    private MongoServer servidor;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private SkinRepository skinRepository;
+    private final List<BusInvalidacionMemoria> buses = new ArrayList<>();
+    private final List<LeaderboardService> clasificaciones = new ArrayList<>();
+    private Nodo nodoA;
+    private Nodo nodoB;
+    private String id;
+
+    /**
+     * Servicios de un nodo.
+     *
+     * @param skinCatalog        el catálogo de skins
+     * @param skinService        el servicio de skins
+     * @param leaderboardService las clasificaciones
+     * @param usuarioService     el servicio de usuarios
+     */
+    private record Nodo(SkinCatalog skinCatalog, SkinService skinService, LeaderboardService leaderboardService,
+            UsuarioService usuarioService) {
+    }
+
+    @BeforeEach
+    void crear() {
+        servidor = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(servidor.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-test");
+        skinRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SkinRepository.class);
+
+        Usuario usuario = new Usuario("jugador", "password", "jugador@dnk.casino");
+        usuario.setCoins(100);
+        id = mongoTemplate.insert(usuario).getId();
+
+        nodoA = crearNodo();
+        nodoB = crearNodo();
+    }
+
+    @AfterEach
+    void cerrar() throws InterruptedException {
+        for (LeaderboardService leaderboardService : clasificaciones) {
+            leaderboardService.detener();
+        }
+        buses.forEach(BusInvalidacionMemoria::detener);
+        client.close();
+        servidor.shutdownNow();
+    }
+
+    @Test
+    void unaSkinCambiadaEnUnNodoSeActualizaEnElOtro() {
+        Skin skin = nodoA.skinService().createSkin(new Skin("dorada", 50, "Dorada", new String[] { "7" }, true));
+        assertThat(nodoB.skinCatalog().getById(skin.getId())).isNotNull();
+
+        Skin cambios = new Skin(null, 80, null, null, false);
+        nodoA.skinService().updateSkin(skin.getId(), cambios);
+
+        Skin enB = nodoB.skinCatalog().getById(skin.getId());
+        assertThat(enB.getPrecio()).isEqualTo(80);
+        assertThat(enB.isVendible()).isFalse();
+
+        nodoA.skinService().deleteSkin(skin.getId());
+        assertThat(nodoB.skinCatalog().getById(skin.getId())).isNull();
+    }
+
+    @Test
+    void unUsuarioEliminadoEnUnNodoSaleDeLasClasificacionesDelOtro() {
+        assertThat(nodoB.leaderboardService().buscarId("jugador")).contains(id);
+
+        assertThat(nodoA.usuarioService().deleteUser(id)).isTrue();
+
+        esperar(() -> nodoB.leaderboardService().buscarId("jugador").isEmpty());
+        assertThat(monedas(nodoB)).doesNotContainKey(id);
+    }
+
+    @Test
+    void unaActualizacionEnLoteSeVeEnElOtroNodo() {
+        ActualizacionUsuario actualizacion = new ActualizacionUsuario();
+        actualizacion.setId(id);
+        actualizacion.setCoins(500);
+
+        nodoA.usuarioService().actualizarUsuarios(List.of(actualizacion));
+
+        esperar(() -> monedas(nodoB).getOrDefault(id, 0L) == 500);
+    }
+
+    /**
+     * Crea un nodo con su propio bus en el canal compartido. El intervalo de
+     * volcado de las clasificaciones es largo para que solo se lean los avisos.
+     *
+     * @return los servicios del nodo
+     */
+    private Nodo crearNodo() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BusInvalidacionMemoria bus = new BusInvalidacionMemoria("multinodo", meterRegistry);
+        bus.iniciar();
+        buses.add(bus);
+
+        CasinoMetrics casinoMetrics = new CasinoMetrics();
+        ReflectionTestUtils.setField(casinoMetrics, "meterRegistry", meterRegistry);
+        casinoMetrics.iniciar();
+
+        SkinCatalog skinCatalog = new SkinCatalog();
+        ReflectionTestUtils.setField(skinCatalog, "skinRepository", skinRepository);
+        ReflectionTestUtils.setField(skinCatalog, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(skinCatalog, "busInvalidacion", bus);
+        skinCatalog.iniciar();
+
+        SkinService skinService = new SkinService();
+        ReflectionTestUtils.setField(skinService, "skinRepository", skinRepository);
+        ReflectionTestUtils.setField(skinService, "skinCatalog", skinCatalog);
+        ReflectionTestUtils.setField(skinService, "busInvalidacion", bus);
+        ReflectionTestUtils.setField(skinService, "casinoMetrics", casinoMetrics);
+
+        LeaderboardService leaderboardService = new LeaderboardService();
+        ReflectionTestUtils.setField(leaderboardService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(leaderboardService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(leaderboardService, "calendarioCasino", new CalendarioCasino(""));
+        ReflectionTestUtils.setField(leaderboardService, "fabricaHilos", new FabricaHilos());
+        ReflectionTestUtils.setField(leaderboardService, "busInvalidacion", bus);
+        ReflectionTestUtils.setField(leaderboardService, "intervaloVolcado", 3_600_000L);
+        leaderboardService.iniciar();
+        clasificaciones.add(leaderboardService);
+
+        UsuarioService usuarioService = new UsuarioService();
+        ReflectionTestUtils.setField(usuarioService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(usuarioService, "skinCatalog", skinCatalog);
+        ReflectionTestUtils.setField(usuarioService, "skinService", skinService);
+        ReflectionTestUtils.setField(usuarioService, "casinoMetrics", casinoMetrics);
+        ReflectionTestUtils.setField(usuarioService, "leaderboardService", leaderboardService);
+        ReflectionTestUtils.setField(usuarioService, "busInvalidacion", bus);
+
+        return new Nodo(skinCatalog, skinService, leaderboardService, usuarioService);
+    }
+
+    /**
+     * Obtiene la clasificación por monedas de un nodo.
+     *
+     * @param nodo el nodo
+     * @return las monedas por ID de usuario
+     */
+    private static Map<String, Long> monedas(Nodo nodo) {
+        Map<String, Long> monedas = new HashMap<>();
+        for (Leaderboard.Entrada entrada : nodo.leaderboardService().getTop(Clasificacion.COINS, Ventana.TOTAL, 100)) {
+            monedas.put(entrada.id(), entrada.puntuacion());
+        }
+        return monedas;
+    }
+
+    /**
+     * Espera a que se cumpla una condición que el otro nodo aplica en su hilo de
+     * clasificaciones.
+     *
+     * @param condicion la condición
+     */
+    private static void esperar(BooleanSupplier condicion) {
+        long limite = System.currentTimeMillis() + ESPERA_MS;
+        while (!condicion.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("tiempo de espera").isLessThan(limite);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package dnk.casino.Leaderboard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import dnk.casino.Config.CalendarioCasino;
+import dnk.casino.Config.FabricaHilos;
+import dnk.casino.Invalidacion.BusInvalidacionMemoria;
+import dnk.casino.Leaderboard.LeaderboardService.Clasificacion;
+import dnk.casino.Leaderboard.LeaderboardService.Ventana;
+import dnk.casino.Users.Usuario;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prueba de las clasificaciones periódicas con dos nodos que comparten la base
+ * de datos.
+ *
+ * Usa mongo-java-server con dos {@link LeaderboardService} que escriben en la
+ * misma colección leaderboard_periods. Los volcados se lanzan a mano para
+ * controlar el orden entre nodos.
+ *
+ * @author Danikileitor
+ */
+class ClasificacionPeriodicaMultinodoTest {
+
+    private MongoServer servidor;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private final List<BusInvalidacionMemoria> buses = new ArrayList<>();
+    private LeaderboardService nodoA;
+    private LeaderboardService nodoB;
+    private String id;
+    private int hoy;
+
+    @BeforeEach
+    void crear() {
+        servidor = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(servidor.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-test");
+        hoy = new CalendarioCasino("").hoy();
+        id = crearUsuario("jugador");
+
+        nodoA = crearNodo();
+        nodoB = crearNodo();
+    }
+
+    @AfterEach
+    void cerrar() throws InterruptedException {
+        nodoA.detener();
+        nodoB.detener();
+        buses.forEach(BusInvalidacionMemoria::detener);
+        client.close();
+        servidor.shutdownNow();
+    }
+
+    @Test
+    void lasVictoriasDeDosNodosSeSumanEnElMismoDocumento() {
+        nodoA.sumarVictorias(id, 3, 0);
+        nodoB.sumarVictorias(id, 4, 0);
+
+        volcar(nodoA);
+        volcar(nodoB);
+        volcar(nodoA);
+
+        PuntuacionPeriodo documento = mongoTemplate.findById(PuntuacionPeriodo.id("wins:dia", hoy, id),
+                PuntuacionPeriodo.class);
+        assertThat(documento.getPuntuacion()).isEqualTo(7);
+        assertThat(mongoTemplate.count(Query.query(where("usuarioId").is(id).and("clasificacion").is("wins:dia")),
+                PuntuacionPeriodo.class)).isEqualTo(1);
+        assertThat(puntuacion(nodoA, Ventana.DIA)).isEqualTo(7);
+        assertThat(puntuacion(nodoB, Ventana.DIA)).isEqualTo(7);
+        assertThat(puntuacion(nodoA, Ventana.SEMANA)).isEqualTo(7);
+        assertThat(puntuacion(nodoB, Ventana.SEMANA)).isEqualTo(7);
+    }
+
+    @Test
+    void alLeerElTotalSeSumaLoQueElNodoAunNoHaVolcado() {
+        nodoB.sumarVictorias(id, 4, 0);
+        nodoA.sumarVictorias(id, 3, 0);
+        volcar(nodoA);
+
+        // B lee el total de A sin haber escrito aún sus propias victorias
+        ReflectionTestUtils.invokeMethod(nodoB, "cargarPeriodos");
+        assertThat(puntuacion(nodoB, Ventana.DIA)).isEqualTo(7);
+
+        volcar(nodoB);
+        assertThat(puntuacion(nodoB, Ventana.DIA)).isEqualTo(7);
+        volcar(nodoA);
+        assertThat(puntuacion(nodoA, Ventana.DIA)).isEqualTo(7);
+    }
+
+    @Test
+    void seVuelvenALeerLasPuntuacionesDentroDelMargen() {
+        nodoA.sumarVictorias(id, 1, 0);
+        volcar(nodoA);
+        long sincronizado = mongoTemplate.findById(PuntuacionPeriodo.id("wins:dia", hoy, id),
+                PuntuacionPeriodo.class).getActualizado().getTime();
+
+        // Escrituras de otros nodos que se hacen visibles después de la lectura de A,
+        // con una fecha anterior a la más reciente que A ya ha leído
+        String dentro = crearUsuario("dentro");
+        String fuera = crearUsuario("fuera");
+        insertarPuntuacion(dentro, 5, new Date(sincronizado - 500));
+        insertarPuntuacion(fuera, 5, new Date(sincronizado - 2000));
+
+        volcar(nodoA);
+        assertThat(puntuacion(nodoA, Ventana.DIA, dentro)).isEqualTo(5);
+        assertThat(puntuacion(nodoA, Ventana.DIA, fuera)).isZero();
+    }
+
+    /**
+     * Crea un nodo con su propio bus de invalidación en un canal compartido. El
+     * intervalo de volcado es largo para que solo vuelque la prueba.
+     *
+     * @return el servicio del nodo
+     */
+    private LeaderboardService crearNodo() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BusInvalidacionMemoria bus = new BusInvalidacionMemoria("clasificaciones", meterRegistry);
+        bus.iniciar();
+        buses.add(bus);
+
+        LeaderboardService nodo = new LeaderboardService();
+        ReflectionTestUtils.setField(nodo, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(nodo, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(nodo, "calendarioCasino", new CalendarioCasino(""));
+        ReflectionTestUtils.setField(nodo, "fabricaHilos", new FabricaHilos());
+        ReflectionTestUtils.setField(nodo, "busInvalidacion", bus);
+        ReflectionTestUtils.setField(nodo, "intervaloVolcado", 3_600_000L);
+        nodo.iniciar();
+        return nodo;
+    }
+
+    private static void volcar(LeaderboardService nodo) {
+        ReflectionTestUtils.invokeMethod(nodo, "volcar");
+    }
+
+    private String crearUsuario(String nombre) {
+        return mongoTemplate.insert(new Usuario(nombre, "password", nombre + "@dnk.casino")).getId();
+    }
+
+    /**
+     * Inserta la puntuación diaria de un usuario como si la hubiera escrito otro
+     * nodo en la fecha indicada.
+     *
+     * @param usuarioId   el ID del usuario
+     * @param puntuacion  la puntuación
+     * @param actualizado la fecha de la escritura
+     */
+    private void insertarPuntuacion(String usuarioId, long puntuacion, Date actualizado) {
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(PuntuacionPeriodo.class))
+                .insertOne(new Document("_id", PuntuacionPeriodo.id("wins:dia", hoy, usuarioId))
+                        .append("clasificacion", "wins:dia")
+                        .append("periodo", hoy)
+                        .append("usuarioId", usuarioId)
+                        .append("puntuacion", puntuacion)
+                        .append("actualizado", actualizado));
+    }
+
+    private long puntuacion(LeaderboardService nodo, Ventana ventana) {
+        return puntuacion(nodo, ventana, id);
+    }
+
+    private static long puntuacion(LeaderboardService nodo, Ventana ventana, String usuarioId) {
+        return nodo.getTop(Clasificacion.WINS, ventana, 100).stream()
+                .filter(entrada -> entrada.id().equals(usuarioId))
+                .mapToLong(Leaderboard.Entrada::puntuacion)
+                .findFirst()
+                .orElse(0);
+    }
+}
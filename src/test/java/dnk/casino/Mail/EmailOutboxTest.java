@@ -0,0 +1,209 @@
+package dnk.casino.Mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+
+import dnk.casino.Config.FabricaHilos;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Pruebas de {@link EmailOutbox} contra un servidor SMTP en el mismo proceso.
+ *
+ * @author Danikileitor
+ */
+class EmailOutboxTest {
+
+    /**
+     * Tiempo máximo de espera de cada condición, en milisegundos.
+     */
+    private static final long ESPERA_MAXIMA_MS = 10000;
+
+    /**
+     * Servicio de correo que anota el instante y el tamaño de cada envío por
+     * conexión SMTP.
+     */
+    static class SenderContador extends JavaMailSenderImpl {
+
+        /**
+         * Envío por una conexión SMTP.
+         *
+         * @param instante el instante del envío, en milisegundos
+         * @param correos  el número de correos del envío
+         */
+        record Envio(long instante, int correos) {
+        }
+
+        final List<Envio> envios = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(MimeMessage... mimeMessages) throws MailException {
+            envios.add(new Envio(System.currentTimeMillis(), mimeMessages.length));
+            super.send(mimeMessages);
+        }
+    }
+
+    private int puerto;
+    private GreenMail smtp;
+    private SenderContador sender;
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutbox outbox;
+
+    @BeforeEach
+    void crear() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puerto = socket.getLocalPort();
+        }
+        smtp = new GreenMail(new ServerSetup(puerto, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+
+        sender = new SenderContador();
+        sender.setHost("127.0.0.1");
+        sender.setPort(puerto);
+
+        meterRegistry = new SimpleMeterRegistry();
+        outbox = new EmailOutbox();
+        ReflectionTestUtils.setField(outbox, "javaMailSender", sender);
+        ReflectionTestUtils.setField(outbox, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(outbox, "fabricaHilos", new FabricaHilos());
+        ReflectionTestUtils.setField(outbox, "hilos", 1);
+        ReflectionTestUtils.setField(outbox, "tamanoLote", 50);
+        ReflectionTestUtils.setField(outbox, "capacidad", 1000);
+        ReflectionTestUtils.setField(outbox, "maxIntentos", 5);
+        ReflectionTestUtils.setField(outbox, "esperaBase", 300L);
+    }
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        outbox.detener();
+        smtp.stop();
+    }
+
+    @Test
+    void enviaLosCorreosListosEnLotesPorUnaConexion() {
+        smtp.start();
+        for (int i = 0; i < 120; i++) {
+            outbox.encolar("jugador" + i + "@localhost", "Asunto " + i, "Mensaje " + i, null);
+        }
+
+        outbox.iniciar();
+
+        assertThat(smtp.waitForIncomingEmail(ESPERA_MAXIMA_MS, 120)).isTrue();
+        esperar(() -> outbox.getPendientes() == 0);
+        assertThat(sender.envios).extracting(SenderContador.Envio::correos).containsExactly(50, 50, 20);
+        assertThat(smtp.getReceivedMessages()).hasSize(120);
+        assertThat(contador("enviados")).isEqualTo(120);
+        assertThat(contador("reintentos")).isZero();
+    }
+
+    @Test
+    void reintentaConEsperaExponencialHastaQueResponde() {
+        outbox.encolar("jugador@localhost", "Asunto", "Mensaje", null);
+
+        outbox.iniciar();
+
+        // Los dos primeros intentos fallan porque el servidor aún no escucha
+        esperar(() -> contador("reintentos") == 2);
+        smtp.start();
+
+        assertThat(smtp.waitForIncomingEmail(ESPERA_MAXIMA_MS, 1)).isTrue();
+        esperar(() -> outbox.getPendientes() == 0);
+        assertThat(sender.envios).hasSize(3);
+        long primeraEspera = sender.envios.get(1).instante() - sender.envios.get(0).instante();
+        long segundaEspera = sender.envios.get(2).instante() - sender.envios.get(1).instante();
+        assertThat(primeraEspera).isGreaterThanOrEqualTo(300);
+        assertThat(segundaEspera).isGreaterThanOrEqualTo(600);
+        assertThat(contador("reintentos")).isEqualTo(2);
+        assertThat(contador("enviados")).isEqualTo(1);
+    }
+
+    @Test
+    void descartaElCorreoTrasAgotarLosIntentos() {
+        ReflectionTestUtils.setField(outbox, "maxIntentos", 3);
+        ReflectionTestUtils.setField(outbox, "esperaBase", 50L);
+        outbox.encolar("jugador@localhost", "Asunto", "Mensaje", null);
+
+        outbox.iniciar();
+
+        esperar(() -> outbox.getPendientes() == 0);
+        assertThat(sender.envios).hasSize(3);
+        assertThat(contador("reintentos")).isEqualTo(2);
+        assertThat(contador("descartados")).isEqualTo(1);
+        assertThat(contador("enviados")).isZero();
+    }
+
+    @Test
+    void alDetenerseEnviaSinEsperaLosCorreosQueQuedan() throws InterruptedException {
+        ReflectionTestUtils.setField(outbox, "esperaBase", 60000L);
+        outbox.encolar("jugador@localhost", "Asunto", "Mensaje", null);
+
+        outbox.iniciar();
+
+        // El primer intento falla y el siguiente queda a un minuto
+        esperar(() -> contador("reintentos") == 1);
+        smtp.start();
+        outbox.detener();
+
+        assertThat(smtp.getReceivedMessages()).hasSize(1);
+        assertThat(outbox.getPendientes()).isZero();
+        assertThat(contador("enviados")).isEqualTo(1);
+        assertThat(contador("perdidos")).isZero();
+    }
+
+    @Test
+    void alDetenerseCuentaLosCorreosQueNoSalen() throws InterruptedException {
+        ReflectionTestUtils.setField(outbox, "esperaBase", 60000L);
+        outbox.encolar("jugador@localhost", "Asunto", "Mensaje", null);
+
+        outbox.iniciar();
+
+        esperar(() -> contador("reintentos") == 1);
+        outbox.detener();
+
+        assertThat(outbox.getPendientes()).isZero();
+        assertThat(contador("perdidos")).isEqualTo(1);
+        assertThat(contador("enviados")).isZero();
+    }
+
+    /**
+     * Obtiene el valor de un contador de la bandeja de salida.
+     *
+     * @param nombre el nombre del contador, sin el prefijo
+     * @return el valor del contador
+     */
+    private double contador(String nombre) {
+        return meterRegistry.counter("dnk.casino.mail.outbox." + nombre).count();
+    }
+
+    /**
+     * Espera a que se cumpla una condición.
+     *
+     * @param condicion la condición
+     */
+    private static void esperar(BooleanSupplier condicion) {
+        long limite = System.currentTimeMillis() + ESPERA_MAXIMA_MS;
+        while (!condicion.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("tiempo de espera agotado").isLessThan(limite);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package dnk.casino.Users;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import dnk.casino.Leaderboard.LeaderboardService;
+import dnk.casino.Skins.Skin;
+
+/**
+ * Prueba de concurrencia de la compra de skins con un único findAndModify
+ * condicional.
+ *
+ * Usa mongo-java-server, un servidor en memoria que habla el protocolo de
+ * MongoDB, así que comprueba las condiciones de la consulta y la actualización
+ * con muchos hilos a la vez, no el motor de almacenamiento de MongoDB.
+ *
+ * @author Danikileitor
+ */
+class CompraSkinConcurrenteTest {
+
+    private static final int HILOS = 32;
+    private static final int SKINS = 100;
+    private static final int PRECIO = 10;
+
+    private MongoServer servidor;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private UsuarioService usuarioService;
+    private Skin[] skins;
+
+    /**
+     * Número de compras correctas de cada skin.
+     */
+    private final Map<String, AtomicInteger> compradasPorSkin = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void crear() {
+        servidor = new MongoServer(new MemoryBackend());
+        String uri = servidor.bindAndGetConnectionString();
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "dnk-casino-test");
+
+        usuarioService = new UsuarioService();
+        ReflectionTestUtils.setField(usuarioService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(usuarioService, "leaderboardService", mock(LeaderboardService.class));
+
+        skins = new Skin[SKINS];
+        for (int i = 0; i < SKINS; i++) {
+            skins[i] = new Skin("skin" + i, PRECIO, "", new String[0], true);
+            skins[i].setId("skin" + i);
+        }
+    }
+
+    @AfterEach
+    void cerrar() {
+        client.close();
+        servidor.shutdownNow();
+    }
+
+    @Test
+    void nuncaCobraDeMasNiDesbloqueaDosVeces() throws Exception {
+        int saldoInicial = SKINS * PRECIO / 2;
+        crearUsuario(saldoInicial);
+
+        // Cada hilo intenta comprar todas las skins en un orden distinto
+        Map<ResultadoCompra, AtomicInteger> resultados = comprarALaVez(hilo -> {
+            List<Skin> orden = new ArrayList<>(List.of(skins));
+            Collections.shuffle(orden);
+            return orden;
+        });
+
+        Usuario usuario = leerUsuario();
+        assertThat(usuario.getCoins()).isZero();
+        assertThat(usuario.getSkins()).hasSize(saldoInicial / PRECIO);
+        assertThat(skinsGuardadas()).doesNotHaveDuplicates().hasSize(saldoInicial / PRECIO);
+        assertThat(resultados.get(ResultadoCompra.COMPRADA)).hasValue(saldoInicial / PRECIO);
+        assertThat(compradasPorSkin.keySet()).isEqualTo(usuario.getSkins());
+        assertThat(compradasPorSkin.values()).allSatisfy(veces -> assertThat(veces).hasValue(1));
+        assertThat(resultados.get(ResultadoCompra.USUARIO_NO_ENCONTRADO)).hasValue(0);
+        assertThat(resultados.values().stream().mapToInt(AtomicInteger::get).sum()).isEqualTo(HILOS * SKINS);
+    }
+
+    @Test
+    void laMismaSkinSoloSeCobraUnaVez() throws Exception {
+        int saldoInicial = 100 * PRECIO;
+        crearUsuario(saldoInicial);
+
+        Map<ResultadoCompra, AtomicInteger> resultados = comprarALaVez(hilo -> Collections.nCopies(10, skins[0]));
+
+        Usuario usuario = leerUsuario();
+        assertThat(usuario.getCoins()).isEqualTo(saldoInicial - PRECIO);
+        assertThat(skinsGuardadas()).containsExactly(skins[0].getId());
+        assertThat(resultados.get(ResultadoCompra.COMPRADA)).hasValue(1);
+        assertThat(resultados.get(ResultadoCompra.YA_DESBLOQUEADA)).hasValue(HILOS * 10 - 1);
+    }
+
+    /**
+     * Lanza las compras de todos los hilos a la vez y cuenta los resultados.
+     *
+     * @param compras las skins que compra cada hilo, en orden
+     * @return el número de compras con cada resultado
+     * @throws Exception si alguna compra lanza una excepción
+     */
+    private Map<ResultadoCompra, AtomicInteger> comprarALaVez(IntFunction<List<Skin>> compras)
+            throws Exception {
+        Map<ResultadoCompra, AtomicInteger> resultados = new EnumMap<>(ResultadoCompra.class);
+        for (ResultadoCompra resultado : ResultadoCompra.values()) {
+            resultados.put(resultado, new AtomicInteger());
+        }
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<?>> hilos = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(HILOS)) {
+            for (int i = 0; i < HILOS; i++) {
+                List<Skin> orden = compras.apply(i);
+                hilos.add(executor.submit(() -> {
+                    salida.await();
+                    for (Skin skin : orden) {
+                        ResultadoCompra resultado = usuarioService.comprarSkin("jugador", skin);
+                        resultados.get(resultado).incrementAndGet();
+                        if (resultado == ResultadoCompra.COMPRADA) {
+                            compradasPorSkin.computeIfAbsent(skin.getId(), id -> new AtomicInteger())
+                                    .incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> hilo : hilos) {
+                hilo.get();
+            }
+        }
+        return resultados;
+    }
+
+    private void crearUsuario(int saldo) {
+        Usuario usuario = new Usuario("jugador", "password", "jugador@dnk.casino");
+        usuario.setCoins(saldo);
+        mongoTemplate.insert(usuario);
+    }
+
+    private Usuario leerUsuario() {
+        return mongoTemplate.findOne(Query.query(where("usernameLower").is("jugador")), Usuario.class);
+    }
+
+    /**
+     * Lee el array de skins tal y como está guardado, sin pasar por
+     * {@link SkinsDesbloqueadas}, que descartaría los duplicados.
+     *
+     * @return las skins guardadas
+     */
+    private List<String> skinsGuardadas() {
+        Document documento = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Usuario.class))
+                .find(new Document("usernameLower", "jugador")).first();
+        return documento.getList("skins", String.class);
+    }
+}